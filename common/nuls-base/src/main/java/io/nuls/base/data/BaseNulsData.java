@@ -41,8 +41,12 @@ import java.util.Arrays;
  */
 public abstract class BaseNulsData implements NulsData, Serializable, Cloneable {
 
+    /**
+     * 子类可以覆盖此方法直接返回已缓存的序列化结果
+     * Subclasses may override this to return bytes they already hold
+     */
     @Override
-    public final byte[] serialize() throws IOException {
+    public byte[] serialize() throws IOException {
         int size = size();
         try (ByteArrayOutputStream bos = new UnsafeByteArrayOutputStream(size)){
             NulsOutputStreamBuffer buffer = new NulsOutputStreamBuffer(bos);
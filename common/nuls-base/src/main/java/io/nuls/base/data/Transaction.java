@@ -29,6 +29,7 @@ import io.nuls.base.basic.NulsByteBuffer;
 import io.nuls.base.basic.NulsOutputStreamBuffer;
 import io.nuls.core.constant.ToolsConstant;
 import io.nuls.core.constant.TxStatusEnum;
+import io.nuls.core.crypto.Sha256Hash;
 import io.nuls.core.crypto.UnsafeByteArrayOutputStream;
 import io.nuls.core.exception.NulsException;
 import io.nuls.core.parse.SerializeUtils;
@@ -66,6 +67,13 @@ public class Transaction extends BaseNulsData implements Cloneable {
 
     private transient CoinData coinDataInstance;
 
+    /**
+     * 解析得到的交易保留原始字节, 序列化和计算hash时不需要重新编码, 修改任一字段时丢弃
+     * A parsed transaction keeps its original bytes, so serializing and hashing it does not encode again,
+     * they are dropped as soon as any field is modified
+     */
+    private transient byte[] serializedBytes;
+
     /**
      * 在区块中的顺序，存储在rocksDB中是无序的，保存区块时赋值，取出后根据此值排序
      */
@@ -81,6 +89,14 @@ public class Transaction extends BaseNulsData implements Cloneable {
 
     @Override
     public int size() {
+        byte[] bytes = serializedBytes;
+        if (bytes != null) {
+            return bytes.length;
+        }
+        return canonicalSize();
+    }
+
+    private int canonicalSize() {
         int size = 0;
         //type
         size += SerializeUtils.sizeOfUint16();
@@ -93,6 +109,15 @@ public class Transaction extends BaseNulsData implements Cloneable {
         return size;
     }
 
+    @Override
+    public byte[] serialize() throws IOException {
+        byte[] bytes = serializedBytes;
+        if (bytes != null) {
+            return bytes.clone();
+        }
+        return super.serialize();
+    }
+
     @Override
     public void serializeToStream(NulsOutputStreamBuffer stream) throws IOException {
         stream.writeUint16(type);
@@ -128,12 +153,24 @@ public class Transaction extends BaseNulsData implements Cloneable {
 
     @Override
     public void parse(NulsByteBuffer byteBuffer) throws NulsException {
+        int start = byteBuffer.getCursor();
         type = byteBuffer.readUint16();
         time = byteBuffer.readUint32();
         remark = byteBuffer.readByLengthByte();
         txData = byteBuffer.readByLengthByte();
         this.coinData = byteBuffer.readByLengthByte();
         transactionSignature = byteBuffer.readByLengthByte();
+        byte[] payload = byteBuffer.getPayload();
+        int end = byteBuffer.getCursor();
+        serializedBytes = null;
+        //只有按规范编码(长度前缀最短)时才保留原始字节, 否则hash会随编码方式变化
+        //keep the received bytes only when they are canonically encoded (minimal length prefixes), otherwise the hash would depend on the encoding
+        if (canonicalSize() == end - start) {
+            serializedBytes = Arrays.copyOfRange(payload, start, end);
+        }
+        hash = null;
+        size = 0;
+        coinDataInstance = null;
     }
 
     public byte[] getTxData() {
@@ -146,10 +183,12 @@ public class Transaction extends BaseNulsData implements Cloneable {
 
     public void setTime(long time) {
         this.time = time;
+        this.serializedBytes = null;
     }
 
     public void setType(int type) {
         this.type = type;
+        this.serializedBytes = null;
     }
 
     public int getType() {
@@ -162,10 +201,18 @@ public class Transaction extends BaseNulsData implements Cloneable {
 
     public void setRemark(byte[] remark) {
         this.remark = remark;
+        this.serializedBytes = null;
     }
 
     public NulsHash getHash() {
         if (hash == null) {
+            byte[] bytes = serializedBytes;
+            if (bytes != null) {
+                //签名之前的部分即为计算hash的内容 / the part before the signature is what gets hashed
+                int length = bytes.length - SerializeUtils.sizeOfBytes(transactionSignature);
+                hash = new NulsHash(Sha256Hash.hashTwice(bytes, 0, length));
+                return hash;
+            }
             try {
                 hash = NulsHash.calcHash(serializeForHash());
             } catch (IOException e) {
@@ -185,10 +232,12 @@ public class Transaction extends BaseNulsData implements Cloneable {
 
     public void setTransactionSignature(byte[] transactionSignature) {
         this.transactionSignature = transactionSignature;
+        this.serializedBytes = null;
     }
 
     public void setTxData(byte[] txData) {
         this.txData = txData;
+        this.serializedBytes = null;
     }
 
     public long getBlockHeight() {
@@ -229,6 +278,7 @@ public class Transaction extends BaseNulsData implements Cloneable {
 
     public void setCoinData(byte[] coinData) {
         this.coinData = coinData;
+        this.serializedBytes = null;
     }
 
     public int getSize() {
@@ -104,4 +104,54 @@ public class TransactionTest {
 
 
     }
+
+    @Test
+    public void cachedBytes() throws Exception {
+        Transaction tx = new Transaction(10);
+        tx.setTime(1L);
+        tx.setRemark(StringUtils.bytes("cache"));
+        CoinData coinData = new CoinData();
+        coinData.addFrom(new CoinFrom(new byte[23], 1, 1, BigInteger.ONE, new byte[8], (byte) 0));
+        tx.setCoinData(coinData.serialize());
+        tx.setTransactionSignature(new byte[]{1, 2, 3});
+        byte[] bytes = tx.serialize();
+
+        //解析后直接返回原始字节, hash与重新编码计算的一致 / the parsed transaction returns its original bytes and the same hash
+        Transaction parsed = Transaction.getInstance(bytes);
+        Assert.assertArrayEquals(bytes, parsed.serialize());
+        Assert.assertEquals(bytes.length, parsed.size());
+        //返回的是副本, 修改它不影响交易 / the returned array is a copy, modifying it does not affect the transaction
+        parsed.serialize()[0] = 0x7f;
+        Assert.assertArrayEquals(bytes, parsed.serialize());
+        Assert.assertEquals(tx.getHash(), parsed.getHash());
+
+        //区块等更大的数组中解析出的交易 / a transaction parsed out of a larger array such as a block
+        byte[] block = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, block, 5, bytes.length);
+        NulsByteBuffer buffer = new NulsByteBuffer(block);
+        buffer.setCursor(5);
+        Transaction inBlock = buffer.readTransaction();
+        Assert.assertArrayEquals(bytes, inBlock.serialize());
+        Assert.assertEquals(tx.getHash(), inBlock.getHash());
+
+        //备注长度使用非最短的VarInt前缀编码, hash和序列化结果仍按规范编码计算
+        //a non-minimal VarInt prefix for the remark length still hashes and serializes canonically
+        byte[] nonCanonical = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, nonCanonical, 0, 6);
+        nonCanonical[6] = (byte) 0xfd;
+        nonCanonical[7] = bytes[6];
+        nonCanonical[8] = 0;
+        System.arraycopy(bytes, 7, nonCanonical, 9, bytes.length - 7);
+        Transaction malleated = Transaction.getInstance(nonCanonical);
+        Assert.assertArrayEquals(tx.getRemark(), malleated.getRemark());
+        Assert.assertEquals(tx.getHash(), malleated.getHash());
+        Assert.assertArrayEquals(bytes, malleated.serialize());
+        Assert.assertEquals(bytes.length, malleated.size());
+
+        //修改字段后重新编码 / modifying a field encodes again
+        parsed.setTransactionSignature(new byte[]{4, 5});
+        Assert.assertFalse(Arrays.equals(bytes, parsed.serialize()));
+        Assert.assertEquals(parsed.size(), parsed.serialize().length);
+        Assert.assertEquals(tx.getHash(), parsed.getHash());
+    }
 }
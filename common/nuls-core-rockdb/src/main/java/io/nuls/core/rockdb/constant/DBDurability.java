@@ -1,18 +1,14 @@
 /**
  * MIT License
- * <p>
  * Copyright (c) 2017-2019 nuls.io
- * <p>
  * Permission is hereby granted, free of charge, to any person obtaining a copy
  * of this software and associated documentation files (the "Software"), to deal
  * in the Software without restriction, including without limitation the rights
  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
  * copies of the Software, and to permit persons to whom the Software is
  * furnished to do so, subject to the following conditions:
- * <p>
  * The above copyright notice and this permission notice shall be included in all
  * copies or substantial portions of the Software.
- * <p>
  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
@@ -21,45 +17,27 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-
-package io.nuls.transaction.model.bo;
+package io.nuls.core.rockdb.constant;
 
 /**
- * 孤儿交易排序工具类
- * @author: Charlie
- * @date: 2019/7/23
+ * 数据表写入的持久化策略，按持久化程度由强到弱声明.
+ * Durability policy of writes to a table, declared from the strictest to the weakest
  */
-public class OrphanSortItem<T> {
-
-    private T obj;
-    private OrphanSortItem[] flower = new OrphanSortItem[0];
-    private boolean hasFlower;
-
-    public OrphanSortItem(T obj) {
-        this.obj = obj;
-    }
-
-    public T getObj() {
-        return obj;
-    }
-
-    public void setObj(T obj) {
-        this.obj = obj;
-    }
-
-    public OrphanSortItem[] getFlower() {
-        return flower;
-    }
-
-    public void setFlower(OrphanSortItem[] flower) {
-        this.flower = flower;
-    }
-
-    public boolean isHasFlower() {
-        return hasFlower;
-    }
-
-    public void setHasFlower(boolean hasFlower) {
-        this.hasFlower = hasFlower;
-    }
+public enum DBDurability {
+    /**
+     * 每次写入都同步刷盘，进程或系统崩溃都不丢数据
+     * fsync the WAL on every write, nothing is lost on process or OS crash
+     */
+    SYNC,
+    /**
+     * 写入WAL但不逐次刷盘，由后台线程按固定间隔统一刷盘，系统崩溃时最多丢失一个间隔内的数据
+     * write the WAL without per-write fsync, a background thread syncs it at a fixed interval,
+     * an OS crash loses at most one interval of writes
+     */
+    GROUP_COMMIT,
+    /**
+     * 不写WAL，只适用于可以重建的缓存数据，进程崩溃会丢失尚未落盘的数据
+     * skip the WAL, only for rebuildable cache data, unflushed writes are lost on a process crash
+     */
+    NO_WAL
 }
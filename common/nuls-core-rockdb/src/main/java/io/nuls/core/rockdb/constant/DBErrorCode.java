@@ -31,4 +31,6 @@ public interface DBErrorCode {
     String DB_TABLE_CREATE_PATH_ERROR = "Create DB table path error";
     String DB_TABLE_DESTROY_ERROR = "Destroy DB table error";
     String DB_TABLE_FAILED_BATCH_CLOSE = "DB batch operation closed";
+    String DB_TABLE_MIGRATE_ERROR = "Migrate DB table error";
+    String DB_MODE_CONFLICT = "DB tables already opened in another storage mode";
 }
\ No newline at end of file
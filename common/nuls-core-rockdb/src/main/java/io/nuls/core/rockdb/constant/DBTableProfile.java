@@ -0,0 +1,52 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2019 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.nuls.core.rockdb.constant;
+
+/**
+ * 数据表调优配置，创建表时指定，重新打开时沿用；对已存在的表指定时同样生效.
+ * Tuning profile of a table, chosen at createTable time and reused when the table is reopened,
+ * it also applies when given for an existing table
+ */
+public enum DBTableProfile {
+    /**
+     * 默认配置，不使用块缓存且不压缩
+     * default options, no block cache and no compression
+     */
+    DEFAULT,
+    /**
+     * 热点数据随机读，使用共享块缓存并常驻索引与过滤器，低层级不压缩
+     * hot random reads, shared block cache with pinned index/filter blocks, uncompressed upper levels
+     */
+    POINT_LOOKUP,
+    /**
+     * 按递增键追加写入的日志型数据，较大写缓冲，底层使用ZSTD压缩
+     * append-only data with increasing keys, larger write buffer and ZSTD on the bottommost level
+     */
+    APPEND_LOG,
+    /**
+     * 以遍历为主的数据，较大数据块且不使用布隆过滤器
+     * scan-heavy data, larger blocks and no bloom filter
+     */
+    SCAN
+}
@@ -21,15 +21,27 @@ package io.nuls.core.rockdb.manager;
 
 import io.nuls.core.log.Log;
 import io.nuls.core.model.StringUtils;
+import io.nuls.core.rockdb.constant.DBDurability;
 import io.nuls.core.rockdb.constant.DBErrorCode;
+import io.nuls.core.rockdb.constant.DBTableProfile;
 import io.nuls.core.rockdb.model.Entry;
 import io.nuls.core.rockdb.util.DBUtils;
+import io.nuls.core.thread.ThreadUtils;
+import io.nuls.core.thread.commom.NulsThreadFactory;
 import org.rocksdb.*;
 import org.rocksdb.util.SizeUnit;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 
@@ -47,11 +59,107 @@ public class RocksDBManager {
      */
     private static final ConcurrentHashMap<String, RocksDB> TABLES = new ConcurrentHashMap<>();
 
+    /**
+     * 数据表对应的列族句柄缓存，独立库模式下为各库的默认列族.
+     * Column family handle of each table, the default column family of its own instance in per-table mode
+     */
+    private static final ConcurrentHashMap<String, ColumnFamilyHandle> COLUMN_FAMILIES = new ConcurrentHashMap<>();
+
+    /**
+     * 列族模式下所有数据表共享的数据库实例，为null时表示每个数据表独立一个实例.
+     * Shared instance holding every table as a column family, null in per-table mode
+     */
+    private static RocksDB sharedDB;
+
+    /**
+     * 共享实例的默认列族句柄.
+     */
+    private static ColumnFamilyHandle sharedDefaultHandle;
+
+    /**
+     * 共享实例所有列族共用的块缓存与写缓冲管理器.
+     */
+    private static Cache sharedBlockCache;
+    private static WriteBufferManager sharedWriteBufferManager;
+
+    /**
+     * 共享块缓存大小，需在打开数据表之前设置.
+     */
+    private static long sharedBlockCacheSize = 128 * SizeUnit.MB;
+
+    /**
+     * 记录非默认调优配置的数据表，保存在数据库根目录下.
+     * Tables created with a non-default tuning profile, persisted under the data path
+     */
+    private static final Properties TABLE_PROFILES = new Properties();
+
+    private static final String PROFILE_FILE_NAME = "table-profile.properties";
+
+    /**
+     * 所有列族memtable合计上限.
+     */
+    private static final long SHARED_WRITE_BUFFER_SIZE = 256 * SizeUnit.MB;
+
+    /**
+     * 各数据表的写入持久化策略，未设置的表使用GROUP_COMMIT.
+     * Durability policy of each table, GROUP_COMMIT when not set
+     */
+    private static final ConcurrentHashMap<String, DBDurability> TABLE_DURABILITY = new ConcurrentHashMap<>();
+
+    /**
+     * 各持久化策略共用的写入属性，只读共享，不再每次写入创建.
+     */
+    private static final WriteOptions SYNC_WRITE_OPTIONS;
+    private static final WriteOptions GROUP_COMMIT_WRITE_OPTIONS;
+    private static final WriteOptions NO_WAL_WRITE_OPTIONS;
+
+    static {
+        RocksDB.loadLibrary();
+        SYNC_WRITE_OPTIONS = new WriteOptions().setSync(true);
+        GROUP_COMMIT_WRITE_OPTIONS = new WriteOptions();
+        NO_WAL_WRITE_OPTIONS = new WriteOptions().setDisableWAL(true);
+    }
+
+    /**
+     * 自上次刷盘后有GROUP_COMMIT写入的数据库实例.
+     */
+    private static final Set<RocksDB> WAL_DIRTY = ConcurrentHashMap.newKeySet();
+
+    /**
+     * GROUP_COMMIT策略下WAL刷盘间隔(毫秒).
+     */
+    private static long groupCommitInterval = 200;
+
+    private static ScheduledThreadPoolExecutor walSyncExecutor;
+
+    /**
+     * 分层压缩配置的层数，与RocksDB默认num_levels一致.
+     */
+    private static final int COMPRESSION_LEVELS = 7;
+
+    /**
+     * 迁移旧数据表时单个批次写入的记录数.
+     */
+    private static final int MIGRATE_BATCH_SIZE = 10000;
+
     /**
      * 数据表基础文件夹名.
      */
     private static final String BASE_DB_NAME = "rocksdb";
 
+    /**
+     * 列族模式标记文件，迁移全部完成或新建列族存储后写入，存在时以列族模式打开.
+     * Marker written once a migration completed or a fresh column family store was created,
+     * the data path is opened in column family mode only when it exists
+     */
+    private static final String COLUMN_FAMILY_MARKER = "column-family.done";
+
+    /**
+     * 打开数据库时创建的本地属性对象，数据库关闭后统一释放.
+     * Native option objects created when opening databases, released after the databases are closed
+     */
+    private static final List<AbstractNativeReference> NATIVE_OPTIONS = new ArrayList<>();
+
     /**
      * 数据操作同步锁.
      */
@@ -73,11 +181,39 @@ public class RocksDBManager {
         init(path, null, null);
     }
 
+    /**
+     * 按配置的存储模式打开数据库，启用列族模式时未迁移的旧数据先迁移到共享实例.
+     * Open the data path in the configured storage mode, legacy per-table data is migrated first when
+     * column family mode is enabled
+     *
+     * @param path         数据库地址
+     * @param columnFamily 是否使用列族模式
+     * @throws Exception 数据库打开连接异常
+     */
+    public static void init(final String path, final boolean columnFamily) throws Exception {
+        synchronized (RocksDBManager.class) {
+            if (columnFamily && !isColumnFamilyStore(DBUtils.loadDataPath(path))) {
+                migrateToColumnFamily(path, true);
+                return;
+            }
+            init(path);
+        }
+    }
+
     public static void init(final String path, Options options, Set<String> skipTables) throws Exception {
         synchronized (RocksDBManager.class) {
             File dir = DBUtils.loadDataPath(path);
+            // 已完成迁移的目录直接以共享实例打开,迁移中断留下的共享实例不完整,继续使用旧数据表
+            if (isColumnFamilyStore(dir)) {
+                initColumnFamily(path);
+                return;
+            }
+            if (new File(dir.getPath() + File.separator + BASE_DB_NAME + File.separator + "CURRENT").exists()) {
+                Log.warn("incomplete column family store ignored, dataPath: " + dir.getPath());
+            }
             dataPath = dir.getPath();
             Log.info("RocksDBManager dataPath is " + dataPath);
+            loadProfiles();
             File[] tableFiles = dir.listFiles();
             RocksDB db;
             String dbPath = null;
@@ -87,18 +223,18 @@ public class RocksDBManager {
                     continue;
                 }
                 // 缓存中已存在的数据库连接不再重复打开
-                if (!tableFile.isDirectory() || TABLES.get(tableFile.getName()) != null) {
+                if (!tableFile.isDirectory() || BASE_DB_NAME.equals(tableFile.getName()) || TABLES.get(tableFile.getName()) != null) {
                     continue;
                 }
                 try {
                     dbPath = tableFile.getPath() + File.separator + BASE_DB_NAME;
                     if (options == null) {
-                        db = initOpenDB(dbPath);
+                        db = initOpenDB(dbPath, getTableOptions(getProfile(tableFile.getName()), false));
                     } else {
                         db = initOpenDB(dbPath, options);
                     }
                     if (db != null) {
-                        TABLES.put(tableFile.getName(), db);
+                        registerTable(tableFile.getName(), db, db.getDefaultColumnFamily());
                     }
                 } catch (Exception e) {
                     Log.warn("load table failed, tableName: " + tableFile.getName() + ", dbPath: " + dbPath, e);
@@ -109,26 +245,216 @@ public class RocksDBManager {
 
     }
 
-    private static RocksDB initOpenDB(final String dbPath, Options options) throws RocksDBException {
-        File checkFile = new File(dbPath + File.separator + "CURRENT");
-        if (!checkFile.exists()) {
-            return null;
+    /**
+     * 以列族模式打开数据库：模块的所有数据表作为列族保存在同一个RocksDB实例中，
+     * 共用WAL、块缓存和写缓冲，跨表写入可以在一个WriteBatch中原子提交.
+     * Open the data path in column family mode: every table of the module is a column family of one
+     * RocksDB instance sharing WAL, block cache and write buffers, so cross-table writes can be atomic.
+     *
+     * @param path 数据库地址
+     * @throws Exception 数据库打开连接异常
+     */
+    public static void initColumnFamily(final String path) throws Exception {
+        synchronized (RocksDBManager.class) {
+            if (sharedDB != null) {
+                return;
+            }
+            File dir = DBUtils.loadDataPath(path);
+            if (!isColumnFamilyStore(dir)) {
+                // 已有旧数据表或未完成的迁移时需要先迁移
+                if (hasLegacyTables(dir) || new File(dir.getPath() + File.separator + BASE_DB_NAME).exists()) {
+                    throw new Exception(DBErrorCode.DB_MODE_CONFLICT);
+                }
+                openColumnFamily(path);
+                writeColumnFamilyMarker();
+                return;
+            }
+            openColumnFamily(path);
+        }
+    }
+
+    private static void openColumnFamily(final String path) throws Exception {
+        if (!TABLES.isEmpty()) {
+            throw new Exception(DBErrorCode.DB_MODE_CONFLICT);
+        }
+        File dir = DBUtils.loadDataPath(path);
+        dataPath = dir.getPath();
+        Log.info("RocksDBManager dataPath is " + dataPath + ", column family mode");
+        loadProfiles();
+        String dbPath = dataPath + File.separator + BASE_DB_NAME;
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, getColumnFamilyOptions(DBTableProfile.DEFAULT)));
+        if (new File(dbPath + File.separator + "CURRENT").exists()) {
+            try (Options options = new Options()) {
+                for (byte[] name : RocksDB.listColumnFamilies(options, dbPath)) {
+                    if (!Arrays.equals(name, RocksDB.DEFAULT_COLUMN_FAMILY)) {
+                        descriptors.add(new ColumnFamilyDescriptor(name, getColumnFamilyOptions(getProfile(new String(name, StandardCharsets.UTF_8)))));
+                    }
+                }
+            }
+        }
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        RocksDB db = RocksDB.open(getSharedDBOptions(), dbPath, descriptors, handles);
+        sharedDB = db;
+        sharedDefaultHandle = handles.get(0);
+        for (int i = 1; i < descriptors.size(); i++) {
+            registerTable(new String(descriptors.get(i).getName(), StandardCharsets.UTF_8), db, handles.get(i));
+        }
+    }
+
+    private static boolean isColumnFamilyStore(final File dir) {
+        return new File(dir.getPath() + File.separator + COLUMN_FAMILY_MARKER).exists();
+    }
+
+    private static boolean hasLegacyTables(final File dir) {
+        File[] tableFiles = dir.listFiles();
+        if (tableFiles == null) {
+            return false;
+        }
+        for (File tableFile : tableFiles) {
+            if (tableFile.isDirectory() && !BASE_DB_NAME.equals(tableFile.getName())
+                    && new File(tableFile.getPath() + File.separator + BASE_DB_NAME + File.separator + "CURRENT").exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 共享实例的数据全部写入并刷盘后写入标记文件.
+     */
+    private static void writeColumnFamilyMarker() throws Exception {
+        sharedDB.flushWal(true);
+        try (FileOutputStream out = new FileOutputStream(dataPath + File.separator + COLUMN_FAMILY_MARKER)) {
+            out.write(String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
         }
-        return RocksDB.open(options, dbPath);
     }
 
     /**
-     * @param dbPath 数据库地址
+     * 把旧的每表一个实例的数据迁移到列族模式的共享实例中，迁移前不能以旧模式打开该目录.
+     * 全部数据表复制完成后才写入标记文件，中断后重新执行会丢弃不完整的共享实例重新迁移，旧数据表在写入标记后才删除.
+     * Migrate per-table instances under the data path into column families of the shared instance.
+     * The path must not be opened in per-table mode. The marker is written only after every table was copied, an
+     * interrupted migration discards the incomplete shared instance when re-run and legacy tables are deleted after the marker.
+     *
+     * @param path         数据库地址
+     * @param deleteSource 迁移成功后是否删除旧数据表
+     * @return 迁移的数据表数量
+     * @throws Exception 迁移异常
+     */
+    public static int migrateToColumnFamily(final String path, final boolean deleteSource) throws Exception {
+        synchronized (RocksDBManager.class) {
+            File dir = DBUtils.loadDataPath(path);
+            if (isColumnFamilyStore(dir)) {
+                openColumnFamily(path);
+                return 0;
+            }
+            // 中断的迁移留下的共享实例数据不完整，丢弃后重新迁移
+            String sharedPath = dir.getPath() + File.separator + BASE_DB_NAME;
+            if (new File(sharedPath).exists()) {
+                Log.warn("discard incomplete column family store: " + sharedPath);
+                destroyDB(sharedPath);
+            }
+            openColumnFamily(path);
+            List<File> migrated = new ArrayList<>();
+            for (File tableFile : dir.listFiles()) {
+                String tableName = tableFile.getName();
+                String legacyPath = tableFile.getPath() + File.separator + BASE_DB_NAME;
+                if (!tableFile.isDirectory() || BASE_DB_NAME.equals(tableName) || !DBUtils.checkPathLegal(tableName)
+                        || !new File(legacyPath + File.separator + "CURRENT").exists()) {
+                    continue;
+                }
+                try {
+                    copyTable(legacyPath, tableName);
+                    migrated.add(tableFile);
+                    Log.info("migrate table to column family: " + tableName);
+                } catch (Exception e) {
+                    Log.error("error migrate table: " + tableName, e);
+                    throw new Exception(DBErrorCode.DB_TABLE_MIGRATE_ERROR);
+                }
+            }
+            // 全部数据表复制完成后才写入标记,之后才能删除旧数据表
+            writeColumnFamilyMarker();
+            if (deleteSource) {
+                for (File tableFile : migrated) {
+                    String legacyPath = tableFile.getPath() + File.separator + BASE_DB_NAME;
+                    destroyDB(legacyPath);
+                    new File(legacyPath).delete();
+                    tableFile.delete();
+                }
+            }
+            return migrated.size();
+        }
+    }
+
+    private static void copyTable(final String legacyPath, final String tableName) throws RocksDBException {
+        ColumnFamilyHandle handle = COLUMN_FAMILIES.get(tableName);
+        if (handle == null) {
+            handle = sharedDB.createColumnFamily(new ColumnFamilyDescriptor(tableName.getBytes(StandardCharsets.UTF_8), getColumnFamilyOptions(getProfile(tableName))));
+            registerTable(tableName, sharedDB, handle);
+        }
+        try (Options options = getCommonOptions(false);
+             RocksDB source = RocksDB.openReadOnly(options, legacyPath);
+             RocksIterator iterator = source.newIterator();
+             WriteOptions writeOptions = new WriteOptions()) {
+            WriteBatch batch = new WriteBatch();
+            try {
+                int size = 0;
+                for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+                    batch.put(handle, iterator.key(), iterator.value());
+                    if (++size >= MIGRATE_BATCH_SIZE) {
+                        sharedDB.write(writeOptions, batch);
+                        batch.close();
+                        batch = new WriteBatch();
+                        size = 0;
+                    }
+                }
+                if (size > 0) {
+                    sharedDB.write(writeOptions, batch);
+                }
+            } finally {
+                batch.close();
+            }
+        }
+    }
+
+    /**
+     * 记录打开数据库使用的本地属性对象，数据库打开期间不能释放.
+     */
+    private static <T extends AbstractNativeReference> T track(final T reference) {
+        synchronized (NATIVE_OPTIONS) {
+            NATIVE_OPTIONS.add(reference);
+        }
+        return reference;
+    }
+
+    private static void registerTable(final String tableName, final RocksDB db, final ColumnFamilyHandle handle) {
+        COLUMN_FAMILIES.put(tableName, handle);
+        TABLES.put(tableName, db);
+    }
+
+    /**
+     * 是否以列族模式运行.
+     * Whether tables are column families of one shared instance
+     *
+     * @return boolean
+     */
+    public static boolean isColumnFamilyMode() {
+        return sharedDB != null;
+    }
+
+    /**
+     * @param dbPath  数据库地址
+     * @param options 数据库连接属性
      * @return RocksDB 数据库连接对象
      * @throws RocksDBException 数据库连接异常
      */
-    private static RocksDB initOpenDB(final String dbPath) throws RocksDBException {
+    private static RocksDB initOpenDB(final String dbPath, Options options) throws RocksDBException {
         File checkFile = new File(dbPath + File.separator + "CURRENT");
         if (!checkFile.exists()) {
             return null;
         }
-
-        Options options = getCommonOptions(false);
         return RocksDB.open(options, dbPath);
     }
 
@@ -143,15 +469,32 @@ public class RocksDBManager {
      *
      * @param dbPath          数据库地址
      * @param createIfMissing 数据库不存在时是否默认创建
+     * @param profile         数据表调优配置
      * @return RocksDB
      * @throws RocksDBException 数据库连接异常
      */
-    private static RocksDB openDB(final String dbPath, final boolean createIfMissing) throws RocksDBException {
-        Options options = getCommonOptions(createIfMissing);
+    private static RocksDB openDB(final String dbPath, final boolean createIfMissing, DBTableProfile profile) throws RocksDBException {
+        Options options = getTableOptions(profile, createIfMissing);
         return RocksDB.open(options, dbPath);
     }
 
     public static boolean createTable(final String tableName, Options options) throws Exception {
+        return createTable(tableName, options, DBTableProfile.DEFAULT);
+    }
+
+    /**
+     * 根据名称和调优配置创建对应的数据库，调优配置会被记录，重新打开时沿用.
+     * Create database with a tuning profile, the profile is persisted and reused on reopen
+     *
+     * @param tableName 数据库表名称
+     * @param profile   数据表调优配置
+     * @return Result 创建结果
+     */
+    public static boolean createTable(final String tableName, DBTableProfile profile) throws Exception {
+        return createTable(tableName, null, profile);
+    }
+
+    private static boolean createTable(final String tableName, Options options, DBTableProfile profile) throws Exception {
         lock.lock();
         try {
             if (StringUtils.isBlank(tableName)) {
@@ -164,6 +507,15 @@ public class RocksDBManager {
                 throw new Exception(DBErrorCode.DB_TABLE_CREATE_PATH_ERROR);
             }
             try {
+                if (options == null) {
+                    saveProfile(tableName, profile);
+                }
+                if (sharedDB != null) {
+                    ColumnFamilyOptions cfOptions = options == null ? getColumnFamilyOptions(profile) : track(new ColumnFamilyOptions(options));
+                    ColumnFamilyHandle handle = sharedDB.createColumnFamily(new ColumnFamilyDescriptor(tableName.getBytes(StandardCharsets.UTF_8), cfOptions));
+                    registerTable(tableName, sharedDB, handle);
+                    return true;
+                }
                 File dir = new File(dataPath + File.separator + tableName);
                 if (!dir.exists()) {
                     dir.mkdir();
@@ -171,11 +523,11 @@ public class RocksDBManager {
                 String filePath = dataPath + File.separator + tableName + File.separator + BASE_DB_NAME;
                 RocksDB db;
                 if (options == null) {
-                    db = openDB(filePath, true);
+                    db = openDB(filePath, true, profile);
                 } else {
                     db = openDB(filePath, true, options);
                 }
-                TABLES.put(tableName, db);
+                registerTable(tableName, db, db.getDefaultColumnFamily());
             } catch (Exception e) {
                 Log.error("error create table: " + tableName, e);
                 throw new Exception(DBErrorCode.DB_TABLE_CREATE_ERROR);
@@ -186,6 +538,59 @@ public class RocksDBManager {
         }
     }
 
+    /**
+     * 为已存在的数据表指定调优配置，配置会被记录；独立实例的数据表立即以新配置重新打开，
+     * 列族模式下列族配置只能在打开实例时指定，下次启动时生效。应在数据表被使用前调用.
+     * Apply a tuning profile to an existing table, the profile is persisted. A table with its own instance is reopened
+     * with the profile right away, a column family takes its options when the shared instance is opened, so there
+     * the profile applies from the next start. Call it before the table is used
+     *
+     * @param tableName 数据库表名称
+     * @param profile   数据表调优配置
+     * @return 配置是否有变化 / whether the profile changed
+     */
+    public static boolean applyProfile(final String tableName, DBTableProfile profile) throws Exception {
+        lock.lock();
+        try {
+            RocksDB db = TABLES.get(tableName);
+            if (db == null) {
+                throw new Exception(DBErrorCode.DB_TABLE_NOT_EXIST);
+            }
+            if (getProfile(tableName) == profile) {
+                return false;
+            }
+            saveProfile(tableName, profile);
+            if (db == sharedDB) {
+                Log.info("table profile " + profile + " of " + tableName + " takes effect on the next start");
+                return true;
+            }
+            String filePath = dataPath + File.separator + tableName + File.separator + BASE_DB_NAME;
+            try {
+                db.close();
+                RocksDB reopened = openDB(filePath, false, profile);
+                registerTable(tableName, reopened, reopened.getDefaultColumnFamily());
+            } catch (Exception e) {
+                Log.error("error reopen table: " + tableName, e);
+                throw new Exception(DBErrorCode.DB_TABLE_CREATE_ERROR);
+            }
+            Log.info("table " + tableName + " reopened with profile " + profile);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 数据表记录的调优配置.
+     * Tuning profile recorded for a table
+     *
+     * @param tableName 数据库表名称
+     * @return DBTableProfile
+     */
+    public static DBTableProfile getTableProfile(final String tableName) {
+        return getProfile(tableName);
+    }
+
     /**
      * 根据名称创建对应的数据库.
      * Create database based by name
@@ -194,7 +599,7 @@ public class RocksDBManager {
      * @return Result 创建结果
      */
     public static boolean createTable(final String tableName) throws Exception {
-        return createTable(tableName, null);
+        return createTable(tableName, DBTableProfile.DEFAULT);
     }
 
     /**
@@ -208,6 +613,17 @@ public class RocksDBManager {
         return TABLES.get(tableName);
     }
 
+    /**
+     * 根据名称获得对应的列族句柄.
+     * Get the column family handle of a table
+     *
+     * @param tableName 数据库表名称
+     * @return ColumnFamilyHandle
+     */
+    public static ColumnFamilyHandle getColumnFamily(final String tableName) {
+        return COLUMN_FAMILIES.get(tableName);
+    }
+
     /**
      * 根据名称删除对应的数据库.
      * Delete database by name
@@ -215,7 +631,7 @@ public class RocksDBManager {
      * @param tableName 数据库表名称
      * @return Result
      */
-    public static boolean destroyTable(final String tableName) throws Exception {
+    public static synchronized boolean destroyTable(final String tableName) throws Exception {
         if (!baseCheckTable(tableName)) {
             throw new Exception(DBErrorCode.DB_TABLE_NOT_EXIST);
         }
@@ -224,6 +640,14 @@ public class RocksDBManager {
         }
         try {
             RocksDB db = TABLES.remove(tableName);
+            ColumnFamilyHandle handle = COLUMN_FAMILIES.remove(tableName);
+            saveProfile(tableName, DBTableProfile.DEFAULT);
+            TABLE_DURABILITY.remove(tableName);
+            if (db == sharedDB) {
+                db.dropColumnFamily(handle);
+                handle.close();
+                return true;
+            }
             db.close();
             File dir = new File(dataPath + File.separator + tableName);
             if (!dir.exists()) {
@@ -245,8 +669,9 @@ public class RocksDBManager {
      * @throws RocksDBException 数据库连接异常
      */
     private static void destroyDB(final String dbPath) throws RocksDBException {
-        Options options = new Options();
-        RocksDB.destroyDB(dbPath, options);
+        try (Options options = new Options()) {
+            RocksDB.destroyDB(dbPath, options);
+        }
     }
 
     /**
@@ -254,13 +679,40 @@ public class RocksDBManager {
      * close all table
      */
     public static void close() {
-        Set<Map.Entry<String, RocksDB>> entries = TABLES.entrySet();
-        for (Map.Entry<String, RocksDB> entry : entries) {
-            try {
-                TABLES.remove(entry.getKey());
-                entry.getValue().close();
-            } catch (Exception e) {
-                Log.warn("close rocksdb error", e);
+        synchronized (RocksDBManager.class) {
+            syncWal();
+            Set<Map.Entry<String, RocksDB>> entries = TABLES.entrySet();
+            for (Map.Entry<String, RocksDB> entry : entries) {
+                try {
+                    TABLES.remove(entry.getKey());
+                    COLUMN_FAMILIES.remove(entry.getKey()).close();
+                    if (entry.getValue() != sharedDB) {
+                        entry.getValue().close();
+                    }
+                } catch (Exception e) {
+                    Log.warn("close rocksdb error", e);
+                }
+            }
+            if (sharedDB != null) {
+                sharedDefaultHandle.close();
+                sharedDB.close();
+                sharedDB = null;
+                sharedDefaultHandle = null;
+            }
+            // 数据库全部关闭后释放属性对象及共享缓存
+            synchronized (NATIVE_OPTIONS) {
+                for (AbstractNativeReference reference : NATIVE_OPTIONS) {
+                    reference.close();
+                }
+                NATIVE_OPTIONS.clear();
+            }
+            if (sharedWriteBufferManager != null) {
+                sharedWriteBufferManager.close();
+                sharedWriteBufferManager = null;
+            }
+            if (sharedBlockCache != null) {
+                sharedBlockCache.close();
+                sharedBlockCache = null;
             }
         }
     }
@@ -271,10 +723,13 @@ public class RocksDBManager {
      *
      * @param tableName 数据库表名称
      */
-    public static void closeTable(final String tableName) {
+    public static synchronized void closeTable(final String tableName) {
         try {
             RocksDB db = TABLES.remove(tableName);
-            db.close();
+            COLUMN_FAMILIES.remove(tableName).close();
+            if (db != sharedDB) {
+                db.close();
+            }
         } catch (Exception e) {
             Log.warn("close rocksdb tableName error:" + tableName, e);
         }
@@ -333,7 +788,7 @@ public class RocksDBManager {
         }
         try {
             RocksDB db = TABLES.get(table);
-            db.put(key, value);
+            db.put(COLUMN_FAMILIES.get(table), getWriteOptions(table, db), key, value);
             return true;
         } catch (Exception e) {
             Log.error(e);
@@ -358,7 +813,7 @@ public class RocksDBManager {
         }
         try {
             RocksDB db = TABLES.get(table);
-            db.delete(key);
+            db.delete(COLUMN_FAMILIES.get(table), getWriteOptions(table, db), key);
             return true;
         } catch (Exception e) {
             Log.error(e);
@@ -383,10 +838,11 @@ public class RocksDBManager {
         }
         try (WriteBatch writeBatch = new WriteBatch()) {
             RocksDB db = TABLES.get(table);
+            ColumnFamilyHandle handle = COLUMN_FAMILIES.get(table);
             for (Map.Entry<byte[], byte[]> entry : kvs.entrySet()) {
-                writeBatch.put(entry.getKey(), entry.getValue());
+                writeBatch.put(handle, entry.getKey(), entry.getValue());
             }
-            db.write(new WriteOptions(), writeBatch);
+            db.write(getWriteOptions(table, db), writeBatch);
             return true;
         } catch (Exception ex) {
             Log.error(ex);
@@ -411,10 +867,11 @@ public class RocksDBManager {
         }
         try (WriteBatch writeBatch = new WriteBatch()) {
             RocksDB db = TABLES.get(table);
+            ColumnFamilyHandle handle = COLUMN_FAMILIES.get(table);
             for (byte[] key : keys) {
-                writeBatch.delete(key);
+                writeBatch.delete(handle, key);
             }
-            db.write(new WriteOptions(), writeBatch);
+            db.write(getWriteOptions(table, db), writeBatch);
             return true;
         } catch (Exception ex) {
             Log.error(ex);
@@ -440,7 +897,7 @@ public class RocksDBManager {
         }
         try {
             RocksDB db = TABLES.get(table);
-            return db.get(key);
+            return db.get(COLUMN_FAMILIES.get(table), key);
         } catch (Exception e) {
             Log.error("get table={}: error",table);
             Log.error(e);
@@ -465,8 +922,9 @@ public class RocksDBManager {
         }
         try {
             RocksDB db = TABLES.get(table);
-            boolean rs = db.keyMayExist(key, new StringBuilder());
-            return rs && (db.get(key) != null);
+            ColumnFamilyHandle handle = COLUMN_FAMILIES.get(table);
+            boolean rs = db.keyMayExist(handle, key, new StringBuilder());
+            return rs && (db.get(handle, key) != null);
         } catch (Exception e) {
             Log.error("keyMayExist table={}: error",table);
             Log.error(e);
@@ -492,7 +950,7 @@ public class RocksDBManager {
         }
         try {
             RocksDB db = TABLES.get(table);
-            return db.multiGet(keys);
+            return db.multiGet(handleList(table, keys.size()), keys);
         } catch (Exception ex) {
             Log.error("multiGet table={}: error",table);
             Log.error(ex);
@@ -516,7 +974,7 @@ public class RocksDBManager {
         try {
             RocksDB db = TABLES.get(table);
             //该方法获取的结果包含查不到的key, 将以null 值放入返回的list中,因此需要把空值去除.
-            List<byte[]> list = db.multiGetAsList(keys);
+            List<byte[]> list = db.multiGetAsList(handleList(table, keys.size()), keys);
             List<byte[]> rs = new ArrayList<>();
             for(byte[] tx : list){
                 if(null != tx){
@@ -548,7 +1006,7 @@ public class RocksDBManager {
         }
         try {
             RocksDB db = TABLES.get(table);
-            Map<byte[], byte[]> map = db.multiGet(keys);
+            Map<byte[], byte[]> map = db.multiGet(handleList(table, keys.size()), keys);
             if (map != null && map.size() > 0) {
                 list.addAll(map.values());
             }
@@ -579,7 +1037,7 @@ public class RocksDBManager {
         }
         try {
             RocksDB db = TABLES.get(table);
-            Map<byte[], byte[]> map = db.multiGet(keys);
+            Map<byte[], byte[]> map = db.multiGet(handleList(table, keys.size()), keys);
             if (map != null && map.size() > 0) {
                 list.addAll(map.keySet());
             }
@@ -591,6 +1049,106 @@ public class RocksDBManager {
         }
     }
 
+    /**
+     * 设置数据表的写入持久化策略.
+     * Set the durability policy of writes to a table
+     *
+     * @param table      数据库表名称
+     * @param durability 持久化策略
+     */
+    public static void setDurability(final String table, final DBDurability durability) {
+        TABLE_DURABILITY.put(table, durability);
+    }
+
+    /**
+     * 获取数据表的写入持久化策略.
+     * Get the durability policy of writes to a table
+     *
+     * @param table 数据库表名称
+     * @return 持久化策略
+     */
+    public static DBDurability getDurability(final String table) {
+        return TABLE_DURABILITY.getOrDefault(table, DBDurability.GROUP_COMMIT);
+    }
+
+    /**
+     * 设置GROUP_COMMIT策略的WAL刷盘间隔，在第一次GROUP_COMMIT写入之前设置才生效.
+     * Set the WAL sync interval of GROUP_COMMIT, only effective before the first GROUP_COMMIT write
+     *
+     * @param millis 刷盘间隔(毫秒)
+     */
+    public static synchronized void setGroupCommitInterval(final long millis) {
+        groupCommitInterval = millis;
+    }
+
+    /**
+     * 获取数据表当前持久化策略对应的写入属性，GROUP_COMMIT写入会登记等待后台刷盘.
+     * Get the shared write options of the table's durability policy, GROUP_COMMIT writes are registered for the background WAL sync
+     *
+     * @param table 数据库表名称
+     * @param db    数据表所在的数据库实例
+     * @return 写入属性
+     */
+    public static WriteOptions getWriteOptions(final String table, final RocksDB db) {
+        return getWriteOptions(getDurability(table), db);
+    }
+
+    /**
+     * 获取指定持久化策略对应的写入属性.
+     *
+     * @param durability 持久化策略
+     * @param db         写入的数据库实例
+     * @return 写入属性
+     */
+    public static WriteOptions getWriteOptions(final DBDurability durability, final RocksDB db) {
+        switch (durability) {
+            case SYNC:
+                return SYNC_WRITE_OPTIONS;
+            case NO_WAL:
+                return NO_WAL_WRITE_OPTIONS;
+            default:
+                if (WAL_DIRTY.add(db) && walSyncExecutor == null) {
+                    startWalSync();
+                }
+                return GROUP_COMMIT_WRITE_OPTIONS;
+        }
+    }
+
+    private static synchronized void startWalSync() {
+        if (walSyncExecutor != null) {
+            return;
+        }
+        walSyncExecutor = ThreadUtils.createScheduledThreadPool(new NulsThreadFactory("rocksdb-wal-sync"));
+        walSyncExecutor.scheduleWithFixedDelay(RocksDBManager::syncWal, groupCommitInterval, groupCommitInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 统一刷盘自上次刷盘以来有GROUP_COMMIT写入的数据库实例的WAL，与关闭数据表互斥.
+     */
+    private static synchronized void syncWal() {
+        Iterator<RocksDB> iterator = WAL_DIRTY.iterator();
+        while (iterator.hasNext()) {
+            RocksDB db = iterator.next();
+            iterator.remove();
+            // 已关闭的实例不能再访问
+            if (!TABLES.containsValue(db)) {
+                continue;
+            }
+            try {
+                db.flushWal(true);
+            } catch (Exception e) {
+                Log.warn("sync rocksdb wal error", e);
+            }
+        }
+    }
+
+    /**
+     * 批量查询时每个key对应的列族句柄列表.
+     */
+    private static List<ColumnFamilyHandle> handleList(final String table, final int size) {
+        return Collections.nCopies(size, COLUMN_FAMILIES.get(table));
+    }
+
     /**
      * 查询指定表的key-List集合.
      * query the key-List collection of the specified table
@@ -606,7 +1164,7 @@ public class RocksDBManager {
         List<byte[]> list = new ArrayList<>();
         try {
             RocksDB db = TABLES.get(table);
-            try (RocksIterator iterator = db.newIterator()) {
+            try (RocksIterator iterator = db.newIterator(COLUMN_FAMILIES.get(table))) {
                 for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
                     list.add(iterator.key());
                 }
@@ -634,7 +1192,7 @@ public class RocksDBManager {
         List<byte[]> list = new ArrayList<>();
         try {
             RocksDB db = TABLES.get(table);
-            try (RocksIterator iterator = db.newIterator()) {
+            try (RocksIterator iterator = db.newIterator(COLUMN_FAMILIES.get(table))) {
                 for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
                     list.add(iterator.value());
                 }
@@ -662,7 +1220,7 @@ public class RocksDBManager {
         List<Entry<byte[], byte[]>> entryList = new ArrayList<>();
         try {
             RocksDB db = TABLES.get(table);
-            try (RocksIterator iterator = db.newIterator()) {
+            try (RocksIterator iterator = db.newIterator(COLUMN_FAMILIES.get(table))) {
                 for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
                     entryList.add(new Entry(iterator.key(), iterator.value()));
                 }
@@ -682,7 +1240,7 @@ public class RocksDBManager {
      * @return 数据库连接属性
      */
     private static synchronized Options getCommonOptions(final boolean createIfMissing) {
-        Options options = new Options();
+        Options options = track(new Options());
 
         options.setCreateIfMissing(createIfMissing);
         /**
@@ -694,7 +1252,7 @@ public class RocksDBManager {
         BlockBasedTableConfig tableOption = new BlockBasedTableConfig();
         tableOption.setNoBlockCache(true);
         tableOption.setBlockRestartInterval(4);
-        tableOption.setFilterPolicy(new BloomFilter(10, true));
+        tableOption.setFilterPolicy(track(new BloomFilter(10, true)));
         options.setTableFormatConfig(tableOption);
 
         options.setMaxBackgroundCompactions(16);
@@ -706,5 +1264,153 @@ public class RocksDBManager {
         return options;
     }
 
+    /**
+     * 获得每表独立实例模式下指定调优配置的数据库连接属性，默认配置与原有公共属性一致.
+     *
+     * @param profile         数据表调优配置
+     * @param createIfMissing 是否默认表
+     * @return 数据库连接属性
+     */
+    private static Options getTableOptions(final DBTableProfile profile, final boolean createIfMissing) {
+        if (profile == DBTableProfile.DEFAULT) {
+            return getCommonOptions(createIfMissing);
+        }
+        return track(new Options(getDBOptions(createIfMissing), getColumnFamilyOptions(profile)));
+    }
+
+    /**
+     * 数据库实例级别的公共属性.
+     *
+     * @param createIfMissing 是否默认表
+     * @return 数据库属性
+     */
+    private static DBOptions getDBOptions(final boolean createIfMissing) {
+        DBOptions options = track(new DBOptions());
+        options.setCreateIfMissing(createIfMissing);
+        options.setAllowMmapReads(true);
+        options.setMaxOpenFiles(-1);
+        options.setMaxBackgroundCompactions(16);
+        options.setNewTableReaderForCompactionInputs(true);
+        options.setCompactionReadaheadSize(128 * SizeUnit.KB);
+        return options;
+    }
+
+    /**
+     * 列族模式下共享实例的数据库属性，所有列族共用写缓冲管理器.
+     *
+     * @return 数据库属性
+     */
+    private static synchronized DBOptions getSharedDBOptions() {
+        DBOptions options = getDBOptions(true);
+        options.setCreateMissingColumnFamilies(true);
+        if (sharedWriteBufferManager == null) {
+            sharedWriteBufferManager = new WriteBufferManager(SHARED_WRITE_BUFFER_SIZE, getSharedBlockCache());
+        }
+        options.setWriteBufferManager(sharedWriteBufferManager);
+        return options;
+    }
+
+    /**
+     * 按调优配置生成数据表的列族属性，除每表独立实例下的默认配置外都使用共享块缓存.
+     *
+     * @param profile 数据表调优配置
+     * @return 列族属性
+     */
+    private static synchronized ColumnFamilyOptions getColumnFamilyOptions(final DBTableProfile profile) {
+        ColumnFamilyOptions options = track(new ColumnFamilyOptions());
+        BlockBasedTableConfig tableOption = new BlockBasedTableConfig();
+        tableOption.setBlockCache(getSharedBlockCache());
+        tableOption.setCacheIndexAndFilterBlocks(true);
+        tableOption.setCacheIndexAndFilterBlocksWithHighPriority(true);
+        tableOption.setPinL0FilterAndIndexBlocksInCache(true);
+        tableOption.setBlockRestartInterval(4);
+        switch (profile) {
+            case POINT_LOOKUP:
+                tableOption.setFilterPolicy(track(new BloomFilter(10, false)));
+                options.setCompressionPerLevel(compressionPerLevel(CompressionType.NO_COMPRESSION, CompressionType.LZ4_COMPRESSION));
+                break;
+            case APPEND_LOG:
+                tableOption.setFilterPolicy(track(new BloomFilter(10, false)));
+                options.setWriteBufferSize(64 * SizeUnit.MB);
+                options.setLevelCompactionDynamicLevelBytes(true);
+                options.setCompressionPerLevel(compressionPerLevel(CompressionType.LZ4_COMPRESSION, CompressionType.ZSTD_COMPRESSION));
+                break;
+            case SCAN:
+                tableOption.setBlockSize(64 * SizeUnit.KB);
+                options.setCompressionPerLevel(compressionPerLevel(CompressionType.LZ4_COMPRESSION, CompressionType.ZSTD_COMPRESSION));
+                break;
+            default:
+                tableOption.setFilterPolicy(track(new BloomFilter(10, true)));
+                options.setCompressionType(CompressionType.NO_COMPRESSION);
+                break;
+        }
+        options.setTableFormatConfig(tableOption);
+        return options;
+    }
+
+    /**
+     * L0、L1不压缩以降低写入和热点读取开销，中间层级使用middle，最底层使用bottommost.
+     */
+    private static List<CompressionType> compressionPerLevel(final CompressionType middle, final CompressionType bottommost) {
+        List<CompressionType> list = new ArrayList<>();
+        list.add(CompressionType.NO_COMPRESSION);
+        list.add(CompressionType.NO_COMPRESSION);
+        for (int i = 2; i < COMPRESSION_LEVELS - 1; i++) {
+            list.add(middle);
+        }
+        list.add(bottommost);
+        return list;
+    }
+
+    private static synchronized Cache getSharedBlockCache() {
+        if (sharedBlockCache == null) {
+            // 一半容量保留给索引和过滤器块
+            sharedBlockCache = new LRUCache(sharedBlockCacheSize, -1, false, 0.5);
+        }
+        return sharedBlockCache;
+    }
+
+    /**
+     * 设置共享块缓存大小，只在第一个使用共享缓存的数据表打开之前生效.
+     * Set the size of the shared block cache, only effective before the first table using it is opened
+     *
+     * @param size 缓存字节数
+     */
+    public static synchronized void setSharedBlockCacheSize(final long size) {
+        if (sharedBlockCache != null) {
+            Log.warn("shared block cache already created, size: " + sharedBlockCacheSize);
+            return;
+        }
+        sharedBlockCacheSize = size;
+    }
+
+    private static DBTableProfile getProfile(final String tableName) {
+        String profile = TABLE_PROFILES.getProperty(tableName);
+        return profile == null ? DBTableProfile.DEFAULT : DBTableProfile.valueOf(profile);
+    }
+
+    private static void loadProfiles() throws IOException {
+        TABLE_PROFILES.clear();
+        File file = new File(dataPath + File.separator + PROFILE_FILE_NAME);
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            TABLE_PROFILES.load(in);
+        }
+    }
+
+    private static void saveProfile(final String tableName, final DBTableProfile profile) throws IOException {
+        if (profile == DBTableProfile.DEFAULT) {
+            if (TABLE_PROFILES.remove(tableName) == null) {
+                return;
+            }
+        } else {
+            TABLE_PROFILES.setProperty(tableName, profile.name());
+        }
+        try (OutputStream out = new FileOutputStream(dataPath + File.separator + PROFILE_FILE_NAME)) {
+            TABLE_PROFILES.store(out, "rocksdb table profiles");
+        }
+    }
 
 }
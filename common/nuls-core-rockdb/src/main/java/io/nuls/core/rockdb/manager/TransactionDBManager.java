@@ -43,6 +43,16 @@ public class TransactionDBManager {
      */
     private static String dataPath;
 
+    /**
+     * 共用的写入属性，不再每次写入创建.
+     */
+    private static final WriteOptions WRITE_OPTIONS;
+
+    static {
+        RocksDB.loadLibrary();
+        WRITE_OPTIONS = new WriteOptions();
+    }
+
     /**
      * 根据传入的数据库路径将已存在的数据库连接打开，并缓存DB连接.
      * 如果有数据表连接被关闭需要重新打开连接也可以，执行初始化连接
@@ -270,7 +280,7 @@ public class TransactionDBManager {
             for (Map.Entry<byte[], byte[]> entry : kvs.entrySet()) {
                 writeBatch.put(entry.getKey(), entry.getValue());
             }
-            db.write(new WriteOptions(), writeBatch);
+            db.write(WRITE_OPTIONS, writeBatch);
             return true;
         } catch (Exception ex) {
             Log.error(ex);
@@ -324,7 +334,7 @@ public class TransactionDBManager {
             for (byte[] key : keys) {
                 writeBatch.delete(key);
             }
-            db.write(new WriteOptions(), writeBatch);
+            db.write(WRITE_OPTIONS, writeBatch);
             return true;
         } catch (Exception ex) {
             Log.error(ex);
@@ -512,10 +522,8 @@ public class TransactionDBManager {
     }
 
     public static Transaction openSession(final String table) {
-        WriteOptions options = new WriteOptions();
-       // options.setSync(false);
         TransactionDB db = TABLES.get(table);
-        return db.beginTransaction(options);
+        return db.beginTransaction(WRITE_OPTIONS);
     }
 
     public static void commit(Transaction tx) throws RocksDBException {
@@ -23,6 +23,8 @@
  */
 package io.nuls.core.rockdb.service;
 
+import io.nuls.core.rockdb.constant.DBDurability;
+
 public interface BatchOperation {
 
     /**
@@ -51,4 +53,13 @@ public interface BatchOperation {
      * @return
      */
     boolean executeBatch() throws Exception;
+
+    /**
+     * 以指定的持久化策略执行批量操作，不使用数据表的默认策略
+     * Perform batch operation with the given durability policy instead of the table's policy
+     *
+     * @param durability
+     * @return
+     */
+    boolean executeBatch(DBDurability durability) throws Exception;
 }
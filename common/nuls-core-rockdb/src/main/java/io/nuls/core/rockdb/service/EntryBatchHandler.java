@@ -1,18 +1,14 @@
 /**
  * MIT License
- * <p>
  * Copyright (c) 2017-2019 nuls.io
- * <p>
  * Permission is hereby granted, free of charge, to any person obtaining a copy
  * of this software and associated documentation files (the "Software"), to deal
  * in the Software without restriction, including without limitation the rights
  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
  * copies of the Software, and to permit persons to whom the Software is
  * furnished to do so, subject to the following conditions:
- * <p>
  * The above copyright notice and this permission notice shall be included in all
  * copies or substantial portions of the Software.
- * <p>
  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
@@ -21,42 +17,25 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
+package io.nuls.core.rockdb.service;
 
-package io.nuls.transaction.model.bo;
+import io.nuls.core.rockdb.model.Entry;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
- *  孤儿交易排序结果类(工具类)
- * @author: Charlie
- * @date: 2019/7/23
+ * 分批遍历数据表时每一批数据的处理器.
+ * Handler of each batch when a table is traversed in batches
  */
-public class OrphanSortResult<T> {
-    private OrphanSortItem[] array;
-    private int index = -1;
-
-    public OrphanSortResult(int totalLength) {
-        array = new OrphanSortItem[totalLength];
-    }
-
-    public List<T> getList() {
-        List<T> list = new ArrayList<>();
-        for (OrphanSortItem t : array) {
-            list.add((T) t.getObj());
-        }
-        return list;
-    }
-
-    public OrphanSortItem[] getArray() {
-        return array;
-    }
-
-    public int getIndex() {
-        return index;
-    }
-
-    public void setIndex(int index) {
-        this.index = index;
-    }
+@FunctionalInterface
+public interface EntryBatchHandler {
+
+    /**
+     * 处理一批数据，该列表在下一批时会被清空复用，不要在处理器之外持有
+     * Handle a batch of entries, the list is cleared and reused for the next batch and must not be retained
+     *
+     * @param batch 本批数据
+     * @return 是否继续遍历
+     */
+    boolean handle(List<Entry<byte[], byte[]>> batch) throws Exception;
 }
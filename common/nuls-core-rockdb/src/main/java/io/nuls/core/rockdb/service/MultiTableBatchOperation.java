@@ -0,0 +1,78 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2019 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.nuls.core.rockdb.service;
+
+/**
+ * 跨多张数据表的批量操作，同一数据库实例中的表(列族模式下的所有表)在一次写入中原子提交.
+ * 涉及多个实例时按各实例第一次被操作的顺序依次写入，调用方应按中断后仍一致的顺序添加操作.
+ * Batch operation spanning several tables. Tables in the same instance, i.e. all tables in
+ * column family mode, are committed atomically in a single write. Several instances are written
+ * one after another in the order they were first touched, so callers should add the operations
+ * in an order that stays consistent if the process stops between two writes.
+ */
+public interface MultiTableBatchOperation {
+
+    /**
+     * 增加或者更新操作
+     * Add or update operations.
+     *
+     * @param table
+     * @param key
+     * @param value
+     * @return
+     */
+    boolean put(String table, byte[] key, byte[] value) throws Exception;
+
+    /**
+     * 删除操作
+     * Delete operation
+     *
+     * @param table
+     * @param key
+     * @return
+     */
+    boolean delete(String table, byte[] key) throws Exception;
+
+    /**
+     * 本批次涉及的表是否都在同一个数据库实例中，即提交是否为原子操作
+     * Whether all tables touched so far live in one instance, i.e. whether the commit is atomic
+     *
+     * @return
+     */
+    boolean isAtomic();
+
+    /**
+     * 执行批量操作，每个数据库实例一次写入，使用所涉及表中最严格的持久化策略
+     * Perform batch operation, one write per instance with the strictest durability policy of the touched tables
+     *
+     * @return
+     */
+    boolean executeBatch() throws Exception;
+
+    /**
+     * 释放未执行的批量操作，已执行或已关闭时不做任何操作
+     * Release a batch that was not executed, does nothing when it was already executed or closed
+     */
+    void close();
+}
@@ -19,23 +19,26 @@
  */
 package io.nuls.core.rockdb.service;
 
+import io.nuls.core.rockdb.constant.DBDurability;
 import io.nuls.core.rockdb.constant.DBErrorCode;
 import io.nuls.core.rockdb.manager.RocksDBManager;
 import io.nuls.core.log.Log;
+import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDB;
 import org.rocksdb.WriteBatch;
-import org.rocksdb.WriteOptions;
 
 public class RocksDBBatchOperation implements BatchOperation {
 
     private String table;
     private RocksDB db;
+    private ColumnFamilyHandle handle;
     private WriteBatch batch;
     private volatile boolean isClose = false;
 
     RocksDBBatchOperation(String table) {
         this.table = table;
         db = RocksDBManager.getTable(table);
+        handle = RocksDBManager.getColumnFamily(table);
         if (db != null) {
             batch = new WriteBatch();
         }
@@ -56,7 +59,7 @@ public class RocksDBBatchOperation implements BatchOperation {
         if (key == null || value == null) {
             throw new Exception(DBErrorCode.NULL_PARAMETER);
         }
-        batch.put(key, value);
+        batch.put(handle, key, value);
         return true;
     }
 
@@ -65,7 +68,7 @@ public class RocksDBBatchOperation implements BatchOperation {
         if (key == null) {
             throw new Exception(DBErrorCode.NULL_PARAMETER);
         }
-        batch.delete(key);
+        batch.delete(handle, key);
         return true;
     }
 
@@ -79,12 +82,28 @@ public class RocksDBBatchOperation implements BatchOperation {
 
     @Override
     public boolean executeBatch() throws Exception {
+        return execute(null);
+    }
+
+    @Override
+    public boolean executeBatch(DBDurability durability) throws Exception {
+        if (durability == null) {
+            throw new Exception(DBErrorCode.NULL_PARAMETER);
+        }
+        return execute(durability);
+    }
+
+    private boolean execute(DBDurability durability) throws Exception {
         // 检查逻辑关闭
         if (checkClose()) {
             throw new Exception(DBErrorCode.DB_TABLE_FAILED_BATCH_CLOSE);
         }
         try {
-            db.write(new WriteOptions(), batch);
+            if (durability == null) {
+                db.write(RocksDBManager.getWriteOptions(table, db), batch);
+            } else {
+                db.write(RocksDBManager.getWriteOptions(durability, db), batch);
+            }
         } catch (Exception e) {
             Log.error(e);
             throw new Exception(DBErrorCode.DB_UNKOWN_EXCEPTION);
@@ -0,0 +1,150 @@
+/**
+ * MIT License
+ * Copyright (c) 2017-2019 nuls.io
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.nuls.core.rockdb.service;
+
+import io.nuls.core.rockdb.constant.DBErrorCode;
+import io.nuls.core.rockdb.manager.RocksDBManager;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+
+import java.util.Arrays;
+
+/**
+ * 数据表游标，按键顺序流式遍历指定范围内的数据，不会把整张表加载到内存.
+ * 使用完毕必须关闭以释放底层迭代器，且须在数据表关闭之前关闭.
+ * Streaming cursor over a key range of a table. It must be closed, before the table is closed,
+ * to release the native iterator.
+ *
+ * <pre>
+ * try (RocksDBCursor cursor = RocksDBService.rangeCursor(table, start, end, false)) {
+ *     while (cursor.next()) {
+ *         cursor.key();
+ *         cursor.value();
+ *     }
+ * }
+ * </pre>
+ */
+public class RocksDBCursor implements AutoCloseable {
+
+    private final byte[] startKey;
+    private final byte[] endKey;
+    private final boolean reverse;
+    private ReadOptions readOptions;
+    private Slice bound;
+    private RocksIterator iterator;
+    private boolean started = false;
+
+    /**
+     * @param table    数据库表名称
+     * @param startKey 起始键(包含)，为null时从表头开始
+     * @param endKey   结束键(不包含)，为null时到表尾结束
+     * @param reverse  是否逆序遍历
+     */
+    RocksDBCursor(String table, byte[] startKey, byte[] endKey, boolean reverse) throws Exception {
+        RocksDB db = RocksDBManager.getTable(table);
+        ColumnFamilyHandle handle = RocksDBManager.getColumnFamily(table);
+        if (db == null || handle == null) {
+            throw new Exception(DBErrorCode.DB_TABLE_NOT_EXIST);
+        }
+        this.startKey = startKey;
+        this.endKey = endKey;
+        this.reverse = reverse;
+        // 遍历的数据不放入块缓存，避免挤掉热点数据
+        readOptions = new ReadOptions().setFillCache(false);
+        // 由RocksDB在边界处停止，不必读取边界之外的数据
+        if (!reverse && endKey != null) {
+            bound = new Slice(endKey);
+            readOptions.setIterateUpperBound(bound);
+        } else if (reverse && startKey != null) {
+            bound = new Slice(startKey);
+            readOptions.setIterateLowerBound(bound);
+        }
+        iterator = db.newIterator(handle, readOptions);
+    }
+
+    /**
+     * 移动到下一条数据，首次调用时定位到第一条.
+     * Move to the next entry, the first call positions the cursor on the first entry
+     *
+     * @return 是否还有数据
+     */
+    public boolean next() {
+        if (!started) {
+            started = true;
+            seek();
+        } else if (iterator.isValid()) {
+            if (reverse) {
+                iterator.prev();
+            } else {
+                iterator.next();
+            }
+        }
+        return iterator.isValid();
+    }
+
+    private void seek() {
+        if (!reverse) {
+            if (startKey == null) {
+                iterator.seekToFirst();
+            } else {
+                iterator.seek(startKey);
+            }
+            return;
+        }
+        if (endKey == null) {
+            iterator.seekToLast();
+            return;
+        }
+        iterator.seekForPrev(endKey);
+        if (iterator.isValid() && Arrays.equals(iterator.key(), endKey)) {
+            iterator.prev();
+        }
+    }
+
+    /**
+     * 当前数据的键
+     *
+     * @return key
+     */
+    public byte[] key() {
+        return iterator.key();
+    }
+
+    /**
+     * 当前数据的值
+     *
+     * @return value
+     */
+    public byte[] value() {
+        return iterator.value();
+    }
+
+    @Override
+    public void close() {
+        iterator.close();
+        readOptions.close();
+        if (bound != null) {
+            bound.close();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * MIT License
+ * Copyright (c) 2017-2019 nuls.io
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.nuls.core.rockdb.service;
+
+import io.nuls.core.log.Log;
+import io.nuls.core.rockdb.constant.DBDurability;
+import io.nuls.core.rockdb.constant.DBErrorCode;
+import io.nuls.core.rockdb.manager.RocksDBManager;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.WriteBatch;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class RocksDBMultiTableBatchOperation implements MultiTableBatchOperation {
+
+    /**
+     * 按数据库实例分组的批量写入，按实例第一次被操作的顺序写入，列族模式下只有一组.
+     */
+    private final Map<RocksDB, WriteBatch> batches = new LinkedHashMap<>();
+    /**
+     * 每个数据库实例涉及的表中最严格的持久化策略.
+     */
+    private final Map<RocksDB, DBDurability> durabilities = new IdentityHashMap<>();
+    private volatile boolean isClose = false;
+
+    RocksDBMultiTableBatchOperation() {
+    }
+
+    private WriteBatch getBatch(String table, RocksDB db) {
+        WriteBatch batch = batches.get(db);
+        if (batch == null) {
+            batch = new WriteBatch();
+            batches.put(db, batch);
+        }
+        DBDurability durability = RocksDBManager.getDurability(table);
+        DBDurability current = durabilities.get(db);
+        // 枚举按持久化程度由强到弱声明
+        if (current == null || durability.ordinal() < current.ordinal()) {
+            durabilities.put(db, durability);
+        }
+        return batch;
+    }
+
+    @Override
+    public boolean put(String table, byte[] key, byte[] value) throws Exception {
+        if (key == null || value == null) {
+            throw new Exception(DBErrorCode.NULL_PARAMETER);
+        }
+        RocksDB db = checkTable(table);
+        getBatch(table, db).put(RocksDBManager.getColumnFamily(table), key, value);
+        return true;
+    }
+
+    @Override
+    public boolean delete(String table, byte[] key) throws Exception {
+        if (key == null) {
+            throw new Exception(DBErrorCode.NULL_PARAMETER);
+        }
+        RocksDB db = checkTable(table);
+        getBatch(table, db).delete(RocksDBManager.getColumnFamily(table), key);
+        return true;
+    }
+
+    private RocksDB checkTable(String table) throws Exception {
+        if (isClose) {
+            throw new Exception(DBErrorCode.DB_TABLE_FAILED_BATCH_CLOSE);
+        }
+        RocksDB db = RocksDBManager.getTable(table);
+        ColumnFamilyHandle handle = RocksDBManager.getColumnFamily(table);
+        if (db == null || handle == null) {
+            throw new Exception(DBErrorCode.DB_TABLE_NOT_EXIST);
+        }
+        return db;
+    }
+
+    @Override
+    public boolean isAtomic() {
+        return batches.size() <= 1;
+    }
+
+    @Override
+    public boolean executeBatch() throws Exception {
+        // 检查逻辑关闭
+        if (isClose) {
+            throw new Exception(DBErrorCode.DB_TABLE_FAILED_BATCH_CLOSE);
+        }
+        isClose = true;
+        try {
+            for (Map.Entry<RocksDB, WriteBatch> entry : batches.entrySet()) {
+                RocksDB db = entry.getKey();
+                db.write(RocksDBManager.getWriteOptions(durabilities.get(db), db), entry.getValue());
+            }
+        } catch (Exception e) {
+            Log.error(e);
+            throw new Exception(DBErrorCode.DB_UNKOWN_EXCEPTION);
+        } finally {
+            // 关闭批量操作对象释放资源
+            for (WriteBatch batch : batches.values()) {
+                batch.close();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        isClose = true;
+        for (WriteBatch batch : batches.values()) {
+            batch.close();
+        }
+    }
+}
@@ -21,9 +21,13 @@ package io.nuls.core.rockdb.service;
 
 import io.nuls.core.log.Log;
 import io.nuls.core.model.StringUtils;
+import io.nuls.core.rockdb.constant.DBDurability;
+import io.nuls.core.rockdb.constant.DBErrorCode;
+import io.nuls.core.rockdb.constant.DBTableProfile;
 import io.nuls.core.rockdb.manager.RocksDBManager;
 import io.nuls.core.rockdb.model.Entry;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +42,45 @@ public class RocksDBService {
         }
     }
 
+    /**
+     * 按配置的存储模式初始化，启用列族模式时旧数据表先迁移到共享实例
+     * init in the configured storage mode, legacy tables are migrated into the shared instance when column family mode is enabled
+     * @param path
+     * @param columnFamily 是否使用列族模式
+     */
+    public static void init(String path, boolean columnFamily) {
+        try {
+            RocksDBManager.init(path, columnFamily);
+        } catch (Exception e) {
+            Log.error(e.getMessage(),e);
+        }
+    }
+
+    /**
+     * 以列族模式初始化，模块所有数据表保存在同一个数据库实例中
+     * init in column family mode, all tables of the module live in one shared instance
+     * @param path
+     */
+    public static void initColumnFamily(String path) {
+        try {
+            RocksDBManager.initColumnFamily(path);
+        } catch (Exception e) {
+            Log.error(e.getMessage(),e);
+        }
+    }
+
+    /**
+     * 把旧的每表一个实例的数据迁移到列族模式
+     * migrate per-table instances into column families of the shared instance
+     * @param path
+     * @param deleteSource 迁移成功后是否删除旧数据表
+     * @return 迁移的数据表数量
+     * @throws Exception
+     */
+    public static int migrateToColumnFamily(String path, boolean deleteSource) throws Exception {
+        return RocksDBManager.migrateToColumnFamily(path, deleteSource);
+    }
+
     public static boolean createTable(String tableName) throws Exception {
         if (!RocksDBService.existTable(tableName)) {
             return RocksDBManager.createTable(tableName);
@@ -45,6 +88,23 @@ public class RocksDBService {
         return false;
     }
 
+    /**
+     * 按调优配置创建表，配置会被记录并在重新打开时沿用；表已存在时为其指定该配置
+     * create table with a tuning profile which is persisted and reused on reopen,
+     * an existing table gets the profile applied (see RocksDBManager.applyProfile)
+     * @param tableName
+     * @param profile
+     * @return 是否新建了表 / whether the table was created
+     * @throws Exception
+     */
+    public static boolean createTable(String tableName, DBTableProfile profile) throws Exception {
+        if (!RocksDBService.existTable(tableName)) {
+            return RocksDBManager.createTable(tableName, profile);
+        }
+        RocksDBManager.applyProfile(tableName, profile);
+        return false;
+    }
+
     public static boolean destroyTable(String table) throws Exception {
         return RocksDBManager.destroyTable(table);
     }
@@ -79,6 +139,16 @@ public class RocksDBService {
     }
 
 
+    /**
+     * 设置表的写入持久化策略，默认GROUP_COMMIT
+     * set the durability policy of writes to the table, GROUP_COMMIT by default
+     * @param table
+     * @param durability
+     */
+    public static void setDurability(String table, DBDurability durability) {
+        RocksDBManager.setDurability(table, durability);
+    }
+
     public static boolean put(String table, byte[] key, byte[] value) throws Exception {
         return RocksDBManager.put(table, key, value);
     }
@@ -130,6 +200,116 @@ public class RocksDBService {
         return RocksDBManager.entryList(table);
     }
 
+    /**
+     * 按键范围流式遍历数据表，使用完毕须关闭游标
+     * streaming cursor over [startKey, endKey), the cursor must be closed after use
+     * @param table
+     * @param startKey 起始键(包含)，为null时从表头开始
+     * @param endKey   结束键(不包含)，为null时到表尾结束
+     * @param reverse  是否逆序遍历
+     * @return
+     * @throws Exception
+     */
+    public static RocksDBCursor rangeCursor(String table, byte[] startKey, byte[] endKey, boolean reverse) throws Exception {
+        return new RocksDBCursor(table, startKey, endKey, reverse);
+    }
+
+    /**
+     * 流式遍历指定前缀的所有数据，使用完毕须关闭游标
+     * streaming cursor over all keys with the given prefix, the cursor must be closed after use
+     * @param table
+     * @param prefix
+     * @param reverse
+     * @return
+     * @throws Exception
+     */
+    public static RocksDBCursor prefixCursor(String table, byte[] prefix, boolean reverse) throws Exception {
+        return new RocksDBCursor(table, prefix, prefixEnd(prefix), reverse);
+    }
+
+    /**
+     * 分批遍历整张表，每批最多batchSize条，批次列表会被复用
+     * traverse the whole table in batches of at most batchSize entries, the batch list is reused
+     * @param table
+     * @param batchSize
+     * @param handler 返回false时停止遍历
+     * @throws Exception
+     */
+    public static void forEach(String table, int batchSize, EntryBatchHandler handler) throws Exception {
+        forEach(table, null, null, batchSize, handler);
+    }
+
+    /**
+     * 分批遍历[startKey, endKey)范围内的数据，每批最多batchSize条，批次列表会被复用
+     * traverse [startKey, endKey) in batches of at most batchSize entries, the batch list is reused
+     * @param table
+     * @param startKey
+     * @param endKey
+     * @param batchSize
+     * @param handler 返回false时停止遍历
+     * @throws Exception
+     */
+    public static void forEach(String table, byte[] startKey, byte[] endKey, int batchSize, EntryBatchHandler handler) throws Exception {
+        if (batchSize <= 0 || handler == null) {
+            throw new Exception(DBErrorCode.NULL_PARAMETER);
+        }
+        List<Entry<byte[], byte[]>> batch = new ArrayList<>(batchSize);
+        try (RocksDBCursor cursor = rangeCursor(table, startKey, endKey, false)) {
+            while (cursor.next()) {
+                batch.add(new Entry<>(cursor.key(), cursor.value()));
+                if (batch.size() == batchSize) {
+                    if (!handler.handle(batch)) {
+                        return;
+                    }
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                handler.handle(batch);
+            }
+        }
+    }
+
+    /**
+     * 统计表中数据条数，遍历键但不读取到内存列表中
+     * count entries of a table without materializing them
+     * @param table
+     * @return
+     * @throws Exception
+     */
+    public static long count(String table) throws Exception {
+        long count = 0;
+        try (RocksDBCursor cursor = rangeCursor(table, null, null, false)) {
+            while (cursor.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 前缀的上界：最后一个不为0xFF的字节加一，全部为0xFF时没有上界
+     */
+    private static byte[] prefixEnd(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] end = Arrays.copyOf(prefix, i + 1);
+                end[i]++;
+                return end;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 创建跨多张表的批量操作，列族模式下所有表在一次写入中原子提交
+     * create a batch spanning several tables, committed atomically in column family mode
+     * @return
+     */
+    public static MultiTableBatchOperation createMultiTableWriteBatch() {
+        return new RocksDBMultiTableBatchOperation();
+    }
+
     public static BatchOperation createWriteBatch(String table) {
         if (StringUtils.isBlank(table)) {
             return null;
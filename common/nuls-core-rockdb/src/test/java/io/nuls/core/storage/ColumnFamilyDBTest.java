@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2019 nuls.io
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package io.nuls.core.storage;
+
+import io.nuls.core.rockdb.constant.DBDurability;
+import io.nuls.core.rockdb.constant.DBErrorCode;
+import io.nuls.core.rockdb.constant.DBTableProfile;
+import io.nuls.core.rockdb.manager.RocksDBManager;
+import io.nuls.core.rockdb.service.BatchOperation;
+import io.nuls.core.rockdb.service.MultiTableBatchOperation;
+import io.nuls.core.rockdb.service.RocksDBService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.rocksdb.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 列族模式存储测试
+ */
+public class ColumnFamilyDBTest {
+
+    private String dataPath;
+
+    @Before
+    public void before() {
+        RocksDBManager.close();
+        dataPath = System.getProperty("java.io.tmpdir") + File.separator + "cf-test-" + System.nanoTime();
+    }
+
+    @After
+    public void after() {
+        RocksDBManager.close();
+        deleteDir(new File(dataPath));
+    }
+
+    @Test
+    public void columnFamilyTest() throws Exception {
+        RocksDBManager.initColumnFamily(dataPath);
+        Assert.assertTrue(RocksDBManager.isColumnFamilyMode());
+        RocksDBService.createTable("table_a");
+        RocksDBService.createTable("table_b");
+        RocksDBService.put("table_a", "key".getBytes(UTF_8), "a".getBytes(UTF_8));
+        RocksDBService.put("table_b", "key".getBytes(UTF_8), "b".getBytes(UTF_8));
+        BatchOperation batch = RocksDBService.createWriteBatch("table_b");
+        batch.put("key2".getBytes(UTF_8), "b2".getBytes(UTF_8));
+        batch.executeBatch();
+        Assert.assertEquals("a", new String(RocksDBService.get("table_a", "key".getBytes(UTF_8)), UTF_8));
+        Assert.assertEquals(1, RocksDBService.keyList("table_a").size());
+        Assert.assertEquals(2, RocksDBService.keyList("table_b").size());
+
+        // 重新打开后列族仍然存在，init自动识别列族模式
+        RocksDBManager.close();
+        RocksDBService.init(dataPath);
+        Assert.assertTrue(RocksDBManager.isColumnFamilyMode());
+        Assert.assertEquals("b2", new String(RocksDBService.get("table_b", "key2".getBytes(UTF_8)), UTF_8));
+        RocksDBService.destroyTable("table_a");
+        Assert.assertFalse(RocksDBService.existTable("table_a"));
+    }
+
+    @Test
+    public void migrateTest() throws Exception {
+        RocksDBService.init(dataPath);
+        RocksDBService.createTable("legacy");
+        for (int i = 0; i < 100; i++) {
+            RocksDBService.put("legacy", ("key" + i).getBytes(UTF_8), ("value" + i).getBytes(UTF_8));
+        }
+        RocksDBManager.close();
+
+        Assert.assertEquals(1, RocksDBService.migrateToColumnFamily(dataPath, true));
+        Assert.assertFalse(new File(dataPath + File.separator + "legacy").exists());
+        Assert.assertEquals(100, RocksDBService.keyList("legacy").size());
+        Assert.assertEquals("value7", new String(RocksDBService.get("legacy", "key7".getBytes(UTF_8)), UTF_8));
+    }
+
+    @Test
+    public void interruptedMigrateTest() throws Exception {
+        RocksDBService.init(dataPath);
+        RocksDBService.createTable("legacy");
+        RocksDBService.put("legacy", "key".getBytes(UTF_8), "value".getBytes(UTF_8));
+        RocksDBManager.close();
+        // 模拟迁移中断: 共享实例已存在但没有完成标记 / an interrupted migration left a shared instance without the marker
+        try (DBOptions options = new DBOptions().setCreateIfMissing(true).setCreateMissingColumnFamilies(true);
+             ColumnFamilyOptions cfOptions = new ColumnFamilyOptions()) {
+            List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+            descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, cfOptions));
+            descriptors.add(new ColumnFamilyDescriptor("legacy".getBytes(UTF_8), cfOptions));
+            List<ColumnFamilyHandle> handles = new ArrayList<>();
+            try (RocksDB db = RocksDB.open(options, dataPath + File.separator + "rocksdb", descriptors, handles)) {
+                db.put(handles.get(1), "stale".getBytes(UTF_8), "stale".getBytes(UTF_8));
+                for (ColumnFamilyHandle handle : handles) {
+                    handle.close();
+                }
+            }
+        }
+
+        // 未完成的共享实例被忽略, 继续使用旧数据表 / the incomplete shared instance is ignored
+        RocksDBService.init(dataPath);
+        Assert.assertFalse(RocksDBManager.isColumnFamilyMode());
+        Assert.assertEquals("value", new String(RocksDBService.get("legacy", "key".getBytes(UTF_8)), UTF_8));
+        RocksDBManager.close();
+
+        // 配置启用列族模式后重新迁移, 不保留中断时的数据 / enabling column family mode migrates again from scratch
+        RocksDBService.init(dataPath, true);
+        Assert.assertTrue(RocksDBManager.isColumnFamilyMode());
+        Assert.assertEquals(1, RocksDBService.keyList("legacy").size());
+        Assert.assertNull(RocksDBService.get("legacy", "stale".getBytes(UTF_8)));
+        RocksDBManager.close();
+        RocksDBService.init(dataPath);
+        Assert.assertTrue(RocksDBManager.isColumnFamilyMode());
+    }
+
+    @Test
+    public void profileOnExistingTable() throws Exception {
+        RocksDBService.init(dataPath);
+        RocksDBService.createTable("old");
+        RocksDBService.put("old", "key".getBytes(UTF_8), "value".getBytes(UTF_8));
+        // 已存在的表立即以新配置重新打开, 数据保留 / an existing table is reopened with the profile, its data is kept
+        Assert.assertFalse(RocksDBService.createTable("old", DBTableProfile.APPEND_LOG));
+        Assert.assertEquals(DBTableProfile.APPEND_LOG, RocksDBManager.getTableProfile("old"));
+        Assert.assertEquals("value", new String(RocksDBService.get("old", "key".getBytes(UTF_8)), UTF_8));
+        RocksDBService.put("old", "key2".getBytes(UTF_8), "value2".getBytes(UTF_8));
+        Assert.assertFalse(RocksDBManager.applyProfile("old", DBTableProfile.APPEND_LOG));
+        RocksDBManager.close();
+
+        // 列族模式下记录配置, 下次打开时生效 / in column family mode the profile is recorded and used on the next open
+        RocksDBService.migrateToColumnFamily(dataPath, true);
+        Assert.assertEquals(DBTableProfile.APPEND_LOG, RocksDBManager.getTableProfile("old"));
+        Assert.assertTrue(RocksDBManager.applyProfile("old", DBTableProfile.SCAN));
+        RocksDBManager.close();
+        RocksDBService.init(dataPath);
+        Assert.assertEquals(DBTableProfile.SCAN, RocksDBManager.getTableProfile("old"));
+        Assert.assertEquals(2, RocksDBService.keyList("old").size());
+    }
+
+    @Test
+    public void profileTest() throws Exception {
+        RocksDBService.init(dataPath);
+        RocksDBService.createTable("hot", DBTableProfile.POINT_LOOKUP);
+        RocksDBService.createTable("log", DBTableProfile.APPEND_LOG);
+        for (int i = 0; i < 1000; i++) {
+            RocksDBService.put("log", ("key" + i).getBytes(UTF_8), ("value" + i).getBytes(UTF_8));
+        }
+        RocksDBService.put("hot", "key".getBytes(UTF_8), "value".getBytes(UTF_8));
+        RocksDBManager.close();
+
+        // 迁移后调优配置仍然生效
+        RocksDBService.migrateToColumnFamily(dataPath, true);
+        Assert.assertEquals("value", new String(RocksDBService.get("hot", "key".getBytes(UTF_8)), UTF_8));
+        Assert.assertEquals(1000, RocksDBService.valueList("log").size());
+        RocksDBService.destroyTable("log");
+        RocksDBManager.close();
+        RocksDBService.init(dataPath);
+        Assert.assertTrue(RocksDBService.existTable("hot"));
+        Assert.assertFalse(RocksDBService.existTable("log"));
+    }
+
+    @Test
+    public void durabilityTest() throws Exception {
+        RocksDBManager.initColumnFamily(dataPath);
+        RocksDBService.createTable("sync");
+        RocksDBService.createTable("cache");
+        RocksDBService.setDurability("sync", DBDurability.SYNC);
+        RocksDBService.setDurability("cache", DBDurability.NO_WAL);
+        RocksDBService.put("sync", "key".getBytes(UTF_8), "value".getBytes(UTF_8));
+        RocksDBService.put("cache", "key".getBytes(UTF_8), "value".getBytes(UTF_8));
+        BatchOperation batch = RocksDBService.createWriteBatch("sync");
+        batch.put("key2".getBytes(UTF_8), "value2".getBytes(UTF_8));
+        batch.executeBatch(DBDurability.GROUP_COMMIT);
+        Assert.assertEquals("value2", new String(RocksDBService.get("sync", "key2".getBytes(UTF_8)), UTF_8));
+        Assert.assertEquals("value", new String(RocksDBService.get("cache", "key".getBytes(UTF_8)), UTF_8));
+    }
+
+    @Test
+    public void multiTableBatchTest() throws Exception {
+        RocksDBManager.initColumnFamily(dataPath);
+        RocksDBService.createTable("header");
+        RocksDBService.createTable("index");
+        RocksDBService.put("index", "old".getBytes(UTF_8), "hash".getBytes(UTF_8));
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
+        batch.put("header", "hash".getBytes(UTF_8), "header".getBytes(UTF_8));
+        batch.put("index", "1".getBytes(UTF_8), "hash".getBytes(UTF_8));
+        batch.delete("index", "old".getBytes(UTF_8));
+        Assert.assertTrue(batch.isAtomic());
+        Assert.assertNull(RocksDBService.get("header", "hash".getBytes(UTF_8)));
+        Assert.assertTrue(batch.executeBatch());
+        Assert.assertEquals("header", new String(RocksDBService.get("header", "hash".getBytes(UTF_8)), UTF_8));
+        Assert.assertEquals(1, RocksDBService.keyList("index").size());
+    }
+
+    @Test
+    public void multiTableBatchCloseTest() throws Exception {
+        RocksDBService.init(dataPath);
+        RocksDBService.createTable("header");
+        RocksDBService.createTable("index");
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
+        batch.put("header", "hash".getBytes(UTF_8), "header".getBytes(UTF_8));
+        batch.put("index", "1".getBytes(UTF_8), "hash".getBytes(UTF_8));
+        //各表是独立实例时批次不是原子的 / the batch is not atomic when the tables are separate instances
+        Assert.assertFalse(batch.isAtomic());
+        //未执行就关闭时什么都不写入 / closing a batch that was not executed writes nothing
+        batch.close();
+        batch.close();
+        Assert.assertNull(RocksDBService.get("header", "hash".getBytes(UTF_8)));
+        try {
+            batch.executeBatch();
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertEquals(DBErrorCode.DB_TABLE_FAILED_BATCH_CLOSE, e.getMessage());
+        }
+    }
+
+    private static void deleteDir(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                deleteDir(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2019 nuls.io
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package io.nuls.core.storage;
+
+import io.nuls.core.rockdb.manager.RocksDBManager;
+import io.nuls.core.rockdb.service.RocksDBCursor;
+import io.nuls.core.rockdb.service.RocksDBService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 游标遍历测试
+ */
+public class RocksDBCursorTest {
+
+    private static final String TABLE = "cursor_table";
+    private String dataPath;
+
+    @Before
+    public void before() throws Exception {
+        RocksDBManager.close();
+        dataPath = System.getProperty("java.io.tmpdir") + File.separator + "cursor-test-" + System.nanoTime();
+        RocksDBService.init(dataPath);
+        RocksDBService.createTable(TABLE);
+        for (int i = 0; i < 10; i++) {
+            RocksDBService.put(TABLE, ("a" + i).getBytes(UTF_8), ("value" + i).getBytes(UTF_8));
+            RocksDBService.put(TABLE, ("b" + i).getBytes(UTF_8), ("value" + i).getBytes(UTF_8));
+        }
+    }
+
+    @After
+    public void after() {
+        RocksDBManager.close();
+        deleteDir(new File(dataPath));
+    }
+
+    @Test
+    public void rangeTest() throws Exception {
+        Assert.assertEquals(20, RocksDBService.count(TABLE));
+        List<String> keys = keys(RocksDBService.rangeCursor(TABLE, "a3".getBytes(UTF_8), "a6".getBytes(UTF_8), false));
+        Assert.assertEquals("[a3, a4, a5]", keys.toString());
+        keys = keys(RocksDBService.rangeCursor(TABLE, "a3".getBytes(UTF_8), "a6".getBytes(UTF_8), true));
+        Assert.assertEquals("[a5, a4, a3]", keys.toString());
+        keys = keys(RocksDBService.rangeCursor(TABLE, "b8".getBytes(UTF_8), null, false));
+        Assert.assertEquals("[b8, b9]", keys.toString());
+        keys = keys(RocksDBService.rangeCursor(TABLE, null, "a2".getBytes(UTF_8), true));
+        Assert.assertEquals("[a1, a0]", keys.toString());
+    }
+
+    @Test
+    public void prefixTest() throws Exception {
+        List<String> keys = keys(RocksDBService.prefixCursor(TABLE, "b".getBytes(UTF_8), false));
+        Assert.assertEquals(10, keys.size());
+        Assert.assertEquals("b0", keys.get(0));
+        keys = keys(RocksDBService.prefixCursor(TABLE, "a".getBytes(UTF_8), true));
+        Assert.assertEquals(10, keys.size());
+        Assert.assertEquals("a9", keys.get(0));
+    }
+
+    @Test
+    public void forEachTest() throws Exception {
+        List<Integer> sizes = new ArrayList<>();
+        RocksDBService.forEach(TABLE, 6, batch -> {
+            sizes.add(batch.size());
+            return true;
+        });
+        Assert.assertEquals("[6, 6, 6, 2]", sizes.toString());
+        sizes.clear();
+        RocksDBService.forEach(TABLE, 6, batch -> {
+            sizes.add(batch.size());
+            return false;
+        });
+        Assert.assertEquals("[6]", sizes.toString());
+    }
+
+    private static List<String> keys(RocksDBCursor cursor) {
+        List<String> keys = new ArrayList<>();
+        try (cursor) {
+            while (cursor.next()) {
+                keys.add(new String(cursor.key(), UTF_8));
+            }
+        }
+        return keys;
+    }
+
+    private static void deleteDir(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                deleteDir(f);
+            }
+        }
+        file.delete();
+    }
+}
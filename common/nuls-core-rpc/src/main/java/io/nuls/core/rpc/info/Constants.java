@@ -183,6 +183,49 @@ public class Constants {
      */
     public static final String BOOLEAN_FALSE = "0";
 
+    /**
+     * 消息序列化方式：二进制帧，服务端在握手确认中声明，未声明时使用JSON文本帧
+     * Message serialization: binary frame, advertised by the server in the handshake response, JSON text frames are used otherwise
+     */
+    public static final String SERIALIZE_BINARY = "binary";
+
+    /**
+     * 批量调用命令，一条消息中按顺序多次调用同一个cmd
+     * Batch call command, invokes one cmd several times in order within a single message
+     */
+    public static final String BATCH_CALL_CMD = "rpc_batch_call";
+
+    /**
+     * 批量调用参数：被调用的cmd
+     * Batch call parameter: the cmd to invoke
+     */
+    public static final String BATCH_CMD_KEY = "cmd";
+
+    /**
+     * 批量调用参数：每次调用的参数列表
+     * Batch call parameter: the list of parameters, one per call
+     */
+    public static final String BATCH_PARAMS_KEY = "paramsList";
+
+    /**
+     * 批量调用参数：为true时遇到第一次失败的调用即停止，之后的调用不再执行
+     * 调用返回失败或返回数据中value为false都视为失败
+     * Batch call parameter: when true the batch stops at the first failed call and the later calls are not executed.
+     * A call fails when its Response fails or its data carries value=false
+     */
+    public static final String BATCH_STOP_ON_FAILURE_KEY = "stopOnFailure";
+
+    /**
+     * 合并请求时单个批次的最大请求数，达到后立即发送
+     * Maximum number of coalesced requests in one batch, the batch is sent as soon as it is reached
+     */
+    public static final int BATCH_MAX_SIZE = 500;
+
+    /**
+     * 合并请求的等待窗口(毫秒)，窗口结束时发送已收集的请求
+     * Coalescing window in milliseconds, the collected requests are sent when it ends
+     */
+    public static final long BATCH_WINDOW_MILLIS = 2L;
 
 
     public static final String ZERO = "0";
@@ -223,6 +266,25 @@ public class Constants {
 
     public static final long QUEUE_MEM_LIMIT_SIZE = 128 * 1024 * 1024;
 
+    /**
+     * 链接上应答队列、订阅推送队列的容量
+     * Capacity of the response and subscription queues of a connection
+     */
+    public static final int CONNECT_QUEUE_SIZE = 10000;
+
+    /**
+     * 链接队列共享线程池的任务队列容量，已满时拒绝调度，由链接队列暂停读取并稍后重试
+     * Task queue capacity of the worker pool shared by the connection queues. When it is full scheduling is rejected,
+     * the connection queue then pauses reading and retries later
+     */
+    public static final int CONNECT_WORKER_QUEUE_SIZE = 4096;
+
+    /**
+     * 链接队列调度被拒绝后的重试间隔(毫秒)
+     * Retry interval in milliseconds after the scheduling of a connection queue was rejected
+     */
+    public static final long CONNECT_SCHEDULE_RETRY_MILLIS = 10L;
+
     /**
      * 参数类型
      * Parameter type
@@ -28,6 +28,7 @@ package io.nuls.core.rpc.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.lang.invoke.MethodHandle;
 import java.util.List;
 
 /**
@@ -64,6 +65,14 @@ public class CmdDetail {
 
     @JsonIgnore
     private CmdPriority priority;
+
+    /**
+     * 注册时编译好的调用句柄，类型为(Object handler, Map params)Object，避免每次请求都反射查找方法
+     * Invocation handle compiled at registration, typed (Object handler, Map params)Object,
+     * so requests do not look the method up reflectively
+     */
+    @JsonIgnore
+    private MethodHandle invoker;
     @JsonIgnore
     public String getMethodName() {
         return MethodName;
@@ -145,6 +154,16 @@ public class CmdDetail {
         this.priority = priority;
     }
 
+    @JsonIgnore
+    public MethodHandle getInvoker() {
+        return invoker;
+    }
+
+    @JsonIgnore
+    public void setInvoker(MethodHandle invoker) {
+        this.invoker = invoker;
+    }
+
     @Override
     public String toString() {
         return "CmdDetail{" +
@@ -1,7 +1,10 @@
 package io.nuls.core.rpc.model;
 /**
  * 消息优先级
+ * 每个优先级对应调度器中的一条通道，weight为加权轮询的权重，concurrencyPercent为该通道最多占用的线程比例
  * Message Priority
+ * Each priority is a lane of the scheduler, weight is its share in the weighted round robin
+ * and concurrencyPercent the maximum share of worker threads the lane may occupy
  *
  * @author tag
  */
@@ -9,19 +12,24 @@ public enum CmdPriority {
     /**
      * 高优先级
      * */
-    HIGH(10),
+    HIGH(10, 8, 100),
     /**
      * 默认优先级
      * */
-    DEFAULT(5),
+    DEFAULT(5, 3, 60),
     /**
      * 低优先级
      * */
-    LOWER(0);
+    LOWER(0, 1, 25);
 
     private int priority;
-    CmdPriority(int priority){
+    private final int weight;
+    private final int concurrencyPercent;
+
+    CmdPriority(int priority, int weight, int concurrencyPercent){
         this.priority = priority;
+        this.weight = weight;
+        this.concurrencyPercent = concurrencyPercent;
     }
 
     public int getPriority() {
@@ -31,4 +39,23 @@ public enum CmdPriority {
     public void setPriority(int priority) {
         this.priority = priority;
     }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getConcurrencyPercent() {
+        return concurrencyPercent;
+    }
+
+    /**
+     * 根据优先级数值得到所属的通道
+     * Get the lane of a priority value
+     */
+    public static CmdPriority fromPriority(int priority) {
+        if (priority >= HIGH.priority) {
+            return HIGH;
+        }
+        return priority >= DEFAULT.priority ? DEFAULT : LOWER;
+    }
 }
@@ -51,6 +51,13 @@ public class NegotiateConnectionResponse {
     @JsonProperty
     private String NegotiationComment;
 
+    /**
+     * 服务端支持的消息序列化方式，旧版本客户端按Map解析握手确认，会忽略该字段
+     * The message serialization the server supports. Older clients read the response as a map and ignore it
+     */
+    @JsonProperty
+    private String SerializeType;
+
     @JsonIgnore
     public String getRequestID() {
         return RequestID;
@@ -80,4 +87,14 @@ public class NegotiateConnectionResponse {
     public void setNegotiationComment(String NegotiationComment) {
         this.NegotiationComment = NegotiationComment;
     }
+
+    @JsonIgnore
+    public String getSerializeType() {
+        return SerializeType;
+    }
+
+    @JsonIgnore
+    public void setSerializeType(String SerializeType) {
+        this.SerializeType = SerializeType;
+    }
 }
@@ -8,16 +8,21 @@ import io.nuls.core.rpc.model.message.Request;
 import io.nuls.core.rpc.model.message.Response;
 import io.nuls.core.rpc.netty.channel.manager.ConnectManager;
 import io.nuls.core.parse.JSONUtils;
-import io.nuls.core.thread.ThreadUtils;
-import io.nuls.core.thread.commom.NulsThreadFactory;
+import io.nuls.core.rpc.netty.thread.RequestByCountProcessor;
+import io.nuls.core.rpc.netty.thread.RequestByPeriodProcessor;
+import io.nuls.core.rpc.netty.thread.RequestOnlyProcessor;
+import io.nuls.core.rpc.netty.thread.ResponseAutoProcessor;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 链接基础类
@@ -34,25 +39,39 @@ public class ConnectData {
      * 链接关闭断开标识
      * Link Close Disconnection Identification
      */
-    private boolean connected = true;
+    private volatile boolean connected = true;
 
     /**
      * 当前RequestOnly队列占内存大小
      * Current memory size of RequestOnly queue
      * */
-    private long requestOnlyQueueMemSize = 0;
+    private final AtomicLong requestOnlyQueueMemSize = new AtomicLong();
+
+    /**
+     * 因队列积压而暂停接收请求的队列数，为0时恢复
+     * Number of queues that paused taking requests because of backlog, requests are taken again when it drops to 0
+     */
+    private int pausedQueueCount = 0;
+
+    /**
+     * 暂停期间收到的RequestOnly请求，恢复后按顺序放入队列；
+     * 不关闭链接的读取，本节点发出请求的应答和确认仍然及时处理
+     * RequestOnly requests received while paused, queued in order once resumed.
+     * Reading the connection is never turned off, so responses and acks to this node's own requests keep flowing
+     */
+    private final ArrayDeque<RequestOnly> pausedRequestOnly = new ArrayDeque<>();
 
     /**
      * 从服务端得到的自动处理的应答消息
      * Response that need to be handled Automatically from the server
      */
-    private final LinkedBlockingQueue<Response> responseAutoQueue = new LinkedBlockingQueue<>();
+    private final ConnectQueue<Response> responseAutoQueue;
 
     /**
      * 客户端不需要相应的请求
      * Client does not need corresponding requests
      */
-    private final LinkedBlockingQueue<RequestOnly> requestOnlyQueue = new LinkedBlockingQueue<>(Constants.QUEUE_SIZE);
+    private final ConnectQueue<RequestOnly> requestOnlyQueue;
 
     /**
      * 请求超时的请求
@@ -72,7 +91,13 @@ public class ConnectData {
      * 多次响应队列（根据时间间隔订阅/Period），Message
      * Multiply called queue (Period).Message.
      */
-    private final LinkedBlockingQueue<Object[]> requestPeriodLoopQueue = new LinkedBlockingQueue<>();
+    private final LinkedBlockingQueue<Object[]> requestPeriodLoopQueue = new LinkedBlockingQueue<>(Constants.CONNECT_QUEUE_SIZE);
+
+    /**
+     * 按时间订阅的定时推送任务
+     * Scheduled push task of the subscriptions by period
+     */
+    private ScheduledFuture<?> periodFuture;
 
     /**
      * 多次响应（根据时间触发次数订阅/Event count），Message
@@ -84,7 +109,7 @@ public class ConnectData {
      * 当前链接订阅接口待返回结果列表
      * Current Link Subscription Interface to Return Result List
      */
-    private final LinkedBlockingQueue<Response> requestEventResponseQueue = new LinkedBlockingQueue<>();
+    private final ConnectQueue<Response> requestEventResponseQueue;
 
     /**
      * 按时间订阅消息的消息ID与详细键值对
@@ -137,12 +162,6 @@ public class ConnectData {
         return idToEventMessageMap.containsKey(messageId);
     }
 
-    /**
-     * 该链接处理消息的需要的线程
-     * The thread that the link needs to process the message
-     */
-    private final ExecutorService threadPool = ThreadUtils.createThreadPool(6, 100, new NulsThreadFactory("ServerProcessor"));
-
     /**
      * 订阅事件（接口改变次数）
      * Subscription events (number of interface changes)
@@ -205,6 +224,85 @@ public class ConnectData {
 
     public ConnectData(SocketChannel channel) {
         this.channel = channel;
+        //只有请求队列积压时暂停接收请求 / only a backlog of requests pauses taking requests
+        this.responseAutoQueue = new ConnectQueue<>("responseAuto", this, Constants.CONNECT_QUEUE_SIZE, 2,
+                ConnectManager.CONNECT_WORKER_POOL, ConnectManager.CONNECT_SCHEDULER, false, new ResponseAutoProcessor());
+        this.requestOnlyQueue = new ConnectQueue<>("requestOnly", this, Constants.QUEUE_SIZE, 2,
+                ConnectManager.CONNECT_WORKER_POOL, ConnectManager.CONNECT_SCHEDULER, true, new RequestOnlyProcessor(this));
+        this.requestEventResponseQueue = new ConnectQueue<>("requestEventResponse", this, Constants.CONNECT_QUEUE_SIZE, 1,
+                ConnectManager.CONNECT_WORKER_POOL, ConnectManager.CONNECT_SCHEDULER, false, new RequestByCountProcessor(this));
+    }
+
+    /**
+     * 启动按时间订阅的定时推送
+     * Start pushing the subscriptions by period
+     */
+    public void startPeriodTask() {
+        this.periodFuture = ConnectManager.CONNECT_SCHEDULER.scheduleWithFixedDelay(new RequestByPeriodProcessor(this),
+                Constants.PROCESSOR_INTERVAL_TIMEMILLIS, Constants.PROCESSOR_INTERVAL_TIMEMILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 请求队列积压时暂停接收请求
+     * Pause taking requests while a request queue is backlogged
+     */
+    synchronized void pauseRead() {
+        pausedQueueCount++;
+    }
+
+    /**
+     * 所有请求队列都不再积压时恢复, 暂停期间收到的请求按顺序放入队列
+     * Resume when no request queue is backlogged any more, the requests received while paused are queued in order
+     */
+    synchronized void resumeRead() {
+        if (--pausedQueueCount > 0) {
+            return;
+        }
+        RequestOnly requestOnly;
+        while (pausedQueueCount == 0 && (requestOnly = pausedRequestOnly.peek()) != null) {
+            if (!requestOnlyQueue.offer(requestOnly)) {
+                break;
+            }
+            pausedRequestOnly.poll();
+        }
+    }
+
+    /**
+     * 是否暂停接收请求 / whether taking requests is paused
+     */
+    public synchronized boolean isRequestPaused() {
+        return pausedQueueCount > 0;
+    }
+
+    /**
+     * 接收RequestOnly请求，暂停期间先暂存，暂存已满时拒绝
+     * Take a RequestOnly request, it is held while paused and rejected when the held requests are full
+     */
+    public synchronized boolean offerRequestOnly(RequestOnly requestOnly) {
+        if (pausedQueueCount == 0) {
+            return requestOnlyQueue.offer(requestOnly);
+        }
+        if (!connected || pausedRequestOnly.size() >= Constants.CONNECT_QUEUE_SIZE) {
+            return false;
+        }
+        pausedRequestOnly.add(requestOnly);
+        return true;
+    }
+
+    public synchronized int getPausedRequestCount() {
+        return pausedRequestOnly.size();
+    }
+
+    /**
+     * 各队列的深度与等待时间指标
+     * Depth and latency gauges of the queues
+     */
+    public List<ConnectQueue<?>> getQueueMetrics() {
+        List<ConnectQueue<?>> queueList = new ArrayList<>(3);
+        queueList.add(responseAutoQueue);
+        queueList.add(requestOnlyQueue);
+        queueList.add(requestEventResponseQueue);
+        return queueList;
     }
 
     public boolean isConnected() {
@@ -214,10 +312,16 @@ public class ConnectData {
     public void setConnected(boolean connected) {
         this.connected = connected;
         if (!connected) {
+            if (periodFuture != null) {
+                periodFuture.cancel(false);
+            }
             requestEventResponseQueue.clear();
-            requestEventResponseQueue.offer(new Response());
             responseAutoQueue.clear();
-            responseAutoQueue.offer(new Response());
+            requestOnlyQueue.clear();
+            synchronized (this) {
+                pausedRequestOnly.clear();
+            }
+            requestOnlyQueueMemSize.set(0);
             requestPeriodLoopQueue.clear();
             emitCloseEvent(); //广播连接关闭事件
         }
@@ -235,7 +339,7 @@ public class ConnectData {
         return requestEventCountLoopList;
     }
 
-    public LinkedBlockingQueue<Response> getRequestEventResponseQueue() {
+    public ConnectQueue<Response> getRequestEventResponseQueue() {
         return requestEventResponseQueue;
     }
 
@@ -255,7 +359,7 @@ public class ConnectData {
         return channel;
     }
 
-    public LinkedBlockingQueue<Response> getResponseAutoQueue() {
+    public ConnectQueue<Response> getResponseAutoQueue() {
         return responseAutoQueue;
     }
 
@@ -263,32 +367,29 @@ public class ConnectData {
         return timeOutMessageList;
     }
 
-    public ExecutorService getThreadPool() {
-        return threadPool;
-    }
-
-    public LinkedBlockingQueue<RequestOnly> getRequestOnlyQueue() {
+    public ConnectQueue<RequestOnly> getRequestOnlyQueue() {
         return requestOnlyQueue;
     }
 
     public long getRequestOnlyQueueMemSize() {
-        return requestOnlyQueueMemSize;
+        return requestOnlyQueueMemSize.get();
     }
 
     public void setRequestOnlyQueueMemSize(long requestOnlyQueueMemSize) {
-        this.requestOnlyQueueMemSize = requestOnlyQueueMemSize;
+        this.requestOnlyQueueMemSize.set(requestOnlyQueueMemSize);
     }
 
     public boolean requestOnlyQueueReachLimit(){
-        return Constants.QUEUE_MEM_LIMIT_SIZE <= this.requestOnlyQueueMemSize;
+        return Constants.QUEUE_MEM_LIMIT_SIZE <= this.requestOnlyQueueMemSize.get();
     }
 
     public void addRequestOnlyQueueMemSize(long requestOnlyMemSize) {
-        this.requestOnlyQueueMemSize += requestOnlyMemSize;
+        this.requestOnlyQueueMemSize.addAndGet(requestOnlyMemSize);
     }
 
     public void subRequestOnlyQueueMemSize(long requestOnlyMemSize) {
-        this.requestOnlyQueueMemSize -= requestOnlyMemSize;
+        //断开时已清零，正在处理的消息不会减为负数 / reset on disconnect, a message still being handled never makes it negative
+        this.requestOnlyQueueMemSize.updateAndGet(size -> Math.max(0L, size - requestOnlyMemSize));
     }
 
     /**
@@ -0,0 +1,282 @@
+package io.nuls.core.rpc.netty.channel;
+
+import io.nuls.core.log.Log;
+import io.nuls.core.rpc.info.Constants;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 链接上的有界消息队列
+ * 队列由定长环形数组实现，消息在共享线程池中处理，不再为每个链接占用固定线程；
+ * 请求队列深度超过高水位或共享线程池已满时暂停接收该链接的请求，降到低水位后恢复，应答消息不受影响
+ * <p>
+ * Bounded message queue of a connection.
+ * The queue is a fixed-size ring buffer and its messages are processed on a shared worker pool
+ * instead of threads owned by the connection.
+ * For a request queue, taking requests from the connection is paused when the depth exceeds the high watermark
+ * or the shared worker pool is full, and resumed at the low watermark. Responses are never held back
+ */
+public class ConnectQueue<E> {
+
+    /**
+     * 每次调度最多连续处理的消息数，处理完后让出线程，保证各链接公平
+     * Maximum messages processed per scheduling, the thread is yielded afterwards so that connections are served fairly
+     */
+    private static final int DRAIN_LIMIT = 64;
+
+    private final String name;
+
+    private final ConnectData connectData;
+
+    private final ArrayBlockingQueue<QueueEntry<E>> queue;
+
+    private final int capacity;
+
+    private final int highWatermark;
+
+    private final int lowWatermark;
+
+    /**
+     * 同时处理该队列的最大线程数
+     * Maximum number of threads processing this queue at the same time
+     */
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    /**
+     * 线程池拒绝调度后用于重试
+     * Used to retry after the worker pool rejected the scheduling
+     */
+    private final ScheduledExecutorService retryScheduler;
+
+    private final MessageHandler<E> handler;
+
+    /**
+     * 积压时是否暂停接收请求，只有请求队列计入 / whether a backlog pauses taking requests, only request queues count
+     */
+    private final boolean backPressure;
+
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private final AtomicBoolean readPaused = new AtomicBoolean();
+
+    /*
+    队列指标 / Queue gauges
+     */
+    private final LongAdder offeredCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    public ConnectQueue(String name, ConnectData connectData, int capacity, int parallelism, ExecutorService executor,
+                        ScheduledExecutorService retryScheduler, MessageHandler<E> handler) {
+        this(name, connectData, capacity, parallelism, executor, retryScheduler, true, handler);
+    }
+
+    public ConnectQueue(String name, ConnectData connectData, int capacity, int parallelism, ExecutorService executor,
+                        ScheduledExecutorService retryScheduler, boolean backPressure, MessageHandler<E> handler) {
+        this.name = name;
+        this.connectData = connectData;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.highWatermark = Math.max(1, capacity * 3 / 4);
+        this.lowWatermark = capacity / 4;
+        this.parallelism = parallelism;
+        this.executor = executor;
+        this.retryScheduler = retryScheduler;
+        this.handler = handler;
+        this.backPressure = backPressure;
+    }
+
+    /**
+     * 放入消息，队列已满时拒绝并返回false，不会阻塞调用线程(Netty IO线程)
+     * Offer a message. It is rejected with false when the queue is full, the calling (Netty IO) thread is never blocked
+     */
+    public boolean offer(E e) {
+        if (!connectData.isConnected()) {
+            return false;
+        }
+        if (!queue.offer(new QueueEntry<>(e, System.nanoTime()))) {
+            rejectedCount.increment();
+            pauseRead();
+            return false;
+        }
+        offeredCount.increment();
+        int depth = queue.size();
+        maxDepth.accumulateAndGet(depth, Math::max);
+        if (depth >= highWatermark) {
+            pauseRead();
+        }
+        schedule();
+        return true;
+    }
+
+    public void clear() {
+        queue.clear();
+        resumeRead();
+    }
+
+    private void schedule() {
+        while (true) {
+            int active = activeWorkers.get();
+            if (active >= parallelism) {
+                return;
+            }
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                break;
+            }
+        }
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            activeWorkers.decrementAndGet();
+            /*
+            共享线程池已满：暂停接收该链接的请求，稍后重试调度，队列中的消息在线程空闲后继续处理
+            The shared worker pool is full: stop taking requests from this connection and retry the scheduling later,
+            the queued messages are processed once a worker is free
+             */
+            Log.warn("Connect queue [{}] schedule rejected, depth:{}", name, queue.size());
+            pauseRead();
+            retrySchedule();
+        }
+    }
+
+    private void retrySchedule() {
+        try {
+            retryScheduler.schedule(() -> {
+                if (connectData.isConnected() && !queue.isEmpty()) {
+                    schedule();
+                }
+            }, Constants.CONNECT_SCHEDULE_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            Log.error("Connect queue [{}] retry rejected, depth:{}", name, queue.size());
+        }
+    }
+
+    private void drain() {
+        try {
+            QueueEntry<E> entry;
+            for (int i = 0; i < DRAIN_LIMIT && connectData.isConnected() && (entry = queue.poll()) != null; i++) {
+                long waitNanos = System.nanoTime() - entry.enqueueNanos;
+                totalWaitNanos.add(waitNanos);
+                maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+                if (queue.size() <= lowWatermark) {
+                    resumeRead();
+                }
+                try {
+                    handler.handle(entry.value);
+                } catch (Exception e) {
+                    Log.error(e);
+                } finally {
+                    processedCount.increment();
+                }
+            }
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+        /*
+        退出后仍有消息(超过单次处理上限或刚好有新消息放入)，重新调度
+        Messages left after leaving (drain limit reached or offered concurrently), schedule again
+         */
+        if (connectData.isConnected() && !queue.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private void pauseRead() {
+        if (backPressure && readPaused.compareAndSet(false, true)) {
+            connectData.pauseRead();
+        }
+    }
+
+    private void resumeRead() {
+        if (readPaused.compareAndSet(true, false)) {
+            connectData.resumeRead();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public long getOfferedCount() {
+        return offeredCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getProcessedCount() {
+        return processedCount.sum();
+    }
+
+    /**
+     * 消息在队列中的平均等待时间(毫秒)
+     * Average time in milliseconds messages waited in the queue
+     */
+    public long getAverageWaitMillis() {
+        long processed = processedCount.sum();
+        return processed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / processed);
+    }
+
+    /**
+     * 消息在队列中的最长等待时间(毫秒)
+     * Maximum time in milliseconds a message waited in the queue
+     */
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public boolean isReadPaused() {
+        return readPaused.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + "{depth=" + getDepth() + "/" + capacity + ", maxDepth=" + getMaxDepth() + ", offered=" + getOfferedCount()
+                + ", rejected=" + getRejectedCount() + ", avgWait=" + getAverageWaitMillis() + "ms, maxWait=" + getMaxWaitMillis() + "ms}";
+    }
+
+    /**
+     * 队列消息的处理器
+     * Handler of the queued messages
+     */
+    @FunctionalInterface
+    public interface MessageHandler<E> {
+        void handle(E e) throws Exception;
+    }
+
+    private static class QueueEntry<E> {
+        private final E value;
+        private final long enqueueNanos;
+
+        private QueueEntry(E value, long enqueueNanos) {
+            this.value = value;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+}
@@ -5,7 +5,10 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.socket.SocketChannel;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.nuls.core.core.ioc.ScanUtil;
 import io.nuls.core.core.ioc.SpringLiteContext;
 import io.nuls.core.log.Log;
@@ -19,20 +22,25 @@ import io.nuls.core.rpc.model.message.Request;
 import io.nuls.core.rpc.model.message.Response;
 import io.nuls.core.rpc.netty.bootstrap.NettyClient;
 import io.nuls.core.rpc.netty.channel.ConnectData;
+import io.nuls.core.rpc.netty.processor.CmdScheduler;
 import io.nuls.core.rpc.netty.processor.RequestMessageProcessor;
-import io.nuls.core.rpc.netty.thread.RequestByCountProcessor;
-import io.nuls.core.rpc.netty.thread.RequestByPeriodProcessor;
-import io.nuls.core.rpc.netty.thread.RequestOnlyProcessor;
-import io.nuls.core.rpc.netty.thread.ResponseAutoProcessor;
+import io.nuls.core.rpc.util.BinaryMessageCodec;
 import io.nuls.core.rpc.util.NulsDateUtils;
 import io.nuls.core.rpc.util.SerializeUtil;
+import io.nuls.core.thread.ThreadUtils;
+import io.nuls.core.thread.commom.NulsThreadFactory;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -64,6 +72,11 @@ public class ConnectManager {
      * */
     public static final Map<String, Integer> CMD_PRIORITY_MAP = new ConcurrentHashMap<>();
 
+    static {
+        //批量调用不是注解注册的cmd, 按默认优先级登记 / the batch call is not an annotated cmd, registered with the default priority
+        CMD_PRIORITY_MAP.put(Constants.BATCH_CALL_CMD, CmdPriority.DEFAULT.getPriority());
+    }
+
     /**
      * 本模块配置信息
      * Configuration information of this module
@@ -94,6 +107,25 @@ public class ConnectManager {
      */
     public static final Map<Channel, ConnectData> CHANNEL_DATA_MAP = new ConcurrentHashMap<>();
 
+    /**
+     * 所有链接共享的队列消息处理线程池，线程数按CPU核数设置，任务队列有上限
+     * Worker pool shared by the queues of all connections, sized by the number of cores, with a bounded task queue
+     */
+    public static final ExecutorService CONNECT_WORKER_POOL = ThreadUtils.createThreadPool(Constants.THREAD_POOL_SIZE, Constants.CONNECT_WORKER_QUEUE_SIZE, new NulsThreadFactory("ConnectWorker"));
+
+    /**
+     * 所有链接共享的请求调度器，按cmd优先级分通道调度，每个链接对应THREAD_POOL_SIZE个线程
+     * Request scheduler shared by all connections, requests are scheduled in lanes by cmd priority
+     * with THREAD_POOL_SIZE threads per connection
+     */
+    public static final CmdScheduler CMD_SCHEDULER = new CmdScheduler(Constants.THREAD_POOL_SIZE, Constants.QUEUE_SIZE, "cmd-scheduler");
+
+    /**
+     * 所有链接共享的按时间订阅推送线程
+     * Scheduler of the subscriptions by period, shared by all connections
+     */
+    public static final ScheduledThreadPoolExecutor CONNECT_SCHEDULER = ThreadUtils.createScheduledThreadPool(1, new NulsThreadFactory("ConnectPeriod"));
+
     /**
      * 角色与链接通道集合
      * KEY:ROLE
@@ -101,6 +133,12 @@ public class ConnectManager {
      */
     public static final Map<String, Channel> ROLE_CHANNEL_MAP = new ConcurrentHashMap<>();
 
+    /**
+     * 握手时协商使用二进制消息的链接通道，其余链接使用JSON
+     * Channels that negotiated binary messages in the handshake, the others use JSON
+     */
+    public static final Set<Channel> BINARY_CHANNEL_SET = ConcurrentHashMap.newKeySet();
+
     /**
      * messageId对应链接通道对象，用于取消订阅的Request
      * Key：messageId, Value：链接通道
@@ -148,78 +186,78 @@ public class ConnectManager {
     public static int subRequestCount = 0;
 
     /**
-     * 根据cmd命令和版本号获取本地方法
-     * Getting local methods from CMD commands and version
+     * 本地接口调度表，按版本号升序排列
+     * Dispatch table of local cmds, each sorted by ascending version
+     * <p>
+     * Key: cmd
+     * Value: CmdDetail[]
+     */
+    private static final Map<String, CmdDetail[]> CMD_DISPATCH_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 根据cmd命令和版本号获取本地方法，返回大版本相同的最高版本
+     * Getting local methods from CMD commands and version, the highest version with the same major version is returned
      *
      * @param cmd        Command of remote method
      * @param minVersion Version of remote method
      * @return CmdDetail
      */
     public static CmdDetail getLocalInvokeCmd(String cmd, double minVersion) {
-
-        CmdDetail find = null;
-        for (CmdDetail cmdDetail : LOCAL.getMethods()) {
-            /*
-            cmd不一致，跳过
-            CMD inconsistency, skip
-             */
-            if (!cmdDetail.getMethodName().equals(cmd)) {
-                continue;
-            }
-
+        CmdDetail[] cmdDetails = CMD_DISPATCH_MAP.get(cmd);
+        if (cmdDetails == null) {
+            return null;
+        }
+        for (int i = cmdDetails.length - 1; i >= 0; i--) {
             /*
             大版本不一样，跳过
             Big version is different, skip
              */
-            if ((int) minVersion != (int) cmdDetail.getVersion()) {
-                continue;
-            }
-
-            /*
-            没有备选方法，则设置当前方法为备选方法
-            If there is no alternative method, set the current method as the alternative method
-             */
-            if (find == null) {
-                find = cmdDetail;
-                continue;
-            }
-
-            /*
-            如果当前方法版本更高，则设置当前方法为备选方法
-            If the current method version is higher, set the current method as an alternative method
-             */
-            if (cmdDetail.getVersion() > find.getVersion()) {
-                find = cmdDetail;
+            if ((int) minVersion == (int) cmdDetails[i].getVersion()) {
+                return cmdDetails[i];
             }
         }
-        return find;
+        return null;
     }
 
 
     /**
-     * 根据cmd命令获取最高版本的方法，逻辑同上
+     * 根据cmd命令获取最高版本的方法
      * Getting the highest version of local methods from CMD commands
      *
      * @param cmd Command of remote method
      * @return CmdDetail
      */
     public static CmdDetail getLocalInvokeCmd(String cmd) {
-        CmdDetail find = null;
-        for (CmdDetail cmdDetail : LOCAL.getMethods()) {
-            if (!cmdDetail.getMethodName().equals(cmd)) {
-                continue;
-            }
-
-            if (find == null) {
-                find = cmdDetail;
-                continue;
-            }
+        CmdDetail[] cmdDetails = CMD_DISPATCH_MAP.get(cmd);
+        return cmdDetails == null ? null : cmdDetails[cmdDetails.length - 1];
+    }
 
-            if (cmdDetail.getVersion() > find.getVersion()) {
-                find = cmdDetail;
-            }
-        }
-        return find;
+    /**
+     * 注册本地接口：编译调用句柄并加入调度表
+     * Register a local cmd: compile its invocation handle and add it to the dispatch table
+     *
+     * @param cmdDetail CmdDetail
+     * @param method    接口方法 / The cmd method
+     */
+    private static void registerCmd(CmdDetail cmdDetail, Method method) {
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            cmdDetail.setInvoker(handle.asType(MethodType.methodType(Object.class, Object.class, Map.class)));
+        } catch (IllegalAccessException e) {
+            /*
+            无法访问的方法在调用时走反射
+            Inaccessible methods fall back to reflection when invoked
+             */
+            Log.warn("cmd {} is not accessible, invoked by reflection", cmdDetail.getMethodName());
+        }
+        LOCAL.getMethods().add(cmdDetail);
+        RequestMessageProcessor.handlerMap.put(cmdDetail.getInvokeClass(), SpringLiteContext.getBeanByClass(cmdDetail.getInvokeClass()));
+        CMD_DISPATCH_MAP.compute(cmdDetail.getMethodName(), (cmd, old) -> {
+            CmdDetail[] cmdDetails = old == null ? new CmdDetail[1] : Arrays.copyOf(old, old.length + 1);
+            cmdDetails[cmdDetails.length - 1] = cmdDetail;
+            Arrays.sort(cmdDetails, Comparator.comparingDouble(CmdDetail::getVersion));
+            return cmdDetails;
+        });
     }
 
 
@@ -255,8 +293,7 @@ public class ConnectManager {
                 Repeated interfaces are registered only once
                  */
                 if (!isRegister(cmdDetail)) {
-                    LOCAL.getMethods().add(cmdDetail);
-                    RequestMessageProcessor.handlerMap.put(cmdDetail.getInvokeClass(), SpringLiteContext.getBeanByClass(cmdDetail.getInvokeClass()));
+                    registerCmd(cmdDetail, method);
                     Log.debug("valid cmdDetail-" + cmdDetail);
                 } else {
                     throw new Exception(Constants.CMD_DUPLICATE + ":" + cmdDetail.getMethodName() + "-" + cmdDetail.getVersion());
@@ -278,8 +315,7 @@ public class ConnectManager {
                 Repeated interfaces are registered only once
                  */
             if (!isRegister(cmdDetail)) {
-                LOCAL.getMethods().add(cmdDetail);
-                RequestMessageProcessor.handlerMap.put(cmdDetail.getInvokeClass(), SpringLiteContext.getBeanByClass(cmdDetail.getInvokeClass()));
+                registerCmd(cmdDetail, method);
             }
             ;
 //            else {
@@ -524,10 +560,8 @@ public class ConnectManager {
                     Request request = JSONUtils.map2pojo((Map) message.getMessageData(), Request.class);
                     long eventCount = Long.parseLong(request.getSubscriptionEventCounter());
                     if ((changeCount - initCount) % eventCount == 0) {
-                        try {
-                            connectData.getRequestEventResponseQueue().put(getRealResponse(cmd, message.getMessageID(), response));
-                        } catch (InterruptedException e) {
-                            Log.error(e);
+                        if (!connectData.getRequestEventResponseQueue().offer(getRealResponse(cmd, message.getMessageID(), response))) {
+                            Log.warn("Subscription queue is full, event dropped, cmd:{}, {}", cmd, connectData.getRequestEventResponseQueue());
                         }
                     }
                 }
@@ -673,17 +707,14 @@ public class ConnectManager {
     public static void createConnectData(Channel channel) {
         ConnectData connectData = new ConnectData((SocketChannel) channel);
         /*
-        连接创建成功之后，启动处理连接通道中传输信息所需线程
-        After the connection is created successfully, start the threads needed
-        to process the transmission of information in the connection channel
+        连接创建成功之后，启动按时间订阅的定时推送，其他队列的消息在共享线程池中处理
+        After the connection is created successfully, start pushing the subscriptions by period,
+        messages of the other queues are processed on the shared worker pool
         */
-        connectData.getThreadPool().execute(new RequestByPeriodProcessor(connectData));
-        connectData.getThreadPool().execute(new RequestByCountProcessor(connectData));
-        connectData.getThreadPool().execute(new ResponseAutoProcessor(connectData));
-        connectData.getThreadPool().execute(new ResponseAutoProcessor(connectData));
-        connectData.getThreadPool().execute(new RequestOnlyProcessor(connectData));
-        connectData.getThreadPool().execute(new RequestOnlyProcessor(connectData));
-        CHANNEL_DATA_MAP.put(channel, connectData);
+        connectData.startPeriodTask();
+        if (CHANNEL_DATA_MAP.put(channel, connectData) == null) {
+            CMD_SCHEDULER.connectionOpened();
+        }
     }
 
     /**
@@ -711,12 +742,34 @@ public class ConnectManager {
                 msgEntries.remove();
             }
         }
+        BINARY_CHANNEL_SET.remove(channel);
         ConnectData connectData = CHANNEL_DATA_MAP.remove(channel);
+        CMD_SCHEDULER.connectionClosed();
         connectData.setConnected(false);
-        connectData.getThreadPool().shutdown();
         channel.close();
     }
 
+    /**
+     * 请求的调度优先级：请求中优先级最高的cmd，批量调用按其中被调用的cmd计算
+     * Scheduling priority of a request: its highest priority cmd, a batch call counts the cmd it invokes
+     *
+     * @param request         请求 / The request
+     * @param defaultPriority 没有登记优先级的cmd使用的优先级 / priority of the cmds without a registered one
+     */
+    public static int requestPriority(Request request, int defaultPriority) {
+        int priority = defaultPriority;
+        for (Map.Entry<String, Object> entry : request.getRequestMethods().entrySet()) {
+            priority = Math.max(priority, CMD_PRIORITY_MAP.getOrDefault(entry.getKey(), defaultPriority));
+            if (Constants.BATCH_CALL_CMD.equals(entry.getKey()) && entry.getValue() instanceof Map) {
+                Object cmd = ((Map) entry.getValue()).get(Constants.BATCH_CMD_KEY);
+                if (cmd instanceof String) {
+                    priority = Math.max(priority, CMD_PRIORITY_MAP.getOrDefault(cmd, defaultPriority));
+                }
+            }
+        }
+        return priority;
+    }
+
     /**
      * 判断是否为正整数
      * Determine whether it is a positive integer
@@ -733,10 +786,26 @@ public class ConnectManager {
     }
 
     public static void sendMessage(Channel channel, ByteBuf message) {
+        sendFrame(channel, new TextWebSocketFrame(message));
+    }
+
+    /**
+     * 按链接协商的序列化方式发送消息
+     * Send the message with the serialization negotiated for the channel
+     */
+    public static void sendMessage(Channel channel, Message message) throws JsonProcessingException {
+        if (BINARY_CHANNEL_SET.contains(channel)) {
+            sendFrame(channel, new BinaryWebSocketFrame(BinaryMessageCodec.encode(message)));
+        } else {
+            sendFrame(channel, new TextWebSocketFrame(SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message))));
+        }
+    }
+
+    private static void sendFrame(Channel channel, WebSocketFrame frame) {
 //        Log.debug("发送消息:{}",message);
         try {
             channel.eventLoop().execute(() -> {
-                ChannelFuture cf = channel.writeAndFlush(new TextWebSocketFrame(message));
+                ChannelFuture cf = channel.writeAndFlush(frame);
                 cf.addListener((ChannelFutureListener) future -> {
                     if (!future.isSuccess()) {
                         Log.error(future.cause());
@@ -768,7 +837,7 @@ public class ConnectManager {
 //    }
 
     public static void sendMessage(String moduleAbbr, Message message) throws Exception {
-        sendMessage(getConnectByRole(moduleAbbr), SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message)));
+        sendMessage(getConnectByRole(moduleAbbr), message);
     }
 
     public static String getRoleByChannel(Channel channel){
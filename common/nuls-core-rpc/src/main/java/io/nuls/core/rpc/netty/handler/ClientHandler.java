@@ -17,6 +17,7 @@ import io.nuls.core.rpc.model.message.Request;
 import io.nuls.core.rpc.netty.channel.ConnectData;
 import io.nuls.core.rpc.netty.channel.manager.ConnectManager;
 import io.nuls.core.rpc.netty.handler.message.TextMessageHandler;
+import io.nuls.core.rpc.util.BinaryMessageCodec;
 import io.nuls.core.thread.commom.NulsThreadFactory;
 
 import java.util.Map;
@@ -36,8 +37,6 @@ public class ClientHandler extends SimpleChannelInboundHandler<Object> {
     private WebSocketClientHandshaker handShaker;
     private ChannelPromise handshakeFuture;
 
-    private ThreadPoolExecutor requestExecutorService = new ThreadPoolExecutor(Constants.THREAD_POOL_SIZE, Constants.THREAD_POOL_SIZE, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), new NulsThreadFactory("server-handler-request"));
-
     private ThreadPoolExecutor responseExecutorService = new ThreadPoolExecutor(Constants.THREAD_POOL_SIZE, Constants.THREAD_POOL_SIZE, 0L,TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), new NulsThreadFactory("server-handler-request"));
 
 
@@ -100,12 +99,17 @@ public class ClientHandler extends SimpleChannelInboundHandler<Object> {
 
             if (frame instanceof CloseWebSocketFrame) {
                 ch.close();
-            } else if (msg instanceof TextWebSocketFrame) {
-                TextWebSocketFrame txMsg = (TextWebSocketFrame) msg;
-                ByteBuf content = txMsg.content();
+            } else if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+                ByteBuf content = ((WebSocketFrame) msg).content();
                 byte[] bytes = new byte[content.readableBytes()];
                 content.readBytes(bytes);
-                Message message = JSONUtils.byteArray2pojo(bytes, Message.class);
+                /*
+                二进制帧为握手时协商的模块间格式，文本帧为JSON
+                Binary frames carry the inter-module format negotiated in the handshake, text frames carry JSON
+                 */
+                Message message = msg instanceof BinaryWebSocketFrame
+                        ? BinaryMessageCodec.decode(bytes)
+                        : JSONUtils.byteArray2pojo(bytes, Message.class);
                 MessageType messageType = MessageType.valueOf(message.getMessageType());
                 int priority = CmdPriority.DEFAULT.getPriority();
                 TextMessageHandler messageHandler = new TextMessageHandler((SocketChannel) ctx.channel(), message, priority);
@@ -116,27 +120,30 @@ public class ClientHandler extends SimpleChannelInboundHandler<Object> {
                 }else{
                     if(messageType.equals(MessageType.Request)){
                         Request request = JSONUtils.map2pojo((Map) message.getMessageData(), Request.class);
-                        if(request.getRequestMethods().size() == 1){
-                            for (String cmd:request.getRequestMethods().keySet()) {
-                                if(ConnectManager.CMD_PRIORITY_MAP.containsKey(cmd)){
-                                    messageHandler.setPriority(ConnectManager.CMD_PRIORITY_MAP.get(cmd));
-                                }
-                            }
-                        }
+                        /*
+                        按请求中优先级最高的cmd放入调度通道，批量调用按其中被调用的cmd
+                        The request is scheduled in the lane of its highest priority cmd, a batch call in the lane of the cmd it invokes
+                         */
+                        messageHandler.setPriority(ConnectManager.requestPriority(request, messageHandler.getPriority()));
                         messageHandler.setRequest(request);
-                        requestExecutorService.execute(messageHandler);
+                        submitRequest(messageHandler);
                     }else if(messageType.equals(MessageType.RequestOnly)){
                         Request request = JSONUtils.map2pojo((Map) message.getMessageData(), Request.class);
                         ConnectData connectData = ConnectManager.CHANNEL_DATA_MAP.get(ctx.channel());
                         int messageSize = bytes.length;
                         if(!connectData.requestOnlyQueueReachLimit()){
-                            connectData.getRequestOnlyQueue().offer(new RequestOnly(request, messageSize));
                             connectData.addRequestOnlyQueueMemSize(messageSize);
+                            if(!connectData.offerRequestOnly(new RequestOnly(request, messageSize))){
+                                connectData.subRequestOnlyQueueMemSize(messageSize);
+                                Log.debug("RequestOnly队列已满，丢弃新接收到的消息，messageId:{},{}", message.getMessageID(), connectData.getRequestOnlyQueue());
+                            }
                         }else{
                             Log.debug("RequestOnly队列缓存已满，丢弃新接收到的消息，messageId:{},队列所占内存：{}", message.getMessageID(),connectData.getRequestOnlyQueueMemSize());
                         }
                     }else{
-                        requestExecutorService.execute(messageHandler);
+                        //握手、取消订阅等控制消息走高优先级通道 / control messages such as handshake and unsubscribe use the high priority lane
+                        messageHandler.setPriority(CmdPriority.HIGH.getPriority());
+                        submitRequest(messageHandler);
                     }
                 }
             } else {
@@ -145,6 +152,13 @@ public class ClientHandler extends SimpleChannelInboundHandler<Object> {
         }
     }
 
+    private void submitRequest(TextMessageHandler messageHandler) {
+        if (!ConnectManager.CMD_SCHEDULER.submit(messageHandler)) {
+            Log.warn("Request lane is full, request dropped, messageId:{}", messageHandler.getMessage().getMessageID());
+            messageHandler.reject("Request queue is full");
+        }
+    }
+
     @Override
     public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
     }
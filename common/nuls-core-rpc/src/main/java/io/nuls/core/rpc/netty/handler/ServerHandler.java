@@ -4,7 +4,9 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.nuls.core.log.Log;
 import io.nuls.core.parse.JSONUtils;
 import io.nuls.core.rpc.info.Constants;
@@ -16,6 +18,7 @@ import io.nuls.core.rpc.model.message.Request;
 import io.nuls.core.rpc.netty.channel.ConnectData;
 import io.nuls.core.rpc.netty.channel.manager.ConnectManager;
 import io.nuls.core.rpc.netty.handler.message.TextMessageHandler;
+import io.nuls.core.rpc.util.BinaryMessageCodec;
 import io.nuls.core.thread.commom.NulsThreadFactory;
 
 import java.util.Map;
@@ -32,8 +35,6 @@ import java.util.concurrent.TimeUnit;
  */
 public class ServerHandler extends SimpleChannelInboundHandler<Object> {
 
-    private ThreadPoolExecutor requestExecutorService = new ThreadPoolExecutor(Constants.THREAD_POOL_SIZE, Constants.THREAD_POOL_SIZE, 0L,TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), new NulsThreadFactory("server-handler-request"));
-
     private ThreadPoolExecutor responseExecutorService = new ThreadPoolExecutor(Constants.THREAD_POOL_SIZE, Constants.THREAD_POOL_SIZE, 0L,TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), new NulsThreadFactory("server-handler-request"));
 
     @Override
@@ -42,12 +43,23 @@ public class ServerHandler extends SimpleChannelInboundHandler<Object> {
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
-        if (msg instanceof TextWebSocketFrame) {
-            TextWebSocketFrame txMsg = (TextWebSocketFrame) msg;
-            ByteBuf content = txMsg.content();
+        if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+            ByteBuf content = ((WebSocketFrame) msg).content();
             byte[] bytes = new byte[content.readableBytes()];
             content.readBytes(bytes);
-            Message message = JSONUtils.byteArray2pojo(bytes, Message.class);
+            /*
+            二进制帧为握手时协商的模块间格式，文本帧为JSON
+            Binary frames carry the inter-module format negotiated in the handshake, text frames carry JSON
+             */
+            Message message;
+            if (msg instanceof BinaryWebSocketFrame) {
+                message = BinaryMessageCodec.decode(bytes);
+                //客户端发送二进制帧说明它收到了握手确认中的声明，之后向其回复二进制帧
+                //a client sending binary frames has seen the advertisement in the handshake response, reply in binary from now on
+                ConnectManager.BINARY_CHANNEL_SET.add(ctx.channel());
+            } else {
+                message = JSONUtils.byteArray2pojo(bytes, Message.class);
+            }
             MessageType messageType = MessageType.valueOf(message.getMessageType());
             int priority = CmdPriority.DEFAULT.getPriority();
             TextMessageHandler messageHandler = new TextMessageHandler((SocketChannel) ctx.channel(), message,priority);
@@ -58,27 +70,30 @@ public class ServerHandler extends SimpleChannelInboundHandler<Object> {
             }else{
                 if(messageType.equals(MessageType.Request)){
                     Request request = JSONUtils.map2pojo((Map) message.getMessageData(), Request.class);
-                    if(request.getRequestMethods().size() == 1){
-                        for (String cmd:request.getRequestMethods().keySet()) {
-                            if(ConnectManager.CMD_PRIORITY_MAP.containsKey(cmd)){
-                                messageHandler.setPriority(ConnectManager.CMD_PRIORITY_MAP.get(cmd));
-                            }
-                        }
-                    }
+                    /*
+                    按请求中优先级最高的cmd放入调度通道，批量调用按其中被调用的cmd
+                    The request is scheduled in the lane of its highest priority cmd, a batch call in the lane of the cmd it invokes
+                     */
+                    messageHandler.setPriority(ConnectManager.requestPriority(request, messageHandler.getPriority()));
                     messageHandler.setRequest(request);
-                    requestExecutorService.execute(messageHandler);
+                    submitRequest(messageHandler);
                 }else if(messageType.equals(MessageType.RequestOnly)){
                     Request request = JSONUtils.map2pojo((Map) message.getMessageData(), Request.class);
                     ConnectData connectData = ConnectManager.CHANNEL_DATA_MAP.get(ctx.channel());
                     int messageSize = bytes.length;
                     if(!connectData.requestOnlyQueueReachLimit()){
-                        connectData.getRequestOnlyQueue().offer(new RequestOnly(request, messageSize));
                         connectData.addRequestOnlyQueueMemSize(messageSize);
+                        if(!connectData.offerRequestOnly(new RequestOnly(request, messageSize))){
+                            connectData.subRequestOnlyQueueMemSize(messageSize);
+                            Log.debug("RequestOnly队列已满，丢弃新接收到的消息，messageId:{},{}", message.getMessageID(), connectData.getRequestOnlyQueue());
+                        }
                     }else{
                         Log.debug("RequestOnly队列缓存已满，丢弃新接收到的消息，messageId:{},队列所占内存：{}", message.getMessageID(),connectData.getRequestOnlyQueueMemSize());
                     }
                 }else{
-                    requestExecutorService.execute(messageHandler);
+                    //握手、取消订阅等控制消息走高优先级通道 / control messages such as handshake and unsubscribe use the high priority lane
+                    messageHandler.setPriority(CmdPriority.HIGH.getPriority());
+                    submitRequest(messageHandler);
                 }
             }
         } else {
@@ -86,6 +101,13 @@ public class ServerHandler extends SimpleChannelInboundHandler<Object> {
         }
     }
 
+    private void submitRequest(TextMessageHandler messageHandler) {
+        if (!ConnectManager.CMD_SCHEDULER.submit(messageHandler)) {
+            Log.warn("Request lane is full, request dropped, messageId:{}", messageHandler.getMessage().getMessageID());
+            messageHandler.reject("Request queue is full");
+        }
+    }
+
     @Override
     public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
     }
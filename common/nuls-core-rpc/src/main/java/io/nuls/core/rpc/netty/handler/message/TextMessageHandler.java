@@ -115,7 +115,8 @@ public class TextMessageHandler implements Runnable, Comparable<TextMessageHandl
                             if(timeOut == 0 ||  currentTime< requestTime + timeOut){
                                 RequestMessageProcessor.callCommandsWithPeriod(channel, request.getRequestMethods(), messageId, false);
                             }else{
-                                Log.debug("请求超时丢弃请求，当前时间：{}，请求时间:{},超时时间:{},请求方法：{}", currentTime,requestTime,timeOut,request.getRequestMethods());
+                                Log.warn("请求超时丢弃请求，当前时间：{}，请求时间:{},超时时间:{},请求方法：{}", currentTime,requestTime,timeOut,request.getRequestMethods());
+                                RequestMessageProcessor.requestRejected(channel, messageId, "Request expired before execution");
                             }
                         }
                     } else {
@@ -130,8 +131,11 @@ public class TextMessageHandler implements Runnable, Comparable<TextMessageHandl
                             break;
                         }
                         if (ConnectManager.isPureDigital(request.getSubscriptionPeriod())) {
-                            connectData.getRequestPeriodLoopQueue().offer(new Object[]{message, request});
-                            connectData.getIdToPeriodMessageMap().put(messageId, message);
+                            if (connectData.getRequestPeriodLoopQueue().offer(new Object[]{message, request})) {
+                                connectData.getIdToPeriodMessageMap().put(messageId, message);
+                            } else {
+                                Log.warn("Subscription queue is full, subscription ignored, messageId:{}", messageId);
+                            }
                         }
                         if (ConnectManager.isPureDigital(request.getSubscriptionEventCounter())) {
                             connectData.subscribeByEvent(message, request);
@@ -149,6 +153,15 @@ public class TextMessageHandler implements Runnable, Comparable<TextMessageHandl
                     }
                     break;
                 case NegotiateConnectionResponse:
+                    /*
+                    服务端声明支持二进制消息，之后本链接发送二进制帧；旧版本服务端不声明，继续使用JSON
+                    The server advertised binary messages, binary frames are sent on this channel from now on.
+                    Older servers advertise nothing and keep getting JSON
+                     */
+                    if (Constants.SERIALIZE_BINARY.equals(((Map<String, String>) message.getMessageData()).get("SerializeType"))) {
+                        ConnectManager.BINARY_CHANNEL_SET.add(channel);
+                    }
+                    //fall through
                 case Ack:
                     ResponseContainer resContainer = RequestContainer.getResponseContainer(((Map<String, String>) message.getMessageData()).get("RequestID"));
                     if (resContainer != null && resContainer.getFuture() != null) {
@@ -162,7 +175,9 @@ public class TextMessageHandler implements Runnable, Comparable<TextMessageHandl
                     Response: Determines whether automatic processing is required
                      */
                     if (ConnectManager.INVOKE_MAP.containsKey(response.getRequestID())) {
-                        connectData.getResponseAutoQueue().offer(response);
+                        if (!connectData.getResponseAutoQueue().offer(response)) {
+                            Log.warn("Response queue is full, response dropped, requestId:{}, {}", response.getRequestID(), connectData.getResponseAutoQueue());
+                        }
                     } else {
                         ResponseContainer responseContainer = RequestContainer.getResponseContainer(response.getRequestID());
                         if (responseContainer != null && responseContainer.getFuture() != null) {
@@ -178,6 +193,50 @@ public class TextMessageHandler implements Runnable, Comparable<TextMessageHandl
         }
     }
 
+    /**
+     * 请求的截止时间，超过后不再执行；订阅请求与未设置超时的请求没有截止时间
+     * Deadline of the request, it is not executed any more after that.
+     * Subscriptions and requests without a timeout have no deadline
+     */
+    public long getDeadline() {
+        if (request == null || request.getTimeOut() == null || request.getTimeOut().isEmpty()
+                || ConnectManager.isPureDigital(request.getSubscriptionEventCounter())
+                || ConnectManager.isPureDigital(request.getSubscriptionPeriod())) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            long timeOut = Long.parseLong(request.getTimeOut());
+            return timeOut == 0 ? Long.MAX_VALUE : Long.parseLong(message.getTimestamp()) + timeOut;
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 请求未被执行时向请求方返回失败，只有Request类型需要响应
+     * Answer the caller with a failure when the request is not executed, only Request messages expect a response
+     *
+     * @param reason 未执行原因 / why the request was not executed
+     */
+    public void reject(String reason) {
+        if (channel == null || !MessageType.Request.name().equals(message.getMessageType())) {
+            return;
+        }
+        try {
+            RequestMessageProcessor.requestRejected(channel, message.getMessageID(), reason);
+        } catch (Exception e) {
+            Log.error(e);
+        }
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
     public int getPriority() {
         return priority;
     }
@@ -0,0 +1,503 @@
+package io.nuls.core.rpc.netty.processor;
+
+import io.nuls.core.log.Log;
+import io.nuls.core.rpc.model.CmdPriority;
+import io.nuls.core.rpc.netty.handler.message.TextMessageHandler;
+import io.nuls.core.thread.commom.NulsThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 模块内所有链接共享的请求调度器
+ * 线程数按链接数增长，每个链接对应workersPerConnection个线程，与每个链接独立线程池时的总处理能力相同；
+ * 每个优先级一条先进先出的通道，工作线程按权重轮询各通道取任务，
+ * 每条通道同时占用的线程数有上限，保证高优先级请求(如区块验证)总有线程可用；
+ * 通道内按链接轮流取任务，单个链接同时占用的线程数也有上限；
+ * 请求处理中同步等待其他模块的返回时(嵌套调用)，让出所占的通道和线程名额并补充一个线程，嵌套调用不会占满通道；
+ * 取出时已超过截止时间的请求直接丢弃，并向请求方返回失败
+ * <p>
+ * Request scheduler shared by all connections of the module.
+ * The number of threads grows with the connections, workersPerConnection threads per connection,
+ * the same capacity as a thread pool per connection.
+ * Every priority has its own FIFO lane and the workers take tasks from the lanes by weighted round robin.
+ * The threads a lane may occupy at the same time are limited, so high priority requests (e.g. block verification)
+ * always find a free thread. Within a lane the connections take turns and the threads one connection may occupy
+ * are limited too.
+ * A request waiting synchronously for another module (a nested call) gives its lane and thread share back
+ * and a compensating thread is started, so nested calls cannot exhaust a lane.
+ * Requests past their deadline when taken are dropped and answered with a failure
+ */
+public class CmdScheduler {
+
+    private static final Object NO_CHANNEL = new Object();
+
+    /**
+     * 同步等待时补充线程后，线程总数不超过目标线程数的倍数
+     * With the compensating threads of synchronous waits the threads never exceed this multiple of the target
+     */
+    private static final int MAX_WORKER_FACTOR = 4;
+
+    /**
+     * 当前线程正在执行的请求 / the request executed by the current thread
+     */
+    private static final ThreadLocal<Running> CURRENT = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private final Lane[] lanes;
+
+    private final int workersPerConnection;
+
+    private final NulsThreadFactory factory;
+
+    /**
+     * 已建立的链接数 / number of established connections
+     */
+    private int connections;
+
+    /**
+     * 存活的线程数及其中同步等待的线程数 / live threads and those of them waiting synchronously
+     */
+    private int liveWorkers;
+
+    private int blockedWorkers;
+
+    /**
+     * 各链接正在执行的请求数
+     */
+    private final Map<Object, Integer> connectionRunning = new HashMap<>();
+
+    private volatile boolean running = true;
+
+    /**
+     * @param workersPerConnection 每个链接对应的线程数，没有链接时按一个链接计 / threads per connection, counted as one connection when there is none
+     * @param laneCapacity         每条通道最多等待的请求数 / requests that may wait in a lane
+     */
+    public CmdScheduler(int workersPerConnection, int laneCapacity, String name) {
+        this.workersPerConnection = workersPerConnection;
+        CmdPriority[] priorities = CmdPriority.values();
+        this.lanes = new Lane[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            lanes[i] = new Lane(priorities[i], laneCapacity);
+        }
+        this.factory = new NulsThreadFactory(name);
+        lock.lock();
+        try {
+            ensureWorkers();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 链接建立，增加对应的线程 / a connection is established, its threads are added
+     */
+    public void connectionOpened() {
+        lock.lock();
+        try {
+            connections++;
+            ensureWorkers();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 链接断开，多出的线程空闲时退出 / a connection is closed, the surplus threads exit once idle
+     */
+    public void connectionClosed() {
+        lock.lock();
+        try {
+            connections = Math.max(0, connections - 1);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前线程将同步等待其他模块的返回，让出所占的通道和链接名额并补充一个线程；不在调度线程中时不做处理
+     * The current thread is about to wait synchronously for another module, its lane and connection shares are given back
+     * and a compensating thread is started. Nothing happens outside the scheduler threads
+     */
+    public static void beginBlocking() {
+        Running current = CURRENT.get();
+        if (current != null && !current.blocked) {
+            current.scheduler.setBlocked(current, true);
+        }
+    }
+
+    /**
+     * 同步等待结束，重新占用通道和链接名额 / the synchronous wait is over, the lane and connection shares are taken again
+     */
+    public static void endBlocking() {
+        Running current = CURRENT.get();
+        if (current != null && current.blocked) {
+            current.scheduler.setBlocked(current, false);
+        }
+    }
+
+    private void setBlocked(Running current, boolean blocked) {
+        lock.lock();
+        try {
+            current.blocked = blocked;
+            if (blocked) {
+                release(current);
+                blockedWorkers++;
+                ensureWorkers();
+                available.signal();
+            } else {
+                current.lane.running++;
+                connectionRunning.merge(current.connection, 1, Integer::sum);
+                blockedWorkers--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Running current) {
+        current.lane.running--;
+        connectionRunning.computeIfPresent(current.connection, (channel, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * 目标线程数 / target number of threads
+     */
+    private int targetWorkers() {
+        return workersPerConnection * Math.max(1, connections);
+    }
+
+    /**
+     * 补足未在同步等待的线程，调用时必须持有锁
+     * Start threads until enough of them are not waiting synchronously, the lock must be held by the caller
+     */
+    private void ensureWorkers() {
+        int target = targetWorkers();
+        while (liveWorkers - blockedWorkers < target && liveWorkers < target * MAX_WORKER_FACTOR) {
+            Thread worker = factory.newThread(this::work);
+            worker.setDaemon(true);
+            liveWorkers++;
+            worker.start();
+        }
+    }
+
+    /**
+     * 按消息的优先级放入对应通道，通道已满时丢弃并返回false
+     * Put the message into the lane of its priority, it is dropped with false when the lane is full
+     */
+    public boolean submit(TextMessageHandler handler) {
+        Lane lane = getLane(CmdPriority.fromPriority(handler.getPriority()));
+        lock.lock();
+        try {
+            if (lane.size >= lane.capacity) {
+                lane.rejectedCount++;
+                return false;
+            }
+            lane.offer(handler);
+            available.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        lock.lock();
+        try {
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Running current;
+            lock.lock();
+            try {
+                if (!running) {
+                    liveWorkers--;
+                    return;
+                }
+                Lane lane;
+                while ((lane = selectLane()) == null) {
+                    //多出的线程退出 / surplus threads exit
+                    if (!running || liveWorkers - blockedWorkers > targetWorkers()) {
+                        liveWorkers--;
+                        return;
+                    }
+                    available.await();
+                }
+                TextMessageHandler handler = lane.poll(this);
+                current = new Running(this, lane, connectionOf(handler), handler);
+                lane.running++;
+                connectionRunning.merge(current.connection, 1, Integer::sum);
+            } catch (InterruptedException e) {
+                liveWorkers--;
+                return;
+            } finally {
+                lock.unlock();
+            }
+            TextMessageHandler handler = current.handler;
+            boolean expired = System.currentTimeMillis() > handler.getDeadline();
+            CURRENT.set(current);
+            try {
+                if (expired) {
+                    Log.warn("Request expired before execution, dropped, messageId:{}", handler.getMessage().getMessageID());
+                    handler.reject("Request expired before execution");
+                } else {
+                    handler.run();
+                }
+            } catch (Exception e) {
+                Log.error(e);
+            } finally {
+                CURRENT.remove();
+                lock.lock();
+                try {
+                    if (current.blocked) {
+                        blockedWorkers--;
+                    } else {
+                        release(current);
+                    }
+                    if (expired) {
+                        current.lane.expiredCount++;
+                    } else {
+                        current.lane.executedCount++;
+                    }
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 平滑加权轮询：在有任务且未达到并发上限的通道中选择一条，调用时必须持有锁
+     * Smooth weighted round robin among the lanes that have tasks and are below their concurrency limit,
+     * the lock must be held by the caller
+     */
+    private Lane selectLane() {
+        Lane selected = null;
+        int totalWeight = 0;
+        for (Lane lane : lanes) {
+            if (lane.running >= laneMaxRunning(lane.priority) || !lane.hasRunnable(this)) {
+                continue;
+            }
+            lane.currentWeight += lane.priority.getWeight();
+            totalWeight += lane.priority.getWeight();
+            if (selected == null || lane.currentWeight > selected.currentWeight) {
+                selected = lane;
+            }
+        }
+        if (selected != null) {
+            selected.currentWeight -= totalWeight;
+        }
+        return selected;
+    }
+
+    /**
+     * 请求所属链接，没有链接的请求(如本地提交)共用一个键
+     * Connection of the request, requests without a channel (e.g. local submissions) share one key
+     */
+    private static Object connectionOf(TextMessageHandler handler) {
+        return handler.getChannel() == null ? NO_CHANNEL : handler.getChannel();
+    }
+
+    private int laneMaxRunning(CmdPriority priority) {
+        return Math.max(1, targetWorkers() * priority.getConcurrencyPercent() / 100);
+    }
+
+    /**
+     * 单个链接同时占用的线程数上限：不超过每个链接对应的线程数，且至少为其他链接保留约四分之一的线程
+     * Threads one connection may occupy: at most the threads of one connection, leaving about a quarter to the others
+     */
+    private int connectionMaxRunning() {
+        int target = targetWorkers();
+        return Math.max(1, Math.min(workersPerConnection, target - Math.max(1, target / 4)));
+    }
+
+    /**
+     * 链接是否还能占用新的线程，调用时必须持有锁
+     * Whether the connection may occupy another thread, the lock must be held by the caller
+     */
+    private boolean belowConnectionLimit(Object channel) {
+        Integer count = connectionRunning.get(channel);
+        return count == null || count < connectionMaxRunning();
+    }
+
+    private Lane getLane(CmdPriority priority) {
+        for (Lane lane : lanes) {
+            if (lane.priority == priority) {
+                return lane;
+            }
+        }
+        throw new IllegalArgumentException("Unknown priority " + priority);
+    }
+
+    public int getWorkerCount() {
+        lock.lock();
+        try {
+            return targetWorkers();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 通道中等待执行的请求数
+     * Number of requests waiting in the lane
+     */
+    public int getPending(CmdPriority priority) {
+        Lane lane = getLane(priority);
+        lock.lock();
+        try {
+            return lane.size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxRunning(CmdPriority priority) {
+        lock.lock();
+        try {
+            return laneMaxRunning(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getConnectionMaxRunning() {
+        lock.lock();
+        try {
+            return connectionMaxRunning();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getExecutedCount(CmdPriority priority) {
+        Lane lane = getLane(priority);
+        lock.lock();
+        try {
+            return lane.executedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getExpiredCount(CmdPriority priority) {
+        Lane lane = getLane(priority);
+        lock.lock();
+        try {
+            return lane.expiredCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount(CmdPriority priority) {
+        Lane lane = getLane(priority);
+        lock.lock();
+        try {
+            return lane.rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 一个优先级的通道，每个链接一条先进先出队列，有任务的链接按轮流顺序排列
+     * Lane of one priority, a FIFO queue per connection, the connections with tasks are kept in turn order
+     */
+    private static class Lane {
+        private final CmdPriority priority;
+        private final Map<Object, ArrayDeque<TextMessageHandler>> queues = new HashMap<>();
+        private final ArrayDeque<Object> turns = new ArrayDeque<>();
+        private int size;
+        private final int capacity;
+        private int running;
+        private int currentWeight;
+        private long executedCount;
+        private long expiredCount;
+        private long rejectedCount;
+
+        private Lane(CmdPriority priority, int capacity) {
+            this.priority = priority;
+            this.capacity = capacity;
+        }
+
+        private void offer(TextMessageHandler handler) {
+            Object connection = connectionOf(handler);
+            ArrayDeque<TextMessageHandler> queue = queues.get(connection);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(connection, queue);
+                turns.offer(connection);
+            }
+            queue.offer(handler);
+            size++;
+        }
+
+        private boolean hasRunnable(CmdScheduler scheduler) {
+            for (Object channel : turns) {
+                if (scheduler.belowConnectionLimit(channel)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 取出轮到的、未达到线程上限的链接的第一个请求，该链接排到队尾
+         * Take the first request of the next connection below its thread limit, that connection moves to the end
+         */
+        private TextMessageHandler poll(CmdScheduler scheduler) {
+            Iterator<Object> iterator = turns.iterator();
+            while (iterator.hasNext()) {
+                Object channel = iterator.next();
+                if (!scheduler.belowConnectionLimit(channel)) {
+                    continue;
+                }
+                iterator.remove();
+                ArrayDeque<TextMessageHandler> queue = queues.get(channel);
+                TextMessageHandler handler = queue.poll();
+                if (queue.isEmpty()) {
+                    queues.remove(channel);
+                } else {
+                    turns.offer(channel);
+                }
+                size--;
+                return handler;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 线程正在执行的请求及其占用的通道和链接 / request executed by a thread with the lane and connection it occupies
+     */
+    private static class Running {
+        private final CmdScheduler scheduler;
+        private final Lane lane;
+        private final Object connection;
+        private final TextMessageHandler handler;
+        private boolean blocked;
+
+        private Running(CmdScheduler scheduler, Lane lane, Object connection, TextMessageHandler handler) {
+            this.scheduler = scheduler;
+            this.lane = lane;
+            this.connection = connection;
+            this.handler = handler;
+        }
+    }
+}
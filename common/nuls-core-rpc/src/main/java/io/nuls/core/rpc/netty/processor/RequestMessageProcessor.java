@@ -14,10 +14,11 @@ import io.nuls.core.rpc.model.message.*;
 import io.nuls.core.rpc.netty.channel.ConnectData;
 import io.nuls.core.rpc.netty.channel.manager.ConnectManager;
 import io.nuls.core.rpc.util.NulsDateUtils;
-import io.nuls.core.rpc.util.SerializeUtil;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,17 +45,26 @@ public class RequestMessageProcessor {
      * @throws JsonProcessingException JSON解析错误 / JSON parsing error
      */
     public static void negotiateConnectionResponse(Channel channel, Message message) throws JsonProcessingException {
+        NegotiateConnection negotiateConnection = JSONUtils.map2pojo((Map) message.getMessageData(), NegotiateConnection.class);
+
         NegotiateConnectionResponse negotiateConnectionResponse = new NegotiateConnectionResponse();
         negotiateConnectionResponse.setRequestID(message.getMessageID());
         negotiateConnectionResponse.setNegotiationStatus("1");
         negotiateConnectionResponse.setNegotiationComment("Connection true!");
+        /*
+        握手请求不携带序列化方式(旧版本服务端解析未知字段会失败)，由服务端在确认中声明支持二进制；
+        客户端据此发送二进制帧，服务端收到该链接的二进制帧后才向其发送二进制帧
+        The handshake request carries no serialization (older servers reject unknown fields), the server
+        advertises binary support in its response instead. The client then sends binary frames, and the
+        server answers with binary frames only after it received one on that channel
+         */
+        negotiateConnectionResponse.setSerializeType(Constants.SERIALIZE_BINARY);
 
         Message rspMsg = MessageUtil.basicMessage(MessageType.NegotiateConnectionResponse);
         rspMsg.setMessageData(negotiateConnectionResponse);
-        ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(rspMsg)));
+        ConnectManager.sendMessage(channel, rspMsg);
 
         //握手成功之后保存channel与角色的对应信息
-        NegotiateConnection negotiateConnection = JSONUtils.map2pojo((Map) message.getMessageData(), NegotiateConnection.class);
         ConnectManager.cacheConnect(negotiateConnection.getAbbreviation(), channel, false);
     }
 
@@ -72,7 +82,7 @@ public class RequestMessageProcessor {
         ack.setRequestId(messageId);
         Message rspMsg = MessageUtil.basicMessage(MessageType.Ack);
         rspMsg.setMessageData(ack);
-        ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(rspMsg)));
+        ConnectManager.sendMessage(channel, rspMsg);
     }
 
     /**
@@ -86,7 +96,22 @@ public class RequestMessageProcessor {
         Response response = MessageUtil.newFailResponse(messageId, "Service not started!");
         Message rspMsg = MessageUtil.basicMessage(MessageType.Response);
         rspMsg.setMessageData(response);
-        ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(rspMsg)));
+        ConnectManager.sendMessage(channel, rspMsg);
+    }
+
+    /**
+     * 请求未被执行(队列已满或已超时)，返回失败，请求方不必等到超时
+     * The request was not executed (lane full or expired), a failure is returned so the caller does not wait for its timeout
+     *
+     * @param channel   链接通道
+     * @param messageId 请求ID
+     * @param reason    未执行原因
+     */
+    public static void requestRejected(Channel channel, String messageId, String reason) throws JsonProcessingException {
+        Response response = MessageUtil.newFailResponse(messageId, reason);
+        Message rspMsg = MessageUtil.basicMessage(MessageType.Response);
+        rspMsg.setMessageData(response);
+        ConnectManager.sendMessage(channel, rspMsg);
     }
 
     /**
@@ -164,6 +189,15 @@ public class RequestMessageProcessor {
             String method = entry.getKey();
             Map params = entry.getValue();
 
+            /*
+            批量调用，所有调用的结果在一条消息中返回
+            Batch call, the results of all calls are returned in one message
+             */
+            if (Constants.BATCH_CALL_CMD.equals(method)) {
+                ConnectManager.sendMessage(channel, batchExecute(params, messageId, isSubscribe));
+                continue;
+            }
+
             /*
             构造返回的消息对象
             Construct the returned message object
@@ -174,9 +208,7 @@ public class RequestMessageProcessor {
                 从本地注册的cmd中得到对应的方法
                 Get the corresponding method from the locally registered CMD
                 */
-                CmdDetail cmdDetail = params == null || params.get(Constants.VERSION_KEY_STR) == null
-                        ? ConnectManager.getLocalInvokeCmd(method)
-                        : ConnectManager.getLocalInvokeCmd(method, Double.parseDouble(params.get(Constants.VERSION_KEY_STR).toString()));
+                CmdDetail cmdDetail = findCmd(method, params);
 
                 /*
                 找不到本地方法，则返回"CMD_NOT_FOUND"错误
@@ -187,7 +219,7 @@ public class RequestMessageProcessor {
                     response.setResponseErrorCode(CommonCodeConstanst.CMD_NOTFOUND.getCode());
                     Message rspMessage = MessageUtil.basicMessage(MessageType.Response);
                     rspMessage.setMessageData(response);
-                    ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(rspMessage)));
+                    ConnectManager.sendMessage(channel, rspMessage);
                     return;
                 }
 
@@ -201,12 +233,12 @@ public class RequestMessageProcessor {
                     response.setResponseErrorCode(CommonCodeConstanst.PARAMETER_ERROR.getCode());
                     Message rspMessage = MessageUtil.basicMessage(MessageType.Response);
                     rspMessage.setMessageData(response);
-                    ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(rspMessage)));
+                    ConnectManager.sendMessage(channel, rspMessage);
                     return;
                 }
 
                 Message rspMessage = execute(cmdDetail, params, messageId);
-                ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(rspMessage)));
+                ConnectManager.sendMessage(channel, rspMessage);
 
                 /*
                 执行成功之后判断该接口是否被订阅过，如果被订阅则改变该接口触发次数
@@ -221,7 +253,7 @@ public class RequestMessageProcessor {
                 response.setResponseErrorCode(CommonCodeConstanst.SYS_UNKOWN_EXCEPTION.getCode());
                 Message rspMessage = MessageUtil.basicMessage(MessageType.Response);
                 rspMessage.setMessageData(response);
-                ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(rspMessage)));
+                ConnectManager.sendMessage(channel, rspMessage);
             }
         }
     }
@@ -244,9 +276,7 @@ public class RequestMessageProcessor {
                 从本地注册的cmd中得到对应的方法
                 Get the corresponding method from the locally registered CMD
                 */
-                CmdDetail cmdDetail = params == null || params.get(Constants.VERSION_KEY_STR) == null
-                        ? ConnectManager.getLocalInvokeCmd(method)
-                        : ConnectManager.getLocalInvokeCmd(method, Double.parseDouble(params.get(Constants.VERSION_KEY_STR).toString()));
+                CmdDetail cmdDetail = findCmd(method, params);
 
                 /*
                 找不到本地方法，则返回"CMD_NOT_FOUND"错误
@@ -266,7 +296,7 @@ public class RequestMessageProcessor {
                     Log.info("Parameter validation error!");
                     return;
                 }
-                invoke(cmdDetail.getInvokeClass(), cmdDetail.getInvokeMethod(), params);
+                invoke(cmdDetail, params);
             } catch (Exception e) {
                 Log.error(e);
             }
@@ -285,7 +315,7 @@ public class RequestMessageProcessor {
      */
     private static Message execute(CmdDetail cmdDetail, Map params, String messageId) throws Exception {
         long startTimemillis = NulsDateUtils.getCurrentTimeMillis();
-        Response response = invoke(cmdDetail.getInvokeClass(), cmdDetail.getInvokeMethod(), params);
+        Response response = invoke(cmdDetail, params);
         response.setRequestID(messageId);
         Map<String, Object> responseData = new HashMap<>(1);
         responseData.put(cmdDetail.getMethodName(), response.getResponseData());
@@ -297,6 +327,112 @@ public class RequestMessageProcessor {
     }
 
 
+    /**
+     * 按顺序执行批量调用中的每一次调用，把各自的Response放入同一条消息返回
+     * 单次调用失败不影响其他调用，失败信息放在该次调用的Response中
+     * Execute each call of a batch call in order and return their Responses in one message.
+     * A failed call does not affect the others, its failure is reported in its own Response.
+     * Every call goes through the same subscription event bookkeeping as a single request
+     *
+     * @param params      批量调用参数 / Batch call parameters
+     * @param messageId   原始消息ID / The origin message ID
+     * @param isSubscribe is subscribe message
+     * @return Message
+     */
+    @SuppressWarnings("unchecked")
+    private static Message batchExecute(Map params, String messageId, boolean isSubscribe) {
+        Response response;
+        Object cmdObj = params == null ? null : params.get(Constants.BATCH_CMD_KEY);
+        Object paramsListObj = params == null ? null : params.get(Constants.BATCH_PARAMS_KEY);
+        if (!(cmdObj instanceof String) || !(paramsListObj instanceof List)) {
+            response = MessageUtil.newFailResponse(messageId, CommonCodeConstanst.PARAMETER_ERROR);
+        } else {
+            String method = (String) cmdObj;
+            List<Map> paramsList = (List<Map>) paramsListObj;
+            boolean stopOnFailure = Boolean.TRUE.equals(params.get(Constants.BATCH_STOP_ON_FAILURE_KEY));
+            long startTimemillis = NulsDateUtils.getCurrentTimeMillis();
+            List<Response> responseList = new ArrayList<>(paramsList.size());
+            for (Map callParams : paramsList) {
+                Response callResponse = executeCall(method, callParams, messageId, isSubscribe);
+                responseList.add(callResponse);
+                if (stopOnFailure && isFailedCall(method, callResponse)) {
+                    break;
+                }
+            }
+            /*
+            停止后未执行的调用返回失败
+            The calls not executed after the stop get a failure
+             */
+            while (responseList.size() < paramsList.size()) {
+                Response skipped = MessageUtil.newFailResponse(messageId, "Not executed, an earlier call of the batch failed");
+                skipped.setResponseErrorCode(CommonCodeConstanst.FAILED.getCode());
+                responseList.add(skipped);
+            }
+            response = MessageUtil.newSuccessResponse(messageId);
+            Map<String, Object> responseData = new HashMap<>(1);
+            responseData.put(Constants.BATCH_CALL_CMD, responseList);
+            response.setResponseData(responseData);
+            response.setResponseProcessingTime((NulsDateUtils.getCurrentTimeMillis() - startTimemillis) + "");
+        }
+        Message rspMessage = MessageUtil.basicMessage(MessageType.Response);
+        rspMessage.setMessageData(response);
+        return rspMessage;
+    }
+
+    /**
+     * 批量调用中的一次调用是否失败：返回失败或返回数据中value为false
+     * Whether one call of a batch failed: its Response failed or its data carries value=false
+     */
+    private static boolean isFailedCall(String method, Response response) {
+        if (!response.isSuccess()) {
+            return true;
+        }
+        Object data = response.getResponseData() instanceof Map ? ((Map) response.getResponseData()).get(method) : null;
+        return data instanceof Map && Boolean.FALSE.equals(((Map) data).get("value"));
+    }
+
+    /**
+     * 执行批量调用中的一次调用
+     * Execute one call of a batch call
+     */
+    private static Response executeCall(String method, Map params, String messageId, boolean isSubscribe) {
+        try {
+            CmdDetail cmdDetail = findCmd(method, params);
+            if (cmdDetail == null) {
+                Response response = MessageUtil.newFailResponse(messageId, Constants.CMD_NOT_FOUND + ":" + method);
+                response.setResponseErrorCode(CommonCodeConstanst.CMD_NOTFOUND.getCode());
+                return response;
+            }
+            String validationString = paramsValidation(cmdDetail, params);
+            if (validationString != null) {
+                Response response = MessageUtil.newFailResponse(messageId, validationString);
+                response.setResponseErrorCode(CommonCodeConstanst.PARAMETER_ERROR.getCode());
+                return response;
+            }
+            Response response = (Response) execute(cmdDetail, params, messageId).getMessageData();
+            //与单次请求相同，订阅过的接口改变触发次数 / like a single request, a subscribed cmd counts the event
+            if (ConnectManager.SUBSCRIBE_COUNT.containsKey(method) && isSubscribe) {
+                ConnectManager.eventTrigger(method, response);
+            }
+            return response;
+        } catch (Exception e) {
+            Log.error(e);
+            Response response = MessageUtil.newFailResponse(messageId, "Server-side processing failed!");
+            response.setResponseErrorCode(CommonCodeConstanst.SYS_UNKOWN_EXCEPTION.getCode());
+            return response;
+        }
+    }
+
+    /**
+     * 从本地注册的cmd中得到对应的方法，参数中带版本号时按版本号查找
+     * Get the corresponding method from the locally registered cmds, by version if the parameters carry one
+     */
+    private static CmdDetail findCmd(String method, Map params) {
+        return params == null || params.get(Constants.VERSION_KEY_STR) == null
+                ? ConnectManager.getLocalInvokeCmd(method)
+                : ConnectManager.getLocalInvokeCmd(method, Double.parseDouble(params.get(Constants.VERSION_KEY_STR).toString()));
+    }
+
     /**
      * 处理Request，如果达到EventCount的发送条件，则发送
      * Processing Request, if EventCount's sending condition is met, then send
@@ -309,7 +445,7 @@ public class RequestMessageProcessor {
         rspMessage.setMessageData(realResponse);
         try {
             Log.debug("responseWithEventCount: " + JSONUtils.obj2json(rspMessage));
-            ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(rspMessage)));
+            ConnectManager.sendMessage(channel, rspMessage);
         } catch (JsonProcessingException e) {
             Log.error(e);
         }
@@ -497,31 +633,49 @@ public class RequestMessageProcessor {
      * Call local cmd.
      * 1. If the interface is injected via @Autowired, the injected object is used
      * 2. If the interface has no special annotations, construct a new object by reflection
+     * 使用注册时编译好的调用句柄，无法编译的方法走反射
+     * The invocation handle compiled at registration is used, methods that could not be compiled fall back to reflection
      *
-     * @param invokeClass  Class
-     * @param invokeMethod Method
-     * @param params       Parameters of remote method
+     * @param cmdDetail CmdDetail
+     * @param params    Parameters of remote method
      * @return Response
      * @throws Exception Any exceptions
      */
-    @SuppressWarnings("unchecked")
-    private static Response invoke(String invokeClass, String invokeMethod, Map params) throws Exception {
-        Class<?> clz = classMap.get(invokeClass);
-        if (clz == null) {
-            clz = Class.forName(invokeClass);
-            classMap.put(invokeClass, clz);
-        }
-        Method method = clz.getDeclaredMethod(invokeMethod, Map.class);
-        BaseCmd cmd = (BaseCmd) handlerMap.get(invokeClass);
+    private static Response invoke(CmdDetail cmdDetail, Map params) throws Exception {
+        BaseCmd cmd = (BaseCmd) handlerMap.get(cmdDetail.getInvokeClass());
         if (cmd == null) {
             return MessageUtil.newFailResponse("", CMD_NOT_FOUND);
         }
         long start = System.currentTimeMillis();
-        Response response = (Response) method.invoke(cmd, params);
+        Response response;
+        MethodHandle invoker = cmdDetail.getInvoker();
+        if (invoker != null) {
+            try {
+                //invokeExact要求调用点类型与句柄类型(Object, Map)Object完全一致
+                Object result = invoker.invokeExact((Object) cmd, params);
+                response = (Response) result;
+            } catch (Exception e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Exception(e);
+            }
+        } else {
+            response = reflectInvoke(cmdDetail.getInvokeClass(), cmdDetail.getInvokeMethod(), cmd, params);
+        }
         long use = System.currentTimeMillis() - start;
         if (use > 1000) {
-            Log.warn(invokeMethod + " , use:{}ms", use);
+            Log.warn(cmdDetail.getInvokeMethod() + " , use:{}ms", use);
         }
         return response;
     }
+
+    private static Response reflectInvoke(String invokeClass, String invokeMethod, BaseCmd cmd, Map params) throws Exception {
+        Class<?> clz = classMap.get(invokeClass);
+        if (clz == null) {
+            clz = Class.forName(invokeClass);
+            classMap.put(invokeClass, clz);
+        }
+        Method method = clz.getDeclaredMethod(invokeMethod, Map.class);
+        return (Response) method.invoke(cmd, params);
+    }
 }
@@ -14,11 +14,15 @@ import io.nuls.core.rpc.invoke.KernelInvoke;
 import io.nuls.core.rpc.model.ModuleE;
 import io.nuls.core.rpc.model.message.*;
 import io.nuls.core.rpc.netty.channel.manager.ConnectManager;
+import io.nuls.core.rpc.netty.processor.container.BatchRequestContainer;
 import io.nuls.core.rpc.netty.processor.container.RequestContainer;
 import io.nuls.core.rpc.netty.processor.container.ResponseContainer;
-import io.nuls.core.rpc.util.SerializeUtil;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 
@@ -55,7 +59,7 @@ public class ResponseMessageProcessor {
 
         ResponseContainer responseContainer = RequestContainer.putRequest(message.getMessageID());
 
-        ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message)));
+        ConnectManager.sendMessage(channel, message);
 
         try {
             return responseContainer.getFuture().get(Constants.TIMEOUT_TIMEMILLIS, TimeUnit.MILLISECONDS) != null;
@@ -85,7 +89,7 @@ public class ResponseMessageProcessor {
 
         ResponseContainer responseContainer = RequestContainer.putRequest(message.getMessageID());
 
-        ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message)));
+        ConnectManager.sendMessage(channel, message);
 
         try {
             return responseContainer.getFuture().get(Constants.TIMEOUT_TIMEMILLIS, TimeUnit.MILLISECONDS) != null;
@@ -138,7 +142,7 @@ public class ResponseMessageProcessor {
         发送请求
         Send request
         */
-        ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message)));
+        ConnectManager.sendMessage(channel, message);
 
         /*
         获取返回的数据，放入本地变量
@@ -152,7 +156,7 @@ public class ResponseMessageProcessor {
         while (!response.isSuccess() && tryCount < Constants.TRY_COUNT) {
             Log.info("向核心注册消息发送失败第{}次",tryCount + 1);
             responseContainer = RequestContainer.putRequest(message.getMessageID());
-            ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message)));
+            ConnectManager.sendMessage(channel, message);
             response = receiveResponse(responseContainer, REGISTER_API_TIME_OUT);
             tryCount++;
         }
@@ -284,10 +288,127 @@ public class ResponseMessageProcessor {
             Log.info("当前请求堆积过多,等待请求处理");
             return "0";
         }
-        ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message)));
+        ConnectManager.sendMessage(channel, message);
         return message.getMessageID();
     }
 
+    /**
+     * 批量调用同一个cmd：所有调用在一条消息中发送，远程模块按顺序执行，结果在一条消息中返回
+     * Call one cmd several times: all calls are sent in one message, executed in order by the remote module
+     * and their results come back in one message
+     *
+     * @param role       远程方法所属的角色，The role of remote method
+     * @param cmd        远程方法的命令，Command of the remote method
+     * @param paramsList 每次调用的参数，Parameters of each call
+     * @param timeOut    整个批次的超时时间, timeout millis of the whole batch
+     * @return 与paramsList一一对应的结果，Responses in the same order as paramsList
+     * @throws Exception 连接失败 / connection failure
+     */
+    public static List<Response> batchRequestAndResponse(String role, String cmd, List<Map> paramsList, long timeOut) throws Exception {
+        return batchRequestAndResponse(role, cmd, paramsList, timeOut, false);
+    }
+
+    /**
+     * 批量调用同一个cmd，stopOnFailure为true时远程模块遇到第一次失败的调用即停止，之后的调用返回失败且不会执行
+     * Call one cmd several times, with stopOnFailure the remote module stops at the first failed call,
+     * the later calls are not executed and get a failure
+     *
+     * @see Constants#BATCH_STOP_ON_FAILURE_KEY
+     */
+    public static List<Response> batchRequestAndResponse(String role, String cmd, List<Map> paramsList, long timeOut, boolean stopOnFailure) throws Exception {
+        CompletableFuture<List<Response>> future = sendBatchRequest(role, cmd, paramsList, timeOut, stopOnFailure);
+        CmdScheduler.beginBlocking();
+        try {
+            return future.get();
+        } finally {
+            CmdScheduler.endBlocking();
+        }
+    }
+
+    /**
+     * 合并发送Request：同一角色、同一cmd的请求在很短的窗口内收集起来，作为一次批量调用发送
+     * 不同批次之间不保证执行顺序，对顺序有要求的调用请使用batchRequestAndResponse
+     * Coalesce the Request: requests for the same role and cmd are collected within a short window and sent as one batch call.
+     * Different batches may execute in any order, calls that depend on ordering should use batchRequestAndResponse
+     *
+     * @param role    远程方法所属的角色，The role of remote method
+     * @param cmd     远程方法的命令，Command of the remote method
+     * @param params  远程方法所需的参数，Parameters of the remote method
+     * @param timeOut 超时时间, timeout millis
+     * @return 完成时得到该次调用的结果，批次发送或解析失败时异常完成
+     * Completed with the Response of this call, completed exceptionally when the batch could not be sent or split
+     */
+    public static CompletableFuture<Response> coalesceRequest(String role, String cmd, Map params, long timeOut) {
+        return BatchRequestContainer.addRequest(role, cmd, params, timeOut);
+    }
+
+    /**
+     * 合并发送Request并等待该次调用的结果
+     * Coalesce the Request and wait for the Response of this call
+     *
+     * @see #coalesceRequest(String, String, Map, long)
+     */
+    public static Response coalesceRequestAndResponse(String role, String cmd, Map params, long timeOut) throws Exception {
+        CompletableFuture<Response> future = coalesceRequest(role, cmd, params, timeOut);
+        CmdScheduler.beginBlocking();
+        try {
+            return future.get();
+        } finally {
+            CmdScheduler.endBlocking();
+        }
+    }
+
+    /**
+     * 发送批量调用，返回的结果总是与paramsList一一对应，超时或失败时每次调用都得到失败的Response
+     * Send a batch call. The result always matches paramsList one to one, on timeout or failure every call gets a failed Response
+     */
+    public static CompletableFuture<List<Response>> sendBatchRequest(String role, String cmd, List<Map> paramsList, long timeOut) throws Exception {
+        return sendBatchRequest(role, cmd, paramsList, timeOut, false);
+    }
+
+    private static CompletableFuture<List<Response>> sendBatchRequest(String role, String cmd, List<Map> paramsList, long timeOut, boolean stopOnFailure) throws Exception {
+        Map<String, Object> params = new HashMap<>(4);
+        params.put(Constants.BATCH_CMD_KEY, cmd);
+        params.put(Constants.BATCH_PARAMS_KEY, paramsList);
+        if (stopOnFailure) {
+            params.put(Constants.BATCH_STOP_ON_FAILURE_KEY, true);
+        }
+        Request request = MessageUtil.newRequest(Constants.BATCH_CALL_CMD, params, Constants.BOOLEAN_FALSE, Constants.ZERO, Constants.ZERO);
+        request.setTimeOut(String.valueOf(timeOut));
+        ResponseContainer responseContainer = sendRequest(role, request);
+        return responseContainer.getFuture().orTimeout(timeOut, TimeUnit.MILLISECONDS).handle((response, e) -> {
+            RequestContainer.removeResponseContainer(responseContainer.getMessageId());
+            if (e != null) {
+                response = MessageUtil.newFailResponse(responseContainer.getMessageId(), CommonCodeConstanst.REQUEST_TIME_OUT);
+            }
+            return splitBatchResponse(response, paramsList.size());
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Response> splitBatchResponse(Response response, int size) {
+        List<Response> responseList = new ArrayList<>(size);
+        if (response.isSuccess() && response.getResponseData() instanceof Map) {
+            Object data = ((Map) response.getResponseData()).get(Constants.BATCH_CALL_CMD);
+            if (data instanceof List) {
+                for (Object item : (List) data) {
+                    responseList.add(JSONUtils.map2pojo((Map) item, Response.class));
+                }
+            }
+        }
+        /*
+        批量调用整体失败(如超时、对方不支持)时，每次调用都返回该失败信息
+        If the batch call failed as a whole (timeout, not supported by the other side...), every call gets that failure
+         */
+        while (responseList.size() < size) {
+            Response failed = MessageUtil.newResponse(response.getRequestID(), Response.FAIL,
+                    response.isSuccess() ? "Missing batch call response" : response.getResponseComment());
+            failed.setResponseErrorCode(response.getResponseErrorCode());
+            responseList.add(failed);
+        }
+        return responseList;
+    }
+
     /**
      * 发送Request，返回该Request的messageId
      * Send Request, return the messageId of the Request
@@ -306,7 +427,7 @@ public class ResponseMessageProcessor {
 
         ResponseContainer responseContainer = RequestContainer.putRequest(message.getMessageID());
 
-        ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message)));
+        ConnectManager.sendMessage(channel, message);
         if (ConnectManager.isPureDigital(request.getSubscriptionPeriod())
                 || ConnectManager.isPureDigital(request.getSubscriptionEventCounter())) {
             /*
@@ -342,7 +463,7 @@ public class ResponseMessageProcessor {
          */
         Channel channel = ConnectManager.MSG_ID_KEY_CHANNEL_MAP.get(messageId);
         if (channel != null) {
-            ConnectManager.sendMessage(channel, SerializeUtil.getBuffer(JSONUtils.obj2ByteArray(message)));
+            ConnectManager.sendMessage(channel, message);
             Log.debug("取消订阅：" + JSONUtils.obj2json(message));
             ConnectManager.INVOKE_MAP.remove(messageId);
         }
@@ -357,6 +478,8 @@ public class ResponseMessageProcessor {
      * @return Response
      */
     private static Response receiveResponse(ResponseContainer responseContainer, long timeOut) {
+        //在请求处理中同步等待时让出调度器的名额 / give the scheduler shares back while waiting inside a request handler
+        CmdScheduler.beginBlocking();
         try {
             return responseContainer.getFuture().get(timeOut, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
@@ -367,6 +490,7 @@ public class ResponseMessageProcessor {
                 return MessageUtil.newSuccessResponse(responseContainer.getMessageId());
             }
         } finally {
+            CmdScheduler.endBlocking();
             RequestContainer.removeResponseContainer(responseContainer.getMessageId());
         }
     }
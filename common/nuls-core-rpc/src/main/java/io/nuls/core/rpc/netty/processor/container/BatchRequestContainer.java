@@ -0,0 +1,115 @@
+package io.nuls.core.rpc.netty.processor.container;
+
+import io.nuls.core.log.Log;
+import io.nuls.core.rpc.info.Constants;
+import io.nuls.core.rpc.model.message.Response;
+import io.nuls.core.rpc.netty.processor.ResponseMessageProcessor;
+import io.nuls.core.thread.ThreadUtils;
+import io.nuls.core.thread.commom.NulsThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 待合并发送的请求
+ * 同一角色、同一cmd的请求先在此收集，等待窗口结束或达到数量上限时作为一次批量调用发送
+ * <p>
+ * Requests waiting to be coalesced.
+ * Requests for the same role and cmd are collected here and sent as one batch call
+ * when the window ends or the size limit is reached
+ */
+public final class BatchRequestContainer {
+
+    /**
+     * Key: role:cmd
+     * Value: 正在收集的批次 / The batch being collected
+     */
+    private static final Map<String, PendingBatch> PENDING_BATCH_MAP = new ConcurrentHashMap<>();
+
+    private static final ScheduledThreadPoolExecutor FLUSH_EXECUTOR = ThreadUtils.createScheduledThreadPool(1, new NulsThreadFactory("rpc-batch-flush"));
+
+    private BatchRequestContainer() {
+    }
+
+    public static CompletableFuture<Response> addRequest(String role, String cmd, Map params, long timeOut) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        String key = role + ":" + cmd;
+        PendingBatch[] full = new PendingBatch[1];
+        boolean[] created = new boolean[1];
+        PendingBatch batch = PENDING_BATCH_MAP.compute(key, (k, pending) -> {
+            if (pending == null) {
+                pending = new PendingBatch(role, cmd);
+                created[0] = true;
+            }
+            pending.add(params, future, timeOut);
+            if (pending.paramsList.size() >= Constants.BATCH_MAX_SIZE) {
+                full[0] = pending;
+                return null;
+            }
+            return pending;
+        });
+        if (full[0] != null) {
+            flush(full[0]);
+        } else if (created[0]) {
+            FLUSH_EXECUTOR.schedule(() -> {
+                if (PENDING_BATCH_MAP.remove(key, batch)) {
+                    flush(batch);
+                }
+            }, Constants.BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    private static void flush(PendingBatch batch) {
+        try {
+            ResponseMessageProcessor.sendBatchRequest(batch.role, batch.cmd, batch.paramsList, batch.timeOut).whenComplete((responseList, e) -> {
+                try {
+                    if (e == null) {
+                        for (int i = 0; i < batch.futureList.size(); i++) {
+                            batch.futureList.get(i).complete(responseList.get(i));
+                        }
+                    }
+                } finally {
+                    /*
+                    批次失败或结果无法拆分时，未完成的调用都异常完成，调用方不会一直等待
+                    When the batch failed or its result could not be split, the calls still pending complete exceptionally
+                     */
+                    failPending(batch, e != null ? e : new IllegalStateException("Missing batch call response"));
+                }
+            });
+        } catch (Exception e) {
+            Log.error(e);
+            failPending(batch, e);
+        }
+    }
+
+    private static void failPending(PendingBatch batch, Throwable cause) {
+        for (CompletableFuture<Response> future : batch.futureList) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    private static class PendingBatch {
+        private final String role;
+        private final String cmd;
+        private final List<Map> paramsList = new ArrayList<>();
+        private final List<CompletableFuture<Response>> futureList = new ArrayList<>();
+        private long timeOut;
+
+        private PendingBatch(String role, String cmd) {
+            this.role = role;
+            this.cmd = cmd;
+        }
+
+        private void add(Map params, CompletableFuture<Response> future, long timeOut) {
+            paramsList.add(params);
+            futureList.add(future);
+            this.timeOut = Math.max(this.timeOut, timeOut);
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package io.nuls.core.rpc.netty.thread;
 
 import io.nuls.core.rpc.netty.channel.ConnectData;
+import io.nuls.core.rpc.netty.channel.ConnectQueue;
 import io.nuls.core.rpc.netty.processor.RequestMessageProcessor;
 import io.nuls.core.rpc.model.message.Response;
-import io.nuls.core.log.Log;
 
 /**
  * 订阅事件处理线程
@@ -12,7 +12,7 @@ import io.nuls.core.log.Log;
  * @author tag
  * 2019/2/25
  */
-public class RequestByCountProcessor implements Runnable {
+public class RequestByCountProcessor implements ConnectQueue.MessageHandler<Response> {
     private ConnectData connectData;
 
     public RequestByCountProcessor(ConnectData connectData) {
@@ -24,17 +24,7 @@ public class RequestByCountProcessor implements Runnable {
      * Data queue for sending subscriptions
      */
     @Override
-    public void run() {
-        while (connectData.isConnected()) {
-            try {
-                Response response = connectData.getRequestEventResponseQueue().take();
-                if (response.getRequestID() == null) {
-                    continue;
-                }
-                RequestMessageProcessor.responseWithEventCount(connectData.getChannel(), response);
-            } catch (Exception e) {
-                Log.error(e);
-            }
-        }
+    public void handle(Response response) throws Exception {
+        RequestMessageProcessor.responseWithEventCount(connectData.getChannel(), response);
     }
 }
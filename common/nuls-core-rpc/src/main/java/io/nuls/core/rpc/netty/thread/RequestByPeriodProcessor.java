@@ -26,7 +26,6 @@ package io.nuls.core.rpc.netty.thread;
 
 import io.nuls.core.rpc.netty.channel.ConnectData;
 import io.nuls.core.rpc.netty.processor.RequestMessageProcessor;
-import io.nuls.core.rpc.info.Constants;
 import io.nuls.core.rpc.model.message.Message;
 import io.nuls.core.rpc.model.message.Request;
 import io.nuls.core.log.Log;
@@ -47,21 +46,17 @@ public class RequestByPeriodProcessor implements Runnable {
     }
 
     /**
-     * 轮流根据Period和EventCount定时推送消息
-     * Push messages on a periodic and EventCount basis in turn
+     * 轮流根据Period和EventCount定时推送消息，由共享的定时线程按固定间隔调用
+     * Push messages on a periodic and EventCount basis in turn, called at a fixed interval by the shared scheduler
      */
-    @SuppressWarnings("InfiniteLoopStatement")
     @Override
     public void run() {
-        while (connectData.isConnected()) {
-            try {
-                if (!connectData.getRequestPeriodLoopQueue().isEmpty()) {
-                    sendPeriodQueue();
-                }
-                Thread.sleep(Constants.PROCESSOR_INTERVAL_TIMEMILLIS);
-            } catch (Exception e) {
-                Log.error(e);
+        try {
+            if (connectData.isConnected() && !connectData.getRequestPeriodLoopQueue().isEmpty()) {
+                sendPeriodQueue();
             }
+        } catch (Exception e) {
+            Log.error(e);
         }
     }
 
@@ -75,6 +70,9 @@ public class RequestByPeriodProcessor implements Runnable {
         Get the first item of the queue
          */
         Object[] objects = connectData.getRequestPeriodLoopQueue().poll();
+        if (objects == null) {
+            return;
+        }
         Message message = (Message) objects[0];
         Request request = (Request) objects[1];
 
@@ -1,8 +1,7 @@
 package io.nuls.core.rpc.netty.thread;
-import io.nuls.core.log.Log;
 import io.nuls.core.rpc.model.RequestOnly;
-import io.nuls.core.rpc.model.message.Request;
 import io.nuls.core.rpc.netty.channel.ConnectData;
+import io.nuls.core.rpc.netty.channel.ConnectQueue;
 import io.nuls.core.rpc.netty.processor.RequestMessageProcessor;
 /**
  * 不需要回执的请求处理线程
@@ -11,7 +10,7 @@ import io.nuls.core.rpc.netty.processor.RequestMessageProcessor;
  * @author tag
  * @date 2019/6/13
  */
-public class RequestOnlyProcessor implements Runnable{
+public class RequestOnlyProcessor implements ConnectQueue.MessageHandler<RequestOnly> {
     private ConnectData connectData;
 
     public RequestOnlyProcessor(ConnectData connectData) {
@@ -22,21 +21,9 @@ public class RequestOnlyProcessor implements Runnable{
      * 消费从服务端获取的消息
      * Consume the messages from servers
      */
-    @SuppressWarnings("InfiniteLoopStatement")
     @Override
-    public void run() {
-        while (connectData.isConnected()) {
-            try {
-                /*
-                获取队列中的第一个对象
-                Get the first item of the queue
-                 */
-                RequestOnly requestOnly = connectData.getRequestOnlyQueue().take();
-                connectData.subRequestOnlyQueueMemSize(requestOnly.getMessageSize());
-                RequestMessageProcessor.callCommands(requestOnly.getRequest().getRequestMethods());
-            } catch (Exception e) {
-                Log.error(e);
-            }
-        }
+    public void handle(RequestOnly requestOnly) throws Exception {
+        connectData.subRequestOnlyQueueMemSize(requestOnly.getMessageSize());
+        RequestMessageProcessor.callCommands(requestOnly.getRequest().getRequestMethods());
     }
 }
@@ -24,11 +24,10 @@
  */
 package io.nuls.core.rpc.netty.thread;
 
-import io.nuls.core.rpc.netty.channel.ConnectData;
+import io.nuls.core.rpc.netty.channel.ConnectQueue;
 import io.nuls.core.rpc.netty.channel.manager.ConnectManager;
 import io.nuls.core.rpc.invoke.BaseInvoke;
 import io.nuls.core.rpc.model.message.Response;
-import io.nuls.core.log.Log;
 
 /**
  * 消费从服务端获取的消息
@@ -37,45 +36,27 @@ import io.nuls.core.log.Log;
  * @author tag
  * @date 2019/2/25
  */
-public class ResponseAutoProcessor implements Runnable {
-    private ConnectData connectData;
-
-    public ResponseAutoProcessor(ConnectData connectData) {
-        this.connectData = connectData;
-    }
+public class ResponseAutoProcessor implements ConnectQueue.MessageHandler<Response> {
 
     /**
      * 消费从服务端获取的消息
      * Consume the messages from servers
      */
-    @SuppressWarnings("InfiniteLoopStatement")
     @Override
-    public void run() {
-        while (connectData.isConnected()) {
-            try {
-                /*
-                获取队列中的第一个对象
-                Get the first item of the queue
-                 */
-                Response response = connectData.getResponseAutoQueue().take();
-                if (response.getRequestID() == null) {
-                    continue;
-                }
-                /*
-                获取Response对象，这里得到的对象一定是需要自动调用本地方法
-                Get Response object, The object you get here must automatically call the local method
-                 */
-                String messageId = response.getRequestID();
+    public void handle(Response response) {
+        /*
+        获取Response对象，这里得到的对象一定是需要自动调用本地方法
+        Get Response object, The object you get here must automatically call the local method
+         */
+        String messageId = response.getRequestID();
 
-                /*
-                自动调用本地方法
-                Invoke local method automatically
-                 */
-                BaseInvoke baseInvoke = ConnectManager.INVOKE_MAP.get(messageId);
-                baseInvoke.callBack(response);
-            } catch (Exception e) {
-                Log.error(e);
-            }
+        /*
+        自动调用本地方法
+        Invoke local method automatically
+         */
+        BaseInvoke baseInvoke = ConnectManager.INVOKE_MAP.get(messageId);
+        if (baseInvoke != null) {
+            baseInvoke.callBack(response);
         }
     }
 }
@@ -0,0 +1,348 @@
+package io.nuls.core.rpc.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.nuls.core.crypto.HexUtil;
+import io.nuls.core.parse.JSONUtils;
+import io.nuls.core.rpc.model.message.Message;
+import io.nuls.core.rpc.model.message.Request;
+import io.nuls.core.rpc.model.message.Response;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 模块间消息的二进制编解码
+ * 采用带类型标记、长度前缀的紧凑格式，十六进制字符串(交易、区块头等)按原始字节传输，体积减半且无需JSON转义。
+ * 解码结果与JSON解码得到的对象结构一致(Map/List/String/Integer/Long/BigInteger/Double/Boolean)，处理消息的代码无需区分两种格式。
+ * <p>
+ * Binary codec of inter-module messages.
+ * A compact, type tagged and length prefixed format. Hex strings (transactions, block headers...) travel as raw bytes,
+ * which halves their size and skips JSON escaping.
+ * Decoding yields the same object shapes as JSON decoding, so message handlers do not need to know which format was used.
+ */
+public class BinaryMessageCodec {
+
+    /**
+     * 格式版本，每条消息的第一个字节
+     * Format version, the first byte of every message
+     */
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_TRUE = 1;
+    private static final byte TYPE_FALSE = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_BIG_INTEGER = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_STRING = 6;
+    private static final byte TYPE_HEX = 7;
+    private static final byte TYPE_BYTES = 8;
+    private static final byte TYPE_LIST = 9;
+    private static final byte TYPE_MAP = 10;
+    /**
+     * 无法直接编码的对象，按JSON嵌入，保证与JSON方式的结果完全一致
+     * Objects without a native encoding are embedded as JSON so the result matches the JSON format exactly
+     */
+    private static final byte TYPE_JSON = 11;
+
+    /**
+     * 长度小于该值的十六进制字符串按普通字符串编码
+     * Hex strings shorter than this are encoded as plain strings
+     */
+    private static final int MIN_HEX_LENGTH = 16;
+
+    private BinaryMessageCodec() {
+    }
+
+    /**
+     * 编码消息
+     * Encode message
+     *
+     * @param message 消息 / message
+     * @return 编码后的数据 / encoded data
+     * @throws JsonProcessingException 嵌入的JSON对象序列化失败 / Failed to serialize an embedded JSON object
+     */
+    public static ByteBuf encode(Message message) throws JsonProcessingException {
+        ByteBuf buf = Unpooled.buffer(256);
+        buf.writeByte(VERSION);
+        writeValue(buf, message.getMessageID());
+        writeValue(buf, message.getTimestamp());
+        writeValue(buf, message.getTimeZone());
+        writeValue(buf, message.getMessageType());
+        writeValue(buf, message.getMessageData());
+        return buf;
+    }
+
+    /**
+     * 解码消息，MessageData解码为Map，与JSON方式一致
+     * Decode message, MessageData is decoded into a Map just like the JSON format
+     *
+     * @param bytes 编码后的数据 / encoded data
+     * @return 消息 / message
+     * @throws IOException 数据格式错误 / Malformed data
+     */
+    public static Message decode(byte[] bytes) throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+        try {
+            byte version = buf.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary message version:" + version);
+            }
+            Message message = new Message();
+            message.setMessageID((String) readValue(buf));
+            message.setTimestamp((String) readValue(buf));
+            message.setTimeZone((String) readValue(buf));
+            message.setMessageType((String) readValue(buf));
+            message.setMessageData(readValue(buf));
+            return message;
+        } catch (IndexOutOfBoundsException | ClassCastException e) {
+            throw new IOException("Malformed binary message", e);
+        }
+    }
+
+    /**
+     * 字段名与Request的JSON属性名一致
+     * Field names match the JSON property names of Request
+     */
+    private static void writeRequest(ByteBuf buf, Request request) throws JsonProcessingException {
+        buf.writeByte(TYPE_MAP);
+        writeVarInt(buf, 7);
+        writeEntry(buf, "RequestAck", request.getRequestAck());
+        writeEntry(buf, "SubscriptionEventCounter", request.getSubscriptionEventCounter());
+        writeEntry(buf, "SubscriptionPeriod", request.getSubscriptionPeriod());
+        writeEntry(buf, "SubscriptionRange", request.getSubscriptionRange());
+        writeEntry(buf, "ResponseMaxSize", request.getResponseMaxSize());
+        writeEntry(buf, "RequestMethods", request.getRequestMethods());
+        writeEntry(buf, "TimeOut", request.getTimeOut());
+    }
+
+    /**
+     * 字段名与Response的JSON属性名一致
+     * Field names match the JSON property names of Response
+     */
+    private static void writeResponse(ByteBuf buf, Response response) throws JsonProcessingException {
+        buf.writeByte(TYPE_MAP);
+        writeVarInt(buf, 7);
+        writeEntry(buf, "RequestID", response.getRequestID());
+        writeEntry(buf, "ResponseProcessingTime", response.getResponseProcessingTime());
+        writeEntry(buf, "ResponseStatus", response.getResponseStatus());
+        writeEntry(buf, "ResponseComment", response.getResponseComment());
+        writeEntry(buf, "ResponseMaxSize", response.getResponseMaxSize());
+        writeEntry(buf, "ResponseData", response.getResponseData());
+        writeEntry(buf, "ResponseErrorCode", response.getResponseErrorCode());
+    }
+
+    private static void writeEntry(ByteBuf buf, String key, Object value) throws JsonProcessingException {
+        writeBytes(buf, key.getBytes(StandardCharsets.UTF_8));
+        writeValue(buf, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(ByteBuf buf, Object value) throws JsonProcessingException {
+        if (value == null) {
+            buf.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            writeString(buf, (String) value);
+        } else if (value instanceof Boolean) {
+            buf.writeByte((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            buf.writeByte(TYPE_INTEGER);
+            writeVarLong(buf, ((Number) value).longValue());
+        } else if (value instanceof BigInteger) {
+            BigInteger bigInteger = (BigInteger) value;
+            if (bigInteger.bitLength() < Long.SIZE) {
+                buf.writeByte(TYPE_INTEGER);
+                writeVarLong(buf, bigInteger.longValue());
+            } else {
+                buf.writeByte(TYPE_BIG_INTEGER);
+                writeBytes(buf, bigInteger.toByteArray());
+            }
+        } else if (value instanceof Double && !((Double) value).isNaN() && !((Double) value).isInfinite()) {
+            buf.writeByte(TYPE_DOUBLE);
+            buf.writeDouble((Double) value);
+        } else if (value instanceof byte[]) {
+            buf.writeByte(TYPE_BYTES);
+            writeBytes(buf, (byte[]) value);
+        } else if (value instanceof Character) {
+            writeString(buf, value.toString());
+        } else if (value instanceof Collection) {
+            Collection<Object> collection = (Collection<Object>) value;
+            buf.writeByte(TYPE_LIST);
+            writeVarInt(buf, collection.size());
+            for (Object item : collection) {
+                writeValue(buf, item);
+            }
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            buf.writeByte(TYPE_LIST);
+            writeVarInt(buf, array.length);
+            for (Object item : array) {
+                writeValue(buf, item);
+            }
+        } else if (value instanceof Map && stringKeys((Map<Object, Object>) value)) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            buf.writeByte(TYPE_MAP);
+            writeVarInt(buf, map.size());
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                writeEntry(buf, entry.getKey(), entry.getValue());
+            }
+        } else if (value instanceof Request) {
+            writeRequest(buf, (Request) value);
+        } else if (value instanceof Response) {
+            //批量调用的结果中嵌套了Response
+            writeResponse(buf, (Response) value);
+        } else {
+            buf.writeByte(TYPE_JSON);
+            writeBytes(buf, JSONUtils.obj2ByteArray(value));
+        }
+    }
+
+    private static boolean stringKeys(Map<Object, Object> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeString(ByteBuf buf, String value) {
+        if (isHex(value)) {
+            buf.writeByte(TYPE_HEX);
+            writeBytes(buf, HexUtil.decode(value));
+        } else {
+            buf.writeByte(TYPE_STRING);
+            writeBytes(buf, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 只有小写十六进制字符串才能按原样还原
+     * Only lower case hex strings can be restored exactly
+     */
+    private static boolean isHex(String value) {
+        int length = value.length();
+        if (length < MIN_HEX_LENGTH || (length & 1) != 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object readValue(ByteBuf buf) throws IOException {
+        byte type = buf.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_INTEGER:
+                long value = readVarLong(buf);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            case TYPE_BIG_INTEGER:
+                return new BigInteger(readBytes(buf));
+            case TYPE_DOUBLE:
+                return buf.readDouble();
+            case TYPE_STRING:
+                return new String(readBytes(buf), StandardCharsets.UTF_8);
+            case TYPE_HEX:
+                return HexUtil.encode(readBytes(buf));
+            case TYPE_BYTES:
+                //JSON中byte[]按Base64字符串传输
+                return Base64.getEncoder().encodeToString(readBytes(buf));
+            case TYPE_LIST:
+                int size = readVarInt(buf);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buf));
+                }
+                return list;
+            case TYPE_MAP:
+                int count = readVarInt(buf);
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(16, count * 4 / 3 + 1));
+                for (int i = 0; i < count; i++) {
+                    String key = new String(readBytes(buf), StandardCharsets.UTF_8);
+                    map.put(key, readValue(buf));
+                }
+                return map;
+            case TYPE_JSON:
+                return JSONUtils.getInstance().readValue(readBytes(buf), Object.class);
+            default:
+                throw new IOException("Unknown binary value type:" + type);
+        }
+    }
+
+    private static void writeBytes(ByteBuf buf, byte[] bytes) {
+        writeVarInt(buf, bytes.length);
+        buf.writeBytes(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuf buf) throws IOException {
+        int length = readVarInt(buf);
+        if (length > buf.readableBytes()) {
+            throw new IOException("Binary message length out of range:" + length);
+        }
+        byte[] bytes = new byte[length];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    private static void writeVarInt(ByteBuf buf, int value) {
+        writeUnsignedVarLong(buf, value & 0xFFFFFFFFL);
+    }
+
+    private static int readVarInt(ByteBuf buf) throws IOException {
+        long value = readUnsignedVarLong(buf);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Binary message length out of range:" + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * 有符号整数先做ZigZag变换，绝对值小的负数同样只占很少字节
+     * Signed values are ZigZag encoded first so small negative numbers stay short as well
+     */
+    private static void writeVarLong(ByteBuf buf, long value) {
+        writeUnsignedVarLong(buf, (value << 1) ^ (value >> 63));
+    }
+
+    private static long readVarLong(ByteBuf buf) throws IOException {
+        long value = readUnsignedVarLong(buf);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeUnsignedVarLong(ByteBuf buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buf.writeByte((int) value);
+    }
+
+    private static long readUnsignedVarLong(ByteBuf buf) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buf.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary message");
+    }
+}
@@ -0,0 +1,98 @@
+package io.nuls.core.rpc;
+
+import io.nuls.core.rpc.cmd.BaseCmd;
+import io.nuls.core.rpc.info.Constants;
+import io.nuls.core.rpc.model.CmdAnnotation;
+import io.nuls.core.rpc.model.CmdPriority;
+import io.nuls.core.rpc.model.message.Message;
+import io.nuls.core.rpc.model.message.MessageUtil;
+import io.nuls.core.rpc.model.message.Request;
+import io.nuls.core.rpc.model.message.Response;
+import io.nuls.core.rpc.netty.channel.manager.ConnectManager;
+import io.nuls.core.rpc.netty.processor.RequestMessageProcessor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchCallTest {
+
+    @Before
+    public void before() throws Exception {
+        ConnectManager.LOCAL.setMethods(new ArrayList<>());
+        ConnectManager.addCmdDetail(BatchCmd.class);
+        RequestMessageProcessor.handlerMap.put(BatchCmd.class.getName(), new BatchCmd());
+        BatchCmd.executed.set(0);
+    }
+
+    @Test
+    public void priorityOfInvokedCmd() {
+        int defaultPriority = CmdPriority.DEFAULT.getPriority();
+        Assert.assertEquals(Integer.valueOf(defaultPriority), ConnectManager.CMD_PRIORITY_MAP.get(Constants.BATCH_CALL_CMD));
+        //批量调用按其中被调用的cmd调度 / a batch call is scheduled by the cmd it invokes
+        Assert.assertEquals(CmdPriority.HIGH.getPriority(), ConnectManager.requestPriority(batchRequest("batch_check"), defaultPriority));
+        Assert.assertEquals(defaultPriority, ConnectManager.requestPriority(batchRequest("batch_unknown"), defaultPriority));
+        Request single = MessageUtil.newRequest("batch_check", new HashMap(), "0", "0", "0");
+        Assert.assertEquals(CmdPriority.HIGH.getPriority(), ConnectManager.requestPriority(single, defaultPriority));
+    }
+
+    @Test
+    public void stopOnFailure() throws Exception {
+        List<Response> responseList = batchExecute(true);
+        //第二次调用返回value=false, 第三次不再执行 / the second call returns value=false, the third is not executed
+        Assert.assertEquals(2, BatchCmd.executed.get());
+        Assert.assertEquals(3, responseList.size());
+        Assert.assertTrue(responseList.get(0).isSuccess());
+        Assert.assertTrue(responseList.get(1).isSuccess());
+        Assert.assertFalse(responseList.get(2).isSuccess());
+
+        BatchCmd.executed.set(0);
+        Assert.assertEquals(3, batchExecute(false).size());
+        Assert.assertEquals(3, BatchCmd.executed.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Response> batchExecute(boolean stopOnFailure) throws Exception {
+        Map<String, Object> params = batchParams("batch_check");
+        params.put(Constants.BATCH_PARAMS_KEY, Arrays.asList(callParams(true), callParams(false), callParams(true)));
+        if (stopOnFailure) {
+            params.put(Constants.BATCH_STOP_ON_FAILURE_KEY, true);
+        }
+        Method method = RequestMessageProcessor.class.getDeclaredMethod("batchExecute", Map.class, String.class, boolean.class);
+        method.setAccessible(true);
+        Message message = (Message) method.invoke(null, params, "1", false);
+        Response response = (Response) message.getMessageData();
+        Assert.assertTrue(response.isSuccess());
+        return (List<Response>) ((Map) response.getResponseData()).get(Constants.BATCH_CALL_CMD);
+    }
+
+    private static Request batchRequest(String cmd) {
+        return MessageUtil.newRequest(Constants.BATCH_CALL_CMD, batchParams(cmd), "0", "0", "0");
+    }
+
+    private static Map<String, Object> batchParams(String cmd) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(Constants.BATCH_CMD_KEY, cmd);
+        params.put(Constants.BATCH_PARAMS_KEY, new ArrayList<>());
+        return params;
+    }
+
+    private static Map<String, Object> callParams(boolean ok) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("ok", ok);
+        return params;
+    }
+
+    public static class BatchCmd extends BaseCmd {
+        static final AtomicInteger executed = new AtomicInteger();
+
+        @CmdAnnotation(cmd = "batch_check", version = 1.0, priority = CmdPriority.HIGH, description = "")
+        public Response check(Map params) {
+            executed.incrementAndGet();
+            return success(Collections.singletonMap("value", params.get("ok")));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package io.nuls.core.rpc;
+
+import io.netty.buffer.ByteBuf;
+import io.nuls.core.crypto.HexUtil;
+import io.nuls.core.parse.JSONUtils;
+import io.nuls.core.rpc.info.Constants;
+import io.nuls.core.rpc.model.message.*;
+import io.nuls.core.rpc.util.BinaryMessageCodec;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+public class BinaryMessageCodecTest {
+
+    @Test
+    public void requestSameAsJson() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("chainId", 1);
+        params.put("height", 1L << 40);
+        params.put("negative", -12345);
+        params.put("amount", new BigInteger("123456789012345678901234567890"));
+        params.put("rate", 0.25);
+        params.put("tx", HexUtil.encode(new byte[200]));
+        params.put("upperHex", "ABCDEF0123456789ABCDEF");
+        params.put("text", "交易 tx");
+        params.put("empty", "");
+        params.put("flag", true);
+        params.put("nothing", null);
+        params.put("raw", new byte[]{1, 2, 3});
+        params.put("txList", Arrays.asList(HexUtil.encode(new byte[40]), "a1"));
+        params.put("array", new String[]{"x", "y"});
+        params.put("nested", Collections.singletonMap("key", Collections.singletonMap("deep", 7)));
+        Request request = MessageUtil.newRequest("tx_newTx", params, "0", "0", "0");
+        request.setTimeOut("1000");
+        Message message = MessageUtil.basicMessage(MessageType.Request);
+        message.setMessageData(request);
+        assertSameAsJson(message);
+    }
+
+    @Test
+    public void negotiateCompatibleWithOldServers() throws Exception {
+        //旧版本服务端解析握手请求时不允许未知字段 / older servers reject unknown fields in the handshake request
+        Map<String, Object> data = JSONUtils.json2map(JSONUtils.obj2json(MessageUtil.defaultNegotiateConnection()));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("Abbreviation", "ProtocolVersion", "CompressionAlgorithm", "CompressionRate")), data.keySet());
+        //二进制支持由服务端在握手确认中声明 / binary support is advertised by the server in the handshake response
+        NegotiateConnectionResponse response = new NegotiateConnectionResponse();
+        response.setSerializeType(Constants.SERIALIZE_BINARY);
+        Map<String, Object> responseData = JSONUtils.json2map(JSONUtils.obj2json(response));
+        Assert.assertEquals(Constants.SERIALIZE_BINARY, responseData.get("SerializeType"));
+    }
+
+    @Test
+    public void responseSameAsJson() throws Exception {
+        Response response = MessageUtil.newSuccessResponse("1");
+        Map<String, Object> data = new HashMap<>();
+        NegotiateConnection pojo = new NegotiateConnection();
+        pojo.setAbbreviation("tx");
+        data.put("pojo", pojo);
+        data.put("value", 1.5f);
+        response.setResponseData(Collections.singletonMap("tx_newTx", data));
+        Message message = MessageUtil.basicMessage(MessageType.Response);
+        message.setMessageData(response);
+        assertSameAsJson(message);
+    }
+
+    @Test
+    public void batchResponseSameAsJson() throws Exception {
+        List<Response> responseList = new ArrayList<>();
+        Response success = MessageUtil.newSuccessResponse("2");
+        success.setResponseData(Collections.singletonMap("sc_invoke_contract", Collections.singletonMap("value", true)));
+        responseList.add(success);
+        Response fail = MessageUtil.newFailResponse("2", "Cmd not found");
+        fail.setResponseErrorCode("10012");
+        responseList.add(fail);
+        Response response = MessageUtil.newSuccessResponse("2");
+        response.setResponseData(Collections.singletonMap(Constants.BATCH_CALL_CMD, responseList));
+        Message message = MessageUtil.basicMessage(MessageType.Response);
+        message.setMessageData(response);
+        assertSameAsJson(message);
+    }
+
+    @Test
+    public void hexPayloadHalved() throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        params.put("tx", HexUtil.encode(new byte[10000]));
+        Message message = MessageUtil.basicMessage(MessageType.Request);
+        message.setMessageData(MessageUtil.newRequest("tx_newTx", params, "0", "0", "0"));
+        int jsonSize = JSONUtils.obj2ByteArray(message).length;
+        int binarySize = BinaryMessageCodec.encode(message).readableBytes();
+        Assert.assertTrue(binarySize < jsonSize / 2 + 200);
+    }
+
+    private void assertSameAsJson(Message message) throws Exception {
+        Message json = JSONUtils.byteArray2pojo(JSONUtils.obj2ByteArray(message), Message.class);
+        ByteBuf buf = BinaryMessageCodec.encode(message);
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        Message binary = BinaryMessageCodec.decode(bytes);
+        Assert.assertEquals(json, binary);
+    }
+}
@@ -0,0 +1,63 @@
+package io.nuls.core.rpc;
+
+import io.nuls.core.rpc.cmd.BaseCmd;
+import io.nuls.core.rpc.model.CmdAnnotation;
+import io.nuls.core.rpc.model.CmdDetail;
+import io.nuls.core.rpc.model.message.Response;
+import io.nuls.core.rpc.netty.channel.manager.ConnectManager;
+import io.nuls.core.rpc.netty.processor.RequestMessageProcessor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CmdDispatchTest {
+
+    @Test
+    public void dispatch() throws Throwable {
+        ConnectManager.LOCAL.setMethods(new ArrayList<>());
+        ConnectManager.addCmdDetail(DispatchCmd.class);
+        DispatchCmd handler = new DispatchCmd();
+        RequestMessageProcessor.handlerMap.put(DispatchCmd.class.getName(), handler);
+
+        Assert.assertEquals(2.1, ConnectManager.getLocalInvokeCmd("dispatch_echo").getVersion(), 0);
+        Assert.assertEquals(1.2, ConnectManager.getLocalInvokeCmd("dispatch_echo", 1.0).getVersion(), 0);
+        Assert.assertEquals(2.1, ConnectManager.getLocalInvokeCmd("dispatch_echo", 2.0).getVersion(), 0);
+        Assert.assertNull(ConnectManager.getLocalInvokeCmd("dispatch_echo", 3.0));
+        Assert.assertNull(ConnectManager.getLocalInvokeCmd("dispatch_missing"));
+
+        CmdDetail cmdDetail = ConnectManager.getLocalInvokeCmd("dispatch_echo", 1.0);
+        Assert.assertNotNull(cmdDetail.getInvoker());
+        Map<String, Object> params = new HashMap<>();
+        params.put("value", "nuls");
+        Object result = cmdDetail.getInvoker().invokeExact((Object) handler, (Map) params);
+        Assert.assertEquals("v1:nuls", ((Response) result).getResponseData());
+
+        Map<String, Object> requestMethods = new HashMap<>();
+        requestMethods.put("dispatch_echo", params);
+        RequestMessageProcessor.callCommands(requestMethods);
+        Assert.assertEquals("v2:nuls", DispatchCmd.last);
+    }
+
+    public static class DispatchCmd extends BaseCmd {
+        static String last;
+
+        @CmdAnnotation(cmd = "dispatch_echo", version = 1.0, description = "")
+        public Response echo10(Map params) {
+            return success("v0:" + params.get("value"));
+        }
+
+        @CmdAnnotation(cmd = "dispatch_echo", version = 1.2, description = "")
+        public Response echo12(Map params) {
+            return success("v1:" + params.get("value"));
+        }
+
+        @CmdAnnotation(cmd = "dispatch_echo", version = 2.1, description = "")
+        public Response echo21(Map params) {
+            last = "v2:" + params.get("value");
+            return success(last);
+        }
+    }
+}
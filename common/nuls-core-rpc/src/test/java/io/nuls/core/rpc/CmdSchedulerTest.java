@@ -0,0 +1,221 @@
+package io.nuls.core.rpc;
+
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.nuls.core.rpc.model.CmdPriority;
+import io.nuls.core.rpc.model.message.Message;
+import io.nuls.core.rpc.model.message.MessageType;
+import io.nuls.core.rpc.model.message.MessageUtil;
+import io.nuls.core.rpc.model.message.Request;
+import io.nuls.core.rpc.netty.handler.message.TextMessageHandler;
+import io.nuls.core.rpc.netty.processor.CmdScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CmdSchedulerTest {
+
+    @Test
+    public void weightedLanes() throws Exception {
+        CmdScheduler scheduler = new CmdScheduler(1, 100, "test-weighted");
+        try {
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(25);
+            List<CmdPriority> order = new CopyOnWriteArrayList<>();
+            scheduler.submit(new Task(CmdPriority.HIGH, () -> {
+                gate.await();
+                done.countDown();
+            }));
+            for (int i = 0; i < 8; i++) {
+                for (CmdPriority priority : new CmdPriority[]{CmdPriority.LOWER, CmdPriority.DEFAULT, CmdPriority.HIGH}) {
+                    scheduler.submit(new Task(priority, () -> {
+                        order.add(priority);
+                        done.countDown();
+                    }));
+                }
+            }
+            gate.countDown();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            List<CmdPriority> first = order.subList(0, 12);
+            Assert.assertEquals(8, first.stream().filter(p -> p == CmdPriority.HIGH).count());
+            Assert.assertEquals(3, first.stream().filter(p -> p == CmdPriority.DEFAULT).count());
+            Assert.assertEquals(1, first.stream().filter(p -> p == CmdPriority.LOWER).count());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void laneConcurrencyLimit() throws Exception {
+        CmdScheduler scheduler = new CmdScheduler(4, 100, "test-limit");
+        try {
+            Assert.assertEquals(1, scheduler.getMaxRunning(CmdPriority.LOWER));
+            CountDownLatch gate = new CountDownLatch(1);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            for (int i = 0; i < 3; i++) {
+                scheduler.submit(new Task(CmdPriority.LOWER, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    gate.await();
+                    running.decrementAndGet();
+                }));
+            }
+            CountDownLatch high = new CountDownLatch(1);
+            scheduler.submit(new Task(CmdPriority.HIGH, high::countDown));
+            Assert.assertTrue(high.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(2, scheduler.getPending(CmdPriority.LOWER));
+            gate.countDown();
+            while (scheduler.getExecutedCount(CmdPriority.LOWER) < 3) {
+                Thread.sleep(1L);
+            }
+            Assert.assertEquals(1, maxRunning.get());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void dropExpired() throws Exception {
+        CmdScheduler scheduler = new CmdScheduler(1, 100, "test-expired");
+        try {
+            AtomicInteger executed = new AtomicInteger();
+            Task expired = new Task(CmdPriority.DEFAULT, executed::incrementAndGet);
+            expired.getMessage().setTimestamp(String.valueOf(System.currentTimeMillis() - 10000));
+            expired.getRequest().setTimeOut("1000");
+            scheduler.submit(expired);
+            CountDownLatch done = new CountDownLatch(1);
+            scheduler.submit(new Task(CmdPriority.DEFAULT, done::countDown));
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, executed.get());
+            Assert.assertEquals(1, scheduler.getExpiredCount(CmdPriority.DEFAULT));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void connectionFairShare() throws Exception {
+        CmdScheduler scheduler = new CmdScheduler(4, 100, "test-fair");
+        NioSocketChannel busy = new NioSocketChannel();
+        NioSocketChannel other = new NioSocketChannel();
+        try {
+            int connectionMax = scheduler.getConnectionMaxRunning();
+            Assert.assertTrue(connectionMax < scheduler.getWorkerCount());
+            CountDownLatch started = new CountDownLatch(connectionMax);
+            CountDownLatch gate = new CountDownLatch(1);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            for (int i = 0; i < 6; i++) {
+                scheduler.submit(new Task(busy, CmdPriority.HIGH, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    started.countDown();
+                    gate.await();
+                    running.decrementAndGet();
+                }));
+            }
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            //一个链接占满可用线程时，其他链接的请求仍能执行
+            //while one connection holds all the threads it may use, requests of other connections still run
+            CountDownLatch callback = new CountDownLatch(1);
+            scheduler.submit(new Task(other, CmdPriority.HIGH, callback::countDown));
+            Assert.assertTrue(callback.await(5, TimeUnit.SECONDS));
+            gate.countDown();
+            while (scheduler.getExecutedCount(CmdPriority.HIGH) < 7) {
+                Thread.sleep(1L);
+            }
+            Assert.assertTrue(maxRunning.get() <= connectionMax);
+        } finally {
+            scheduler.shutdown();
+            busy.unsafe().closeForcibly();
+            other.unsafe().closeForcibly();
+        }
+    }
+
+    @Test
+    public void workersFollowConnections() throws Exception {
+        CmdScheduler scheduler = new CmdScheduler(4, 100, "test-connections");
+        try {
+            Assert.assertEquals(4, scheduler.getWorkerCount());
+            scheduler.connectionOpened();
+            scheduler.connectionOpened();
+            //每个链接对应的线程数不变 / every connection keeps its own share of threads
+            Assert.assertEquals(8, scheduler.getWorkerCount());
+            Assert.assertEquals(4, scheduler.getConnectionMaxRunning());
+            Assert.assertEquals(8 * CmdPriority.DEFAULT.getConcurrencyPercent() / 100, scheduler.getMaxRunning(CmdPriority.DEFAULT));
+            scheduler.connectionClosed();
+            Assert.assertEquals(4, scheduler.getWorkerCount());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void nestedCallReleasesLane() throws Exception {
+        CmdScheduler scheduler = new CmdScheduler(2, 100, "test-nested");
+        try {
+            Assert.assertEquals(1, scheduler.getMaxRunning(CmdPriority.DEFAULT));
+            //请求处理中同步等待同一通道中的回调请求 / a request waits synchronously for a callback in the same lane
+            CountDownLatch callback = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            scheduler.submit(new Task(CmdPriority.DEFAULT, () -> {
+                scheduler.submit(new Task(CmdPriority.DEFAULT, callback::countDown));
+                CmdScheduler.beginBlocking();
+                try {
+                    Assert.assertTrue(callback.await(5, TimeUnit.SECONDS));
+                } finally {
+                    CmdScheduler.endBlocking();
+                }
+                done.countDown();
+            }));
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            while (scheduler.getExecutedCount(CmdPriority.DEFAULT) < 2) {
+                Thread.sleep(1L);
+            }
+            //等待结束后通道名额已归还 / the lane share is back once the wait is over
+            CountDownLatch next = new CountDownLatch(1);
+            scheduler.submit(new Task(CmdPriority.DEFAULT, next::countDown));
+            Assert.assertTrue(next.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private static class Task extends TextMessageHandler {
+        private final Body body;
+
+        private Task(CmdPriority priority, Body body) {
+            this(null, priority, body);
+        }
+
+        private Task(SocketChannel channel, CmdPriority priority, Body body) {
+            super(channel, newMessage(), priority.getPriority());
+            Request request = MessageUtil.newRequest("test_cmd", new HashMap(), "0", "0", "0");
+            request.setTimeOut("0");
+            setRequest(request);
+            this.body = body;
+        }
+
+        private static Message newMessage() {
+            return MessageUtil.basicMessage(MessageType.Request);
+        }
+
+        @Override
+        public void run() {
+            try {
+                body.run();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
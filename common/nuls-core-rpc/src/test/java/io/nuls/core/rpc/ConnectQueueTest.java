@@ -0,0 +1,149 @@
+package io.nuls.core.rpc;
+
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.nuls.core.rpc.model.RequestOnly;
+import io.nuls.core.rpc.model.message.Request;
+import io.nuls.core.rpc.netty.channel.ConnectData;
+import io.nuls.core.rpc.netty.channel.ConnectQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectQueueTest {
+
+    @Test
+    public void backPressure() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        NioSocketChannel channel = new NioSocketChannel();
+        group.register(channel).sync();
+        ConnectData connectData = new ConnectData(channel);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(9);
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        ConnectQueue<Integer> queue = new ConnectQueue<>("test", connectData, 8, 1, executor, null, value -> {
+            release.await();
+            handled.add(value);
+            done.countDown();
+        });
+        try {
+            Assert.assertTrue(queue.offer(0));
+            while (queue.getDepth() > 0) {
+                Thread.sleep(1L);
+            }
+            for (int i = 1; i < 9; i++) {
+                Assert.assertTrue(queue.offer(i));
+            }
+            //第一条消息正在处理，队列中的8条已满 / the first message is being handled and the 8 queued fill the buffer
+            Assert.assertFalse(queue.offer(9));
+            Assert.assertEquals(1, queue.getRejectedCount());
+            Assert.assertTrue(queue.isReadPaused());
+            //只暂停接收请求，链接仍在读取应答 / only taking requests is paused, the connection keeps reading responses
+            Assert.assertTrue(connectData.isRequestPaused());
+            Assert.assertTrue(channel.config().isAutoRead());
+            //暂停期间的请求先暂存 / requests received while paused are held
+            Assert.assertTrue(connectData.offerRequestOnly(new RequestOnly(new Request(), 10)));
+            Assert.assertEquals(1, connectData.getPausedRequestCount());
+            Assert.assertEquals(0, connectData.getRequestOnlyQueue().getOfferedCount());
+
+            release.countDown();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, queue.getDepth());
+            Assert.assertFalse(queue.isReadPaused());
+            Assert.assertFalse(connectData.isRequestPaused());
+            //恢复后暂存的请求放入请求队列 / the held requests are queued once resumed
+            Assert.assertEquals(0, connectData.getPausedRequestCount());
+            Assert.assertEquals(1, connectData.getRequestOnlyQueue().getOfferedCount());
+            Assert.assertEquals(8, queue.getMaxDepth());
+            Assert.assertEquals(9, queue.getOfferedCount());
+            Assert.assertEquals(0, handled.get(0).intValue());
+        } finally {
+            executor.shutdownNow();
+            channel.close().sync();
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void responseQueueNeverPauses() {
+        ConnectData connectData = new ConnectData(null);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        ConnectQueue<Integer> queue = new ConnectQueue<>("test", connectData, 2, 1, executor, null, false, value -> release.await());
+        try {
+            for (int i = 0; i < 4; i++) {
+                queue.offer(i);
+            }
+            //应答队列已满只拒绝消息，不暂停接收请求 / a full response queue only rejects, it never pauses taking requests
+            Assert.assertTrue(queue.getRejectedCount() > 0);
+            Assert.assertFalse(queue.isReadPaused());
+            Assert.assertFalse(connectData.isRequestPaused());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectAfterDisconnect() {
+        ConnectData connectData = new ConnectData(null);
+        ConnectQueue<Integer> queue = new ConnectQueue<>("test", connectData, 4, 1, Executors.newSingleThreadExecutor(), null, value -> {
+        });
+        connectData.addRequestOnlyQueueMemSize(100);
+        connectData.setConnected(false);
+        Assert.assertFalse(queue.offer(1));
+        Assert.assertEquals(0, queue.getDepth());
+        //断开时清零队列占用的内存 / the memory held by the queue is reset on disconnect
+        Assert.assertEquals(0, connectData.getRequestOnlyQueueMemSize());
+        connectData.subRequestOnlyQueueMemSize(100);
+        Assert.assertEquals(0, connectData.getRequestOnlyQueueMemSize());
+    }
+
+    @Test
+    public void workerPoolFull() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        NioSocketChannel channel = new NioSocketChannel();
+        group.register(channel).sync();
+        ConnectData connectData = new ConnectData(channel);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch busy = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        ConnectQueue<Integer> queue = new ConnectQueue<>("test", connectData, 8, 1, executor, retryScheduler, value -> done.countDown());
+        try {
+            executor.execute(() -> {
+                try {
+                    busy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            //线程池已满，消息留在队列中并暂停接收请求 / the pool is full, the messages stay queued and taking requests is paused
+            Assert.assertTrue(queue.offer(1));
+            Assert.assertTrue(queue.offer(2));
+            Assert.assertTrue(queue.isReadPaused());
+            Assert.assertEquals(2, queue.getDepth());
+
+            busy.countDown();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, queue.getDepth());
+            Assert.assertFalse(queue.isReadPaused());
+            Assert.assertFalse(connectData.isRequestPaused());
+        } finally {
+            executor.shutdownNow();
+            retryScheduler.shutdownNow();
+            channel.close().sync();
+            group.shutdownGracefully();
+        }
+    }
+}
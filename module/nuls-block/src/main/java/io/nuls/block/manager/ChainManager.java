@@ -33,6 +33,8 @@ import io.nuls.core.constant.TxType;
 import io.nuls.core.core.annotation.Autowired;
 import io.nuls.core.core.annotation.Component;
 import io.nuls.core.log.logback.NulsLogger;
+import io.nuls.core.rockdb.constant.DBDurability;
+import io.nuls.core.rockdb.constant.DBTableProfile;
 import io.nuls.core.rockdb.service.RocksDBService;
 
 import java.util.List;
@@ -99,12 +101,14 @@ public class ChainManager {
     private void initTable(int chainId) {
         NulsLogger logger = ContextManager.getContext(chainId).getLogger();
         try {
-            RocksDBService.createTable(BLOCK_HEADER + chainId);
-            RocksDBService.createTable(BLOCK_HEADER_INDEX + chainId);
+            RocksDBService.createTable(BLOCK_HEADER + chainId, DBTableProfile.POINT_LOOKUP);
+            RocksDBService.createTable(BLOCK_HEADER_INDEX + chainId, DBTableProfile.APPEND_LOG);
             if (RocksDBService.existTable(CACHED_BLOCK + chainId)) {
                 RocksDBService.destroyTable(CACHED_BLOCK + chainId);
             }
             RocksDBService.createTable(CACHED_BLOCK + chainId);
+            //缓存区块表每次启动都会重建，不需要WAL
+            RocksDBService.setDurability(CACHED_BLOCK + chainId, DBDurability.NO_WAL);
         } catch (Exception e) {
             logger.error(e);
         }
@@ -23,6 +23,11 @@ public class BlockConfig extends ChainParameters implements ModuleConfig {
      */
     private String language;
 
+    /**
+     * 是否将数据表迁移到共享RocksDB实例的列族中 / migrate tables into column families of one shared RocksDB instance
+     */
+    private boolean dbColumnFamily;
+
     /**
      * 分叉链监视线程执行间隔
      */
@@ -174,4 +179,12 @@ public class BlockConfig extends ChainParameters implements ModuleConfig {
     public void setRollbackHeight(int rollbackHeight) {
         this.rollbackHeight = rollbackHeight;
     }
+
+    public boolean isDbColumnFamily() {
+        return dbColumnFamily;
+    }
+
+    public void setDbColumnFamily(boolean dbColumnFamily) {
+        this.dbColumnFamily = dbColumnFamily;
+    }
 }
@@ -185,15 +185,31 @@ public class TransactionCall {
      * @throws IOException
      */
     public static List<Transaction> getConfirmedTransactions(int chainId, List<NulsHash> hashList, long timeout) {
+        return getConfirmedTransactions(chainId, hashList, -1, timeout);
+    }
+
+    /**
+     * 批量获取已确认区块的交易, 交易模块按区块高度顺序读取
+     * Get the transactions of a confirmed block, read by the transaction module in block order by height
+     *
+     * @param chainId     链Id/chain id
+     * @param hashList
+     * @param blockHeight 区块高度, 小于0时只按hash查询 / height of the block, only look up by hash when negative
+     * @return
+     */
+    public static List<Transaction> getConfirmedTransactions(int chainId, List<NulsHash> hashList, long blockHeight, long timeout) {
         List<Transaction> transactions = new ArrayList<>();
         NulsLogger logger = ContextManager.getContext(chainId).getLogger();
         try {
-            Map<String, Object> params = new HashMap<>(2);
+            Map<String, Object> params = new HashMap<>(4);
 //            params.put(Constants.VERSION_KEY_STR, "1.0");
             params.put(Constants.CHAIN_ID, chainId);
             List<String> t = new ArrayList<>();
             hashList.forEach(e -> t.add(e.toHex()));
             params.put("txHashList", t);
+            if (blockHeight >= 0) {
+                params.put("blockHeight", blockHeight);
+            }
             Response response = ResponseMessageProcessor.requestAndResponse(ModuleE.TX.abbr, "tx_getBlockTxs", params, timeout);
             if (response.isSuccess()) {
                 Map responseData = (Map) response.getResponseData();
@@ -29,6 +29,7 @@ import io.nuls.core.core.annotation.Component;
 import io.nuls.core.exception.NulsException;
 import io.nuls.core.model.ByteUtils;
 import io.nuls.core.parse.SerializeUtils;
+import io.nuls.core.rockdb.service.MultiTableBatchOperation;
 import io.nuls.core.rockdb.service.RocksDBService;
 
 import java.util.ArrayList;
@@ -52,14 +53,18 @@ public class BlockStorageServiceImpl implements BlockStorageService {
     @Override
     public boolean save(int chainId, BlockHeaderPo blockHeader) {
         byte[] height = SerializeUtils.uint64ToByteArray(blockHeader.getHeight());
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
         try {
             byte[] hash = blockHeader.getHash().getBytes();
-            boolean b1 = RocksDBService.put(BLOCK_HEADER_INDEX + chainId, height, hash);
-            boolean b2 = RocksDBService.put(BLOCK_HEADER + chainId, hash, blockHeader.serialize());
-            return b1 && b2;
+            //索引和区块头在同一批次中写入，列族模式下为原子提交；否则先写区块头再写索引，中断后不会留下指向不存在区块头的索引
+            batch.put(BLOCK_HEADER + chainId, hash, blockHeader.serialize());
+            batch.put(BLOCK_HEADER_INDEX + chainId, height, hash);
+            return batch.executeBatch();
         } catch (Exception e) {
             COMMON_LOG.error("", e);
             return false;
+        } finally {
+            batch.close();
         }
     }
 
@@ -127,14 +132,23 @@ public class BlockStorageServiceImpl implements BlockStorageService {
 
     @Override
     public boolean remove(int chainId, long height) {
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
         try {
-            byte[] hash = RocksDBService.get(BLOCK_HEADER_INDEX + chainId, SerializeUtils.uint64ToByteArray(height));
-            boolean b1 = RocksDBService.delete(BLOCK_HEADER_INDEX + chainId, SerializeUtils.uint64ToByteArray(height));
-            boolean b2 = RocksDBService.delete(BLOCK_HEADER + chainId, hash);
-            return b1 && b2;
+            byte[] key = SerializeUtils.uint64ToByteArray(height);
+            byte[] hash = RocksDBService.get(BLOCK_HEADER_INDEX + chainId, key);
+            if (hash == null) {
+                COMMON_LOG.error("remove block header fail, height index not found, chainId-" + chainId + ", height-" + height);
+                return false;
+            }
+            //先删除索引再删除区块头，中断后只会留下没有索引的区块头
+            batch.delete(BLOCK_HEADER_INDEX + chainId, key);
+            batch.delete(BLOCK_HEADER + chainId, hash);
+            return batch.executeBatch();
         } catch (Exception e) {
             COMMON_LOG.error("", e);
             return false;
+        } finally {
+            batch.close();
         }
     }
 
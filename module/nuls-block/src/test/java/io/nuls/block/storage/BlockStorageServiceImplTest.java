@@ -32,8 +32,10 @@ import io.nuls.core.core.ioc.SpringLiteContext;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class BlockStorageServiceImplTest {
 
@@ -62,8 +64,10 @@ public class BlockStorageServiceImplTest {
     @Test
     public void remove() {
         service.save(CHAIN_ID, header);
-        service.remove(CHAIN_ID, header.getHeight());
+        assertTrue(service.remove(CHAIN_ID, header.getHeight()));
         assertNull(service.query(CHAIN_ID, header.getHeight()));
+        //高度索引不存在时删除失败 / removing fails when the height index is missing
+        assertFalse(service.remove(CHAIN_ID, header.getHeight()));
     }
 
 }
\ No newline at end of file
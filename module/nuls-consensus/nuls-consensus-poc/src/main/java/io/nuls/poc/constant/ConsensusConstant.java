@@ -19,6 +19,10 @@ public interface ConsensusConstant {
     String DB_NAME_CONSUME_LANGUAGE = "language";
     String DB_NAME_CONSUME_CONGIF = "config";
     String DB_NAME_RANDOM_SEEDS = "random_seed";
+    /**
+     * 分批读取表数据时每批的条数
+     * */
+    int DB_SCAN_BATCH_SIZE = 1000;
 
     byte[] EMPTY_SEED = new byte[32];
 
@@ -76,24 +76,33 @@ public class AgentStorageServiceImpl implements AgentStorageService{
 
     @Override
     public List<AgentPo> getList(int chainID) throws NulsException {
-            List<Entry<byte[], byte[]>> list = RocksDBService.entryList(ConsensusConstant.DB_NAME_CONSENSUS_AGENT+chainID);
             List<AgentPo> agentList = new ArrayList<>();
-            for (Entry<byte[], byte[]> entry:list) {
-                AgentPo po = new AgentPo();
-                po.parse(entry.getValue(),0);
-                NulsHash hash = new NulsHash(entry.getKey());
-                po.setHash(hash);
-                agentList.add(po);
+            try {
+                RocksDBService.forEach(ConsensusConstant.DB_NAME_CONSENSUS_AGENT+chainID, ConsensusConstant.DB_SCAN_BATCH_SIZE, batch -> {
+                    for (Entry<byte[], byte[]> entry:batch) {
+                        AgentPo po = new AgentPo();
+                        po.parse(entry.getValue(),0);
+                        NulsHash hash = new NulsHash(entry.getKey());
+                        po.setHash(hash);
+                        agentList.add(po);
+                    }
+                    return true;
+                });
+            }catch (NulsException e){
+                throw e;
+            }catch (Exception e){
+                throw new NulsException(e);
             }
             return  agentList;
     }
 
     @Override
     public int size(int chainID) {
-        List<byte[]> keyList = RocksDBService.keyList(ConsensusConstant.DB_NAME_CONSENSUS_AGENT+chainID);
-        if(keyList != null){
-            return keyList.size();
+        try {
+            return (int) RocksDBService.count(ConsensusConstant.DB_NAME_CONSENSUS_AGENT+chainID);
+        }catch (Exception e){
+            Log.error(e);
+            return 0;
         }
-        return 0;
     }
 }
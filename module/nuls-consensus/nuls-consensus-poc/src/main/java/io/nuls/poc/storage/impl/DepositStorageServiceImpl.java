@@ -75,24 +75,33 @@ public class DepositStorageServiceImpl implements DepositStorageService {
 
     @Override
     public List<DepositPo> getList(int chainID) throws NulsException {
-        List<Entry<byte[], byte[]>> list = RocksDBService.entryList(ConsensusConstant.DB_NAME_CONSENSUS_DEPOSIT + chainID);
         List<DepositPo> depositList = new ArrayList<>();
-        for (Entry<byte[], byte[]> entry : list) {
-            DepositPo po = new DepositPo();
-            po.parse(entry.getValue(), 0);
-            NulsHash hash = new NulsHash(entry.getKey());
-            po.setTxHash(hash);
-            depositList.add(po);
+        try {
+            RocksDBService.forEach(ConsensusConstant.DB_NAME_CONSENSUS_DEPOSIT + chainID, ConsensusConstant.DB_SCAN_BATCH_SIZE, batch -> {
+                for (Entry<byte[], byte[]> entry : batch) {
+                    DepositPo po = new DepositPo();
+                    po.parse(entry.getValue(), 0);
+                    NulsHash hash = new NulsHash(entry.getKey());
+                    po.setTxHash(hash);
+                    depositList.add(po);
+                }
+                return true;
+            });
+        } catch (NulsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new NulsException(e);
         }
         return depositList;
     }
 
     @Override
     public int size(int chainID) {
-        List<byte[]> keyList = RocksDBService.keyList(ConsensusConstant.DB_NAME_CONSENSUS_DEPOSIT + chainID);
-        if (keyList != null) {
-            return keyList.size();
+        try {
+            return (int) RocksDBService.count(ConsensusConstant.DB_NAME_CONSENSUS_DEPOSIT + chainID);
+        } catch (Exception e) {
+            Log.error(e);
+            return 0;
         }
-        return 0;
     }
 }
@@ -4,6 +4,7 @@ import io.nuls.core.basic.ModuleConfig;
 import io.nuls.core.core.annotation.Component;
 import io.nuls.core.core.annotation.Configuration;
 import io.nuls.core.rpc.model.ModuleE;
+import io.nuls.ledger.constant.LedgerConstant;
 
 /**
  * @Author: lanjinsheng
@@ -23,6 +24,14 @@ public class LedgerConfig implements ModuleConfig {
     private int assetRegDestroyAmount = 200;
     private int decimals = 8;
     private String  symbol;
+    /**
+     * 保留回滚日志的区块数，必须大于0
+     */
+    private int blockUndoRetention = LedgerConstant.CACHE_ACCOUNT_BLOCK;
+    /**
+     * 是否将数据表迁移到共享RocksDB实例的列族中 / migrate tables into column families of one shared RocksDB instance
+     */
+    private boolean dbColumnFamily;
 
     public String getBlackHolePublicKey() {
         return blackHolePublicKey;
@@ -117,4 +126,20 @@ public class LedgerConfig implements ModuleConfig {
     public void setSymbol(String symbol) {
         this.symbol = symbol;
     }
+
+    public int getBlockUndoRetention() {
+        return blockUndoRetention;
+    }
+
+    public void setBlockUndoRetention(int blockUndoRetention) {
+        this.blockUndoRetention = blockUndoRetention;
+    }
+
+    public boolean isDbColumnFamily() {
+        return dbColumnFamily;
+    }
+
+    public void setDbColumnFamily(boolean dbColumnFamily) {
+        this.dbColumnFamily = dbColumnFamily;
+    }
 }
@@ -87,6 +87,23 @@ public class LedgerConstant {
     }
 
     public static final int NONCE_LENGHT = 8;
+    /**
+     * 账本key版本: 0为字符串key, 1为二进制key(地址字节+资产链id+资产id)
+     */
+    public static final int LEDGER_KEY_VERSION = 1;
+    /**
+     * 账户分段锁的段数(2的幂)
+     */
+    public static final int ACCOUNT_LOCK_STRIPES = 1024;
+    /**
+     * 区块提交时并行执行账户的线程
+     */
+    public static final String BLOCK_COMMIT_THREAD = "ledgerBlockCommit";
+    public static final int BLOCK_COMMIT_THREAD_COUNT = 4;
+    /**
+     * 区块涉及的账户数达到该值才并行执行
+     */
+    public static final int BLOCK_COMMIT_PARALLEL_MIN_ACCOUNTS = 200;
     public static String DEFAULT_ENCODING = "UTF-8";
     /**
      * 未确认交易的过期时间-s，配置加载会重置该值
@@ -116,7 +116,7 @@ public class LedgerChainManager {
      */
     private void initRocksDb() {
         try {
-            RocksDBService.init(ledgerConfig.getDataPath() + File.separator + ModuleE.LG.name);
+            RocksDBService.init(ledgerConfig.getDataPath() + File.separator + ModuleE.LG.name, ledgerConfig.isDbColumnFamily());
             Repository initDB = SpringLiteContext.getBean(RepositoryImpl.class);
             initDB.initTableName();
         } catch (Exception e) {
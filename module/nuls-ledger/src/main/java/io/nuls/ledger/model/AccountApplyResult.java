@@ -0,0 +1,71 @@
+package io.nuls.ledger.model;
+
+import io.nuls.core.model.ByteArrayWrapper;
+import io.nuls.ledger.model.po.AccountState;
+import io.nuls.ledger.model.po.sub.AccountUndo;
+import io.nuls.ledger.utils.AccountUndoUtil;
+
+import java.util.*;
+
+/**
+ * 区块提交时一组账户的执行结果,各组结果合并后作为一个批次写入
+ * Result of applying a block to a group of accounts, the results of all groups are merged into a single write batch
+ */
+public class AccountApplyResult {
+
+    /**
+     * 账户最新状态
+     */
+    private Map<ByteArrayWrapper, AccountState> memAccounts;
+    /**
+     * 账户最新状态的序列化数据
+     */
+    private Map<byte[], byte[]> accountStatesMap;
+    /**
+     * 账户相对提交前状态的回滚记录
+     */
+    private List<AccountUndo> accountUndos;
+    /**
+     * 区块花费的非锁定nonce,提交时在账户锁内判断是删除对应的未确认交易还是清空账户的未确认数据
+     */
+    private List<Uncfd2CfdKey> spentNonces = new ArrayList<>();
+
+    public AccountApplyResult(int accountCount) {
+        memAccounts = new HashMap<>(accountCount * 2);
+        accountStatesMap = new HashMap<>(accountCount * 2);
+        accountUndos = new ArrayList<>(accountCount);
+    }
+
+    public void addAccount(ByteArrayWrapper key, AccountBalance accountBalance, byte[] accountStateBytes) {
+        memAccounts.put(key, accountBalance.getNowAccountState());
+        accountStatesMap.put(key.getBytes(), accountStateBytes);
+        accountUndos.add(AccountUndoUtil.createUndo(key.getBytes(), accountBalance.getPreAccountState(), accountBalance.getNowAccountState(), accountStateBytes));
+    }
+
+    /**
+     * 合并另一组账户的结果,两组账户不相交
+     * Merge the result of another, disjoint, group of accounts
+     */
+    public void merge(AccountApplyResult other) {
+        memAccounts.putAll(other.memAccounts);
+        accountStatesMap.putAll(other.accountStatesMap);
+        accountUndos.addAll(other.accountUndos);
+        spentNonces.addAll(other.spentNonces);
+    }
+
+    public Map<ByteArrayWrapper, AccountState> getMemAccounts() {
+        return memAccounts;
+    }
+
+    public Map<byte[], byte[]> getAccountStatesMap() {
+        return accountStatesMap;
+    }
+
+    public List<AccountUndo> getAccountUndos() {
+        return accountUndos;
+    }
+
+    public List<Uncfd2CfdKey> getSpentNonces() {
+        return spentNonces;
+    }
+}
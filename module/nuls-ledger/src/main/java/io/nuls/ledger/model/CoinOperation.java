@@ -0,0 +1,54 @@
+package io.nuls.ledger.model;
+
+import io.nuls.base.data.Coin;
+
+/**
+ * 区块提交时交易中作用于某个账户的一条coin(from或to),同一账户的coin按交易顺序执行
+ * One coin (from or to) of a block transaction acting on an account, the coins of an account are applied in
+ * transaction order
+ */
+public class CoinOperation {
+
+    private Coin coin;
+    private boolean from;
+    private byte[] nonce;
+    private String txHash;
+    private long txTime;
+    private String address;
+
+    public CoinOperation(Coin coin, boolean from, byte[] nonce, String txHash, long txTime, String address) {
+        this.coin = coin;
+        this.from = from;
+        this.nonce = nonce;
+        this.txHash = txHash;
+        this.txTime = txTime;
+        this.address = address;
+    }
+
+    public Coin getCoin() {
+        return coin;
+    }
+
+    public boolean isFrom() {
+        return from;
+    }
+
+    /**
+     * 交易的nonce值(交易hash后8位)
+     */
+    public byte[] getNonce() {
+        return nonce;
+    }
+
+    public String getTxHash() {
+        return txHash;
+    }
+
+    public long getTxTime() {
+        return txTime;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+}
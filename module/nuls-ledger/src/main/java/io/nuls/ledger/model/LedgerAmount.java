@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2019 nuls.io
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package io.nuls.ledger.model;
+
+import java.math.BigInteger;
+
+/**
+ * 账本金额的累加值,数值在long范围内时直接用long计算,溢出后才使用BigInteger
+ * 链上的金额绝大部分在long范围内,转账时的加减不再创建新的BigInteger
+ * <p>
+ * Ledger amount accumulator. Values within the long range are computed with longs and BigInteger is used only after
+ * an overflow. Nearly all amounts on chain fit in a long, so transfers no longer allocate new BigIntegers
+ */
+public final class LedgerAmount {
+
+    private long value;
+
+    /**
+     * 超出long范围时的数值,在long范围内时为null
+     * The value once it no longer fits in a long, null otherwise
+     */
+    private BigInteger big;
+
+    public LedgerAmount() {
+    }
+
+    public LedgerAmount(BigInteger amount) {
+        set(amount);
+    }
+
+    public LedgerAmount copy() {
+        LedgerAmount amount = new LedgerAmount();
+        amount.value = value;
+        amount.big = big;
+        return amount;
+    }
+
+    public void set(BigInteger amount) {
+        if (amount.bitLength() < Long.SIZE) {
+            value = amount.longValue();
+            big = null;
+        } else {
+            value = 0;
+            big = amount;
+        }
+    }
+
+    public void add(BigInteger amount) {
+        if (null == big && amount.bitLength() < Long.SIZE) {
+            add(amount.longValue());
+        } else {
+            set(toBigInteger().add(amount));
+        }
+    }
+
+    public void subtract(BigInteger amount) {
+        if (null == big && amount.bitLength() < Long.SIZE) {
+            subtract(amount.longValue());
+        } else {
+            set(toBigInteger().subtract(amount));
+        }
+    }
+
+    public void add(LedgerAmount amount) {
+        if (null == big && null == amount.big) {
+            add(amount.value);
+        } else {
+            set(toBigInteger().add(amount.toBigInteger()));
+        }
+    }
+
+    public void subtract(LedgerAmount amount) {
+        if (null == big && null == amount.big) {
+            subtract(amount.value);
+        } else {
+            set(toBigInteger().subtract(amount.toBigInteger()));
+        }
+    }
+
+    private void add(long amount) {
+        if (null == big) {
+            long result = value + amount;
+            //两个同号数相加结果变号即溢出 / the sum overflowed if its sign differs from both operands
+            if (((value ^ result) & (amount ^ result)) >= 0) {
+                value = result;
+                return;
+            }
+        }
+        set(toBigInteger().add(BigInteger.valueOf(amount)));
+    }
+
+    private void subtract(long amount) {
+        if (null == big) {
+            long result = value - amount;
+            if (((value ^ amount) & (value ^ result)) >= 0) {
+                value = result;
+                return;
+            }
+        }
+        set(toBigInteger().subtract(BigInteger.valueOf(amount)));
+    }
+
+    /**
+     * a - b
+     */
+    public static BigInteger subtract(LedgerAmount a, LedgerAmount b) {
+        if (null == a.big && null == b.big) {
+            long result = a.value - b.value;
+            if (((a.value ^ b.value) & (a.value ^ result)) >= 0) {
+                return BigInteger.valueOf(result);
+            }
+        }
+        return a.toBigInteger().subtract(b.toBigInteger());
+    }
+
+    public boolean isZero() {
+        return null == big && value == 0;
+    }
+
+    public BigInteger toBigInteger() {
+        return null == big ? BigInteger.valueOf(value) : big;
+    }
+
+    @Override
+    public String toString() {
+        return toBigInteger().toString();
+    }
+}
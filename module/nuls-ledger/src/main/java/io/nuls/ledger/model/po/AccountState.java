@@ -33,18 +33,22 @@ import io.nuls.core.model.ByteUtils;
 import io.nuls.core.parse.SerializeUtils;
 import io.nuls.core.rpc.util.NulsDateUtils;
 import io.nuls.ledger.constant.LedgerConstant;
+import io.nuls.ledger.model.LedgerAmount;
 import io.nuls.ledger.model.po.sub.FreezeHeightState;
 import io.nuls.ledger.model.po.sub.FreezeLockTimeState;
 
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * 1.用户地址资产账号对应的账本信息
  * 2.该持久化对象是区块确认后的,最终信息：包含nonce值，余额，以及冻结信息。
  * 3.key值:address-assetChainId-assetId
+ * 4.金额在long范围内时使用long计算,冻结记录按解锁高度/时间有序并维护冻结合计,查询余额时不再遍历冻结记录
  * @author lanjinsheng
  */
 
@@ -59,25 +63,32 @@ public class AccountState extends BaseNulsData {
      * 账户总金额出账
      * 对应coindata里的coinfrom 累加值
      */
-    private BigInteger totalFromAmount = BigInteger.ZERO;
+    private LedgerAmount totalFromAmount = new LedgerAmount();
 
     /**
      * 账户总金额入账
      * 对应coindata里的cointo 累加值
      */
-    private BigInteger totalToAmount = BigInteger.ZERO;
+    private LedgerAmount totalToAmount = new LedgerAmount();
 
 
     /**
-     * 账户冻结的资产(高度冻结)
+     * 账户冻结的资产(高度冻结),按解锁高度升序排列
      */
     private List<FreezeHeightState> freezeHeightStates = new ArrayList<>();
 
     /**
-     * 账户冻结的资产(时间冻结)
+     * 账户冻结的资产(时间冻结),按解锁时间升序排列
      */
     private List<FreezeLockTimeState> freezeLockTimeStates = new ArrayList<>();
 
+    /**
+     * 冻结金额合计,随冻结记录的增删更新
+     */
+    private LedgerAmount freezeHeightTotal = new LedgerAmount();
+
+    private LedgerAmount freezeLockTimeTotal = new LedgerAmount();
+
     public AccountState() {
         super();
     }
@@ -92,15 +103,15 @@ public class AccountState extends BaseNulsData {
      * @return BigInteger
      */
     public BigInteger getAvailableAmount() {
-        return totalToAmount.subtract(totalFromAmount);
+        return LedgerAmount.subtract(totalToAmount, totalFromAmount);
     }
 
     public void addTotalFromAmount(BigInteger value) {
-        totalFromAmount = totalFromAmount.add(value);
+        totalFromAmount.add(value);
     }
 
     public void addTotalToAmount(BigInteger value) {
-        totalToAmount = totalToAmount.add(value);
+        totalToAmount.add(value);
     }
 
     /**
@@ -109,7 +120,11 @@ public class AccountState extends BaseNulsData {
      * @return BigInteger
      */
     public BigInteger getTotalAmount() {
-        return totalToAmount.subtract(totalFromAmount).add(getFreezeTotal());
+        LedgerAmount total = totalToAmount.copy();
+        total.subtract(totalFromAmount);
+        total.add(freezeHeightTotal);
+        total.add(freezeLockTimeTotal);
+        return total.toBigInteger();
     }
 
 
@@ -117,8 +132,8 @@ public class AccountState extends BaseNulsData {
     protected void serializeToStream(NulsOutputStreamBuffer stream) throws IOException {
         stream.write(nonce);
         stream.writeUint32(latestUnFreezeTime);
-        stream.writeBigInteger(totalFromAmount);
-        stream.writeBigInteger(totalToAmount);
+        stream.writeBigInteger(totalFromAmount.toBigInteger());
+        stream.writeBigInteger(totalToAmount.toBigInteger());
         stream.writeUint32(freezeHeightStates.size());
         for (FreezeHeightState heightState : freezeHeightStates) {
             stream.writeNulsData(heightState);
@@ -133,30 +148,32 @@ public class AccountState extends BaseNulsData {
     public void parse(NulsByteBuffer byteBuffer) throws NulsException {
         this.nonce = byteBuffer.readBytes(8);
         this.latestUnFreezeTime = byteBuffer.readUint32();
-        this.totalFromAmount = byteBuffer.readBigInteger();
-        this.totalToAmount = byteBuffer.readBigInteger();
+        this.totalFromAmount = new LedgerAmount(byteBuffer.readBigInteger());
+        this.totalToAmount = new LedgerAmount(byteBuffer.readBigInteger());
         int freezeHeightCount = (int) byteBuffer.readUint32();
-        this.freezeHeightStates = new ArrayList<>(freezeHeightCount);
+        List<FreezeHeightState> heightStates = new ArrayList<>(freezeHeightCount);
         for (int i = 0; i < freezeHeightCount; i++) {
             try {
                 FreezeHeightState heightState = new FreezeHeightState();
                 byteBuffer.readNulsData(heightState);
-                this.freezeHeightStates.add(heightState);
+                heightStates.add(heightState);
             } catch (Exception e) {
                 throw new NulsException(e);
             }
         }
+        setFreezeHeightStates(heightStates);
         int freezeLockTimeCount = (int) byteBuffer.readUint32();
-        this.freezeLockTimeStates = new ArrayList<>(freezeLockTimeCount);
+        List<FreezeLockTimeState> lockTimeStates = new ArrayList<>(freezeLockTimeCount);
         for (int i = 0; i < freezeLockTimeCount; i++) {
             try {
                 FreezeLockTimeState lockTimeState = new FreezeLockTimeState();
                 byteBuffer.readNulsData(lockTimeState);
-                this.freezeLockTimeStates.add(lockTimeState);
+                lockTimeStates.add(lockTimeState);
             } catch (Exception e) {
                 throw new NulsException(e);
             }
         }
+        setFreezeLockTimeStates(lockTimeStates);
     }
 
     @Override
@@ -185,15 +202,106 @@ public class AccountState extends BaseNulsData {
      * @return
      */
     public BigInteger getFreezeTotal() {
-        BigInteger freeze = BigInteger.ZERO;
-        for (FreezeHeightState heightState : freezeHeightStates) {
-            freeze = freeze.add(heightState.getAmount());
+        LedgerAmount freeze = freezeHeightTotal.copy();
+        freeze.add(freezeLockTimeTotal);
+        return freeze.toBigInteger();
+    }
+
+    /**
+     * 增加高度冻结记录,插入到相同解锁高度的记录之后
+     */
+    public void addFreezeHeightState(FreezeHeightState heightState) {
+        int low = 0;
+        int high = freezeHeightStates.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (freezeHeightStates.get(mid).getHeight() <= heightState.getHeight()) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        freezeHeightStates.add(low, heightState);
+        freezeHeightTotal.add(heightState.getAmount());
+    }
+
+    /**
+     * 增加时间冻结记录,插入到相同解锁时间的记录之后
+     */
+    public void addFreezeLockTimeState(FreezeLockTimeState lockTimeState) {
+        int low = 0;
+        int high = freezeLockTimeStates.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (freezeLockTimeStates.get(mid).getLockTime() <= lockTimeState.getLockTime()) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
+        freezeLockTimeStates.add(low, lockTimeState);
+        freezeLockTimeTotal.add(lockTimeState.getAmount());
+    }
 
-        for (FreezeLockTimeState lockTimeState : freezeLockTimeStates) {
-            freeze = freeze.add(lockTimeState.getAmount());
+    public boolean removeFreezeHeightState(FreezeHeightState heightState) {
+        for (int i = 0; i < freezeHeightStates.size(); i++) {
+            if (freezeHeightStates.get(i) == heightState) {
+                freezeHeightStates.remove(i);
+                freezeHeightTotal.subtract(heightState.getAmount());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean removeFreezeLockTimeState(FreezeLockTimeState lockTimeState) {
+        for (int i = 0; i < freezeLockTimeStates.size(); i++) {
+            if (freezeLockTimeStates.get(i) == lockTimeState) {
+                freezeLockTimeStates.remove(i);
+                freezeLockTimeTotal.subtract(lockTimeState.getAmount());
+                return true;
+            }
         }
-        return freeze;
+        return false;
+    }
+
+    /**
+     * 解锁高度不大于当前高度的记录,按高度升序排列,只需移除前缀
+     *
+     * @param nowHeight 当前高度
+     * @return 解锁的金额
+     */
+    public BigInteger unFreezeHeightStates(long nowHeight) {
+        int count = 0;
+        LedgerAmount unFreezeAmount = new LedgerAmount();
+        while (count < freezeHeightStates.size() && freezeHeightStates.get(count).getHeight() <= nowHeight) {
+            unFreezeAmount.add(freezeHeightStates.get(count).getAmount());
+            count++;
+        }
+        if (count > 0) {
+            freezeHeightStates.subList(0, count).clear();
+            freezeHeightTotal.subtract(unFreezeAmount);
+        }
+        return unFreezeAmount.toBigInteger();
+    }
+
+    /**
+     * 移除满足解锁条件的时间冻结记录
+     *
+     * @param unlocked 解锁条件
+     * @return 解锁的金额
+     */
+    public BigInteger unFreezeLockTimeStates(Predicate<FreezeLockTimeState> unlocked) {
+        LedgerAmount unFreezeAmount = new LedgerAmount();
+        freezeLockTimeStates.removeIf(lockTimeState -> {
+            if (unlocked.test(lockTimeState)) {
+                unFreezeAmount.add(lockTimeState.getAmount());
+                return true;
+            }
+            return false;
+        });
+        freezeLockTimeTotal.subtract(unFreezeAmount);
+        return unFreezeAmount.toBigInteger();
     }
 
 
@@ -201,14 +309,13 @@ public class AccountState extends BaseNulsData {
         AccountState orgAccountState = new AccountState();
         orgAccountState.setNonce(ByteUtils.copyOf(this.getNonce(), 8));
         orgAccountState.setLatestUnFreezeTime(this.getLatestUnFreezeTime());
-        orgAccountState.setTotalFromAmount(this.getTotalFromAmount());
-        orgAccountState.setTotalToAmount(this.getTotalToAmount());
-        List<FreezeHeightState> heightStateArrayList = new ArrayList<>();
-        heightStateArrayList.addAll(this.getFreezeHeightStates());
-        orgAccountState.setFreezeHeightStates(heightStateArrayList);
-        List<FreezeLockTimeState> lockTimeStateArrayList = new ArrayList<>();
-        lockTimeStateArrayList.addAll(this.getFreezeLockTimeStates());
-        orgAccountState.setFreezeLockTimeStates(lockTimeStateArrayList);
+        orgAccountState.totalFromAmount = totalFromAmount.copy();
+        orgAccountState.totalToAmount = totalToAmount.copy();
+        //冻结记录已有序,直接复制列表和合计
+        orgAccountState.freezeHeightStates = new ArrayList<>(freezeHeightStates);
+        orgAccountState.freezeHeightTotal = freezeHeightTotal.copy();
+        orgAccountState.freezeLockTimeStates = new ArrayList<>(freezeLockTimeStates);
+        orgAccountState.freezeLockTimeTotal = freezeLockTimeTotal.copy();
         return orgAccountState;
     }
 
@@ -229,35 +336,55 @@ public class AccountState extends BaseNulsData {
     }
 
     public BigInteger getTotalFromAmount() {
-        return totalFromAmount;
+        return totalFromAmount.toBigInteger();
     }
 
     public void setTotalFromAmount(BigInteger totalFromAmount) {
-        this.totalFromAmount = totalFromAmount;
+        this.totalFromAmount = new LedgerAmount(totalFromAmount);
     }
 
     public BigInteger getTotalToAmount() {
-        return totalToAmount;
+        return totalToAmount.toBigInteger();
     }
 
     public void setTotalToAmount(BigInteger totalToAmount) {
-        this.totalToAmount = totalToAmount;
+        this.totalToAmount = new LedgerAmount(totalToAmount);
     }
 
+    /**
+     * 高度冻结记录,只读;增删使用addFreezeHeightState/removeFreezeHeightState以维护顺序与合计
+     */
     public List<FreezeHeightState> getFreezeHeightStates() {
-        return freezeHeightStates;
+        return Collections.unmodifiableList(freezeHeightStates);
     }
 
     public void setFreezeHeightStates(List<FreezeHeightState> freezeHeightStates) {
-        this.freezeHeightStates = freezeHeightStates;
+        List<FreezeHeightState> list = new ArrayList<>(freezeHeightStates);
+        list.sort((x, y) -> Long.compare(x.getHeight(), y.getHeight()));
+        LedgerAmount total = new LedgerAmount();
+        for (FreezeHeightState heightState : list) {
+            total.add(heightState.getAmount());
+        }
+        this.freezeHeightStates = list;
+        this.freezeHeightTotal = total;
     }
 
+    /**
+     * 时间冻结记录,只读;增删使用addFreezeLockTimeState/removeFreezeLockTimeState以维护顺序与合计
+     */
     public List<FreezeLockTimeState> getFreezeLockTimeStates() {
-        return freezeLockTimeStates;
+        return Collections.unmodifiableList(freezeLockTimeStates);
     }
 
     public void setFreezeLockTimeStates(List<FreezeLockTimeState> freezeLockTimeStates) {
-        this.freezeLockTimeStates = freezeLockTimeStates;
+        List<FreezeLockTimeState> list = new ArrayList<>(freezeLockTimeStates);
+        list.sort((x, y) -> Long.compare(x.getLockTime(), y.getLockTime()));
+        LedgerAmount total = new LedgerAmount();
+        for (FreezeLockTimeState lockTimeState : list) {
+            total.add(lockTimeState.getAmount());
+        }
+        this.freezeLockTimeStates = list;
+        this.freezeLockTimeTotal = total;
     }
 
     public boolean timeAllow() {
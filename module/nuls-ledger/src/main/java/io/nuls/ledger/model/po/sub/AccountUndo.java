@@ -0,0 +1,244 @@
+/*-
+ * ⁣⁣
+ * MIT License
+ * ⁣⁣
+ * Copyright (C) 2017 - 2018 nuls.io
+ * ⁣⁣
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ * ⁣⁣
+ */
+package io.nuls.ledger.model.po.sub;
+
+import io.nuls.base.basic.NulsByteBuffer;
+import io.nuls.base.basic.NulsOutputStreamBuffer;
+import io.nuls.base.data.BaseNulsData;
+import io.nuls.core.exception.NulsException;
+import io.nuls.core.parse.SerializeUtils;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 区块回滚日志中单个账户的变化,只记录区块改变的字段:
+ * 出入账金额增量、区块前的解冻处理时间、区块中花费的nonce、新增冻结记录在区块后列表中的位置、被移除的冻结记录;
+ * 区块前的nonce为第一个花费nonce的fromNonce,没有花费时nonce不变
+ * <p>
+ * Changes of one account in a block undo log, only the fields the block changed are recorded:
+ * the amount deltas, the unfreeze time before the block, the nonces spent in the block, the positions of the added
+ * freeze entries in the lists after the block and the removed freeze entries.
+ * The nonce before the block is the fromNonce of the first spent nonce, it is unchanged when nothing was spent
+ * <p>
+ * 同时记录区块后账户状态的hash,只有账户当前状态与之相同时才执行回滚,重复执行或在区块前的状态上执行都不会改变账户
+ * The hash of the account state after the block is recorded as well, the undo is applied only when the current
+ * state still matches it, so applying it twice or to the state before the block leaves the account unchanged
+ */
+public class AccountUndo extends BaseNulsData {
+    /**
+     * 账户key: 地址+资产链id+资产id
+     */
+    private byte[] accountKey;
+
+    /**
+     * 区块后账户状态序列化数据的hash
+     */
+    private byte[] postStateHash;
+
+    private BigInteger fromAmountDelta = BigInteger.ZERO;
+
+    private BigInteger toAmountDelta = BigInteger.ZERO;
+
+    private long preLatestUnFreezeTime;
+
+    private List<AmountNonce> nonces = new ArrayList<>();
+
+    private List<Integer> addedHeightIndexes = new ArrayList<>();
+
+    private List<FreezeHeightState> removedHeightStates = new ArrayList<>();
+
+    private List<Integer> addedLockTimeIndexes = new ArrayList<>();
+
+    private List<FreezeLockTimeState> removedLockTimeStates = new ArrayList<>();
+
+    public AccountUndo() {
+        super();
+    }
+
+    public AccountUndo(byte[] accountKey) {
+        this.accountKey = accountKey;
+    }
+
+    @Override
+    protected void serializeToStream(NulsOutputStreamBuffer stream) throws IOException {
+        stream.writeBytesWithLength(accountKey);
+        stream.writeBytesWithLength(postStateHash);
+        stream.writeBytesWithLength(fromAmountDelta.toByteArray());
+        stream.writeBytesWithLength(toAmountDelta.toByteArray());
+        stream.writeUint32(preLatestUnFreezeTime);
+        stream.writeVarInt(nonces.size());
+        for (AmountNonce nonce : nonces) {
+            stream.writeNulsData(nonce);
+        }
+        writeIndexes(stream, addedHeightIndexes);
+        stream.writeVarInt(removedHeightStates.size());
+        for (FreezeHeightState heightState : removedHeightStates) {
+            stream.writeNulsData(heightState);
+        }
+        writeIndexes(stream, addedLockTimeIndexes);
+        stream.writeVarInt(removedLockTimeStates.size());
+        for (FreezeLockTimeState lockTimeState : removedLockTimeStates) {
+            stream.writeNulsData(lockTimeState);
+        }
+    }
+
+    @Override
+    public void parse(NulsByteBuffer byteBuffer) throws NulsException {
+        this.accountKey = byteBuffer.readByLengthByte();
+        this.postStateHash = byteBuffer.readByLengthByte();
+        this.fromAmountDelta = new BigInteger(byteBuffer.readByLengthByte());
+        this.toAmountDelta = new BigInteger(byteBuffer.readByLengthByte());
+        this.preLatestUnFreezeTime = byteBuffer.readUint32();
+        int nonceCount = (int) byteBuffer.readVarInt();
+        for (int i = 0; i < nonceCount; i++) {
+            nonces.add(byteBuffer.readNulsData(new AmountNonce()));
+        }
+        readIndexes(byteBuffer, addedHeightIndexes);
+        int heightCount = (int) byteBuffer.readVarInt();
+        for (int i = 0; i < heightCount; i++) {
+            removedHeightStates.add(byteBuffer.readNulsData(new FreezeHeightState()));
+        }
+        readIndexes(byteBuffer, addedLockTimeIndexes);
+        int lockTimeCount = (int) byteBuffer.readVarInt();
+        for (int i = 0; i < lockTimeCount; i++) {
+            removedLockTimeStates.add(byteBuffer.readNulsData(new FreezeLockTimeState()));
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        size += SerializeUtils.sizeOfBytes(accountKey);
+        size += SerializeUtils.sizeOfBytes(postStateHash);
+        size += SerializeUtils.sizeOfBytes(fromAmountDelta.toByteArray());
+        size += SerializeUtils.sizeOfBytes(toAmountDelta.toByteArray());
+        size += SerializeUtils.sizeOfUint32();
+        size += SerializeUtils.sizeOfVarInt(nonces.size());
+        for (AmountNonce nonce : nonces) {
+            size += SerializeUtils.sizeOfNulsData(nonce);
+        }
+        size += sizeOfIndexes(addedHeightIndexes);
+        size += SerializeUtils.sizeOfVarInt(removedHeightStates.size());
+        for (FreezeHeightState heightState : removedHeightStates) {
+            size += SerializeUtils.sizeOfNulsData(heightState);
+        }
+        size += sizeOfIndexes(addedLockTimeIndexes);
+        size += SerializeUtils.sizeOfVarInt(removedLockTimeStates.size());
+        for (FreezeLockTimeState lockTimeState : removedLockTimeStates) {
+            size += SerializeUtils.sizeOfNulsData(lockTimeState);
+        }
+        return size;
+    }
+
+    private static void writeIndexes(NulsOutputStreamBuffer stream, List<Integer> indexes) throws IOException {
+        stream.writeVarInt(indexes.size());
+        for (Integer index : indexes) {
+            stream.writeVarInt(index);
+        }
+    }
+
+    private static void readIndexes(NulsByteBuffer byteBuffer, List<Integer> indexes) throws NulsException {
+        int count = (int) byteBuffer.readVarInt();
+        for (int i = 0; i < count; i++) {
+            indexes.add((int) byteBuffer.readVarInt());
+        }
+    }
+
+    private static int sizeOfIndexes(List<Integer> indexes) {
+        int size = SerializeUtils.sizeOfVarInt(indexes.size());
+        for (Integer index : indexes) {
+            size += SerializeUtils.sizeOfVarInt(index);
+        }
+        return size;
+    }
+
+    public byte[] getAccountKey() {
+        return accountKey;
+    }
+
+    public void setAccountKey(byte[] accountKey) {
+        this.accountKey = accountKey;
+    }
+
+    public byte[] getPostStateHash() {
+        return postStateHash;
+    }
+
+    public void setPostStateHash(byte[] postStateHash) {
+        this.postStateHash = postStateHash;
+    }
+
+    public BigInteger getFromAmountDelta() {
+        return fromAmountDelta;
+    }
+
+    public void setFromAmountDelta(BigInteger fromAmountDelta) {
+        this.fromAmountDelta = fromAmountDelta;
+    }
+
+    public BigInteger getToAmountDelta() {
+        return toAmountDelta;
+    }
+
+    public void setToAmountDelta(BigInteger toAmountDelta) {
+        this.toAmountDelta = toAmountDelta;
+    }
+
+    public long getPreLatestUnFreezeTime() {
+        return preLatestUnFreezeTime;
+    }
+
+    public void setPreLatestUnFreezeTime(long preLatestUnFreezeTime) {
+        this.preLatestUnFreezeTime = preLatestUnFreezeTime;
+    }
+
+    public List<AmountNonce> getNonces() {
+        return nonces;
+    }
+
+    public void setNonces(List<AmountNonce> nonces) {
+        this.nonces = nonces;
+    }
+
+    public List<Integer> getAddedHeightIndexes() {
+        return addedHeightIndexes;
+    }
+
+    public List<FreezeHeightState> getRemovedHeightStates() {
+        return removedHeightStates;
+    }
+
+    public List<Integer> getAddedLockTimeIndexes() {
+        return addedLockTimeIndexes;
+    }
+
+    public List<FreezeLockTimeState> getRemovedLockTimeStates() {
+        return removedLockTimeStates;
+    }
+}
@@ -41,6 +41,7 @@ import io.nuls.ledger.model.po.sub.FreezeLockTimeState;
 import io.nuls.ledger.service.AccountStateService;
 import io.nuls.ledger.service.UnconfirmedStateService;
 import io.nuls.ledger.utils.LedgerUtil;
+import io.nuls.ledger.utils.LockerUtil;
 import io.nuls.ledger.utils.LoggerUtil;
 
 import java.math.BigInteger;
@@ -95,7 +96,7 @@ public class AccountStateCmd extends BaseLedgerCmd {
             return failed(LedgerErrorCode.CHAIN_INIT_FAIL);
         }
         LoggerUtil.logger(chainId).debug("chainId={},assetChainId={},address={},assetId={}", chainId, assetChainId, address, assetId);
-        AccountState accountState = accountStateService.getAccountStateReCal(address, chainId, assetChainId, assetId);
+        AccountState accountState = readAccountState(address, chainId, assetChainId, assetId);
         Map<String, Object> rtMap = new HashMap<>(5);
         rtMap.put("freeze", accountState.getFreezeTotal());
         rtMap.put("total", accountState.getTotalAmount());
@@ -149,7 +150,7 @@ public class AccountStateCmd extends BaseLedgerCmd {
             int assetChainId = Integer.parseInt(assetInfo[0].trim());
             int assetId = Integer.parseInt(assetInfo[1].trim());
 
-            AccountState accountState = accountStateService.getAccountStateReCal(address, chainId, assetChainId, assetId);
+            AccountState accountState = readAccountState(address, chainId, assetChainId, assetId);
             Map<String, Object> rtMap = new HashMap<>(5);
             rtMap.put("freeze", accountState.getFreezeTotal());
             rtMap.put("total", accountState.getTotalAmount());
@@ -212,7 +213,7 @@ public class AccountStateCmd extends BaseLedgerCmd {
         if (!chainHanlder(chainId)) {
             return failed(LedgerErrorCode.CHAIN_INIT_FAIL);
         }
-        AccountState accountState = accountStateService.getAccountStateReCal(address, chainId, assetChainId, assetId);
+        AccountState accountState = readAccountState(address, chainId, assetChainId, assetId);
         List<FreezeLockState> freezeLockStates = new ArrayList<>();
 
         for (FreezeLockTimeState freezeLockTimeState : accountState.getFreezeLockTimeStates()) {
@@ -284,16 +285,21 @@ public class AccountStateCmd extends BaseLedgerCmd {
         if (!chainHanlder(chainId)) {
             return failed(LedgerErrorCode.CHAIN_INIT_FAIL);
         }
-        Map<String, Object> rtMap = new HashMap<>(2);
-        AccountState accountState = accountStateService.getAccountState(address, chainId, assetChainId, assetId);
-        AccountStateUnconfirmed accountStateUnconfirmed = unconfirmedStateService.getUnconfirmedInfo(address, chainId, assetChainId, assetId, accountState);
-        if (isConfirmed || null == accountStateUnconfirmed) {
-            rtMap.put("nonce", RPCUtil.encode(accountState.getNonce()));
-            rtMap.put("nonceType", LedgerConstant.CONFIRMED_NONCE);
-        } else {
-            rtMap.put("nonce", RPCUtil.encode(accountStateUnconfirmed.getNonce()));
-            rtMap.put("nonceType", LedgerConstant.UNCONFIRMED_NONCE);
-        }
+        boolean confirmed = isConfirmed;
+        //确认状态与未确认状态在同一次乐观读中获取,避免区块提交期间读到不匹配的nonce
+        Map<String, Object> rtMap = LockerUtil.ACCOUNT_LOCKER.read(LedgerUtil.getKey(address, assetChainId, assetId), () -> {
+            Map<String, Object> nonceMap = new HashMap<>(2);
+            AccountState accountState = accountStateService.getAccountState(address, chainId, assetChainId, assetId);
+            AccountStateUnconfirmed accountStateUnconfirmed = unconfirmedStateService.getUnconfirmedInfo(address, chainId, assetChainId, assetId, accountState);
+            if (confirmed || null == accountStateUnconfirmed) {
+                nonceMap.put("nonce", RPCUtil.encode(accountState.getNonce()));
+                nonceMap.put("nonceType", LedgerConstant.CONFIRMED_NONCE);
+            } else {
+                nonceMap.put("nonce", RPCUtil.encode(accountStateUnconfirmed.getNonce()));
+                nonceMap.put("nonceType", LedgerConstant.UNCONFIRMED_NONCE);
+            }
+            return nonceMap;
+        });
         return success(rtMap);
     }
 
@@ -328,18 +334,23 @@ public class AccountStateCmd extends BaseLedgerCmd {
         if (!chainHanlder(chainId)) {
             return failed(LedgerErrorCode.CHAIN_INIT_FAIL);
         }
-        AccountState accountState = accountStateService.getAccountStateReCal(address, chainId, assetChainId, assetId);
+        boolean confirmed = isConfirmed;
+        //确认状态与未确认状态在同一次乐观读中获取,避免区块提交期间读到不匹配的余额与nonce
         Map<String, Object> rtMap = new HashMap<>(6);
-        AccountStateUnconfirmed accountStateUnconfirmed = unconfirmedStateService.getUnconfirmedInfo(address, chainId, assetChainId, assetId, accountState);
-        if (isConfirmed || null == accountStateUnconfirmed) {
-            rtMap.put("nonce", RPCUtil.encode(accountState.getNonce()));
-            rtMap.put("nonceType", LedgerConstant.CONFIRMED_NONCE);
-            rtMap.put("available", accountState.getAvailableAmount());
-        } else {
-            rtMap.put("available", accountState.getAvailableAmount().subtract(accountStateUnconfirmed.getAmount()));
-            rtMap.put("nonce", RPCUtil.encode(accountStateUnconfirmed.getNonce()));
-            rtMap.put("nonceType", LedgerConstant.UNCONFIRMED_NONCE);
-        }
+        AccountState accountState = LockerUtil.ACCOUNT_LOCKER.read(LedgerUtil.getKey(address, assetChainId, assetId), () -> {
+            AccountState state = accountStateService.getAccountStateReCal(address, chainId, assetChainId, assetId);
+            AccountStateUnconfirmed accountStateUnconfirmed = unconfirmedStateService.getUnconfirmedInfo(address, chainId, assetChainId, assetId, state);
+            if (confirmed || null == accountStateUnconfirmed) {
+                rtMap.put("nonce", RPCUtil.encode(state.getNonce()));
+                rtMap.put("nonceType", LedgerConstant.CONFIRMED_NONCE);
+                rtMap.put("available", state.getAvailableAmount());
+            } else {
+                rtMap.put("available", state.getAvailableAmount().subtract(accountStateUnconfirmed.getAmount()));
+                rtMap.put("nonce", RPCUtil.encode(accountStateUnconfirmed.getNonce()));
+                rtMap.put("nonceType", LedgerConstant.UNCONFIRMED_NONCE);
+            }
+            return state;
+        });
         rtMap.put("freeze", accountState.getFreezeTotal());
         BigInteger permanentLocked = BigInteger.ZERO;
         BigInteger timeHeightLocked = BigInteger.ZERO;
@@ -359,4 +370,13 @@ public class AccountStateCmd extends BaseLedgerCmd {
         return response;
     }
 
+    /**
+     * 乐观读取账户状态,区块提交期间不阻塞余额查询
+     * Read the account state optimistically, balance queries are not blocked while a block is committed
+     */
+    private AccountState readAccountState(String address, int chainId, int assetChainId, int assetId) {
+        return LockerUtil.ACCOUNT_LOCKER.read(LedgerUtil.getKey(address, assetChainId, assetId),
+                () -> accountStateService.getAccountStateReCal(address, chainId, assetChainId, assetId));
+    }
+
 }
@@ -61,6 +61,18 @@ public interface AccountStateService {
      */
     AccountState getAccountStateReCal(String address, int addressChainId, int assetChainId, int assetId);
 
+    /**
+     * 获取账本信息，并重新计算冻结的金额的信息, 直接使用地址字节, 不需要编码地址
+     * Same as above with the raw address bytes, no address encoding needed
+     *
+     * @param address 地址字节 / address bytes
+     * @param addressChainId
+     * @param assetChainId
+     * @param assetId
+     * @return
+     */
+    AccountState getAccountStateReCal(byte[] address, int addressChainId, int assetChainId, int assetId);
+
     /**
      * 回滚账户信息
      *
@@ -70,4 +82,14 @@ public interface AccountStateService {
      */
     void rollAccountState(int chainId, List<AccountStateSnapshot> preAccountStates) throws Exception;
 
+    /**
+     * 回滚某高度区块的账户信息:优先使用回滚日志,没有时使用旧版本的完整快照,回滚后删除该高度的回滚数据
+     *
+     * @param chainId
+     * @param height
+     * @return 该高度没有回滚数据时返回false
+     * @throws Exception
+     */
+    boolean rollBackBlockAccounts(int chainId, long height) throws Exception;
+
 }
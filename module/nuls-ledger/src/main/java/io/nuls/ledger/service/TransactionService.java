@@ -28,7 +28,6 @@ package io.nuls.ledger.service;
 
 import io.nuls.base.data.Transaction;
 import io.nuls.ledger.model.ValidateResult;
-import io.nuls.ledger.model.po.sub.AccountStateSnapshot;
 
 import java.util.List;
 
@@ -64,11 +63,10 @@ public interface TransactionService {
      * 确认交易回滚处理
      *
      * @param addressChainId
-     * @param preAccountStates
      * @param blockHeight
      * @return
      */
-    boolean rollBackBlock(int addressChainId, List<AccountStateSnapshot> preAccountStates, long blockHeight);
+    boolean rollBackBlock(int addressChainId, long blockHeight);
 
     /**
      * 确认交易回滚处理
@@ -95,7 +93,7 @@ public interface TransactionService {
      * @return
      * @throws Exception
      */
-    boolean fromNonceExist(int addressChainId, String accountNonceKey) throws Exception;
+    boolean fromNonceExist(int addressChainId, byte[] accountNonceKey) throws Exception;
 
     /**
      *是否已存在hash
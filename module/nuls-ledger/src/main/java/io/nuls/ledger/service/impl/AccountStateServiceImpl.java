@@ -25,24 +25,35 @@
  */
 package io.nuls.ledger.service.impl;
 
+import io.nuls.base.basic.AddressTool;
 import io.nuls.core.core.annotation.Autowired;
 import io.nuls.core.core.annotation.Component;
+import io.nuls.core.model.ByteArrayWrapper;
 import io.nuls.core.rpc.util.NulsDateUtils;
 import io.nuls.ledger.constant.LedgerConstant;
 import io.nuls.ledger.manager.LedgerChainManager;
 import io.nuls.ledger.model.po.AccountState;
 import io.nuls.ledger.model.po.AccountStateUnconfirmed;
+import io.nuls.ledger.model.po.BlockSnapshotAccounts;
+import io.nuls.ledger.model.po.BlockUndoLog;
 import io.nuls.ledger.model.po.TxUnconfirmed;
 import io.nuls.ledger.model.po.sub.AccountStateSnapshot;
+import io.nuls.ledger.model.po.sub.AccountUndo;
 import io.nuls.ledger.model.po.sub.AmountNonce;
 import io.nuls.ledger.service.AccountStateService;
 import io.nuls.ledger.service.FreezeStateService;
 import io.nuls.ledger.service.UnconfirmedStateService;
 import io.nuls.ledger.storage.Repository;
 import io.nuls.ledger.storage.UnconfirmedRepository;
+import io.nuls.ledger.utils.AccountLocker;
+import io.nuls.ledger.utils.AccountUndoUtil;
 import io.nuls.ledger.utils.LedgerUtil;
+import io.nuls.ledger.utils.LockerUtil;
+import io.nuls.ledger.utils.LoggerUtil;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -67,39 +78,119 @@ public class AccountStateServiceImpl implements AccountStateService {
 
     @Override
     public void rollAccountState(int chainId, List<AccountStateSnapshot> preAccountStates) throws Exception {
+        List<byte[]> accountKeys = new ArrayList<>(preAccountStates.size());
+        for (AccountStateSnapshot accountStateSnapshot : preAccountStates) {
+            accountKeys.add(LedgerUtil.getKey(accountStateSnapshot.getAddress(),
+                    accountStateSnapshot.getAssetChainId(), accountStateSnapshot.getAssetId()));
+        }
+        //回滚只锁住快照中的账户
+        AccountLocker.Locked locked = LockerUtil.ACCOUNT_LOCKER.lock(accountKeys);
+        try {
+            rollAccountStateLocked(chainId, preAccountStates);
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    private void rollAccountStateLocked(int chainId, List<AccountStateSnapshot> preAccountStates) throws Exception {
         //获取当前数据库值
         Map<byte[], byte[]> accountStates = new HashMap<>(preAccountStates.size());
-        Map<String, AccountState> accountStatesMem = new HashMap<>(preAccountStates.size());
+        Map<ByteArrayWrapper, AccountState> accountStatesMem = new HashMap<>(preAccountStates.size());
         for (AccountStateSnapshot accountStateSnapshot : preAccountStates) {
-            String assetKey = LedgerUtil.getKeyStr(accountStateSnapshot.getAddress(),
+            byte[] key = LedgerUtil.getKey(accountStateSnapshot.getAddress(),
                     accountStateSnapshot.getAssetChainId(), accountStateSnapshot.getAssetId());
-            accountStates.put(assetKey.getBytes(LedgerConstant.DEFAULT_ENCODING), accountStateSnapshot.getAccountState().serialize());
-            accountStatesMem.put(assetKey, accountStateSnapshot.getAccountState());
-            //获取当前数据库值
-            Map<String, TxUnconfirmed> unconfirmedNonces = new HashMap<>(64);
-            AccountStateUnconfirmed accountStateUnconfirmed = new AccountStateUnconfirmed();
-            List<AmountNonce> list = accountStateSnapshot.getNonces();
-            BigInteger amount = BigInteger.ZERO;
-            for (AmountNonce amountNonce : list) {
-                TxUnconfirmed txUnconfirmed = new TxUnconfirmed(accountStateSnapshot.getAddress(), accountStateSnapshot.getAssetChainId(), accountStateSnapshot.getAssetId(),
-                        amountNonce.getFromNonce(), amountNonce.getNonce(), amountNonce.getAmount());
-                unconfirmedNonces.put(LedgerUtil.getNonceEncode(amountNonce.getNonce()), txUnconfirmed);
-                amount.add(amountNonce.getAmount());
-            }
-            //进行nonce的回退合并处理
-            if (unconfirmedNonces.size() > 0) {
-                accountStateUnconfirmed.setNonce(list.get(list.size() - 1).getNonce());
-                accountStateUnconfirmed.setFromNonce(list.get(list.size() - 1).getFromNonce());
-                accountStateUnconfirmed.setUnconfirmedAmount(amount);
-                accountStateUnconfirmed.setCreateTime(NulsDateUtils.getCurrentTimeSeconds());
-                unconfirmedStateService.mergeUnconfirmedNonce(chainId, accountStateSnapshot.getAccountState(), assetKey, unconfirmedNonces, accountStateUnconfirmed);
-            }
+            accountStates.put(key, accountStateSnapshot.getAccountState().serialize());
+            accountStatesMem.put(new ByteArrayWrapper(key), accountStateSnapshot.getAccountState());
+            mergeUnconfirmedNonces(chainId, accountStateSnapshot.getAddress(), accountStateSnapshot.getAssetChainId(), accountStateSnapshot.getAssetId(),
+                    accountStateSnapshot.getAccountState(), accountStateSnapshot.getNonces());
         }
         if (accountStates.size() > 0) {
             repository.batchUpdateAccountState(chainId, accountStates, accountStatesMem);
         }
     }
 
+    @Override
+    public boolean rollBackBlockAccounts(int chainId, long height) throws Exception {
+        BlockUndoLog undoLog = repository.getBlockUndoLog(chainId, height);
+        if (null != undoLog) {
+            List<byte[]> accountKeys = new ArrayList<>(undoLog.getAccounts().size());
+            for (AccountUndo accountUndo : undoLog.getAccounts()) {
+                accountKeys.add(accountUndo.getAccountKey());
+            }
+            AccountLocker.Locked locked = LockerUtil.ACCOUNT_LOCKER.lock(accountKeys);
+            try {
+                rollBackUndoLogLocked(chainId, height, undoLog);
+            } finally {
+                locked.unlock();
+            }
+            return true;
+        }
+        //升级前提交的区块只有完整快照
+        BlockSnapshotAccounts blockSnapshotAccounts = repository.getBlockSnapshot(chainId, height);
+        if (null != blockSnapshotAccounts) {
+            rollAccountState(chainId, blockSnapshotAccounts.getAccounts());
+            repository.delBlockSnapshot(chainId, height);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在账户当前状态上执行回滚日志;只有当前状态仍是区块后状态的账户才回滚,中断后重复执行不会再次改变已回滚的账户
+     */
+    private void rollBackUndoLogLocked(int chainId, long height, BlockUndoLog undoLog) throws Exception {
+        Map<byte[], byte[]> accountStates = new HashMap<>(undoLog.getAccounts().size());
+        Map<ByteArrayWrapper, AccountState> accountStatesMem = new HashMap<>(undoLog.getAccounts().size());
+        for (AccountUndo accountUndo : undoLog.getAccounts()) {
+            byte[] key = accountUndo.getAccountKey();
+            AccountState nowAccountState = repository.getAccountStateByMemory(chainId, key);
+            if (null == nowAccountState) {
+                nowAccountState = repository.getAccountState(chainId, key);
+            }
+            if (null == nowAccountState) {
+                nowAccountState = new AccountState(LedgerConstant.getInitNonceByte());
+            }
+            if (!AccountUndoUtil.isPostState(accountUndo, nowAccountState.serialize())) {
+                //已经回滚过或区块的账户状态没有写入
+                LoggerUtil.logger(chainId).info("height={} account undo skipped, state is not the post-block state", height);
+                continue;
+            }
+            AccountState preAccountState = AccountUndoUtil.undo(accountUndo, nowAccountState);
+            accountStates.put(key, preAccountState.serialize());
+            accountStatesMem.put(new ByteArrayWrapper(key), preAccountState);
+            int length = key.length;
+            String address = LedgerUtil.getRealAddressStr(Arrays.copyOf(key, length - 4));
+            int assetChainId = ((key[length - 4] & 0xFF) << 8) | (key[length - 3] & 0xFF);
+            int assetId = ((key[length - 2] & 0xFF) << 8) | (key[length - 1] & 0xFF);
+            mergeUnconfirmedNonces(chainId, address, assetChainId, assetId, preAccountState, accountUndo.getNonces());
+        }
+        repository.rollBackBlockAccounts(chainId, height, accountStates, accountStatesMem);
+    }
+
+    /**
+     * 回滚区块中花费的nonce重新合并为未确认数据
+     */
+    private void mergeUnconfirmedNonces(int chainId, String address, int assetChainId, int assetId, AccountState preAccountState, List<AmountNonce> list) throws Exception {
+        String assetKey = LedgerUtil.getKeyStr(address, assetChainId, assetId);
+        Map<String, TxUnconfirmed> unconfirmedNonces = new HashMap<>(64);
+        AccountStateUnconfirmed accountStateUnconfirmed = new AccountStateUnconfirmed();
+        BigInteger amount = BigInteger.ZERO;
+        for (AmountNonce amountNonce : list) {
+            TxUnconfirmed txUnconfirmed = new TxUnconfirmed(address, assetChainId, assetId,
+                    amountNonce.getFromNonce(), amountNonce.getNonce(), amountNonce.getAmount());
+            unconfirmedNonces.put(LedgerUtil.getNonceEncode(amountNonce.getNonce()), txUnconfirmed);
+            amount.add(amountNonce.getAmount());
+        }
+        //进行nonce的回退合并处理
+        if (unconfirmedNonces.size() > 0) {
+            accountStateUnconfirmed.setNonce(list.get(list.size() - 1).getNonce());
+            accountStateUnconfirmed.setFromNonce(list.get(list.size() - 1).getFromNonce());
+            accountStateUnconfirmed.setUnconfirmedAmount(amount);
+            accountStateUnconfirmed.setCreateTime(NulsDateUtils.getCurrentTimeSeconds());
+            unconfirmedStateService.mergeUnconfirmedNonce(chainId, preAccountState, assetKey, unconfirmedNonces, accountStateUnconfirmed);
+        }
+    }
+
 
     /**
      * 只返回数据，不同步计算，不进行更新
@@ -113,11 +204,11 @@ public class AccountStateServiceImpl implements AccountStateService {
     @Override
     public AccountState getAccountState(String address, int addressChainId, int assetChainId, int assetId) {
         //尝试缓存获取
-        AccountState accountState = repository.getAccountStateByMemory(addressChainId, LedgerUtil.getKeyStr(address, assetChainId, assetId));
+        byte[] key = LedgerUtil.getKey(address, assetChainId, assetId);
+        AccountState accountState = repository.getAccountStateByMemory(addressChainId, key);
         if (null != accountState) {
             return accountState;
         }
-        byte[] key = LedgerUtil.getKey(address, assetChainId, assetId);
         accountState = repository.getAccountState(addressChainId, key);
         if (null == accountState) {
             accountState = new AccountState(LedgerConstant.getInitNonceByte());
@@ -134,11 +225,15 @@ public class AccountStateServiceImpl implements AccountStateService {
      */
     @Override
     public AccountState getAccountStateReCal(String address, int addressChainId, int assetChainId, int assetId) {
+        return getAccountStateReCal(AddressTool.getAddressByRealAddr(address), addressChainId, assetChainId, assetId);
+    }
+
+    @Override
+    public AccountState getAccountStateReCal(byte[] address, int addressChainId, int assetChainId, int assetId) {
         //尝试缓存获取
-        AccountState accountState = repository.getAccountStateByMemory(addressChainId, LedgerUtil.getKeyStr(address, assetChainId, assetId));
+        byte[] key = LedgerUtil.getKey(address, assetChainId, assetId);
+        AccountState accountState = repository.getAccountStateByMemory(addressChainId, key);
         if (null == accountState) {
-            //账户处理锁
-            byte[] key = LedgerUtil.getKey(address, assetChainId, assetId);
             accountState = repository.getAccountState(addressChainId, key);
             if (null == accountState) {
                 accountState = new AccountState(LedgerConstant.getInitNonceByte());
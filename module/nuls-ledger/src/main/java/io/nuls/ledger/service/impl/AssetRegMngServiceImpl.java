@@ -31,6 +31,7 @@ import io.nuls.core.core.annotation.Autowired;
 import io.nuls.core.core.annotation.Component;
 import io.nuls.core.crypto.HexUtil;
 import io.nuls.core.model.BigIntegerUtils;
+import io.nuls.core.model.ByteArrayWrapper;
 import io.nuls.core.model.ByteUtils;
 import io.nuls.core.model.FormatValidUtils;
 import io.nuls.ledger.config.LedgerConfig;
@@ -180,12 +181,12 @@ public class AssetRegMngServiceImpl implements AssetRegMngService {
             assets.put(ByteUtils.intToBytes(ledgerAsset.getAssetId()), ledgerAsset.serialize());
             hashMap.put(HexUtil.decode(ledgerAsset.getTxHash()), ByteUtils.intToBytes(ledgerAsset.getAssetId()));
             String address = LedgerUtil.getRealAddressStr(ledgerAsset.getAssetOwnerAddress());
-            String key = LedgerUtil.getKeyStr(address, chainId, assetId);
+            byte[] key = LedgerUtil.getKey(ledgerAsset.getAssetOwnerAddress(), chainId, assetId);
             AccountState accountState = new AccountState();
             long decimal = (long) Math.pow(10, Integer.valueOf(ledgerAsset.getDecimalPlace()));
             BigInteger amount = ledgerAsset.getInitNumber().multiply(BigInteger.valueOf(decimal));
             accountState.setTotalToAmount(amount);
-            accountStatesMap.put(key.getBytes(LedgerConstant.DEFAULT_ENCODING), accountState.serialize());
+            accountStatesMap.put(key, accountState.serialize());
             LedgerUtil.dealAssetAddressIndex(assetAddressIndex, chainId, ledgerAsset.getAssetId(), address);
         }
         assetRegMngRepository.batchSaveLedgerAssetReg(chainId, assets, hashMap);
@@ -203,15 +204,14 @@ public class AssetRegMngServiceImpl implements AssetRegMngService {
     public void rollBackTxAssets(int chainId, List<LedgerAsset> ledgerAssets) throws Exception {
         List<byte[]> list = new ArrayList<>();
         List<byte[]> delKeys = new ArrayList<>();
-        Map<String, AccountState> delMap = new ConcurrentHashMap<>();
+        Map<ByteArrayWrapper, AccountState> delMap = new ConcurrentHashMap<>();
         for (LedgerAsset ledgerAsset : ledgerAssets) {
             byte[] hash = HexUtil.decode(ledgerAsset.getTxHash());
             list.add(hash);
             int assetId = assetRegMngRepository.getLedgerAssetIdByHash(chainId, hash);
-            String address = LedgerUtil.getRealAddressStr(ledgerAsset.getAssetOwnerAddress());
-            String key = LedgerUtil.getKeyStr(address, chainId, assetId);
-            delMap.put(key, new AccountState());
-            delKeys.add(key.getBytes(LedgerConstant.DEFAULT_ENCODING));
+            byte[] key = LedgerUtil.getKey(ledgerAsset.getAssetOwnerAddress(), chainId, assetId);
+            delMap.put(new ByteArrayWrapper(key), new AccountState());
+            delKeys.add(key);
         }
         repository.clearAccountStateMem(chainId, delMap);
         assetRegMngRepository.batchRollBackLedgerAssetReg(chainId, list);
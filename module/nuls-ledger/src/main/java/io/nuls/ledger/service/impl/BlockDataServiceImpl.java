@@ -27,13 +27,13 @@ package io.nuls.ledger.service.impl;
 import io.nuls.base.data.*;
 import io.nuls.core.core.annotation.Autowired;
 import io.nuls.core.core.annotation.Component;
+import io.nuls.core.crypto.HexUtil;
 import io.nuls.core.log.Log;
 import io.nuls.core.model.ByteUtils;
+import io.nuls.ledger.config.LedgerConfig;
 import io.nuls.ledger.constant.LedgerConstant;
 import io.nuls.ledger.model.ChainHeight;
-import io.nuls.ledger.model.po.BlockSnapshotAccounts;
 import io.nuls.ledger.model.po.BlockSnapshotTxs;
-import io.nuls.ledger.model.po.sub.AccountStateSnapshot;
 import io.nuls.ledger.rpc.call.CallRpcService;
 import io.nuls.ledger.service.AccountStateService;
 import io.nuls.ledger.service.BlockDataService;
@@ -68,6 +68,8 @@ public class BlockDataServiceImpl implements BlockDataService {
     private TransactionService transactionService;
     @Autowired
     private CallRpcService callRpcService;
+    @Autowired
+    private LedgerConfig ledgerConfig;
 
     @Override
     public void initBlockDatas() throws Exception {
@@ -77,17 +79,29 @@ public class BlockDataServiceImpl implements BlockDataService {
             LoggerUtil.COMMON_LOG.info("chainList size = {}", list.size());
             for (ChainHeight chainHeight : list) {
                 Log.info("begin chain ledger checked..chainId = {},chainHeight={}", chainHeight.getChainId(), chainHeight.getBlockHeight());
-                BlockSnapshotAccounts blockSnapshotAccounts = repository.getBlockSnapshot(chainHeight.getChainId(), chainHeight.getBlockHeight() + 1);
-                if (null != blockSnapshotAccounts) {
-                    List<AccountStateSnapshot> preAccountStates = blockSnapshotAccounts.getAccounts();
-                    //回滚高度
-                    accountStateService.rollAccountState(chainHeight.getChainId(), preAccountStates);
-                }
+                migrateLegacyKeys(chainHeight.getChainId());
+                //账户已写入但高度未更新的区块,回滚其账户信息
+                accountStateService.rollBackBlockAccounts(chainHeight.getChainId(), chainHeight.getBlockHeight() + 1);
                 LoggerUtil.COMMON_LOG.info("end chain ledger checked..chainId = {},chainHeight={}", chainHeight.getChainId(), chainHeight.getBlockHeight());
             }
         }
     }
 
+    /**
+     * 旧版本的账本使用字符串key, 启动时一次性转为二进制key
+     * Older ledgers used string keys, convert them to binary keys once at startup
+     */
+    private void migrateLegacyKeys(int chainId) throws Exception {
+        if (repository.getKeyVersion(chainId) >= LedgerConstant.LEDGER_KEY_VERSION) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int accounts = repository.migrateLegacyAccountKeys(chainId);
+        int nonces = lgBlockSyncRepository.migrateLegacyNonceKeys(chainId);
+        repository.saveKeyVersion(chainId, LedgerConstant.LEDGER_KEY_VERSION);
+        LoggerUtil.COMMON_LOG.info("migrate ledger keys chainId={},accounts={},nonces={},time={}ms", chainId, accounts, nonces, System.currentTimeMillis() - start);
+    }
+
     @Override
     public void syncBlockHeight() throws Exception {
         //获取确认高度
@@ -101,14 +115,8 @@ public class BlockDataServiceImpl implements BlockDataService {
                     LoggerUtil.logger(chainHeight.getChainId()).debug("rollBackBlockTxs chainId={},blockHeight={}", chainHeight.getChainId(), chainHeight.getBlockHeight());
                     //回滚高度
                     repository.saveOrUpdateBlockHeight(chainHeight.getChainId(), blockHeight);
-                    BlockSnapshotAccounts blockSnapshotAccounts = repository.getBlockSnapshot(chainHeight.getChainId(), chainHeight.getBlockHeight());
-                    if (null != blockSnapshotAccounts) {
-                        List<AccountStateSnapshot> preAccountStates = blockSnapshotAccounts.getAccounts();
-                        //回滚高度
-                        accountStateService.rollAccountState(chainHeight.getChainId(), preAccountStates);
-                        //更新高度，删除备份
-                        //删除备份数据
-                        repository.delBlockSnapshot(chainHeight.getChainId(), blockHeight);
+                    //回滚账户信息,同时删除回滚日志
+                    if (accountStateService.rollBackBlockAccounts(chainHeight.getChainId(), chainHeight.getBlockHeight())) {
                         Log.info("####end syncBlockHeight..chainId = {},chainHeight={}", chainHeight.getChainId(), chainHeight.getBlockHeight());
                     }
                     rollBackBlockDatas(chainHeight.getChainId(), blockHeight + 1);
@@ -151,10 +159,9 @@ public class BlockDataServiceImpl implements BlockDataService {
                 }
                 LedgerUtil.dealAssetAddressIndex(assetAddressIndex, from.getAssetsChainId(), from.getAssetsId(), address);
                 if (from.getLocked() == 0) {
-                    String nonce8Str = LedgerUtil.getNonceEncode(nonce8Bytes);
-                    String addressNonce = LedgerUtil.getAccountNoncesStrKey(address, from.getAssetsChainId(), from.getAssetsId(), nonce8Str);
-                    blockSnapshotTxs.addNonce(addressNonce);
-                    ledgerNonce.put(ByteUtils.toBytes(addressNonce, LedgerConstant.DEFAULT_ENCODING), ByteUtils.intToBytes(1));
+                    byte[] addressNonce = LedgerUtil.getAccountNoncesKey(from.getAddress(), from.getAssetsChainId(), from.getAssetsId(), nonce8Bytes);
+                    blockSnapshotTxs.addNonce(HexUtil.encode(addressNonce));
+                    ledgerNonce.put(addressNonce, ByteUtils.intToBytes(1));
                 }
             }
             List<CoinTo> tos = coinData.getTo();
@@ -184,9 +191,10 @@ public class BlockDataServiceImpl implements BlockDataService {
         if (height > LedgerConstant.CACHE_NONCE_INFO_BLOCK) {
             lgBlockSyncRepository.delBlockSnapshotTxs(addressChainId, (height - LedgerConstant.CACHE_NONCE_INFO_BLOCK));
         }
-        if (height > LedgerConstant.CACHE_ACCOUNT_BLOCK) {
+        int retention = ledgerConfig.getBlockUndoRetention();
+        if (height > retention) {
             try {
-                repository.delBlockSnapshot(addressChainId, (height - LedgerConstant.CACHE_ACCOUNT_BLOCK));
+                repository.delBlockSnapshot(addressChainId, (height - retention));
             } catch (Exception e) {
                 LoggerUtil.logger(addressChainId).error(e);
             }
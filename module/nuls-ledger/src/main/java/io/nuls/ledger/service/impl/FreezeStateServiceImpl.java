@@ -31,15 +31,11 @@ import io.nuls.core.core.annotation.Component;
 import io.nuls.core.rpc.util.NulsDateUtils;
 import io.nuls.ledger.constant.LedgerConstant;
 import io.nuls.ledger.model.po.AccountState;
-import io.nuls.ledger.model.po.sub.FreezeHeightState;
-import io.nuls.ledger.model.po.sub.FreezeLockTimeState;
 import io.nuls.ledger.service.FreezeStateService;
 import io.nuls.ledger.storage.Repository;
 import io.nuls.ledger.utils.LedgerUtil;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Created by wangkun23 on 2018/12/4.
@@ -51,73 +47,27 @@ public class FreezeStateServiceImpl implements FreezeStateService {
     @Autowired
     Repository repository;
 
-    private BigInteger unFreezeLockTimeState(List<FreezeLockTimeState> timeList, AccountState accountState) {
+    private BigInteger unFreezeLockTimeState(AccountState accountState) {
         long nowTime = NulsDateUtils.getCurrentTimeSeconds();
-        long nowTimeMl = NulsDateUtils.getCurrentTimeMillis();
-        //可移除的时间锁列表
-        List<FreezeLockTimeState> timeRemove = new ArrayList<>();
-        timeList.sort((x, y) -> Long.compare(x.getLockTime(), y.getLockTime()));
-        for (FreezeLockTimeState freezeLockTimeState : timeList) {
-            if (freezeLockTimeState.getLockTime() <= nowTime) {
-                //永久锁定的,继续处理
-                if (LedgerUtil.isPermanentLock(freezeLockTimeState.getLockTime())) {
-                    continue;
-                }
-                timeRemove.add(freezeLockTimeState);
-            }
-        }
-        BigInteger addToAmount = BigInteger.ZERO;
-        for (FreezeLockTimeState freezeLockTimeState : timeRemove) {
-            timeList.remove(freezeLockTimeState);
-            addToAmount = addToAmount.add(freezeLockTimeState.getAmount());
-        }
-        return addToAmount;
+        //到期的时间锁解锁,永久锁定的不处理
+        return accountState.unFreezeLockTimeStates(freezeLockTimeState -> freezeLockTimeState.getLockTime() <= nowTime
+                && !LedgerUtil.isPermanentLock(freezeLockTimeState.getLockTime()));
     }
 
-    private BigInteger unFreezeLockTimeStateV2(List<FreezeLockTimeState> timeList, AccountState accountState) {
+    private BigInteger unFreezeLockTimeStateV2(AccountState accountState) {
         long nowTime = NulsDateUtils.getCurrentTimeSeconds();
         long nowTimeMl = NulsDateUtils.getCurrentTimeMillis();
-        //可移除的时间锁列表
-        List<FreezeLockTimeState> timeRemove = new ArrayList<>();
-        timeList.sort((x, y) -> Long.compare(x.getLockTime(), y.getLockTime()));
-        for (FreezeLockTimeState freezeLockTimeState : timeList) {
-            if ((freezeLockTimeState.getLockTime() <= nowTime) || (freezeLockTimeState.getLockTime() > LedgerConstant.LOCKED_ML_TIME_VALUE && freezeLockTimeState.getLockTime() <= nowTimeMl)) {
-                //永久锁定的,继续处理
-                if (LedgerUtil.isPermanentLock(freezeLockTimeState.getLockTime())) {
-                    continue;
-                }
-                timeRemove.add(freezeLockTimeState);
-            }
-        }
-        BigInteger addToAmount = BigInteger.ZERO;
-        for (FreezeLockTimeState freezeLockTimeState : timeRemove) {
-            timeList.remove(freezeLockTimeState);
-            addToAmount = addToAmount.add(freezeLockTimeState.getAmount());
-        }
-        return addToAmount;
+        //到期的时间锁解锁,永久锁定的不处理
+        return accountState.unFreezeLockTimeStates(freezeLockTimeState -> ((freezeLockTimeState.getLockTime() <= nowTime)
+                || (freezeLockTimeState.getLockTime() > LedgerConstant.LOCKED_ML_TIME_VALUE && freezeLockTimeState.getLockTime() <= nowTimeMl))
+                && !LedgerUtil.isPermanentLock(freezeLockTimeState.getLockTime()));
     }
 
-    private BigInteger unFreezeLockHeightState(int addressChainId, List<FreezeHeightState> heightList, AccountState accountState) {
+    private BigInteger unFreezeLockHeightState(int addressChainId, AccountState accountState) {
         //此处高度可以做个时间缓存
         long nowHeight = repository.getBlockHeight(addressChainId);
-        //可移除的高度锁列表
-        List<FreezeHeightState> heightRemove = new ArrayList<>();
-        heightList.sort((x, y) -> Long.compare(x.getHeight(), y.getHeight()));
-        for (FreezeHeightState freezeHeightState : heightList) {
-            if (freezeHeightState.getHeight() <= nowHeight) {
-                //时间到期，进行解锁
-                heightRemove.add(freezeHeightState);
-            } else {
-                //因为正序排列，所以可以跳出
-                break;
-            }
-        }
-        BigInteger addToAmount = BigInteger.ZERO;
-        for (FreezeHeightState freezeHeightState : heightRemove) {
-            heightList.remove(freezeHeightState);
-            addToAmount = addToAmount.add(freezeHeightState.getAmount());
-        }
-        return addToAmount;
+        //高度锁按高度正序排列,只移除到期的前缀
+        return accountState.unFreezeHeightStates(nowHeight);
     }
 
     /**
@@ -129,19 +79,17 @@ public class FreezeStateServiceImpl implements FreezeStateService {
      */
     @Override
     public boolean recalculateFreeze(int addressChainId, AccountState accountState) {
-        List<FreezeLockTimeState> timeList = accountState.getFreezeLockTimeStates();
-        List<FreezeHeightState> heightList = accountState.getFreezeHeightStates();
-        if (timeList.size() == 0 && heightList.size() == 0) {
+        if (accountState.getFreezeLockTimeStates().size() == 0 && accountState.getFreezeHeightStates().size() == 0) {
             return true;
         }
         BigInteger addTimeAmount = BigInteger.ZERO;
         if (LedgerUtil.getVersion(addressChainId) >1) {
-            addTimeAmount = unFreezeLockTimeStateV2(timeList, accountState);
+            addTimeAmount = unFreezeLockTimeStateV2(accountState);
         } else {
-            addTimeAmount = unFreezeLockTimeState(timeList, accountState);
+            addTimeAmount = unFreezeLockTimeState(accountState);
         }
 
-        BigInteger addHeightAmount = unFreezeLockHeightState(addressChainId, heightList, accountState);
+        BigInteger addHeightAmount = unFreezeLockHeightState(addressChainId, accountState);
         accountState.addTotalToAmount(addTimeAmount);
         accountState.addTotalToAmount(addHeightAmount);
         return true;
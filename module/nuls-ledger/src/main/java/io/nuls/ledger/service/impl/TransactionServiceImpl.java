@@ -28,22 +28,29 @@ package io.nuls.ledger.service.impl;
 import io.nuls.base.data.*;
 import io.nuls.core.core.annotation.Autowired;
 import io.nuls.core.core.annotation.Component;
+import io.nuls.core.model.ByteArrayWrapper;
+import io.nuls.core.thread.ThreadUtils;
+import io.nuls.core.thread.commom.NulsThreadFactory;
 import io.nuls.core.rpc.util.NulsDateUtils;
 import io.nuls.ledger.constant.LedgerConstant;
 import io.nuls.ledger.constant.LedgerErrorCode;
+import io.nuls.ledger.model.AccountApplyResult;
 import io.nuls.ledger.model.AccountBalance;
+import io.nuls.ledger.model.CoinOperation;
 import io.nuls.ledger.model.Uncfd2CfdKey;
 import io.nuls.ledger.model.ValidateResult;
 import io.nuls.ledger.model.po.AccountState;
-import io.nuls.ledger.model.po.BlockSnapshotAccounts;
+import io.nuls.ledger.model.po.BlockUndoLog;
 import io.nuls.ledger.model.po.TxUnconfirmed;
 import io.nuls.ledger.model.po.sub.AccountStateSnapshot;
+import io.nuls.ledger.model.po.sub.AccountUndo;
 import io.nuls.ledger.model.po.sub.AmountNonce;
 import io.nuls.ledger.service.*;
 import io.nuls.ledger.service.processor.CommontTransactionProcessor;
 import io.nuls.ledger.service.processor.LockedTransactionProcessor;
 import io.nuls.ledger.storage.LgBlockSyncRepository;
 import io.nuls.ledger.storage.Repository;
+import io.nuls.ledger.utils.AccountLocker;
 import io.nuls.ledger.utils.CoinDataUtil;
 import io.nuls.ledger.utils.LedgerUtil;
 import io.nuls.ledger.utils.LockerUtil;
@@ -52,6 +59,9 @@ import io.nuls.ledger.validator.CoinDataValidator;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static io.nuls.ledger.utils.LoggerUtil.logger;
 
@@ -86,11 +96,16 @@ public class TransactionServiceImpl implements TransactionService {
     /**
      * 缓存一个区块的nonce值
      */
-    private Map<String, Integer> ledgerNonce = new ConcurrentHashMap<String, Integer>(5120);
+    private Map<ByteArrayWrapper, Integer> ledgerNonce = new ConcurrentHashMap<>(5120);
     /**
      * 缓存一个区块的hash值
      */
     private Map<String, Integer> ledgerHash = new ConcurrentHashMap<>(5120);
+    /**
+     * 区块提交时并行执行账户的线程池
+     */
+    private ExecutorService commitExecutor = ThreadUtils.createThreadPool(LedgerConstant.BLOCK_COMMIT_THREAD_COUNT,
+            LedgerConstant.BLOCK_COMMIT_THREAD_COUNT, new NulsThreadFactory(LedgerConstant.BLOCK_COMMIT_THREAD));
 
 
     /**
@@ -110,32 +125,59 @@ public class TransactionServiceImpl implements TransactionService {
         if (!coinDataValidator.validateTxAmount(coinData, transaction.getType())) {
             return ValidateResult.getResult(LedgerErrorCode.TX_AMOUNT_INVALIDATE, new String[]{transaction.getHash().toHex()});
         }
-        /*未确认交易的校验*/
-        Map<String, TxUnconfirmed> accountsMap = new ConcurrentHashMap<>(8);
-        byte[] txNonce = LedgerUtil.getNonceByTx(transaction);
-        ValidateResult validateResult = coinDataValidator.analysisCoinData(addressChainId, transaction, accountsMap, txNonce);
-        if (!validateResult.isSuccess()) {
-            return validateResult;
-        }
-        Set keys = accountsMap.keySet();
-        Iterator<String> it = keys.iterator();
-        while (it.hasNext()) {
-            TxUnconfirmed txUnconfirmed = accountsMap.get(it.next());
-            ValidateResult updateResult = unconfirmedStateService.updateUnconfirmedTx(transaction.getHash().toHex(), addressChainId, txNonce, txUnconfirmed);
-            if (!updateResult.isSuccess()) {
-                return updateResult;
+        //只锁住交易花费的账户,不同账户的未确认交易可以并行提交,区块提交期间也不会被阻塞
+        AccountLocker.Locked locked = LockerUtil.ACCOUNT_LOCKER.lock(fromAccountKeys(coinData));
+        try {
+            /*未确认交易的校验*/
+            Map<String, TxUnconfirmed> accountsMap = new ConcurrentHashMap<>(8);
+            byte[] txNonce = LedgerUtil.getNonceByTx(transaction);
+            ValidateResult validateResult = coinDataValidator.analysisCoinData(addressChainId, transaction, accountsMap, txNonce);
+            if (!validateResult.isSuccess()) {
+                return validateResult;
+            }
+            Set keys = accountsMap.keySet();
+            Iterator<String> it = keys.iterator();
+            while (it.hasNext()) {
+                TxUnconfirmed txUnconfirmed = accountsMap.get(it.next());
+                ValidateResult updateResult = unconfirmedStateService.updateUnconfirmedTx(transaction.getHash().toHex(), addressChainId, txNonce, txUnconfirmed);
+                if (!updateResult.isSuccess()) {
+                    return updateResult;
+                }
             }
+            return ValidateResult.getSuccess();
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    /**
+     * 交易花费的账户key
+     *
+     * @param coinData
+     * @return
+     */
+    private List<byte[]> fromAccountKeys(CoinData coinData) {
+        List<byte[]> keys = new ArrayList<>(coinData.getFrom().size());
+        for (CoinFrom from : coinData.getFrom()) {
+            keys.add(LedgerUtil.getKey(from.getAddress(), from.getAssetsChainId(), from.getAssetsId()));
         }
-        return ValidateResult.getSuccess();
+        return keys;
     }
 
 
-    private boolean confirmBlockTxProcess(long blockHeight, int addressChainId, List<Transaction> txList,
-                                          Map<String, AccountBalance> updateAccounts, List<Uncfd2CfdKey> delUncfd2CfdKeys,
-                                          Map<String, Integer> clearUncfs, Map<String, List<String>> assetAddressIndex) throws Exception {
+    /**
+     * 区块交易的依赖分析:按账户归集每笔交易的coin,同一账户的coin保持交易顺序,不同账户之间没有依赖
+     *
+     * @param addressChainId
+     * @param txList
+     * @param accountOperations 账户key -> 作用于该账户的coin
+     * @param assetAddressIndex
+     * @return
+     */
+    private boolean analysisBlockTxs(int addressChainId, List<Transaction> txList, Map<ByteArrayWrapper, List<CoinOperation>> accountOperations,
+                                     Map<String, List<String>> assetAddressIndex) {
         for (Transaction transaction : txList) {
             byte[] nonce8Bytes = LedgerUtil.getNonceByTx(transaction);
-            String nonce8Str = LedgerUtil.getNonceEncode(nonce8Bytes);
             String txHash = transaction.getHash().toHex();
             ledgerHash.put(txHash, 1);
             //从缓存校验交易
@@ -145,81 +187,137 @@ public class TransactionServiceImpl implements TransactionService {
                 LoggerUtil.logger(addressChainId).info("txHash = {},coinData is null continue.", txHash);
                 continue;
             }
-            List<CoinFrom> froms = coinData.getFrom();
-            for (CoinFrom from : froms) {
-                String address = LedgerUtil.getRealAddressStr(from.getAddress());
-                if (LedgerUtil.isNotLocalChainAccount(addressChainId, from.getAddress())) {
-                    //非本地网络账户地址,不进行处理
-                    logger(addressChainId).info("address={} not localChainAccount", address);
-                    if (LedgerUtil.isCrossTx(transaction.getType())) {
-                        //非本地网络账户地址,不进行处理
-                        continue;
-                    } else {
-                        LoggerUtil.logger(addressChainId).error("address={} Not local chain Exception", address);
-                        return false;
-                    }
-                }
-                if (assetRegMngService.isContractAsset(from.getAssetsChainId(), from.getAssetsId())) {
-                    //账本非跨链交易如果收到from是合约资产的，报错
-                    LoggerUtil.logger(addressChainId).info("hash={} asset={}-{}  from is contract asset", txHash, from.getAssetsChainId(), from.getAssetsId());
-                    continue;
-                }
-                boolean process;
-                AccountBalance accountBalance = getAccountBalance(addressChainId, from, updateAccounts, address);
-                //归集链下有多少种类资产，资产下有多少地址
-                LedgerUtil.dealAssetAddressIndex(assetAddressIndex, from.getAssetsChainId(), from.getAssetsId(), address);
-                if (from.getLocked() == 0) {
-                    AmountNonce amountNonce = new AmountNonce(from.getNonce(), nonce8Bytes, from.getAmount());
-                    accountBalance.getPreAccountState().getNonces().add(amountNonce);
-                    //判断是否存在未确认过程交易，如果存在则进行确认记录，如果不存在，则进行未确认的清空记录
-                    String accountKeyStr = LedgerUtil.getKeyStr(address, from.getAssetsChainId(), from.getAssetsId());
-                    if (unconfirmedStateService.existTxUnconfirmedTx(addressChainId, accountKeyStr, nonce8Str)) {
-                        delUncfd2CfdKeys.add(new Uncfd2CfdKey(accountKeyStr, nonce8Str));
-                    } else {
-                        clearUncfs.put(accountKeyStr, 1);
-                    }
-                    //非解锁交易处理
-                    process = commontTransactionProcessor.processFromCoinData(from, nonce8Bytes, accountBalance.getNowAccountState());
-                    ledgerNonce.put(LedgerUtil.getAccountNoncesStrKey(address, from.getAssetsChainId(), from.getAssetsId(), nonce8Str), 1);
-                } else {
-                    process = lockedTransactionProcessor.processCoinData(from, nonce8Bytes, txHash, accountBalance.getNowAccountState(), transaction.getTime(), address, true);
+            for (CoinFrom from : coinData.getFrom()) {
+                if (!addCoinOperation(addressChainId, transaction, from, true, nonce8Bytes, txHash, accountOperations, assetAddressIndex)) {
+                    return false;
                 }
-                if (!process) {
-                    logger(addressChainId).error("address={},txHash = {} processFromCoinData is fail.", addressChainId, transaction.getHash().toHex());
+            }
+            for (CoinTo to : coinData.getTo()) {
+                if (!addCoinOperation(addressChainId, transaction, to, false, nonce8Bytes, txHash, accountOperations, assetAddressIndex)) {
                     return false;
                 }
             }
-            List<CoinTo> tos = coinData.getTo();
-            for (CoinTo to : tos) {
-                String address = LedgerUtil.getRealAddressStr(to.getAddress());
-                if (LedgerUtil.isNotLocalChainAccount(addressChainId, to.getAddress())) {
-                    //非本地网络账户地址,不进行处理
-                    logger(addressChainId).info("address={} not localChainAccount", address);
-                    if (LedgerUtil.isCrossTx(transaction.getType())) {
-                        continue;
+        }
+        return true;
+    }
+
+    private boolean addCoinOperation(int addressChainId, Transaction transaction, Coin coin, boolean isFrom, byte[] nonce8Bytes, String txHash,
+                                     Map<ByteArrayWrapper, List<CoinOperation>> accountOperations, Map<String, List<String>> assetAddressIndex) {
+        String address = LedgerUtil.getRealAddressStr(coin.getAddress());
+        if (LedgerUtil.isNotLocalChainAccount(addressChainId, coin.getAddress())) {
+            //非本地网络账户地址,不进行处理
+            logger(addressChainId).info("address={} not localChainAccount", address);
+            if (LedgerUtil.isCrossTx(transaction.getType())) {
+                return true;
+            }
+            LoggerUtil.logger(addressChainId).error("address={} Not local chain Exception", address);
+            return false;
+        }
+        if (assetRegMngService.isContractAsset(coin.getAssetsChainId(), coin.getAssetsId())) {
+            //账本非跨链交易如果收到合约资产的,不进行处理
+            LoggerUtil.logger(addressChainId).info("hash={} asset={}-{} {} contract asset", txHash, coin.getAssetsChainId(), coin.getAssetsId(), isFrom ? "from is" : "rec");
+            return true;
+        }
+        //归集链下有多少种类资产，资产下有多少地址
+        LedgerUtil.dealAssetAddressIndex(assetAddressIndex, coin.getAssetsChainId(), coin.getAssetsId(), address);
+        ByteArrayWrapper key = new ByteArrayWrapper(LedgerUtil.getKey(coin.getAddress(), coin.getAssetsChainId(), coin.getAssetsId()));
+        accountOperations.computeIfAbsent(key, k -> new ArrayList<>()).add(new CoinOperation(coin, isFrom, nonce8Bytes, txHash, transaction.getTime(), address));
+        return true;
+    }
+
+    /**
+     * 区块交易执行:账户数较多时按账户分组并行执行,最后合并为一个结果
+     *
+     * @param addressChainId
+     * @param accountOperations
+     * @return 执行失败返回null
+     * @throws Exception
+     */
+    private AccountApplyResult confirmBlockTxProcess(int addressChainId, Map<ByteArrayWrapper, List<CoinOperation>> accountOperations) throws Exception {
+        if (accountOperations.size() < LedgerConstant.BLOCK_COMMIT_PARALLEL_MIN_ACCOUNTS) {
+            return applyAccounts(addressChainId, new ArrayList<>(accountOperations.entrySet()));
+        }
+        List<Future<AccountApplyResult>> futures = new ArrayList<>(LedgerConstant.BLOCK_COMMIT_THREAD_COUNT);
+        for (List<Map.Entry<ByteArrayWrapper, List<CoinOperation>>> group : LedgerUtil.partition(accountOperations, LedgerConstant.BLOCK_COMMIT_THREAD_COUNT)) {
+            futures.add(commitExecutor.submit(() -> applyAccounts(addressChainId, group)));
+        }
+        AccountApplyResult result = new AccountApplyResult(accountOperations.size());
+        boolean success = true;
+        ExecutionException failure = null;
+        for (Future<AccountApplyResult> future : futures) {
+            //等待所有分组结束后再返回,避免失败时仍有分组在修改缓存;分组异常在全部结束后再抛出
+            AccountApplyResult groupResult;
+            try {
+                groupResult = future.get();
+            } catch (ExecutionException e) {
+                if (null == failure) {
+                    failure = e;
+                }
+                continue;
+            }
+            if (null == groupResult) {
+                success = false;
+            } else if (success) {
+                result.merge(groupResult);
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+        return success ? result : null;
+    }
+
+    /**
+     * 按交易顺序执行一组账户的coin,并计算解锁及序列化账户状态
+     *
+     * @param addressChainId
+     * @param accounts
+     * @return 执行失败返回null
+     * @throws Exception
+     */
+    private AccountApplyResult applyAccounts(int addressChainId, List<Map.Entry<ByteArrayWrapper, List<CoinOperation>>> accounts) throws Exception {
+        AccountApplyResult result = new AccountApplyResult(accounts.size());
+        for (Map.Entry<ByteArrayWrapper, List<CoinOperation>> entry : accounts) {
+            List<CoinOperation> operations = entry.getValue();
+            CoinOperation first = operations.get(0);
+            AccountBalance accountBalance = getAccountBalance(addressChainId, first.getCoin(), first.getAddress());
+            AccountState accountState = accountBalance.getNowAccountState();
+            String accountKeyStr = LedgerUtil.getKeyStr(first.getAddress(), first.getCoin().getAssetsChainId(), first.getCoin().getAssetsId());
+            for (CoinOperation operation : operations) {
+                if (operation.isFrom()) {
+                    CoinFrom from = (CoinFrom) operation.getCoin();
+                    boolean process;
+                    if (from.getLocked() == 0) {
+                        AmountNonce amountNonce = new AmountNonce(from.getNonce(), operation.getNonce(), from.getAmount());
+                        accountBalance.getPreAccountState().getNonces().add(amountNonce);
+                        //未确认交易的处理在提交时持有账户锁后判断,避免期间新收到的未确认交易被清空
+                        result.getSpentNonces().add(new Uncfd2CfdKey(accountKeyStr, LedgerUtil.getNonceEncode(operation.getNonce())));
+                        //非解锁交易处理
+                        process = commontTransactionProcessor.processFromCoinData(from, operation.getNonce(), accountState);
+                        ledgerNonce.put(new ByteArrayWrapper(LedgerUtil.getAccountNoncesKey(from.getAddress(), from.getAssetsChainId(), from.getAssetsId(), operation.getNonce())), 1);
                     } else {
-                        LoggerUtil.logger(addressChainId).error("address={} Not local chain Exception", address);
-                        return false;
+                        process = lockedTransactionProcessor.processCoinData(from, operation.getNonce(), operation.getTxHash(), accountState, operation.getTxTime(), operation.getAddress(), true);
+                    }
+                    if (!process) {
+                        logger(addressChainId).error("address={},txHash = {} processFromCoinData is fail.", operation.getAddress(), operation.getTxHash());
+                        return null;
                     }
-                }
-                if (assetRegMngService.isContractAsset(to.getAssetsChainId(), to.getAssetsId())) {
-                    //账本非跨链交易如果收到to是合约资产的,不进行入账
-                    LoggerUtil.logger(addressChainId).info("hash={} asset={}-{} rec contract asset", txHash, to.getAssetsChainId(), to.getAssetsId());
-                    continue;
-                }
-                AccountBalance accountBalance = getAccountBalance(addressChainId, to, updateAccounts, address);
-                //归集链下有多少种类资产，资产下有多少地址
-                LedgerUtil.dealAssetAddressIndex(assetAddressIndex, to.getAssetsChainId(), to.getAssetsId(), address);
-                if (to.getLockTime() == 0) {
-                    //非锁定交易处理
-                    commontTransactionProcessor.processToCoinData(to, accountBalance.getNowAccountState());
                 } else {
-                    //锁定交易处理
-                    lockedTransactionProcessor.processCoinData(to, nonce8Bytes, txHash, accountBalance.getNowAccountState(), transaction.getTime(), address, false);
+                    CoinTo to = (CoinTo) operation.getCoin();
+                    if (to.getLockTime() == 0) {
+                        //非锁定交易处理
+                        commontTransactionProcessor.processToCoinData(to, accountState);
+                    } else {
+                        //锁定交易处理
+                        lockedTransactionProcessor.processCoinData(to, operation.getNonce(), operation.getTxHash(), accountState, operation.getTxTime(), operation.getAddress(), false);
+                    }
                 }
             }
+            freezeStateService.recalculateFreeze(addressChainId, accountState);
+            accountState.setLatestUnFreezeTime(NulsDateUtils.getCurrentTimeSeconds());
+            result.addAccount(entry.getKey(), accountBalance, accountState.serialize());
         }
-        return true;
+        return result;
     }
 
     /**
@@ -242,29 +340,17 @@ public class TransactionServiceImpl implements TransactionService {
                 logger(addressChainId).error("addressChainId ={},blockHeight={},ledgerBlockHeight={}", addressChainId, blockHeight, currentDbHeight);
                 return false;
             }
-            int accountMapSize = txList.size() * 3;
-            //批量交易按交易进行账户的金额处理，再按区块为原子性进行提交,updateAccounts用于账户计算缓存，最后统一处理
-            Map<String, AccountBalance> updateAccounts = new HashMap<>(accountMapSize);
-            Map<String, AccountState> updateMemAccounts = new HashMap<>(accountMapSize);
-            //整体区块备份
-            BlockSnapshotAccounts blockSnapshotAccounts = new BlockSnapshotAccounts();
-            Map<byte[], byte[]> accountStatesMap = new HashMap<>(accountMapSize);
-            List<Uncfd2CfdKey> delUncfd2CfdKeys = new ArrayList<>();
-            Map<String, Integer> clearUncfs = new HashMap<>(txList.size());
+            //批量交易先按账户归集,再按账户并行计算,最后按区块为原子性统一提交
+            Map<ByteArrayWrapper, List<CoinOperation>> accountOperations = new LinkedHashMap<>(txList.size() * 3);
             Map<String, List<String>> assetAddressIndex = new HashMap<>(4);
+            AccountApplyResult applyResult;
             try {
-                if (!confirmBlockTxProcess(blockHeight, addressChainId, txList, updateAccounts, delUncfd2CfdKeys, clearUncfs, assetAddressIndex)) {
+                if (!analysisBlockTxs(addressChainId, txList, accountOperations, assetAddressIndex)) {
                     return false;
                 }
-                //整体交易的处理
-                //更新账本信息
-                for (Map.Entry<String, AccountBalance> entry : updateAccounts.entrySet()) {
-                    //缓存数据
-                    blockSnapshotAccounts.addAccountState(entry.getValue().getPreAccountState());
-                    freezeStateService.recalculateFreeze(addressChainId, entry.getValue().getNowAccountState());
-                    entry.getValue().getNowAccountState().setLatestUnFreezeTime(NulsDateUtils.getCurrentTimeSeconds());
-                    accountStatesMap.put(entry.getKey().getBytes(LedgerConstant.DEFAULT_ENCODING), entry.getValue().getNowAccountState().serialize());
-                    updateMemAccounts.put(entry.getKey(), entry.getValue().getNowAccountState());
+                applyResult = confirmBlockTxProcess(addressChainId, accountOperations);
+                if (null == applyResult) {
+                    return false;
                 }
             } catch (Exception e) {
                 logger(addressChainId).error("confirmBlockProcess blockSnapshotAccounts addAccountState error!");
@@ -272,32 +358,55 @@ public class TransactionServiceImpl implements TransactionService {
                 cleanBlockCommitTempDatas();
                 return false;
             }
-            //提交整体数据
+            //提交整体数据,只锁住本区块涉及的账户,其他账户的未确认交易提交与余额查询不受影响
+            List<byte[]> accountKeys = new ArrayList<>(accountOperations.size());
+            for (ByteArrayWrapper key : accountOperations.keySet()) {
+                accountKeys.add(key.getBytes());
+            }
+            //区块回滚日志,只记录账户的变化量
+            BlockUndoLog blockUndoLog = new BlockUndoLog();
+            for (AccountUndo accountUndo : applyResult.getAccountUndos()) {
+                blockUndoLog.addAccountUndo(accountUndo);
+            }
+            boolean committed = false;
+            boolean accountsWritten = false;
+            AccountLocker.Locked locked = LockerUtil.ACCOUNT_LOCKER.lock(accountKeys);
             try {
-                //备份历史
-                repository.saveBlockSnapshot(addressChainId, blockHeight, blockSnapshotAccounts);
                 //更新链下资产种类，及资产地址集合数据。
                 chainAssetsService.updateChainAssets(addressChainId, assetAddressIndex);
-                //更新账本
-                if (accountStatesMap.size() > 0) {
-                    repository.batchUpdateAccountState(addressChainId, accountStatesMap, updateMemAccounts);
+                //先写回滚日志再写账户状态,并删除过期的回滚日志
+                repository.commitBlockAccounts(addressChainId, blockHeight, blockUndoLog, applyResult.getAccountStatesMap(), applyResult.getMemAccounts());
+                accountsWritten = true;
+                //持有账户锁时判断是否存在未确认过程交易，如果存在则进行确认记录，如果不存在，则进行未确认的清空记录
+                List<Uncfd2CfdKey> delUncfd2CfdKeys = new ArrayList<>(applyResult.getSpentNonces().size());
+                Set<String> clearUncfs = new HashSet<>();
+                for (Uncfd2CfdKey spentNonce : applyResult.getSpentNonces()) {
+                    if (unconfirmedStateService.existTxUnconfirmedTx(addressChainId, spentNonce.getAssetKey(), spentNonce.getNonceKey())) {
+                        delUncfd2CfdKeys.add(spentNonce);
+                    } else {
+                        clearUncfs.add(spentNonce.getAssetKey());
+                    }
                 }
-                for (Map.Entry<String, Integer> entry : clearUncfs.entrySet()) {
+                for (String accountKeyStr : clearUncfs) {
                     //进行收到网络其他节点的交易，刷新本地未确认数据处理
-                    unconfirmedStateService.clearAccountUnconfirmed(addressChainId, entry.getKey());
+                    unconfirmedStateService.clearAccountUnconfirmed(addressChainId, accountKeyStr);
                 }
                 //删除跃迁的未确认交易
                 unconfirmedStateService.batchDeleteUnconfirmedTx(addressChainId, delUncfd2CfdKeys);
-                //删除过期缓存数据
-                if (blockHeight > LedgerConstant.CACHE_ACCOUNT_BLOCK) {
-                    repository.delBlockSnapshot(addressChainId, (blockHeight - LedgerConstant.CACHE_ACCOUNT_BLOCK));
-                }
+                committed = true;
             } catch (Exception e) {
                 //需要回滚数据
                 cleanBlockCommitTempDatas();
                 logger(addressChainId).error(e);
                 LoggerUtil.logger(addressChainId).error("confirmBlockProcess  error! go rollBackBlock!addrChainId={},height={}", addressChainId, blockHeight);
-                rollBackBlock(addressChainId, blockSnapshotAccounts.getAccounts(), blockHeight);
+            } finally {
+                locked.unlock();
+            }
+            if (!committed) {
+                //账户锁不可重入,回滚在释放后进行;账户状态未写入时没有需要回滚的数据
+                if (accountsWritten) {
+                    rollBackBlock(addressChainId, blockHeight);
+                }
                 return false;
             }
             //完全提交,存储当前高度。
@@ -314,36 +423,31 @@ public class TransactionServiceImpl implements TransactionService {
 
     }
 
-    private AccountBalance getAccountBalance(int addressChainId, Coin coin, Map<String, AccountBalance> updateAccounts, String address) {
+    private AccountBalance getAccountBalance(int addressChainId, Coin coin, String address) {
         int assetChainId = coin.getAssetsChainId();
         int assetId = coin.getAssetsId();
-        String key = LedgerUtil.getKeyStr(address, assetChainId, assetId);
-        AccountBalance accountBalance = updateAccounts.get(key);
-        if (null == accountBalance) {
-            //交易里的账户处理缓存AccountBalance
-            AccountState accountState = accountStateService.getAccountStateReCal(address, addressChainId, assetChainId, assetId);
-            AccountStateSnapshot bakAccountState = new AccountStateSnapshot(addressChainId, assetChainId, assetId, address, accountState.deepClone());
-            accountBalance = new AccountBalance(accountState, bakAccountState);
-            updateAccounts.put(key, accountBalance);
-        }
-        return accountBalance;
+        //交易里的账户处理缓存AccountBalance
+        AccountState accountState = accountStateService.getAccountStateReCal(coin.getAddress(), addressChainId, assetChainId, assetId);
+        AccountStateSnapshot bakAccountState = new AccountStateSnapshot(addressChainId, assetChainId, assetId, address, accountState.deepClone());
+        return new AccountBalance(accountState, bakAccountState);
     }
 
     /**
      * @param addressChainId
-     * @param preAccountStates
+     * @param blockHeight
      * @return
      */
     @Override
-    public synchronized boolean rollBackBlock(int addressChainId, List<AccountStateSnapshot> preAccountStates, long blockHeight) {
+    public boolean rollBackBlock(int addressChainId, long blockHeight) {
         try {
-            //回滚账号信息
-            accountStateService.rollAccountState(addressChainId, preAccountStates);
-            //回滚备份数据
-            repository.delBlockSnapshot(addressChainId, blockHeight);
+            LockerUtil.LEDGER_LOCKER.lock();
+            //回滚账号信息,同时删除回滚日志
+            accountStateService.rollBackBlockAccounts(addressChainId, blockHeight);
         } catch (Exception e) {
             logger(addressChainId).error("rollBackBlock error!!", e);
             return false;
+        } finally {
+            LockerUtil.LEDGER_LOCKER.unlock();
         }
         return true;
     }
@@ -367,17 +471,14 @@ public class TransactionServiceImpl implements TransactionService {
                 logger(addressChainId).error("addressChainId ={},blockHeight={},ledgerBlockHeight={}", addressChainId, blockHeight, currentDbHeight);
                 return false;
             }
-            BlockSnapshotAccounts blockSnapshotAccounts = repository.getBlockSnapshot(addressChainId, blockHeight);
-            if (null == blockSnapshotAccounts) {
-                logger(addressChainId).error("addressChainId ={},blockHeight={},blockSnapshotAccounts is null.", addressChainId, blockHeight);
-                return false;
-            }
             //回滚高度
             repository.saveOrUpdateBlockHeight(addressChainId, (blockHeight - 1));
-            List<AccountStateSnapshot> preAccountStates = blockSnapshotAccounts.getAccounts();
-            accountStateService.rollAccountState(addressChainId, preAccountStates);
-            //删除备份数据
-            repository.delBlockSnapshot(addressChainId, blockHeight);
+            //回滚账户信息,同时删除回滚日志
+            if (!accountStateService.rollBackBlockAccounts(addressChainId, blockHeight)) {
+                repository.saveOrUpdateBlockHeight(addressChainId, blockHeight);
+                logger(addressChainId).error("addressChainId ={},blockHeight={},block undo log is null.", addressChainId, blockHeight);
+                return false;
+            }
             //回滚nonce缓存信息
             txs.forEach(tx -> {
                 String txHash = tx.getHash().toHex();
@@ -391,7 +492,7 @@ public class TransactionServiceImpl implements TransactionService {
                 }
                 if (null != coinData) {
                     //更新账户状态
-                    String nonce8BytesStr = LedgerUtil.getNonceEncodeByTx(tx);
+                    byte[] nonce8Bytes = LedgerUtil.getNonceByTx(tx);
                     List<CoinFrom> froms = coinData.getFrom();
                     for (CoinFrom from : froms) {
                         if (LedgerUtil.isNotLocalChainAccount(addressChainId, from.getAddress())) {
@@ -400,7 +501,7 @@ public class TransactionServiceImpl implements TransactionService {
                         if (from.getLocked() == 0) {
                             try {
                                 //删除备份的花费nonce值。
-                                lgBlockSyncRepository.deleteAccountNonces(addressChainId, LedgerUtil.getAccountNoncesStrKey(LedgerUtil.getRealAddressStr(from.getAddress()), from.getAssetsChainId(), from.getAssetsId(), nonce8BytesStr));
+                                lgBlockSyncRepository.deleteAccountNonces(addressChainId, LedgerUtil.getAccountNoncesKey(from.getAddress(), from.getAssetsChainId(), from.getAssetsId(), nonce8Bytes));
                             } catch (Exception e) {
                                 LoggerUtil.logger(addressChainId).error(e);
                             }
@@ -428,6 +529,15 @@ public class TransactionServiceImpl implements TransactionService {
         }
         List<CoinFrom> froms = coinData.getFrom();
         String txHash = transaction.getHash().toHex();
+        AccountLocker.Locked locked = LockerUtil.ACCOUNT_LOCKER.lock(fromAccountKeys(coinData));
+        try {
+            return rollBackUnconfirmFroms(addressChainId, transaction, froms, txHash);
+        } finally {
+            locked.unlock();
+        }
+    }
+
+    private boolean rollBackUnconfirmFroms(int addressChainId, Transaction transaction, List<CoinFrom> froms, String txHash) {
         for (CoinFrom from : froms) {
             if (LedgerUtil.isNotLocalChainAccount(addressChainId, from.getAddress())) {
                 //非本地网络账户地址,不进行处理
@@ -459,8 +569,8 @@ public class TransactionServiceImpl implements TransactionService {
     }
 
     @Override
-    public boolean fromNonceExist(int addressChainId, String accountNonceKey) throws Exception {
-        return ledgerNonce.containsKey(accountNonceKey);
+    public boolean fromNonceExist(int addressChainId, byte[] accountNonceKey) throws Exception {
+        return ledgerNonce.containsKey(new ByteArrayWrapper(accountNonceKey));
 //        return (lgBlockSyncRepository.existAccountNonce(addressChainId, accountNonceKey));
     }
 
@@ -74,7 +74,7 @@ public class LockedTransactionProcessor implements TxLockedProcessor {
                 if (LedgerUtil.equalsNonces(freezeLockTimeState.getNonce(), coin.getNonce())) {
                     if (0 == freezeLockTimeState.getAmount().compareTo(coin.getAmount())) {
                         //金额一致，移除
-                        list.remove(freezeLockTimeState);
+                        accountState.removeFreezeLockTimeState(freezeLockTimeState);
                         LoggerUtil.COMMON_LOG.debug("TimeUnlocked remove ok,hash={} ", txHash);
                         return true;
                     }
@@ -89,7 +89,7 @@ public class LockedTransactionProcessor implements TxLockedProcessor {
                 if (LedgerUtil.equalsNonces(freezeHeightState.getNonce(), coin.getNonce())) {
                     if (0 == freezeHeightState.getAmount().compareTo(coin.getAmount())) {
                         //金额一致，移除
-                        list.remove(freezeHeightState);
+                        accountState.removeFreezeHeightState(freezeHeightState);
                         LoggerUtil.COMMON_LOG.debug("HeightUnlocked remove ok,hash={} ", txHash);
                         return true;
                     }
@@ -117,7 +117,7 @@ public class LockedTransactionProcessor implements TxLockedProcessor {
             freezeHeightState.setNonce(nonce);
             freezeHeightState.setTxHash(hash);
             LoggerUtil.COMMON_LOG.debug("processToCoinData add HeightLocked address={},amount={},height={},hash={} ", address, freezeHeightState.getAmount(), freezeHeightState.getHeight(), hash);
-            accountState.getFreezeHeightStates().add(freezeHeightState);
+            accountState.addFreezeHeightState(freezeHeightState);
         } else {
             //按时间锁定
             FreezeLockTimeState freezeLockTimeState = new FreezeLockTimeState();
@@ -127,7 +127,7 @@ public class LockedTransactionProcessor implements TxLockedProcessor {
             freezeLockTimeState.setNonce(nonce);
             freezeLockTimeState.setTxHash(hash);
             LoggerUtil.COMMON_LOG.debug("processToCoinData add TimeLocked address={},amount={},time={},hash={} ", address, coin.getAmount(), freezeLockTimeState.getLockTime(), hash);
-            accountState.getFreezeLockTimeStates().add(freezeLockTimeState);
+            accountState.addFreezeLockTimeState(freezeLockTimeState);
         }
         return true;
     }
@@ -46,11 +46,21 @@ public interface DataBaseArea {
 
     String TB_LEDGER_ACCOUNT_BLOCK_SNAPSHOT = "account_block_snapshot";
 
+    /**
+     *   按区块高度存账户的回滚日志,取代account_block_snapshot
+     */
+    String TB_LEDGER_BLOCK_UNDO = "account_block_undo";
+
     /**
      *   存区块当前确认的高度
      */
     String TB_LEDGER_BLOCK_HEIGHT = "chain_block_height";
 
+    /**
+     *   存各链账本key的版本
+     */
+    String TB_LEDGER_KEY_VERSION = "ledger_key_version";
+
 
     /**
      *   存区块当前确认的高度
@@ -82,7 +82,7 @@ public interface LgBlockSyncRepository {
      * @param accountNonceKey
      * @throws Exception
      */
-    void deleteAccountNonces(int chainId, String accountNonceKey) throws Exception;
+    void deleteAccountNonces(int chainId, byte[] accountNonceKey) throws Exception;
 
     /**
      * 判断账号的nonce是否已被使用
@@ -92,7 +92,17 @@ public interface LgBlockSyncRepository {
      * @return
      * @throws Exception
      */
-    boolean existAccountNonce(int chainId, String accountNonceKey) throws Exception;
+    boolean existAccountNonce(int chainId, byte[] accountNonceKey) throws Exception;
+
+    /**
+     * 把nonce表中的字符串key转为二进制key
+     * Convert the string keys of the nonce table to binary keys
+     *
+     * @param chainId
+     * @return 转换的key数 / number of keys converted
+     * @throws Exception
+     */
+    int migrateLegacyNonceKeys(int chainId) throws Exception;
 
 
     /**
@@ -113,7 +123,7 @@ public interface LgBlockSyncRepository {
 
     /**
      * @param chainId
-     * @param noncesList
+     * @param noncesList 十六进制的nonce key, 旧版本的快照中为字符串key / nonce keys in hex, string keys in legacy snapshots
      * @throws Exception
      */
     public void batchDeleteAccountNonces(int chainId, List<String> noncesList) throws Exception;
@@ -26,9 +26,11 @@
 package io.nuls.ledger.storage;
 
 import io.nuls.core.exception.NulsException;
+import io.nuls.core.model.ByteArrayWrapper;
 import io.nuls.ledger.model.ChainHeight;
 import io.nuls.ledger.model.po.AccountState;
 import io.nuls.ledger.model.po.BlockSnapshotAccounts;
+import io.nuls.ledger.model.po.BlockUndoLog;
 
 import java.util.List;
 import java.util.Map;
@@ -58,7 +60,7 @@ public interface Repository {
      * @param key
      * @return
      */
-    AccountState getAccountStateByMemory(int chainId, String key);
+    AccountState getAccountStateByMemory(int chainId, byte[] key);
 
     /**
      * 批量更新账号账本信息
@@ -68,11 +70,11 @@ public interface Repository {
      * @param accountStateMap
      * @throws Exception
      */
-    void batchUpdateAccountState(int addressChainId, Map<byte[], byte[]> accountStateMap,Map<String, AccountState> accountStateMemMap) throws Exception;
-    void clearAccountStateMem(int addressChainId, Map<String, AccountState> accountStateMemMap) throws Exception;
+    void batchUpdateAccountState(int addressChainId, Map<byte[], byte[]> accountStateMap,Map<ByteArrayWrapper, AccountState> accountStateMemMap) throws Exception;
+    void clearAccountStateMem(int addressChainId, Map<ByteArrayWrapper, AccountState> accountStateMemMap) throws Exception;
 
     /**
-     * 删除区块快照
+     * 删除区块快照及回滚日志
      *
      * @param chainId
      * @param height
@@ -81,23 +83,45 @@ public interface Repository {
     void delBlockSnapshot(int chainId, long height) throws Exception;
 
     /**
-     * 存储区块快照
+     * 获取旧版本的区块快照
      *
      * @param chainId
      * @param height
-     * @param blockSnapshotAccounts
+     * @return BlockSnapshotAccounts
+     */
+    BlockSnapshotAccounts getBlockSnapshot(int chainId, long height);
+
+    /**
+     * 区块提交:先写入回滚日志并删除超出保留深度的回滚日志,再写入账户状态,写入成功后更新缓存
+     *
+     * @param chainId
+     * @param height
+     * @param undoLog
+     * @param accountStateMap
+     * @param accountStateMemMap
      * @throws Exception
      */
-    void saveBlockSnapshot(int chainId, long height, BlockSnapshotAccounts blockSnapshotAccounts) throws Exception;
+    void commitBlockAccounts(int chainId, long height, BlockUndoLog undoLog, Map<byte[], byte[]> accountStateMap, Map<ByteArrayWrapper, AccountState> accountStateMemMap) throws Exception;
 
     /**
-     * 获取区块快照
+     * 区块回滚:先写入区块前的账户状态并更新缓存,再删除回滚日志
      *
      * @param chainId
      * @param height
-     * @return BlockSnapshotAccounts
+     * @param accountStateMap
+     * @param accountStateMemMap
+     * @throws Exception
      */
-    BlockSnapshotAccounts getBlockSnapshot(int chainId, long height);
+    void rollBackBlockAccounts(int chainId, long height, Map<byte[], byte[]> accountStateMap, Map<ByteArrayWrapper, AccountState> accountStateMemMap) throws Exception;
+
+    /**
+     * 获取区块回滚日志
+     *
+     * @param chainId
+     * @param height
+     * @return BlockUndoLog
+     */
+    BlockUndoLog getBlockUndoLog(int chainId, long height);
 
 
     /**
@@ -123,6 +147,33 @@ public interface Repository {
      */
     List<ChainHeight> getChainsBlockHeight();
 
+    /**
+     * 获取链的账本key版本, 没有记录时为0(字符串key)
+     * Get the version of the ledger keys of the chain, 0 (string keys) when not recorded
+     *
+     * @param chainId
+     * @return
+     */
+    int getKeyVersion(int chainId);
+
+    /**
+     * 保存链的账本key版本
+     * Save the version of the ledger keys of the chain
+     *
+     * @param chainId
+     * @param version
+     */
+    void saveKeyVersion(int chainId, int version) throws Exception;
+
+    /**
+     * 把账户表中的字符串key转为二进制key
+     * Convert the string keys of the account table to binary keys
+     *
+     * @param chainId
+     * @return 转换的key数 / number of keys converted
+     */
+    int migrateLegacyAccountKeys(int chainId) throws Exception;
+
     /**
      * 初始化数据表
      *
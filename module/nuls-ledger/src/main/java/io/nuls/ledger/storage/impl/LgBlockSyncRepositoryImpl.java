@@ -27,6 +27,7 @@ package io.nuls.ledger.storage.impl;
 
 import io.nuls.core.basic.InitializingBean;
 import io.nuls.core.core.annotation.Component;
+import io.nuls.core.crypto.HexUtil;
 import io.nuls.core.exception.NulsException;
 import io.nuls.core.model.ByteUtils;
 import io.nuls.core.rockdb.service.RocksDBService;
@@ -34,6 +35,7 @@ import io.nuls.ledger.constant.LedgerConstant;
 import io.nuls.ledger.model.po.BlockSnapshotTxs;
 import io.nuls.ledger.storage.DataBaseArea;
 import io.nuls.ledger.storage.LgBlockSyncRepository;
+import io.nuls.ledger.utils.LedgerUtil;
 import io.nuls.ledger.utils.LoggerUtil;
 
 import java.io.UnsupportedEncodingException;
@@ -197,14 +199,18 @@ public class LgBlockSyncRepositoryImpl implements LgBlockSyncRepository, Initial
     }
 
     @Override
-    public void deleteAccountNonces(int chainId, String accountNonceKey) throws Exception {
-        RocksDBService.delete(getLedgerNonceTableName(chainId), ByteUtils.toBytes(accountNonceKey, LedgerConstant.DEFAULT_ENCODING));
+    public void deleteAccountNonces(int chainId, byte[] accountNonceKey) throws Exception {
+        RocksDBService.delete(getLedgerNonceTableName(chainId), accountNonceKey);
     }
 
     @Override
-    public boolean existAccountNonce(int chainId, String accountNonceKey) throws Exception {
-//        return RocksDBService.keyMayExist(getLedgerNonceTableName(chainId), ByteUtils.toBytes(accountNonceKey, LedgerConstant.DEFAULT_ENCODING));
-        return (null != RocksDBService.get(getLedgerNonceTableName(chainId), ByteUtils.toBytes(accountNonceKey, LedgerConstant.DEFAULT_ENCODING)));
+    public boolean existAccountNonce(int chainId, byte[] accountNonceKey) throws Exception {
+        return (null != RocksDBService.get(getLedgerNonceTableName(chainId), accountNonceKey));
+    }
+
+    @Override
+    public int migrateLegacyNonceKeys(int chainId) throws Exception {
+        return RepositoryImpl.migrateLegacyKeys(getLedgerNonceTableName(chainId));
     }
 
 
@@ -239,7 +245,16 @@ public class LgBlockSyncRepositoryImpl implements LgBlockSyncRepository, Initial
         String table = getLedgerNonceTableName(chainId);
         List<byte[]> list = new ArrayList<>();
         for (String addressNonce : noncesList) {
-            list.add(ByteUtils.toBytes(addressNonce, LedgerConstant.DEFAULT_ENCODING));
+            //旧版本快照中为字符串key / legacy snapshots hold string keys
+            byte[] key;
+            if (addressNonce.indexOf('-') >= 0) {
+                key = LedgerUtil.getKeyByLegacy(ByteUtils.toBytes(addressNonce, LedgerConstant.DEFAULT_ENCODING));
+            } else {
+                key = HexUtil.decode(addressNonce);
+            }
+            if (null != key) {
+                list.add(key);
+            }
         }
         if (list.size() > 0) {
             RocksDBService.deleteKeys(table, list);
@@ -27,21 +27,31 @@ package io.nuls.ledger.storage.impl;
 
 import io.nuls.base.basic.NulsByteBuffer;
 import io.nuls.core.basic.InitializingBean;
+import io.nuls.core.core.annotation.Autowired;
 import io.nuls.core.core.annotation.Component;
 import io.nuls.core.exception.NulsException;
 import io.nuls.core.log.Log;
+import io.nuls.core.model.ByteArrayWrapper;
 import io.nuls.core.model.ByteUtils;
-import io.nuls.core.rockdb.model.Entry;
+import io.nuls.core.rockdb.constant.DBTableProfile;
+import io.nuls.core.rockdb.service.MultiTableBatchOperation;
+import io.nuls.core.rockdb.service.RocksDBCursor;
 import io.nuls.core.rockdb.service.RocksDBService;
+import io.nuls.ledger.config.LedgerConfig;
+import io.nuls.ledger.constant.LedgerConstant;
 import io.nuls.ledger.model.ChainHeight;
 import io.nuls.ledger.model.po.AccountState;
 import io.nuls.ledger.model.po.BlockSnapshotAccounts;
+import io.nuls.ledger.model.po.BlockUndoLog;
 import io.nuls.ledger.storage.DataBaseArea;
 import io.nuls.ledger.storage.Repository;
+import io.nuls.ledger.utils.LedgerUtil;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static io.nuls.ledger.utils.LoggerUtil.logger;
@@ -53,17 +63,27 @@ import static io.nuls.ledger.utils.LoggerUtil.logger;
  */
 @Component
 public class RepositoryImpl implements Repository, InitializingBean {
+    private static final int MIGRATE_BATCH_SIZE = 10000;
+
     /**
      * key1=chainId,  Map1=确认账户状态， key2= addr+assetkey  value=AccountState
      */
-    Map<String, Map<String, AccountState>> memChainsAccounts = new ConcurrentHashMap<>(16);
+    Map<String, Map<ByteArrayWrapper, AccountState>> memChainsAccounts = new ConcurrentHashMap<>(16);
+
+    /**
+     * key=chainId, value=回滚数据已删除到的高度 / height up to which the undo data has been pruned
+     */
+    private final Map<Integer, Long> prunedHeights = new ConcurrentHashMap<>(4);
+
+    @Autowired
+    private LedgerConfig ledgerConfig;
 
     public RepositoryImpl() {
 
     }
 
     @Override
-    public void batchUpdateAccountState(int addressChainId, Map<byte[], byte[]> accountStateMap, Map<String, AccountState> accountStateMemMap) throws Exception {
+    public void batchUpdateAccountState(int addressChainId, Map<byte[], byte[]> accountStateMap, Map<ByteArrayWrapper, AccountState> accountStateMemMap) throws Exception {
         if (null == memChainsAccounts.get(String.valueOf(addressChainId))) {
             memChainsAccounts.put(String.valueOf(addressChainId), new ConcurrentHashMap<>(1024));
         }
@@ -76,7 +96,7 @@ public class RepositoryImpl implements Repository, InitializingBean {
     }
 
     @Override
-    public void clearAccountStateMem(int addressChainId, Map<String, AccountState> accountStateMemMap) throws Exception {
+    public void clearAccountStateMem(int addressChainId, Map<ByteArrayWrapper, AccountState> accountStateMemMap) throws Exception {
         if (null == memChainsAccounts.get(String.valueOf(addressChainId))) {
             memChainsAccounts.put(String.valueOf(addressChainId), new ConcurrentHashMap<>(1024));
         }
@@ -88,13 +108,118 @@ public class RepositoryImpl implements Repository, InitializingBean {
 
     @Override
     public void delBlockSnapshot(int chainId, long height) throws Exception {
-        RocksDBService.delete(getBlockSnapshotTableName(chainId), ByteUtils.longToBytes(height));
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
+        try {
+            batch.delete(getBlockUndoTableName(chainId), ByteUtils.longToBytes(height));
+            batch.delete(getBlockSnapshotTableName(chainId), ByteUtils.longToBytes(height));
+            batch.executeBatch();
+        } finally {
+            batch.close();
+        }
     }
 
     @Override
-    public void saveBlockSnapshot(int chainId, long height, BlockSnapshotAccounts blockSnapshotAccounts) throws Exception {
-        RocksDBService.put(getBlockSnapshotTableName(chainId), ByteUtils.longToBytes(height), blockSnapshotAccounts.serialize());
+    public void commitBlockAccounts(int chainId, long height, BlockUndoLog undoLog, Map<byte[], byte[]> accountStateMap, Map<ByteArrayWrapper, AccountState> accountStateMemMap) throws Exception {
+        //账户表与回滚日志表不在同一个实例中时批次按操作顺序分别写入,先写回滚日志再写账户状态;
+        //中断后回滚日志对应的账户状态没有写入,回滚时会按区块后状态的hash跳过这些账户
+        //the tables may live in different instances and are then written in operation order, the undo log first;
+        //after an interruption the accounts do not match the post-block hashes and the rollback skips them
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
+        try {
+            batch.put(getBlockUndoTableName(chainId), ByteUtils.longToBytes(height), undoLog.serialize());
+            //删除超出保留深度的回滚数据
+            long expiredHeight = height - ledgerConfig.getBlockUndoRetention();
+            List<Long> expiredHeights = expiredHeights(chainId, expiredHeight);
+            for (Long expired : expiredHeights) {
+                batch.delete(getBlockUndoTableName(chainId), ByteUtils.longToBytes(expired));
+                batch.delete(getBlockSnapshotTableName(chainId), ByteUtils.longToBytes(expired));
+            }
+            String accountTable = getLedgerAccountTableName(chainId);
+            for (Map.Entry<byte[], byte[]> entry : accountStateMap.entrySet()) {
+                batch.put(accountTable, entry.getKey(), entry.getValue());
+            }
+            batch.executeBatch();
+            if (!expiredHeights.isEmpty()) {
+                prunedHeights.put(chainId, expiredHeight);
+            }
+        } finally {
+            batch.close();
+        }
+        clearAccountStateMem(chainId, accountStateMemMap);
+    }
+
+    /**
+     * 需要删除的回滚数据高度: 从上次删除到的高度到新的保留边界;
+     * 启动后首次删除时扫描表中所有不超过边界的高度, 清理保留深度调小或跳过高度时遗留的数据
+     * Heights of the undo data to prune, from the last pruned height up to the new boundary.
+     * The first prune after start scans the tables for every height up to the boundary, so data left behind by
+     * a lowered retention or skipped heights is removed as well
+     */
+    private List<Long> expiredHeights(int chainId, long expiredHeight) {
+        List<Long> heights = new ArrayList<>();
+        if (expiredHeight <= 0) {
+            return heights;
+        }
+        Long prunedHeight = prunedHeights.get(chainId);
+        if (null == prunedHeight) {
+            Set<Long> stored = new TreeSet<>();
+            for (String table : new String[]{getBlockUndoTableName(chainId), getBlockSnapshotTableName(chainId)}) {
+                List<byte[]> keys = RocksDBService.keyList(table);
+                if (null == keys) {
+                    continue;
+                }
+                for (byte[] key : keys) {
+                    long height = ByteUtils.byteToLong(key);
+                    if (height <= expiredHeight) {
+                        stored.add(height);
+                    }
+                }
+            }
+            heights.addAll(stored);
+            //没有遗留数据时也记录边界, 之后只删除新增的高度 / record the boundary even when nothing is left, later only new heights are pruned
+            if (heights.isEmpty()) {
+                prunedHeights.put(chainId, expiredHeight);
+            }
+            return heights;
+        }
+        for (long height = prunedHeight + 1; height <= expiredHeight; height++) {
+            heights.add(height);
+        }
+        return heights;
+    }
 
+    @Override
+    public void rollBackBlockAccounts(int chainId, long height, Map<byte[], byte[]> accountStateMap, Map<ByteArrayWrapper, AccountState> accountStateMemMap) throws Exception {
+        //先写回区块前的账户状态再删除回滚日志,中断后重新回滚时已回滚的账户不再匹配区块后状态的hash
+        //the accounts are restored before the undo log is deleted, a repeated rollback skips the restored accounts
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
+        try {
+            String accountTable = getLedgerAccountTableName(chainId);
+            for (Map.Entry<byte[], byte[]> entry : accountStateMap.entrySet()) {
+                batch.put(accountTable, entry.getKey(), entry.getValue());
+            }
+            batch.delete(getBlockUndoTableName(chainId), ByteUtils.longToBytes(height));
+            batch.executeBatch();
+        } finally {
+            batch.close();
+        }
+        clearAccountStateMem(chainId, accountStateMemMap);
+    }
+
+    @Override
+    public BlockUndoLog getBlockUndoLog(int chainId, long height) {
+        byte[] stream = RocksDBService.get(getBlockUndoTableName(chainId), ByteUtils.longToBytes(height));
+        if (stream == null) {
+            return null;
+        }
+        BlockUndoLog undoLog = new BlockUndoLog();
+        try {
+            undoLog.parse(new NulsByteBuffer(stream));
+        } catch (NulsException e) {
+            logger(chainId).error("getBlockUndoLog serialize error.", e);
+            return null;
+        }
+        return undoLog;
     }
 
     @Override
@@ -135,19 +260,12 @@ public class RepositoryImpl implements Repository, InitializingBean {
     }
 
     @Override
-    public AccountState getAccountStateByMemory(int chainId, String key) {
+    public AccountState getAccountStateByMemory(int chainId, byte[] key) {
         //缓存有值,则直接获取
         if (null != memChainsAccounts.get(String.valueOf(chainId))) {
-            AccountState accountStateMem = memChainsAccounts.get(String.valueOf(chainId)).get(key);
+            AccountState accountStateMem = memChainsAccounts.get(String.valueOf(chainId)).get(new ByteArrayWrapper(key));
             if (null != accountStateMem) {
-                AccountState accountState = new AccountState();
-                System.arraycopy(accountStateMem.getNonce(), 0, accountState.getNonce(), 0, accountStateMem.getNonce().length);
-                accountState.setTotalFromAmount(accountStateMem.getTotalFromAmount());
-                accountState.setTotalToAmount(accountStateMem.getTotalToAmount());
-                accountState.setLatestUnFreezeTime(accountStateMem.getLatestUnFreezeTime());
-                accountState.getFreezeHeightStates().addAll(accountStateMem.getFreezeHeightStates());
-                accountState.getFreezeLockTimeStates().addAll(accountStateMem.getFreezeLockTimeStates());
-                return accountState;
+                return accountStateMem.deepClone();
             }
         }
         return null;
@@ -180,20 +298,80 @@ public class RepositoryImpl implements Repository, InitializingBean {
 
     @Override
     public List<ChainHeight> getChainsBlockHeight() {
-        List<Entry<byte[], byte[]>> list = RocksDBService.entryList(getChainsHeightTableName());
         List<ChainHeight> rtList = new ArrayList<>();
-        if (null == list || 0 == list.size()) {
-            return null;
+        try (RocksDBCursor cursor = RocksDBService.rangeCursor(getChainsHeightTableName(), null, null, false)) {
+            while (cursor.next()) {
+                ChainHeight chainHeight = new ChainHeight();
+                chainHeight.setChainId(ByteUtils.bytesToInt(cursor.key()));
+                chainHeight.setBlockHeight(ByteUtils.byteToLong(cursor.value()));
+                rtList.add(chainHeight);
+            }
+        } catch (Exception e) {
+            Log.error(e);
         }
-        for (Entry<byte[], byte[]> entry : list) {
-            ChainHeight chainHeight = new ChainHeight();
-            chainHeight.setChainId(ByteUtils.bytesToInt(entry.getKey()));
-            chainHeight.setBlockHeight(ByteUtils.byteToLong(entry.getValue()));
-            rtList.add(chainHeight);
+        if (0 == rtList.size()) {
+            return null;
         }
         return rtList;
     }
 
+    @Override
+    public int getKeyVersion(int chainId) {
+        byte[] stream = RocksDBService.get(getKeyVersionTableName(), ByteUtils.intToBytes(chainId));
+        if (stream == null) {
+            return 0;
+        }
+        return ByteUtils.bytesToInt(stream);
+    }
+
+    @Override
+    public void saveKeyVersion(int chainId, int version) throws Exception {
+        RocksDBService.put(getKeyVersionTableName(), ByteUtils.intToBytes(chainId), ByteUtils.intToBytes(version));
+    }
+
+    @Override
+    public int migrateLegacyAccountKeys(int chainId) throws Exception {
+        return migrateLegacyKeys(getLedgerAccountTableName(chainId));
+    }
+
+    /**
+     * 把表中的字符串key转为二进制key, 每批转换在一次写入中提交, 中断后重新执行结果相同
+     * Convert the string keys of a table to binary keys. Every chunk is committed in one write,
+     * running it again after an interruption gives the same result
+     *
+     * @return 转换的key数 / number of keys converted
+     */
+    static int migrateLegacyKeys(String table) throws Exception {
+        if (!RocksDBService.existTable(table)) {
+            return 0;
+        }
+        int count = 0;
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
+        int batchCount = 0;
+        try (RocksDBCursor cursor = RocksDBService.rangeCursor(table, null, null, false)) {
+            while (cursor.next()) {
+                byte[] key = LedgerUtil.getKeyByLegacy(cursor.key());
+                if (null == key) {
+                    continue;
+                }
+                batch.put(table, key, cursor.value());
+                batch.delete(table, cursor.key());
+                count++;
+                if (++batchCount == MIGRATE_BATCH_SIZE) {
+                    batch.executeBatch();
+                    batch = RocksDBService.createMultiTableWriteBatch();
+                    batchCount = 0;
+                }
+            }
+            if (batchCount > 0) {
+                batch.executeBatch();
+            }
+        } finally {
+            batch.close();
+        }
+        return count;
+    }
+
     String getChainTableName(String tableName, int chainId) {
         return tableName + "_" + chainId;
     }
@@ -206,20 +384,33 @@ public class RepositoryImpl implements Repository, InitializingBean {
         return getChainTableName(DataBaseArea.TB_LEDGER_ACCOUNT_BLOCK_SNAPSHOT, chainId);
     }
 
+    String getBlockUndoTableName(int chainId) {
+        return getChainTableName(DataBaseArea.TB_LEDGER_BLOCK_UNDO, chainId);
+    }
+
     public String getChainsHeightTableName() {
         return DataBaseArea.TB_LEDGER_BLOCK_HEIGHT;
     }
 
+    String getKeyVersionTableName() {
+        return DataBaseArea.TB_LEDGER_KEY_VERSION;
+    }
+
     /**
      * 初始化数据库
      */
     public void initChainDb(int addressChainId) {
         try {
             if (!RocksDBService.existTable(getLedgerAccountTableName(addressChainId))) {
-                RocksDBService.createTable(getLedgerAccountTableName(addressChainId));
+                RocksDBService.createTable(getLedgerAccountTableName(addressChainId), DBTableProfile.POINT_LOOKUP);
+                //新建的账户表只有二进制key / a new account table only holds binary keys
+                saveKeyVersion(addressChainId, LedgerConstant.LEDGER_KEY_VERSION);
             }
             if (!RocksDBService.existTable(getBlockSnapshotTableName(addressChainId))) {
-                RocksDBService.createTable(getBlockSnapshotTableName(addressChainId));
+                RocksDBService.createTable(getBlockSnapshotTableName(addressChainId), DBTableProfile.APPEND_LOG);
+            }
+            if (!RocksDBService.existTable(getBlockUndoTableName(addressChainId))) {
+                RocksDBService.createTable(getBlockUndoTableName(addressChainId), DBTableProfile.APPEND_LOG);
             }
         } catch (Exception e) {
             logger(addressChainId).error(e);
@@ -239,6 +430,9 @@ public class RepositoryImpl implements Repository, InitializingBean {
             } else {
                 Log.info("table {} exist.", getChainsHeightTableName());
             }
+            if (!RocksDBService.existTable(getKeyVersionTableName())) {
+                RocksDBService.createTable(getKeyVersionTableName());
+            }
         } catch (Exception e) {
             Log.error(e);
             throw new NulsException(e);
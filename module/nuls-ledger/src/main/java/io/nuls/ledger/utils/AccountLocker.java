@@ -0,0 +1,158 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2019 nuls.io
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package io.nuls.ledger.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * 账户分段锁
+ * 账户key(地址+资产链id+资产id)按hash映射到固定数量的锁段, 一次操作涉及的多个账户按段号从小到大加锁, 避免死锁;
+ * 写入方(区块提交、回滚、未确认交易提交)只锁住自己涉及的账户段, 互不相关的账户可以并行处理;
+ * 余额查询走乐观读, 读完校验期间没有写入则直接返回, 否则在读锁下重读.
+ * 锁不可重入, 持有账户锁期间不能再次加锁
+ * <p>
+ * Striped account locks.
+ * Account keys (address + asset chain id + asset id) are hashed onto a fixed number of stripes, the stripes of all accounts
+ * touched by one operation are locked in ascending order so that no deadlock is possible.
+ * Writers (block commit, rollback, unconfirmed commit) only lock the stripes of their own accounts and unrelated accounts
+ * proceed in parallel. Balance queries read optimistically and retry under the read lock only if a writer interfered.
+ * The locks are not reentrant, a thread holding account locks must not lock again
+ */
+public class AccountLocker {
+
+    private final StampedLock[] stripes;
+
+    private final int mask;
+
+    /**
+     * @param stripeCount 段数, 必须为2的幂 / number of stripes, a power of two
+     */
+    public AccountLocker(int stripeCount) {
+        if (stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("stripeCount must be a power of two");
+        }
+        stripes = new StampedLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new StampedLock();
+        }
+        mask = stripeCount - 1;
+    }
+
+    /**
+     * 账户key对应的段号
+     * Stripe of an account key
+     */
+    public int stripe(byte[] accountKey) {
+        int h = Arrays.hashCode(accountKey);
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * 按段号从小到大锁住所有账户所在的段
+     * Lock the stripes of all the accounts in ascending order
+     *
+     * @param accountKeys 账户key / account keys
+     * @return 已加锁的段, 用于解锁 / the locked stripes, used to unlock
+     */
+    public Locked lock(Collection<byte[]> accountKeys) {
+        int[] indexes = new int[accountKeys.size()];
+        int count = 0;
+        for (byte[] key : accountKeys) {
+            indexes[count++] = stripe(key);
+        }
+        Arrays.sort(indexes);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || indexes[distinct - 1] != indexes[i]) {
+                indexes[distinct++] = indexes[i];
+            }
+        }
+        Locked locked = new Locked(Arrays.copyOf(indexes, distinct));
+        for (int i = 0; i < distinct; i++) {
+            locked.stamps[i] = stripes[locked.indexes[i]].writeLock();
+        }
+        return locked;
+    }
+
+    /**
+     * 乐观读取单个账户的数据, 读取期间该账户段有写入时在读锁下重读;
+     * reader在乐观读取时可能看到不一致的数据, 不能依赖其结果做写入
+     * Read the data of one account optimistically and read again under the read lock if the stripe was written meanwhile.
+     * The reader may see inconsistent data while reading optimistically and must not act on it
+     */
+    public <T> T read(byte[] accountKey, Supplier<T> reader) {
+        StampedLock lock = stripes[stripe(accountKey)];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                T value = reader.get();
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public class Locked {
+        private final int[] indexes;
+        private final long[] stamps;
+
+        private Locked(int[] indexes) {
+            this.indexes = indexes;
+            this.stamps = new long[indexes.length];
+        }
+
+        /**
+         * 按加锁的相反顺序解锁
+         * Unlock in the reverse order of locking
+         */
+        public void unlock() {
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                stripes[indexes[i]].unlockWrite(stamps[i]);
+            }
+        }
+
+        /**
+         * 锁住的段数
+         * Number of stripes locked
+         */
+        public int size() {
+            return indexes.length;
+        }
+    }
+}
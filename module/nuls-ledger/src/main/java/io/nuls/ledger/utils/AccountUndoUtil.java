@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017-2019 nuls.io
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package io.nuls.ledger.utils;
+
+import io.nuls.core.crypto.Sha256Hash;
+import io.nuls.core.model.ByteUtils;
+import io.nuls.ledger.model.po.AccountState;
+import io.nuls.ledger.model.po.sub.AccountStateSnapshot;
+import io.nuls.ledger.model.po.sub.AccountUndo;
+
+import java.util.*;
+
+/**
+ * 账户回滚记录的生成与执行
+ * Creates account undo records from the states around a block and applies them on rollback
+ */
+public class AccountUndoUtil {
+
+    /**
+     * 比较区块前后的账户状态生成回滚记录,区块后的冻结记录与区块前共用未改变的对象
+     * Create the undo record of an account from its states before and after the block.
+     * The unchanged freeze entries are the same objects in both states
+     *
+     * @param accountKey 账户key / account key
+     * @param pre        区块前的账户快照,包含区块中花费的nonce / snapshot before the block with the nonces spent in it
+     * @param now        区块后的账户状态 / account state after the block
+     * @param nowBytes   区块后账户状态的序列化数据 / serialized account state after the block
+     */
+    public static AccountUndo createUndo(byte[] accountKey, AccountStateSnapshot pre, AccountState now, byte[] nowBytes) {
+        AccountState preState = pre.getAccountState();
+        AccountUndo undo = new AccountUndo(accountKey);
+        undo.setPostStateHash(Sha256Hash.hash(nowBytes));
+        undo.setFromAmountDelta(now.getTotalFromAmount().subtract(preState.getTotalFromAmount()));
+        undo.setToAmountDelta(now.getTotalToAmount().subtract(preState.getTotalToAmount()));
+        undo.setPreLatestUnFreezeTime(preState.getLatestUnFreezeTime());
+        undo.setNonces(pre.getNonces());
+        diff(preState.getFreezeHeightStates(), now.getFreezeHeightStates(), undo.getAddedHeightIndexes(), undo.getRemovedHeightStates());
+        diff(preState.getFreezeLockTimeStates(), now.getFreezeLockTimeStates(), undo.getAddedLockTimeIndexes(), undo.getRemovedLockTimeStates());
+        return undo;
+    }
+
+    /**
+     * 账户当前状态是否仍是回滚记录对应的区块后状态;否则该账户已经回滚过,或区块的账户状态没有写入
+     * Whether the current account state is still the state after the block of the undo record,
+     * otherwise the account was already rolled back or the block's account states were never written
+     *
+     * @param nowBytes 账户当前状态的序列化数据 / serialized current account state
+     */
+    public static boolean isPostState(AccountUndo undo, byte[] nowBytes) {
+        return Arrays.equals(undo.getPostStateHash(), Sha256Hash.hash(nowBytes));
+    }
+
+    /**
+     * 在区块后的账户状态上执行回滚记录,得到区块前的账户状态;恢复的冻结记录重新按解锁高度/时间排序
+     * Apply the undo record on the account state after the block to get the state before it.
+     * The restored freeze entries are sorted again by unlock height/time
+     */
+    public static AccountState undo(AccountUndo undo, AccountState now) {
+        AccountState pre = new AccountState();
+        byte[] nonce = undo.getNonces().isEmpty() ? now.getNonce() : undo.getNonces().get(0).getFromNonce();
+        pre.setNonce(ByteUtils.copyOf(nonce, nonce.length));
+        pre.setTotalFromAmount(now.getTotalFromAmount().subtract(undo.getFromAmountDelta()));
+        pre.setTotalToAmount(now.getTotalToAmount().subtract(undo.getToAmountDelta()));
+        pre.setLatestUnFreezeTime(undo.getPreLatestUnFreezeTime());
+        pre.setFreezeHeightStates(restore(now.getFreezeHeightStates(), undo.getAddedHeightIndexes(), undo.getRemovedHeightStates()));
+        pre.setFreezeLockTimeStates(restore(now.getFreezeLockTimeStates(), undo.getAddedLockTimeIndexes(), undo.getRemovedLockTimeStates()));
+        return pre;
+    }
+
+    private static <T> void diff(List<T> pre, List<T> now, List<Integer> addedIndexes, List<T> removed) {
+        Set<T> preSet = Collections.newSetFromMap(new IdentityHashMap<>(pre.size() * 2));
+        preSet.addAll(pre);
+        Set<T> nowSet = Collections.newSetFromMap(new IdentityHashMap<>(now.size() * 2));
+        nowSet.addAll(now);
+        for (int i = 0; i < now.size(); i++) {
+            if (!preSet.contains(now.get(i))) {
+                addedIndexes.add(i);
+            }
+        }
+        for (T state : pre) {
+            if (!nowSet.contains(state)) {
+                removed.add(state);
+            }
+        }
+    }
+
+    private static <T> List<T> restore(List<T> now, List<Integer> addedIndexes, List<T> removed) {
+        boolean[] added = new boolean[now.size()];
+        for (Integer index : addedIndexes) {
+            if (index < added.length) {
+                added[index] = true;
+            }
+        }
+        List<T> list = new ArrayList<>(now.size() + removed.size());
+        for (int i = 0; i < now.size(); i++) {
+            if (!added[i]) {
+                list.add(now.get(i));
+            }
+        }
+        list.addAll(removed);
+        return list;
+    }
+}
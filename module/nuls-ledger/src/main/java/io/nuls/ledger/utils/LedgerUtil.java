@@ -24,6 +24,8 @@ import java.util.Map;
  */
 public class LedgerUtil {
 
+    private static final int ASSET_KEY_LENGTH = 4;
+
     public static String getRealAddressStr(String addrContainPre) {
         return AddressTool.getRealAddress(addrContainPre);
     }
@@ -44,21 +46,76 @@ public class LedgerUtil {
 
     }
 
+    /**
+     * rockdb key: 地址字节 + 资产链id(2字节) + 资产id(2字节), 大端序, 同一地址的所有资产有相同的前缀
+     * Account asset key: raw address bytes + asset chain id (2 bytes) + asset id (2 bytes), big endian,
+     * all assets of an address share the address as prefix
+     *
+     * @param address 地址字节 / address bytes
+     * @param assetId assetId
+     * @return byte[]
+     */
+    public static byte[] getKey(byte[] address, int assetChainId, int assetId) {
+        byte[] key = new byte[address.length + ASSET_KEY_LENGTH];
+        System.arraycopy(address, 0, key, 0, address.length);
+        int pos = address.length;
+        key[pos] = (byte) (assetChainId >>> 8);
+        key[pos + 1] = (byte) assetChainId;
+        key[pos + 2] = (byte) (assetId >>> 8);
+        key[pos + 3] = (byte) assetId;
+        return key;
+    }
+
     /**
      * rockdb key
      *
-     * @param address address
+     * @param address 不带前缀的地址 / address without prefix
      * @param assetId assetId
      * @return byte[]
      */
     public static byte[] getKey(String address, int assetChainId, int assetId) {
-        String key = address + "-" + assetChainId + "-" + assetId;
+        return getKey(AddressTool.getAddressByRealAddr(address), assetChainId, assetId);
+    }
+
+    /**
+     * 已花费nonce的rockdb key: 账户资产key + nonce
+     * Key of a spent nonce: account asset key + nonce
+     */
+    public static byte[] getAccountNoncesKey(byte[] address, int assetChainId, int assetId, byte[] nonce) {
+        byte[] key = getKey(address, assetChainId, assetId);
+        byte[] nonceKey = new byte[key.length + nonce.length];
+        System.arraycopy(key, 0, nonceKey, 0, key.length);
+        System.arraycopy(nonce, 0, nonceKey, key.length, nonce.length);
+        return nonceKey;
+    }
+
+    /**
+     * 把旧版本的字符串key("address-assetChainId-assetId"或"address-assetChainId-assetId-nonce")转为二进制key,
+     * 不是旧版本key时返回null
+     * Convert a legacy string key ("address-assetChainId-assetId" or "address-assetChainId-assetId-nonce")
+     * to the binary key, null when it is not a legacy key
+     */
+    public static byte[] getKeyByLegacy(byte[] legacyKey) {
+        String[] parts;
         try {
-            return (key.getBytes(LedgerConstant.DEFAULT_ENCODING));
+            parts = new String(legacyKey, LedgerConstant.DEFAULT_ENCODING).split("-");
         } catch (UnsupportedEncodingException e) {
-            Log.error(e);
+            return null;
+        }
+        if (parts.length != 3 && parts.length != 4) {
+            return null;
+        }
+        try {
+            byte[] address = AddressTool.getAddressByRealAddr(parts[0]);
+            int assetChainId = Integer.parseInt(parts[1]);
+            int assetId = Integer.parseInt(parts[2]);
+            if (parts.length == 3) {
+                return getKey(address, assetChainId, assetId);
+            }
+            return getAccountNoncesKey(address, assetChainId, assetId, HexUtil.decode(parts[3]));
+        } catch (Exception e) {
+            return null;
         }
-        return null;
     }
 
     public static byte[] getNonceDecode(String nonceStr) {
@@ -130,17 +187,6 @@ public class LedgerUtil {
         return LedgerUtil.getRealAddressStr(from.getAddress()) + "-" + from.getAssetsChainId() + "-" + from.getAssetsId();
     }
 
-    /**
-     * rockdb key
-     *
-     * @param address address
-     * @param assetId assetId
-     * @return String
-     */
-    public static String getAccountNoncesStrKey(String address, int assetChainId, int assetId, String nonce) {
-        return address + "-" + assetChainId + "-" + assetId + "-" + nonce;
-    }
-
     public static int getVersion(int chainId) {
         int  version = ProtocolGroupManager.getCurrentVersion(chainId);
         //LoggerUtil.logger(chainId).debug("verion={}",version);
@@ -192,4 +238,26 @@ public class LedgerUtil {
     public static boolean isPermanentLock(long lockTime) {
         return (lockTime < 0);
     }
+
+    /**
+     * 把账户按顺序轮流分到count组,各组账户不相交,用于并行执行
+     * Deal the accounts round robin into count disjoint groups to be applied in parallel
+     *
+     * @param accounts 账户及其操作 / accounts and their operations
+     * @param count    组数 / number of groups
+     * @return 非空的分组 / the non empty groups
+     */
+    public static <K, V> List<List<Map.Entry<K, V>>> partition(Map<K, V> accounts, int count) {
+        int groupCount = Math.max(1, Math.min(count, accounts.size()));
+        List<List<Map.Entry<K, V>>> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(new ArrayList<>(accounts.size() / groupCount + 1));
+        }
+        int index = 0;
+        for (Map.Entry<K, V> entry : accounts.entrySet()) {
+            groups.get(index).add(entry);
+            index = (index + 1) % groupCount;
+        }
+        return groups;
+    }
 }
@@ -24,6 +24,8 @@
  */
 package io.nuls.ledger.utils;
 
+import io.nuls.ledger.constant.LedgerConstant;
+
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -35,5 +37,12 @@ import java.util.concurrent.locks.ReentrantLock;
 public class LockerUtil {
 //    public final static Lock BLOCK_SYNC_LOCKER = new ReentrantLock();
     public final static Lock UNCONFIRMED_SYNC_LOCKER = new ReentrantLock();
+    /**
+     * 区块提交与回滚之间的串行锁, 只保证区块按高度依次处理, 不阻塞未确认交易和余额查询
+     */
     public final static Lock LEDGER_LOCKER = new ReentrantLock();
+    /**
+     * 账户分段锁, 保护账户确认状态与未确认状态的更新
+     */
+    public final static AccountLocker ACCOUNT_LOCKER = new AccountLocker(LedgerConstant.ACCOUNT_LOCK_STRIPES);
 }
@@ -309,7 +309,7 @@ public class CoinDataValidator {
             List<FreezeLockTimeState> timeStates = getFreezeLockTimeValidateList(getFreezeLockTimeValidateMap(chainId), assetKey);
             List<FreezeHeightState> heightStates = getFreezeLockHeightValidateList(getFreezeLockHeightValidateMap(chainId), assetKey);
             if (null == accountState) {
-                accountState = accountStateService.getAccountStateReCal(address, chainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
+                accountState = accountStateService.getAccountStateReCal(coinFrom.getAddress(), chainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
                 accountStateMap.put(assetKey, accountState);
                 timeStates.addAll(accountState.getFreezeLockTimeStates());
                 heightStates.addAll(accountState.getFreezeHeightStates());
@@ -364,7 +364,7 @@ public class CoinDataValidator {
             List<FreezeLockTimeState> timeList = getFreezeLockTimeValidateList(timeStatesMap, assetKey);
             List<FreezeHeightState> heightList = getFreezeLockHeightValidateList(heightStatesMap, assetKey);
             if (null == accountState) {
-                accountState = accountStateService.getAccountStateReCal(address, chainId, coinTo.getAssetsChainId(), coinTo.getAssetsId());
+                accountState = accountStateService.getAccountStateReCal(coinTo.getAddress(), chainId, coinTo.getAssetsChainId(), coinTo.getAssetsId());
                 accountStateMap.put(assetKey, accountState);
                 timeList.addAll(accountState.getFreezeLockTimeStates());
                 heightList.addAll(accountState.getFreezeHeightStates());
@@ -465,7 +465,7 @@ public class CoinDataValidator {
             List<FreezeHeightState> heightStates = getFreezeLockHeightValidateList(heightStatesMap, assetKey);
 
             if (null == accountState) {
-                accountState = accountStateService.getAccountStateReCal(address, chainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
+                accountState = accountStateService.getAccountStateReCal(coinFrom.getAddress(), chainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
                 accountStateMap.put(assetKey, accountState);
                 timeStates.addAll(accountState.getFreezeLockTimeStates());
                 heightStates.addAll(accountState.getFreezeHeightStates());
@@ -488,7 +488,7 @@ public class CoinDataValidator {
             List<FreezeLockTimeState> timeList = getFreezeLockTimeValidateList(timeStatesMap, assetKey);
             List<FreezeHeightState> heightList = getFreezeLockHeightValidateList(heightStatesMap, assetKey);
             if (null == accountState) {
-                accountState = accountStateService.getAccountStateReCal(address, chainId, coinTo.getAssetsChainId(), coinTo.getAssetsId());
+                accountState = accountStateService.getAccountStateReCal(coinTo.getAddress(), chainId, coinTo.getAssetsChainId(), coinTo.getAssetsId());
                 accountStateMap.put(assetKey, accountState);
                 timeList.addAll(accountState.getFreezeLockTimeStates());
                 heightList.addAll(accountState.getFreezeHeightStates());
@@ -555,7 +555,7 @@ public class CoinDataValidator {
                 return ValidateResult.getResult(LedgerErrorCode.DOUBLE_EXPENSES, new String[]{address, fromNonceStr});
             }
             //上面没连接上，但是fromNonce又存储过，则双花了
-            if (transactionService.fromNonceExist(addressChainId, LedgerUtil.getAccountNoncesStrKey(address, assetChainId, assetId, fromNonceStr))) {
+            if (transactionService.fromNonceExist(addressChainId, LedgerUtil.getAccountNoncesKey(AddressTool.getAddressByRealAddr(address), assetChainId, assetId, fromNonce))) {
                 logger(addressChainId).info("DOUBLE_EXPENSES_CODE address={},fromNonceStr={},tx={} fromNonce exist", address, fromNonceStr, LedgerUtil.getNonceEncode(txNonce));
                 return ValidateResult.getResult(LedgerErrorCode.DOUBLE_EXPENSES, new String[]{address, fromNonceStr});
             }
@@ -639,7 +639,7 @@ public class CoinDataValidator {
             List<FreezeLockTimeState> timeList = getFreezeLockTimeValidateList(timeLockMap, assetKey);
             List<FreezeHeightState> heightList = getFreezeLockHeightValidateList(heightLockMap, assetKey);
             if (null == accountState) {
-                accountState = accountStateService.getAccountStateReCal(address, chainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
+                accountState = accountStateService.getAccountStateReCal(coinFrom.getAddress(), chainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
                 accountStateMap.put(assetKey, accountState);
                 timeList.addAll(accountState.getFreezeLockTimeStates());
                 heightList.addAll(accountState.getFreezeHeightStates());
@@ -769,7 +769,7 @@ public class CoinDataValidator {
             List<FreezeHeightState> heightList = getFreezeLockHeightValidateList(lockedHeightMap, assetKey);
 
             if (null == accountState) {
-                accountState = accountStateService.getAccountStateReCal(address, chainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
+                accountState = accountStateService.getAccountStateReCal(coinFrom.getAddress(), chainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
                 accountStateMap.put(assetKey, accountState);
                 timeList.addAll(accountState.getFreezeLockTimeStates());
                 heightList.addAll(accountState.getFreezeHeightStates());
@@ -799,7 +799,7 @@ public class CoinDataValidator {
             List<FreezeLockTimeState> timeList = getFreezeLockTimeValidateList(lockedTimeMap, assetKey);
             List<FreezeHeightState> heightList = getFreezeLockHeightValidateList(lockedHeightMap, assetKey);
             if (null == accountState) {
-                accountState = accountStateService.getAccountStateReCal(address, chainId, coinTo.getAssetsChainId(), coinTo.getAssetsId());
+                accountState = accountStateService.getAccountStateReCal(coinTo.getAddress(), chainId, coinTo.getAssetsChainId(), coinTo.getAssetsId());
                 accountStateMap.put(assetKey, accountState);
                 timeList.addAll(accountState.getFreezeLockTimeStates());
                 heightList.addAll(accountState.getFreezeHeightStates());
@@ -920,7 +920,7 @@ public class CoinDataValidator {
                 }
             }
             String address = LedgerUtil.getRealAddressStr(coinFrom.getAddress());
-            AccountState accountState = accountStateService.getAccountStateReCal(address, addressChainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
+            AccountState accountState = accountStateService.getAccountStateReCal(coinFrom.getAddress(), addressChainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
             //普通交易
             if (coinFrom.getLocked() == 0) {
                 return validateCommonCoinData(addressChainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId(), accountState, address, coinFrom.getAmount(), coinFrom.getNonce(), txNonce, true);
@@ -962,7 +962,7 @@ public class CoinDataValidator {
             int assetChainId = coinFrom.getAssetsChainId();
             int assetId = coinFrom.getAssetsId();
             String accountKey = LedgerUtil.getKeyStr(address, assetChainId, assetId);
-            AccountState accountState = accountStateService.getAccountStateReCal(address, addressChainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
+            AccountState accountState = accountStateService.getAccountStateReCal(coinFrom.getAddress(), addressChainId, coinFrom.getAssetsChainId(), coinFrom.getAssetsId());
             //普通交易
             if (coinFrom.getLocked() == 0) {
                 ValidateResult validateResult = validateCommonCoinData(addressChainId, assetChainId, assetId, accountState, address, coinFrom.getAmount(), coinFrom.getNonce(), txNonce, false);
@@ -0,0 +1,214 @@
+package io.nuls.ledger.test.storage;
+
+import io.nuls.base.basic.AddressTool;
+import io.nuls.base.data.Coin;
+import io.nuls.base.data.CoinFrom;
+import io.nuls.base.data.CoinTo;
+import io.nuls.base.protocol.ProtocolGroupManager;
+import io.nuls.core.model.ByteArrayWrapper;
+import io.nuls.core.rockdb.manager.RocksDBManager;
+import io.nuls.core.rockdb.service.RocksDBService;
+import io.nuls.ledger.config.LedgerConfig;
+import io.nuls.ledger.constant.LedgerConstant;
+import io.nuls.ledger.model.AccountApplyResult;
+import io.nuls.ledger.model.CoinOperation;
+import io.nuls.ledger.model.po.AccountState;
+import io.nuls.ledger.model.po.sub.FreezeLockTimeState;
+import io.nuls.ledger.service.impl.AccountStateServiceImpl;
+import io.nuls.ledger.service.impl.FreezeStateServiceImpl;
+import io.nuls.ledger.service.impl.TransactionServiceImpl;
+import io.nuls.ledger.service.processor.CommontTransactionProcessor;
+import io.nuls.ledger.service.processor.LockedTransactionProcessor;
+import io.nuls.ledger.storage.impl.RepositoryImpl;
+import io.nuls.ledger.utils.LedgerUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 区块提交时按账户分组并行执行的结果与顺序执行一致
+ * Applying a block with the accounts split into parallel groups gives the same result as applying it in order
+ */
+public class BlockCommitParallelTest {
+
+    private static final int CHAIN_ID = 1;
+    private static final int ASSET_ID = 1;
+    private static final int ACCOUNT_COUNT = LedgerConstant.BLOCK_COMMIT_PARALLEL_MIN_ACCOUNTS + 100;
+    private static final long LOCK_TIME = System.currentTimeMillis() / 1000 + 86400;
+
+    private String dataPath;
+    private RepositoryImpl repository;
+    private TransactionServiceImpl transactionService;
+    private Method parallelApply;
+    private Method sequentialApply;
+
+    @Before
+    public void before() throws Exception {
+        RocksDBManager.close();
+        dataPath = System.getProperty("java.io.tmpdir") + File.separator + "ledger-commit-test-" + System.nanoTime();
+        RocksDBService.init(dataPath);
+        ProtocolGroupManager.setLoadProtocol(false);
+        ProtocolGroupManager.updateProtocol(CHAIN_ID, (short) 1);
+        repository = new RepositoryImpl();
+        inject(repository, "ledgerConfig", new LedgerConfig());
+        repository.initTableName();
+        repository.initChainDb(CHAIN_ID);
+        FreezeStateServiceImpl freezeStateService = new FreezeStateServiceImpl();
+        inject(freezeStateService, "repository", repository);
+        AccountStateServiceImpl accountStateService = new AccountStateServiceImpl();
+        inject(accountStateService, "repository", repository);
+        inject(accountStateService, "freezeStateService", freezeStateService);
+        CommontTransactionProcessor commontTransactionProcessor = new CommontTransactionProcessor();
+        inject(commontTransactionProcessor, "accountStateService", accountStateService);
+        LockedTransactionProcessor lockedTransactionProcessor = new LockedTransactionProcessor();
+        inject(lockedTransactionProcessor, "accountStateService", accountStateService);
+        inject(lockedTransactionProcessor, "repository", repository);
+        transactionService = new TransactionServiceImpl();
+        inject(transactionService, "accountStateService", accountStateService);
+        inject(transactionService, "freezeStateService", freezeStateService);
+        inject(transactionService, "commontTransactionProcessor", commontTransactionProcessor);
+        inject(transactionService, "lockedTransactionProcessor", lockedTransactionProcessor);
+        inject(transactionService, "repository", repository);
+        parallelApply = TransactionServiceImpl.class.getDeclaredMethod("confirmBlockTxProcess", int.class, Map.class);
+        parallelApply.setAccessible(true);
+        sequentialApply = TransactionServiceImpl.class.getDeclaredMethod("applyAccounts", int.class, List.class);
+        sequentialApply.setAccessible(true);
+    }
+
+    @After
+    public void after() {
+        RocksDBManager.close();
+        deleteDir(new File(dataPath));
+    }
+
+    @Test
+    public void parallelMatchesSequential() throws Exception {
+        Map<ByteArrayWrapper, List<CoinOperation>> accountOperations = blockOperations(false);
+        AccountApplyResult parallel = (AccountApplyResult) parallelApply.invoke(transactionService, CHAIN_ID, accountOperations);
+        AccountApplyResult sequential = (AccountApplyResult) sequentialApply.invoke(transactionService, CHAIN_ID, new ArrayList<>(accountOperations.entrySet()));
+        Assert.assertNotNull(parallel);
+        Assert.assertNotNull(sequential);
+        Assert.assertEquals(accountOperations.size(), parallel.getMemAccounts().size());
+        Assert.assertEquals(sequential.getMemAccounts().size(), parallel.getMemAccounts().size());
+        Assert.assertEquals(sequential.getAccountUndos().size(), parallel.getAccountUndos().size());
+        Assert.assertEquals(sequential.getSpentNonces().size(), parallel.getSpentNonces().size());
+        for (Map.Entry<ByteArrayWrapper, AccountState> entry : sequential.getMemAccounts().entrySet()) {
+            Assert.assertArrayEquals(comparable(entry.getValue()), comparable(parallel.getMemAccounts().get(entry.getKey())));
+        }
+
+        //共享账户收到每个账户的转账, 其余账户解锁并花费 / the shared account receives from every account, the others unlock and spend
+        AccountState shared = parallel.getMemAccounts().get(new ByteArrayWrapper(key(address(0))));
+        Assert.assertEquals(BigInteger.valueOf(1000 + 10 + 3L * ACCOUNT_COUNT), shared.getTotalAmount());
+        AccountState account = parallel.getMemAccounts().get(new ByteArrayWrapper(key(address(1))));
+        Assert.assertEquals(0, account.getFreezeLockTimeStates().stream().filter(state -> state.getAmount().equals(BigInteger.TEN)).count());
+        Assert.assertEquals(1, account.getFreezeLockTimeStates().size());
+        Assert.assertEquals(BigInteger.valueOf(1000 - 5 + 10), account.getAvailableAmount());
+    }
+
+    @Test
+    public void parallelFailsLikeSequential() throws Exception {
+        Map<ByteArrayWrapper, List<CoinOperation>> accountOperations = blockOperations(true);
+        Assert.assertNull(parallelApply.invoke(transactionService, CHAIN_ID, accountOperations));
+        Assert.assertNull(sequentialApply.invoke(transactionService, CHAIN_ID, new ArrayList<>(accountOperations.entrySet())));
+    }
+
+    /**
+     * 每个账户: 解锁一笔时间锁定, 花费5, 转3给共享账户, 并收到一笔新的时间锁定
+     * Every account unlocks a lock time entry, spends 5, sends 3 to the shared account and receives a new lock
+     */
+    private Map<ByteArrayWrapper, List<CoinOperation>> blockOperations(boolean wrongUnlock) throws Exception {
+        Map<byte[], byte[]> accountStates = new HashMap<>(ACCOUNT_COUNT * 2);
+        Map<ByteArrayWrapper, AccountState> memAccounts = new HashMap<>(ACCOUNT_COUNT * 2);
+        Map<ByteArrayWrapper, List<CoinOperation>> accountOperations = new LinkedHashMap<>(ACCOUNT_COUNT * 2);
+        byte[] sharedAddress = address(0);
+        for (int i = 0; i <= ACCOUNT_COUNT; i++) {
+            byte[] address = address(i);
+            byte[] key = key(address);
+            AccountState state = new AccountState(LedgerConstant.getInitNonceByte());
+            state.addTotalToAmount(BigInteger.valueOf(1000));
+            state.addFreezeLockTimeState(lockTimeState(nonce(i, 0)));
+            accountStates.put(key, state.serialize());
+            memAccounts.put(new ByteArrayWrapper(key), state);
+            accountOperations.put(new ByteArrayWrapper(key), new ArrayList<>());
+        }
+        repository.batchUpdateAccountState(CHAIN_ID, accountStates, memAccounts);
+        for (int i = 1; i <= ACCOUNT_COUNT; i++) {
+            byte[] address = address(i);
+            String txHash = "tx" + i;
+            byte[] txNonce = nonce(i, 1);
+            boolean wrong = wrongUnlock && i == ACCOUNT_COUNT;
+            add(accountOperations, new CoinFrom(address, CHAIN_ID, ASSET_ID, BigInteger.TEN, wrong ? nonce(i, 9) : nonce(i, 0), (byte) LedgerConstant.UNLOCKED_TIME), true, txNonce, txHash);
+            add(accountOperations, new CoinFrom(address, CHAIN_ID, ASSET_ID, BigInteger.valueOf(5), LedgerConstant.getInitNonceByte(), (byte) 0), true, txNonce, txHash);
+            add(accountOperations, new CoinTo(address, CHAIN_ID, ASSET_ID, BigInteger.TEN), false, txNonce, txHash);
+            add(accountOperations, new CoinTo(sharedAddress, CHAIN_ID, ASSET_ID, BigInteger.valueOf(3)), false, txNonce, txHash);
+            add(accountOperations, new CoinTo(address, CHAIN_ID, ASSET_ID, BigInteger.ONE, LOCK_TIME), false, txNonce, txHash);
+        }
+        return accountOperations;
+    }
+
+    private static void add(Map<ByteArrayWrapper, List<CoinOperation>> accountOperations, Coin coin, boolean isFrom, byte[] nonce, String txHash) {
+        String address = AddressTool.getStringAddressByBytes(coin.getAddress());
+        accountOperations.get(new ByteArrayWrapper(key(coin.getAddress()))).add(new CoinOperation(coin, isFrom, nonce, txHash, 1L, address));
+    }
+
+    private static FreezeLockTimeState lockTimeState(byte[] nonce) {
+        FreezeLockTimeState state = new FreezeLockTimeState();
+        state.setTxHash("lock");
+        state.setNonce(nonce);
+        state.setAmount(BigInteger.TEN);
+        state.setLockTime(LOCK_TIME);
+        return state;
+    }
+
+    /**
+     * 解冻时间随执行时刻变化, 比较前置零 / the unfreeze time depends on when the block is applied, zeroed before comparing
+     */
+    private static byte[] comparable(AccountState state) throws Exception {
+        AccountState clone = state.deepClone();
+        clone.setLatestUnFreezeTime(0);
+        return clone.serialize();
+    }
+
+    private static byte[] address(int index) {
+        byte[] pubKey = new byte[33];
+        pubKey[0] = 2;
+        pubKey[31] = (byte) (index >> 8);
+        pubKey[32] = (byte) index;
+        return AddressTool.getAddress(pubKey, CHAIN_ID);
+    }
+
+    private static byte[] key(byte[] address) {
+        return LedgerUtil.getKey(address, CHAIN_ID, ASSET_ID);
+    }
+
+    private static byte[] nonce(int index, int seq) {
+        return new byte[]{1, (byte) (index >> 8), (byte) index, 0, 0, 0, 0, (byte) seq};
+    }
+
+    private static void inject(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static void deleteDir(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                deleteDir(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,165 @@
+package io.nuls.ledger.test.storage;
+
+import io.nuls.base.basic.AddressTool;
+import io.nuls.core.model.ByteArrayWrapper;
+import io.nuls.core.model.ByteUtils;
+import io.nuls.core.rockdb.manager.RocksDBManager;
+import io.nuls.core.rockdb.service.RocksDBService;
+import io.nuls.ledger.config.LedgerConfig;
+import io.nuls.ledger.constant.LedgerConstant;
+import io.nuls.ledger.model.po.AccountState;
+import io.nuls.ledger.model.po.BlockUndoLog;
+import io.nuls.ledger.model.po.sub.AccountStateSnapshot;
+import io.nuls.ledger.service.impl.AccountStateServiceImpl;
+import io.nuls.ledger.storage.DataBaseArea;
+import io.nuls.ledger.storage.impl.RepositoryImpl;
+import io.nuls.ledger.utils.AccountUndoUtil;
+import io.nuls.ledger.utils.LedgerUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 通过账本存储执行区块回滚 / block rollback driven through the ledger repository
+ */
+public class BlockUndoRollBackTest {
+
+    private static final int CHAIN_ID = 1;
+    private static final String UNDO_TABLE = DataBaseArea.TB_LEDGER_BLOCK_UNDO + "_" + CHAIN_ID;
+    private static final String SNAPSHOT_TABLE = DataBaseArea.TB_LEDGER_ACCOUNT_BLOCK_SNAPSHOT + "_" + CHAIN_ID;
+
+    private String dataPath;
+    private RepositoryImpl repository;
+    private LedgerConfig ledgerConfig;
+    private AccountStateServiceImpl accountStateService;
+    private byte[] key;
+
+    @Before
+    public void before() throws Exception {
+        RocksDBManager.close();
+        dataPath = System.getProperty("java.io.tmpdir") + File.separator + "ledger-undo-test-" + System.nanoTime();
+        RocksDBService.init(dataPath);
+        repository = new RepositoryImpl();
+        ledgerConfig = new LedgerConfig();
+        Field configField = RepositoryImpl.class.getDeclaredField("ledgerConfig");
+        configField.setAccessible(true);
+        configField.set(repository, ledgerConfig);
+        repository.initTableName();
+        repository.initChainDb(CHAIN_ID);
+        accountStateService = new AccountStateServiceImpl();
+        Field field = AccountStateServiceImpl.class.getDeclaredField("repository");
+        field.setAccessible(true);
+        field.set(accountStateService, repository);
+        key = LedgerUtil.getKey(AddressTool.getAddress(new byte[33], CHAIN_ID), CHAIN_ID, 1);
+    }
+
+    @After
+    public void after() {
+        RocksDBManager.close();
+        deleteDir(new File(dataPath));
+    }
+
+    @Test
+    public void rollBackOnce() throws Exception {
+        commit(1, 100);
+        byte[] undoLog2 = commit(2, 50);
+        Assert.assertEquals(BigInteger.valueOf(150), storedAmount());
+
+        Assert.assertTrue(accountStateService.rollBackBlockAccounts(CHAIN_ID, 2));
+        Assert.assertEquals(BigInteger.valueOf(100), storedAmount());
+        Assert.assertNull(repository.getBlockUndoLog(CHAIN_ID, 2));
+
+        //回滚日志删除前中断, 再次回滚不会重复扣减 / interrupted before the log was deleted, a second rollback changes nothing
+        RocksDBService.put(UNDO_TABLE, ByteUtils.longToBytes(2), undoLog2);
+        Assert.assertTrue(accountStateService.rollBackBlockAccounts(CHAIN_ID, 2));
+        Assert.assertEquals(BigInteger.valueOf(100), storedAmount());
+        Assert.assertNull(repository.getBlockUndoLog(CHAIN_ID, 2));
+
+        Assert.assertTrue(accountStateService.rollBackBlockAccounts(CHAIN_ID, 1));
+        Assert.assertEquals(BigInteger.ZERO, storedAmount());
+    }
+
+    @Test
+    public void rollBackUnwrittenBlock() throws Exception {
+        commit(1, 100);
+        //提交时只写入了回滚日志, 账户状态没有写入 / the commit wrote the undo log but not the account states
+        AccountState pre = repository.getAccountState(CHAIN_ID, key);
+        AccountState now = pre.deepClone();
+        now.addTotalToAmount(BigInteger.valueOf(50));
+        RocksDBService.put(UNDO_TABLE, ByteUtils.longToBytes(2), undoLog(pre, now).serialize());
+
+        Assert.assertTrue(accountStateService.rollBackBlockAccounts(CHAIN_ID, 2));
+        Assert.assertEquals(BigInteger.valueOf(100), storedAmount());
+        Assert.assertNull(repository.getBlockUndoLog(CHAIN_ID, 2));
+    }
+
+    @Test
+    public void pruneExpiredRange() throws Exception {
+        ledgerConfig.setBlockUndoRetention(2);
+        //保留深度调小前遗留的回滚数据 / undo data left behind before the retention was lowered
+        for (long height = 1; height <= 5; height++) {
+            RocksDBService.put(UNDO_TABLE, ByteUtils.longToBytes(height), new byte[]{1});
+            RocksDBService.put(SNAPSHOT_TABLE, ByteUtils.longToBytes(height), new byte[]{1});
+        }
+        commit(6, 100);
+        Assert.assertArrayEquals(new long[]{5, 6}, storedHeights(UNDO_TABLE));
+        Assert.assertArrayEquals(new long[]{5}, storedHeights(SNAPSHOT_TABLE));
+
+        //跳过的高度同样删除 / skipped heights are pruned as well
+        commit(7, 10);
+        commit(10, 10);
+        Assert.assertArrayEquals(new long[]{10}, storedHeights(UNDO_TABLE));
+        Assert.assertEquals(0, storedHeights(SNAPSHOT_TABLE).length);
+    }
+
+    private static long[] storedHeights(String table) {
+        return RocksDBService.keyList(table).stream().mapToLong(ByteUtils::byteToLong).sorted().toArray();
+    }
+
+    private byte[] commit(long height, long amount) throws Exception {
+        AccountState pre = repository.getAccountState(CHAIN_ID, key);
+        if (null == pre) {
+            pre = new AccountState(LedgerConstant.getInitNonceByte());
+        }
+        AccountState now = pre.deepClone();
+        now.addTotalToAmount(BigInteger.valueOf(amount));
+        BlockUndoLog undoLog = undoLog(pre, now);
+        Map<byte[], byte[]> accountStates = new HashMap<>(2);
+        accountStates.put(key, now.serialize());
+        Map<ByteArrayWrapper, AccountState> memAccounts = new HashMap<>(2);
+        memAccounts.put(new ByteArrayWrapper(key), now);
+        repository.commitBlockAccounts(CHAIN_ID, height, undoLog, accountStates, memAccounts);
+        return undoLog.serialize();
+    }
+
+    private BlockUndoLog undoLog(AccountState pre, AccountState now) throws Exception {
+        BlockUndoLog undoLog = new BlockUndoLog();
+        AccountStateSnapshot snapshot = new AccountStateSnapshot(CHAIN_ID, CHAIN_ID, 1, "", pre);
+        undoLog.addAccountUndo(AccountUndoUtil.createUndo(key, snapshot, now, now.serialize()));
+        return undoLog;
+    }
+
+    private BigInteger storedAmount() {
+        //缓存与数据库中的状态一致 / the cached and the stored states agree
+        BigInteger cached = repository.getAccountStateByMemory(CHAIN_ID, key).getTotalAmount();
+        Assert.assertEquals(cached, repository.getAccountState(CHAIN_ID, key).getTotalAmount());
+        return cached;
+    }
+
+    private static void deleteDir(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                deleteDir(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,73 @@
+package io.nuls.ledger.test.utils;
+
+import io.nuls.ledger.utils.AccountLocker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AccountLockerTest {
+
+    @Test
+    public void distinctStripes() {
+        AccountLocker locker = new AccountLocker(16);
+        byte[] key = new byte[]{1, 2, 3};
+        //同一账户重复出现只加锁一次 / an account appearing twice is locked once
+        AccountLocker.Locked locked = locker.lock(Arrays.asList(key, key.clone()));
+        Assert.assertEquals(1, locked.size());
+        locked.unlock();
+        locked = locker.lock(Arrays.asList(key));
+        locked.unlock();
+    }
+
+    @Test
+    public void opposingOrder() throws Exception {
+        AccountLocker locker = new AccountLocker(1024);
+        byte[] a = new byte[]{1};
+        byte[] b = new byte[]{2};
+        Assert.assertNotEquals(locker.stripe(a), locker.stripe(b));
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger counter = new AtomicInteger();
+        //按相反顺序传入账户也不会死锁 / passing the accounts in opposite orders does not deadlock
+        for (int t = 0; t < threads; t++) {
+            boolean reverse = t % 2 == 0;
+            new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    AccountLocker.Locked locked = locker.lock(reverse ? Arrays.asList(b, a) : Arrays.asList(a, b));
+                    try {
+                        counter.incrementAndGet();
+                    } finally {
+                        locked.unlock();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(threads * 10000, counter.get());
+    }
+
+    @Test
+    public void optimisticRead() throws Exception {
+        AccountLocker locker = new AccountLocker(16);
+        byte[] key = new byte[]{7};
+        int[] balance = new int[]{100, 0};
+        Assert.assertEquals(Integer.valueOf(100), locker.read(key, () -> balance[0] + balance[1]));
+
+        //写入期间读取会等待写入完成, 读到一致的数据 / a read during a write waits for it and sees consistent data
+        AccountLocker.Locked locked = locker.lock(Arrays.asList(key));
+        balance[0] = 40;
+        AtomicInteger read = new AtomicInteger();
+        Thread reader = new Thread(() -> read.set(locker.read(key, () -> balance[0] + balance[1])));
+        reader.start();
+        Thread.sleep(50);
+        balance[1] = 60;
+        locked.unlock();
+        reader.join();
+        Assert.assertEquals(100, read.get());
+    }
+}
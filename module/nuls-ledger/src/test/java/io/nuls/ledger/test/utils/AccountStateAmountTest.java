@@ -0,0 +1,98 @@
+package io.nuls.ledger.test.utils;
+
+import io.nuls.base.basic.NulsByteBuffer;
+import io.nuls.ledger.model.LedgerAmount;
+import io.nuls.ledger.model.po.AccountState;
+import io.nuls.ledger.model.po.sub.FreezeHeightState;
+import io.nuls.ledger.model.po.sub.FreezeLockTimeState;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+public class AccountStateAmountTest {
+
+    @Test
+    public void longOverflow() {
+        BigInteger max = BigInteger.valueOf(Long.MAX_VALUE);
+        LedgerAmount amount = new LedgerAmount(max);
+        //超出long范围后改用BigInteger / switches to BigInteger once the value leaves the long range
+        amount.add(BigInteger.ONE);
+        Assert.assertEquals(max.add(BigInteger.ONE), amount.toBigInteger());
+        amount.subtract(BigInteger.valueOf(2));
+        Assert.assertEquals(max.subtract(BigInteger.ONE), amount.toBigInteger());
+
+        LedgerAmount min = new LedgerAmount(BigInteger.valueOf(Long.MIN_VALUE));
+        min.subtract(BigInteger.ONE);
+        Assert.assertEquals(BigInteger.valueOf(Long.MIN_VALUE).subtract(BigInteger.ONE), min.toBigInteger());
+
+        BigInteger huge = max.multiply(max);
+        LedgerAmount big = new LedgerAmount(huge);
+        big.subtract(huge);
+        Assert.assertTrue(big.isZero());
+        Assert.assertEquals(max.negate().subtract(BigInteger.TEN),
+                LedgerAmount.subtract(new LedgerAmount(BigInteger.valueOf(-10)), new LedgerAmount(max)));
+    }
+
+    @Test
+    public void balances() throws Exception {
+        AccountState accountState = new AccountState();
+        accountState.addTotalToAmount(BigInteger.valueOf(Long.MAX_VALUE));
+        accountState.addTotalToAmount(BigInteger.valueOf(100));
+        accountState.addTotalFromAmount(BigInteger.valueOf(50));
+        accountState.addFreezeHeightState(heightState("a", 30, 20));
+        accountState.addFreezeLockTimeState(lockTimeState("b", 20, 500));
+        BigInteger available = BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.valueOf(50));
+        Assert.assertEquals(available, accountState.getAvailableAmount());
+        Assert.assertEquals(BigInteger.valueOf(50), accountState.getFreezeTotal());
+        Assert.assertEquals(available.add(BigInteger.valueOf(50)), accountState.getTotalAmount());
+
+        AccountState parsed = new AccountState();
+        parsed.parse(new NulsByteBuffer(accountState.serialize()));
+        Assert.assertEquals(accountState.getTotalAmount(), parsed.getTotalAmount());
+        Assert.assertEquals(accountState.getFreezeTotal(), parsed.getFreezeTotal());
+        AccountState clone = accountState.deepClone();
+        clone.addTotalFromAmount(BigInteger.ONE);
+        Assert.assertEquals(available, accountState.getAvailableAmount());
+    }
+
+    @Test
+    public void sortedFreezeStates() {
+        AccountState accountState = new AccountState();
+        accountState.addFreezeHeightState(heightState("c", 3, 30));
+        accountState.addFreezeHeightState(heightState("a", 1, 10));
+        accountState.addFreezeHeightState(heightState("b1", 2, 20));
+        accountState.addFreezeHeightState(heightState("b2", 4, 20));
+        //相同高度按加入顺序排列 / entries of equal height keep their insertion order
+        String[] order = new String[]{"a", "b1", "b2", "c"};
+        for (int i = 0; i < order.length; i++) {
+            Assert.assertEquals(order[i], accountState.getFreezeHeightStates().get(i).getTxHash());
+        }
+        Assert.assertEquals(BigInteger.valueOf(7), accountState.unFreezeHeightStates(20));
+        Assert.assertEquals(1, accountState.getFreezeHeightStates().size());
+        Assert.assertEquals(BigInteger.valueOf(3), accountState.getFreezeTotal());
+
+        accountState.addFreezeLockTimeState(lockTimeState("p", 5, -1));
+        accountState.addFreezeLockTimeState(lockTimeState("t", 6, 100));
+        Assert.assertEquals(BigInteger.valueOf(6), accountState.unFreezeLockTimeStates(state -> state.getLockTime() >= 0));
+        Assert.assertEquals("p", accountState.getFreezeLockTimeStates().get(0).getTxHash());
+        Assert.assertTrue(accountState.removeFreezeHeightState(accountState.getFreezeHeightStates().get(0)));
+        Assert.assertEquals(BigInteger.valueOf(5), accountState.getFreezeTotal());
+    }
+
+    private static FreezeHeightState heightState(String txHash, long amount, long height) {
+        FreezeHeightState state = new FreezeHeightState();
+        state.setTxHash(txHash);
+        state.setAmount(BigInteger.valueOf(amount));
+        state.setHeight(height);
+        return state;
+    }
+
+    private static FreezeLockTimeState lockTimeState(String txHash, long amount, long lockTime) {
+        FreezeLockTimeState state = new FreezeLockTimeState();
+        state.setTxHash(txHash);
+        state.setAmount(BigInteger.valueOf(amount));
+        state.setLockTime(lockTime);
+        return state;
+    }
+}
@@ -0,0 +1,97 @@
+package io.nuls.ledger.test.utils;
+
+import io.nuls.base.basic.NulsByteBuffer;
+import io.nuls.core.crypto.HexUtil;
+import io.nuls.ledger.model.po.AccountState;
+import io.nuls.ledger.model.po.BlockUndoLog;
+import io.nuls.ledger.model.po.sub.AccountStateSnapshot;
+import io.nuls.ledger.model.po.sub.AccountUndo;
+import io.nuls.ledger.model.po.sub.AmountNonce;
+import io.nuls.ledger.model.po.sub.FreezeHeightState;
+import io.nuls.ledger.model.po.sub.FreezeLockTimeState;
+import io.nuls.ledger.utils.AccountUndoUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+public class AccountUndoUtilTest {
+
+    private static final byte[] KEY = new byte[]{1, 0, 1, 9, 0, 1, 0, 1};
+
+    @Test
+    public void undoRestoresPreState() throws Exception {
+        AccountState now = new AccountState(HexUtil.decode("0000000000000001"));
+        now.setTotalToAmount(BigInteger.valueOf(1000));
+        now.setTotalFromAmount(BigInteger.valueOf(100));
+        now.setLatestUnFreezeTime(10);
+        now.addFreezeHeightState(heightState("aa", 50, 100));
+        now.addFreezeHeightState(heightState("bb", 60, 200));
+        now.addFreezeLockTimeState(lockTimeState("cc", 70, 300));
+        //区块前的快照与区块后的状态共用冻结记录 / the snapshot shares the freeze entries with the state after the block
+        AccountStateSnapshot pre = new AccountStateSnapshot(1, 1, 1, "", now.deepClone());
+
+        //区块: 花费一个nonce, 解冻一条高度锁定, 新增一条时间锁定
+        //the block spends a nonce, unfreezes a height entry and adds a lock time entry
+        byte[] blockNonce = HexUtil.decode("0000000000000002");
+        pre.getNonces().add(new AmountNonce(now.getNonce(), blockNonce, BigInteger.valueOf(30)));
+        now.setNonce(blockNonce);
+        now.setTotalFromAmount(now.getTotalFromAmount().add(BigInteger.valueOf(30)));
+        now.setTotalToAmount(now.getTotalToAmount().add(BigInteger.valueOf(50)));
+        now.removeFreezeHeightState(now.getFreezeHeightStates().get(0));
+        now.addFreezeLockTimeState(lockTimeState("dd", 80, 400));
+        now.setLatestUnFreezeTime(20);
+
+        BlockUndoLog undoLog = new BlockUndoLog();
+        undoLog.addAccountUndo(AccountUndoUtil.createUndo(KEY, pre, now, now.serialize()));
+        AccountUndo accountUndo = undoLog.getAccounts().get(0);
+        Assert.assertEquals(1, accountUndo.getAddedLockTimeIndexes().size());
+        Assert.assertEquals(1, accountUndo.getRemovedHeightStates().size());
+        Assert.assertEquals(0, accountUndo.getAddedHeightIndexes().size());
+
+        //回滚日志与账户状态都从存储中读出 / both the undo log and the account state are read back from storage
+        BlockUndoLog parsedLog = new BlockUndoLog();
+        parsedLog.parse(new NulsByteBuffer(undoLog.serialize()));
+        AccountState stored = new AccountState();
+        stored.parse(new NulsByteBuffer(now.serialize()));
+        AccountState restored = AccountUndoUtil.undo(parsedLog.getAccounts().get(0), stored);
+
+        AccountState expected = pre.getAccountState();
+        Assert.assertArrayEquals(KEY, parsedLog.getAccounts().get(0).getAccountKey());
+        Assert.assertArrayEquals(expected.getNonce(), restored.getNonce());
+        Assert.assertEquals(expected.getTotalFromAmount(), restored.getTotalFromAmount());
+        Assert.assertEquals(expected.getTotalToAmount(), restored.getTotalToAmount());
+        Assert.assertEquals(expected.getLatestUnFreezeTime(), restored.getLatestUnFreezeTime());
+        Assert.assertEquals(expected.getFreezeHeightStates().size(), restored.getFreezeHeightStates().size());
+        Assert.assertEquals(expected.getFreezeLockTimeStates().size(), restored.getFreezeLockTimeStates().size());
+        Assert.assertEquals(expected.getFreezeTotal(), restored.getFreezeTotal());
+        Assert.assertEquals("cc", restored.getFreezeLockTimeStates().get(0).getTxHash());
+    }
+
+    @Test
+    public void undoWithoutSpentNonce() throws Exception {
+        AccountState now = new AccountState(HexUtil.decode("0000000000000005"));
+        AccountStateSnapshot pre = new AccountStateSnapshot(1, 1, 1, "", now.deepClone());
+        now.setTotalToAmount(BigInteger.valueOf(7));
+        AccountState restored = AccountUndoUtil.undo(AccountUndoUtil.createUndo(KEY, pre, now, now.serialize()), now);
+        //只有入账时nonce不变 / the nonce is unchanged when the block only credits the account
+        Assert.assertArrayEquals(now.getNonce(), restored.getNonce());
+        Assert.assertEquals(BigInteger.ZERO, restored.getTotalToAmount());
+    }
+
+    private static FreezeHeightState heightState(String txHash, long amount, long height) {
+        FreezeHeightState state = new FreezeHeightState();
+        state.setTxHash(txHash);
+        state.setAmount(BigInteger.valueOf(amount));
+        state.setHeight(height);
+        return state;
+    }
+
+    private static FreezeLockTimeState lockTimeState(String txHash, long amount, long lockTime) {
+        FreezeLockTimeState state = new FreezeLockTimeState();
+        state.setTxHash(txHash);
+        state.setAmount(BigInteger.valueOf(amount));
+        state.setLockTime(lockTime);
+        return state;
+    }
+}
@@ -0,0 +1,71 @@
+package io.nuls.ledger.test.utils;
+
+import io.nuls.base.basic.AddressTool;
+import io.nuls.core.crypto.HexUtil;
+import io.nuls.ledger.utils.LedgerUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class LedgerUtilTest {
+
+    private static final byte[] ADDRESS = new byte[23];
+
+    static {
+        ADDRESS[0] = 1;
+        ADDRESS[2] = 1;
+        ADDRESS[22] = 9;
+    }
+
+    @Test
+    public void binaryKey() {
+        byte[] key = LedgerUtil.getKey(ADDRESS, 1, 300);
+        Assert.assertEquals(ADDRESS.length + 4, key.length);
+        //同一地址的资产有相同的前缀 / assets of one address share the address prefix
+        for (int i = 0; i < ADDRESS.length; i++) {
+            Assert.assertEquals(ADDRESS[i], key[i]);
+        }
+        Assert.assertArrayEquals(new byte[]{0, 1, 1, 44}, new byte[]{key[23], key[24], key[25], key[26]});
+        String realAddress = LedgerUtil.getRealAddressStr(ADDRESS);
+        Assert.assertArrayEquals(key, LedgerUtil.getKey(realAddress, 1, 300));
+    }
+
+    @Test
+    public void legacyKey() throws Exception {
+        String realAddress = AddressTool.getStringAddressNoPrefix(ADDRESS);
+        byte[] legacy = LedgerUtil.getKeyStr(realAddress, 1, 300).getBytes("UTF-8");
+        Assert.assertArrayEquals(LedgerUtil.getKey(ADDRESS, 1, 300), LedgerUtil.getKeyByLegacy(legacy));
+
+        byte[] nonce = HexUtil.decode("0102030405060708");
+        byte[] legacyNonce = (realAddress + "-1-300-0102030405060708").getBytes("UTF-8");
+        Assert.assertArrayEquals(LedgerUtil.getAccountNoncesKey(ADDRESS, 1, 300, nonce), LedgerUtil.getKeyByLegacy(legacyNonce));
+
+        //二进制key不会被当作旧版本key / binary keys are not taken for legacy keys
+        Assert.assertNull(LedgerUtil.getKeyByLegacy(LedgerUtil.getKey(ADDRESS, 1, 300)));
+    }
+
+    @Test
+    public void partition() {
+        Map<String, List<Integer>> accounts = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            accounts.put("account" + i, Arrays.asList(i, i + 100));
+        }
+        List<List<Map.Entry<String, List<Integer>>>> groups = LedgerUtil.partition(accounts, 4);
+        Assert.assertEquals(4, groups.size());
+        //每个账户只在一个分组中,账户的操作保持不变 / every account is in exactly one group with its operations intact
+        Set<String> seen = new HashSet<>();
+        for (List<Map.Entry<String, List<Integer>>> group : groups) {
+            for (Map.Entry<String, List<Integer>> entry : group) {
+                Assert.assertTrue(seen.add(entry.getKey()));
+                Assert.assertSame(accounts.get(entry.getKey()), entry.getValue());
+            }
+        }
+        Assert.assertEquals(accounts.keySet(), seen);
+        Assert.assertEquals(3, groups.get(0).size());
+        Assert.assertEquals(2, groups.get(3).size());
+
+        //账户数少于组数时不产生空分组 / no empty groups when there are fewer accounts than groups
+        Assert.assertEquals(1, LedgerUtil.partition(Collections.singletonMap("a", 1), 4).size());
+    }
+}
@@ -194,7 +194,7 @@ public class TransactionBootstrap extends RpcModule {
     public void initDB() {
         try {
             //数据文件存储地址
-            RocksDBService.init(txConfig.getTxDataRoot());
+            RocksDBService.init(txConfig.getTxDataRoot(), txConfig.isDbColumnFamily());
             //模块配置表
             DBUtil.createTable(TxDBConstant.DB_MODULE_CONGIF);
         } catch (Exception e) {
@@ -0,0 +1,366 @@
+package io.nuls.transaction.cache;
+
+import io.nuls.base.data.CoinData;
+import io.nuls.base.data.CoinFrom;
+import io.nuls.base.data.Transaction;
+import io.nuls.core.exception.NulsException;
+import io.nuls.core.model.ByteArrayWrapper;
+import io.nuls.transaction.constant.TxConstant;
+import io.nuls.transaction.model.po.TransactionNetPO;
+import io.nuls.transaction.utils.TxUtil;
+
+import java.util.*;
+
+/**
+ * 孤儿交易池
+ * 孤儿交易按其缺少的前序交易(账户资产 + 花费的nonce)建立索引, 前序交易被接收后只唤醒依赖它的孤儿交易重新验证;
+ * 正在处理中的孤儿交易被唤醒时记录下来, 放回池中时直接进入待验证并重置重试间隔;
+ * 没有被唤醒的孤儿交易按递增的间隔重试, 重试时超过存活时间的会被丢弃;
+ * 池满时按加入的先后淘汰最早的孤儿交易
+ * <p>
+ * Pool of orphan transactions.
+ * Orphans are indexed by the predecessor they are missing (account asset + spent nonce), when a transaction is accepted
+ * only the orphans depending on it are woken up to be verified again.
+ * A wakeup for an orphan that is being processed is recorded, when it is put back it is ready right away
+ * and its retry interval starts over.
+ * Orphans that are not woken up are retried with growing intervals and dropped on retry once they outlive the ttl.
+ * When the pool is full the earliest added orphans are evicted
+ */
+public class OrphanPool {
+
+    private static final Comparator<Entry> RETRY_ORDER = (o1, o2) -> {
+        int rs = Long.compare(o1.nextRetry, o2.nextRetry);
+        return rs != 0 ? rs : Long.compare(o1.seq, o2.seq);
+    };
+
+    private final int maxCount;
+
+    private final long maxDataSize;
+
+    /**
+     * 池中所有孤儿交易, 按加入顺序
+     * All orphans of the pool, in the order they were added
+     */
+    private final LinkedHashMap<ByteArrayWrapper, Entry> orphanMap = new LinkedHashMap<>();
+
+    /**
+     * 账户资产 + 缺少的nonce -> 等待该nonce的孤儿交易
+     * account asset + the missing nonce -> orphans waiting for it
+     */
+    private final Map<ByteArrayWrapper, Set<Entry>> waitingIndex = new HashMap<>();
+
+    /**
+     * 前序交易已被接收, 等待重新验证的孤儿交易
+     * Orphans whose predecessor has been accepted, waiting to be verified again
+     */
+    private final LinkedHashSet<Entry> readySet = new LinkedHashSet<>();
+
+    /**
+     * 未被唤醒的孤儿交易, 按下次重试时间排序
+     * Orphans not woken up, by the time of the next retry
+     */
+    private final TreeSet<Entry> retrySet = new TreeSet<>(RETRY_ORDER);
+
+    /**
+     * 已取出正在处理的孤儿交易 -> 其等待的键
+     * Orphans taken out and being processed -> the keys they wait for
+     */
+    private final Map<ByteArrayWrapper, List<ByteArrayWrapper>> processingMap = new HashMap<>();
+
+    /**
+     * 正在处理的孤儿交易等待的键 -> 等待该键的正在处理的孤儿交易数
+     * Keys waited for by orphans being processed -> number of those orphans
+     */
+    private final Map<ByteArrayWrapper, Integer> processingKeys = new HashMap<>();
+
+    /**
+     * 处理期间前序交易已被接收的键
+     * Keys whose predecessor was accepted while their orphans were being processed
+     */
+    private final Set<ByteArrayWrapper> wokenKeys = new HashSet<>();
+
+    private long seq = 0;
+
+    private volatile int count = 0;
+
+    private volatile int processingCount = 0;
+
+    private volatile long dataSize = 0;
+
+    private volatile long evictedCount = 0;
+
+    public OrphanPool(int maxCount, long maxDataSize) {
+        this.maxCount = maxCount;
+        this.maxDataSize = maxDataSize;
+    }
+
+    /**
+     * 加入孤儿交易, 池满时先淘汰最早加入的孤儿交易; 处理期间已被唤醒的孤儿交易直接进入待验证, 重试次数清零
+     * Add an orphan, evicting the earliest added orphans when the pool is full.
+     * An orphan woken up while it was being processed is ready right away and its retry count starts over
+     *
+     * @param now 当前时间(毫秒) / current time in milliseconds
+     * @return 交易已在池中或超过池容量时返回false / false when the transaction is already in the pool or larger than the pool
+     */
+    public synchronized boolean add(TransactionNetPO txNet, long now) {
+        Transaction tx = txNet.getTx();
+        ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash().getBytes());
+        boolean woken = finishProcessing(hash);
+        if (orphanMap.containsKey(hash)) {
+            return false;
+        }
+        int size = tx.size();
+        if (size > maxDataSize) {
+            return false;
+        }
+        Iterator<Entry> it = orphanMap.values().iterator();
+        while (it.hasNext() && (count >= maxCount || dataSize + size > maxDataSize)) {
+            Entry eldest = it.next();
+            it.remove();
+            unlink(eldest);
+            evictedCount++;
+        }
+        if (txNet.getOrphanTime() == 0) {
+            txNet.setOrphanTime(now);
+        }
+        if (woken) {
+            txNet.setOrphanRetryCount(0);
+        }
+        Entry entry = new Entry(hash, txNet, size, now + retryInterval(txNet.getOrphanRetryCount()), ++seq);
+        orphanMap.put(hash, entry);
+        count++;
+        dataSize += size;
+        CoinData coinData = getCoinData(tx);
+        if (null != coinData) {
+            for (CoinFrom from : coinData.getFrom()) {
+                ByteArrayWrapper key = TxMempool.accountKey(from, from.getNonce());
+                if (waitingIndex.computeIfAbsent(key, k -> new HashSet<>(2)).add(entry)) {
+                    entry.keys.add(key);
+                }
+            }
+        }
+        if (woken) {
+            readySet.add(entry);
+            notifyAll();
+        } else {
+            retrySet.add(entry);
+        }
+        return true;
+    }
+
+    /**
+     * 取出的孤儿交易处理完成且不再放回池中(已被接收或丢弃)
+     * A taken orphan has been processed and is not put back (accepted or dropped)
+     */
+    public synchronized void processed(TransactionNetPO txNet) {
+        finishProcessing(new ByteArrayWrapper(txNet.getTx().getHash().getBytes()));
+    }
+
+    /**
+     * 交易被接收(进入未确认或已确认), 唤醒依赖该交易的孤儿交易
+     * A transaction has been accepted (unconfirmed or confirmed), wake up the orphans depending on it
+     *
+     * @return 被唤醒的孤儿交易数 / number of orphans woken up
+     */
+    public int accepted(Transaction tx) {
+        if (count == 0 && processingCount == 0) {
+            return 0;
+        }
+        CoinData coinData = getCoinData(tx);
+        if (null == coinData || coinData.getFrom().isEmpty()) {
+            return 0;
+        }
+        byte[] nonce = TxUtil.getNonce(tx.getHash().getBytes());
+        int woken = 0;
+        synchronized (this) {
+            for (CoinFrom from : coinData.getFrom()) {
+                ByteArrayWrapper key = TxMempool.accountKey(from, nonce);
+                if (processingKeys.containsKey(key)) {
+                    wokenKeys.add(key);
+                }
+                Set<Entry> waiting = waitingIndex.get(key);
+                if (null == waiting) {
+                    continue;
+                }
+                for (Entry entry : waiting) {
+                    if (retrySet.remove(entry)) {
+                        readySet.add(entry);
+                        woken++;
+                    }
+                }
+            }
+            if (woken > 0) {
+                notifyAll();
+            }
+        }
+        return woken;
+    }
+
+    public void accepted(List<Transaction> txList) {
+        for (Transaction tx : txList) {
+            accepted(tx);
+        }
+    }
+
+    /**
+     * 取出一笔被唤醒的孤儿交易, 没有时最多等待指定时间
+     * Take an orphan that has been woken up, waiting at most the given time when there is none
+     */
+    public synchronized TransactionNetPO pollReady(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (readySet.isEmpty() && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        Iterator<Entry> it = readySet.iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        Entry entry = it.next();
+        remove(entry);
+        startProcessing(entry);
+        return entry.txNet;
+    }
+
+    /**
+     * 取出所有到了重试时间的孤儿交易
+     * Take all orphans whose retry time has come
+     */
+    public synchronized List<TransactionNetPO> pollDue(long now) {
+        List<TransactionNetPO> list = new ArrayList<>();
+        while (!retrySet.isEmpty() && retrySet.first().nextRetry <= now) {
+            Entry entry = retrySet.first();
+            remove(entry);
+            startProcessing(entry);
+            list.add(entry.txNet);
+        }
+        return list;
+    }
+
+    public synchronized boolean contains(byte[] hash) {
+        return orphanMap.containsKey(new ByteArrayWrapper(hash));
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 池中孤儿交易的字节总数
+     * Total bytes of the orphans in the pool
+     */
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    /**
+     * 累计因池满被淘汰的孤儿交易数
+     * Number of orphans evicted because the pool was full
+     */
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    private void startProcessing(Entry entry) {
+        if (entry.keys.isEmpty()) {
+            return;
+        }
+        processingMap.put(entry.hash, entry.keys);
+        processingCount = processingMap.size();
+        for (ByteArrayWrapper key : entry.keys) {
+            processingKeys.merge(key, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * 结束处理, 返回处理期间是否被唤醒 / end the processing, returns whether it was woken up meanwhile
+     */
+    private boolean finishProcessing(ByteArrayWrapper hash) {
+        List<ByteArrayWrapper> keys = processingMap.remove(hash);
+        if (null == keys) {
+            return false;
+        }
+        processingCount = processingMap.size();
+        boolean woken = false;
+        for (ByteArrayWrapper key : keys) {
+            woken |= wokenKeys.contains(key);
+            if (processingKeys.merge(key, -1, Integer::sum) <= 0) {
+                processingKeys.remove(key);
+                wokenKeys.remove(key);
+            }
+        }
+        return woken;
+    }
+
+    private void remove(Entry entry) {
+        orphanMap.remove(entry.hash);
+        unlink(entry);
+    }
+
+    private void unlink(Entry entry) {
+        readySet.remove(entry);
+        retrySet.remove(entry);
+        for (ByteArrayWrapper key : entry.keys) {
+            Set<Entry> waiting = waitingIndex.get(key);
+            if (null != waiting && waiting.remove(entry) && waiting.isEmpty()) {
+                waitingIndex.remove(key);
+            }
+        }
+        count--;
+        dataSize -= entry.size;
+    }
+
+    /**
+     * 交易时间或首次进入孤儿交易池的时间超过存活时间即过期
+     * The orphan expired when either its tx time or the time it first entered the pool is older than the ttl
+     *
+     * @param now        当前时间(毫秒) / current time in milliseconds
+     * @param ttlSeconds 存活时间(秒) / ttl in seconds
+     */
+    public static boolean isExpired(TransactionNetPO txNet, long now, long ttlSeconds) {
+        long ttl = ttlSeconds * 1000L;
+        if (txNet.getTx().getTime() * 1000L < now - ttl) {
+            return true;
+        }
+        long orphanTime = txNet.getOrphanTime();
+        return orphanTime > 0 && now - orphanTime > ttl;
+    }
+
+    /**
+     * 重试间隔随重试次数翻倍, 不超过最大值
+     * The retry interval doubles with every retry, up to the maximum
+     */
+    private static long retryInterval(int retryCount) {
+        long interval = TxConstant.ORPHAN_RETRY_MIN_INTERVAL << Math.min(retryCount, 16);
+        return Math.min(interval, TxConstant.ORPHAN_RETRY_MAX_INTERVAL);
+    }
+
+    private static CoinData getCoinData(Transaction tx) {
+        if (null == tx.getCoinData()) {
+            return null;
+        }
+        try {
+            return tx.getCoinDataInstance();
+        } catch (NulsException e) {
+            return null;
+        }
+    }
+
+    private static class Entry {
+        private final ByteArrayWrapper hash;
+        private final TransactionNetPO txNet;
+        private final int size;
+        private final long nextRetry;
+        private final long seq;
+        private final List<ByteArrayWrapper> keys = new ArrayList<>(2);
+
+        private Entry(ByteArrayWrapper hash, TransactionNetPO txNet, int size, long nextRetry, long seq) {
+            this.hash = hash;
+            this.txNet = txNet;
+            this.size = size;
+            this.nextRetry = nextRetry;
+            this.seq = seq;
+        }
+    }
+}
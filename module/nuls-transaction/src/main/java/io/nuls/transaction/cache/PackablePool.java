@@ -1,18 +1,27 @@
 package io.nuls.transaction.cache;
 
+import io.nuls.base.basic.AddressTool;
+import io.nuls.base.data.CoinData;
 import io.nuls.base.data.Transaction;
 import io.nuls.core.core.annotation.Autowired;
 import io.nuls.core.core.annotation.Component;
-import io.nuls.core.model.ByteArrayWrapper;
+import io.nuls.core.exception.NulsException;
+import io.nuls.transaction.constant.TxConfig;
+import io.nuls.transaction.constant.TxConstant;
+import io.nuls.transaction.manager.TxManager;
 import io.nuls.transaction.model.bo.Chain;
-import io.nuls.transaction.storage.UnconfirmedTxStorageService;
+import io.nuls.transaction.model.bo.TxRegister;
 
+import java.math.BigInteger;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 交易已完成交易管理模块的校验(打包的时候从这里取)
+ * 交易按每千字节手续费从高到低取出, 同一账户的交易保持nonce顺序
  * Waiting for a packaged transaction pool
+ * Transactions are taken by fee per kilobyte, highest first, transactions of the same account keep their nonce order
  *
  * @author: Charlie
  * @date: 2018/11/13
@@ -21,100 +30,84 @@ import java.util.Map;
 public class PackablePool {
 
     @Autowired
-    private UnconfirmedTxStorageService unconfirmedTxStorageService;
+    private TxConfig txConfig;
 
     /**
-     * 将交易加入到待打包队列最前端，打包时最先取出
-     * Add the transaction to the front of the queue to be packed, and take it out first when it is packed
+     * 将交易加入到待打包队列，同手续费的交易中最先取出
+     * Add the transaction to the queue to be packed, it is taken first among the transactions with the same fee rate
      *
      * @param chain
      * @param tx
      * @return
      */
     public boolean offerFirst(Chain chain, Transaction tx) {
-        ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash().getBytes());
-        synchronized (hash) {
-            if (chain.getPackableHashQueue().offerFirst(hash)) {
-                chain.getPackableTxMap().put(hash, tx);
-                return true;
-            }
-        }
-        chain.getLogger().error("PackableHashQueue offerFirst false");
-        return false;
+        CoinData coinData = getCoinData(chain, tx);
+        chain.getMempool().add(tx, getFeeRate(chain, tx, coinData), coinData, true);
+        return true;
     }
 
     /**
      * 只还hash 不需要还到map中
+     * 取出后未被打包的交易重新排队
+     * A transaction taken out but not packed is queued again
+     *
      * @param chain
      * @param tx
      * @return
      */
     public boolean offerFirstOnlyHash(Chain chain, Transaction tx) {
-        ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash().getBytes());
-        synchronized (hash) {
-            if (chain.getPackableHashQueue().offerFirst(hash)) {
-                return true;
-            }
+        if (chain.getMempool().requeue(tx.getHash().getBytes())) {
+            return true;
         }
-        chain.getLogger().error("PackableHashQueue offerFirst false");
+        chain.getLogger().debug("PackablePool requeue false, tx is not in the pool, hash:{}", tx.getHash().toHex());
         return false;
     }
 
     /**
-     * 将交易加入到待打包队列队尾
-     * Add the transaction to the end of the queue to be packed
+     * 将交易加入到待打包队列，同手续费的交易中最后取出
+     * Add the transaction to the queue to be packed, it is taken last among the transactions with the same fee rate
      *
      * @param chain
      * @param tx
      * @return
      */
     public boolean add(Chain chain, Transaction tx) {
-        ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash().getBytes());
-        synchronized (hash) {
-            if (chain.getPackableHashQueue().offer(hash)) {
-                chain.getPackableTxMap().put(hash, tx);
-                return true;
-            }
-        }
-        chain.getLogger().error("PackableHashQueue add false");
-        return false;
+        CoinData coinData = getCoinData(chain, tx);
+        chain.getMempool().add(tx, getFeeRate(chain, tx, coinData), coinData, false);
+        return true;
     }
 
     /**
      * 从待打包队列获取一笔交易
      * Gets a transaction from the queue to be packaged
      * <p>
-     * 1.从队列中取出hash，然后再去map中获取交易
-     * 2.如果map没有说明已经被打包确认，然后接着拿下一个，直到获取到一个交易，或者队列为空
-     * <p>
-     * 1.Fetch the hash from the queue, and then fetch the transaction from the map
-     * 2.If the map does not indicate that it has been packaged for confirmation,
-     * then take one down until a transaction is obtained, or if the queue is empty
+     * 取出每千字节手续费最高且前序交易都已取出的交易，交易仍保留在池中直到被确认或清理
+     * Takes the transaction with the highest fee per kilobyte whose predecessors have been taken,
+     * the transaction stays in the pool until it is confirmed or cleared
      *
      * @param chain
      * @return
      */
     public Transaction poll(Chain chain) {
-        while (true) {
-            ByteArrayWrapper hash = chain.getPackableHashQueue().poll();
-            if (null == hash) {
-                return null;
-            }
-            synchronized (hash) {
-                Transaction tx = chain.getPackableTxMap().get(hash);
-                if (null != tx) {
-                    return tx;
-                } else {
-                    unconfirmedTxStorageService.removeTx(chain.getChainId(), hash.getBytes());
-                }
-            }
-        }
+        return chain.getMempool().poll();
+    }
 
+    /**
+     * 从待打包队列获取一笔交易, 队列为空时最多等待timeout毫秒, 新交易加入后立即返回
+     * Gets a transaction from the queue to be packaged, waiting at most timeout milliseconds when it is empty,
+     * it returns as soon as a new transaction is added
+     *
+     * @param chain
+     * @param timeout
+     * @return
+     */
+    public Transaction poll(Chain chain, long timeout) throws InterruptedException {
+        return chain.getMempool().poll(timeout);
     }
 
     /**
-     * 获取并移除此双端队列的最后一个元素；如果此双端队列为空，则返回 null
-     * Gets and removes the last element of the other double-ended queue; If this double-ended queue is empty, null is returned
+     * 按打包顺序取出所有排队中的交易并从池中移除
+     * Take all queued transactions in packing order and remove them from the pool
      *
      * 协议升级时需要重新处理未打包的交易
      * When the agreement is upgraded, unpackaged transactions need to be reprocessed
@@ -122,41 +115,30 @@ public class PackablePool {
      * @param chain
      * @return
      */
-    public Transaction pollLast(Chain chain) {
-        while (true) {
-            ByteArrayWrapper hash = chain.getPackableHashQueue().pollLast();
-            if (null == hash) {
-                return null;
-            }
-            synchronized (hash) {
-                Transaction tx = chain.getPackableTxMap().get(hash);
-                if (null != tx) {
-                    return tx;
-                } else {
-                    unconfirmedTxStorageService.removeTx(chain.getChainId(), hash.getBytes());
-                }
-            }
+    public List<Transaction> pollAll(Chain chain) {
+        TxMempool mempool = chain.getMempool();
+        List<Transaction> list = mempool.pollAll();
+        for (Transaction tx : list) {
+            mempool.remove(tx.getHash().getBytes());
         }
+        return list;
     }
 
     public void clearConfirmedTxs(Chain chain, List<byte[]> txHashs) {
-        Map<ByteArrayWrapper, Transaction> map = chain.getPackableTxMap();
+        TxMempool mempool = chain.getMempool();
         for (byte[] hash : txHashs) {
-            ByteArrayWrapper wrapper = new ByteArrayWrapper(hash);
-            map.remove(wrapper);
+            mempool.remove(hash);
         }
     }
 
     public void removeInvalidTxFromMap(Chain chain, Transaction tx) {
-        Map<ByteArrayWrapper, Transaction> map = chain.getPackableTxMap();
-        ByteArrayWrapper wrapper = new ByteArrayWrapper(tx.getHash().getBytes());
-        map.remove(wrapper);
+        chain.getMempool().remove(tx.getHash().getBytes());
     }
 
     /**
-     * 判断交易是否在待打包队列的hash queue中，交易如果存在于待打包map中, 不一定存在于hash队列.
-     * Determine if the transaction is in the hash queue to be packaged;
-     * if the transaction exists in the map, it does not necessarily exist in the hash queue to be packaged.
+     * 判断交易是否在排队等待打包，交易如果存在于待打包池中, 不一定在排队(已被取出正在打包).
+     * Determine if the transaction is queued for packing;
+     * a transaction in the pool is not necessarily queued (it may have been taken out for packing).
      *
      *
      * @param chain
@@ -164,20 +146,86 @@ public class PackablePool {
      * @return
      */
     public boolean exist(Chain chain, Transaction tx) {
-        ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash().getBytes());
-        return chain.getPackableHashQueue().contains(hash);
+        return chain.getMempool().isQueued(tx.getHash().getBytes());
     }
 
     public int packableHashQueueSize(Chain chain) {
-        return chain.getPackableHashQueue().size();
+        return chain.getMempool().queuedSize();
     }
 
     public int packableTxMapSize(Chain chain) {
-        return chain.getPackableTxMap().size();
+        return chain.getMempool().size();
+    }
+
+    /**
+     * 待打包池中交易的字节总数
+     * Total bytes of the transactions in the pool
+     */
+    public long packableTxDataSize(Chain chain) {
+        return chain.getMempool().getTxDataSize();
+    }
+
+    /**
+     * 待打包池的统计信息, 均为增量维护的值, 不需要遍历池中交易
+     * Statistics of the packable pool, all maintained incrementally without scanning the pool
+     */
+    public Map<String, Object> getPoolInfo(Chain chain) {
+        TxMempool mempool = chain.getMempool();
+        Map<String, Object> map = new HashMap<>(TxConstant.INIT_CAPACITY_16);
+        map.put("txCount", mempool.size());
+        map.put("txDataSize", mempool.getTxDataSize());
+        map.put("queuedCount", mempool.queuedSize());
+        map.put("queuedDataSize", mempool.getQueuedDataSize());
+        map.put("maxTxDataSize", mempool.getMaxTxDataSize());
+        map.put("addedCount", mempool.getAddedCount());
+        map.put("removedCount", mempool.getRemovedCount());
+        OrphanPool orphanPool = chain.getOrphanPool();
+        map.put("orphanCount", orphanPool.size());
+        map.put("orphanDataSize", orphanPool.getDataSize());
+        map.put("orphanEvictedCount", orphanPool.getEvictedCount());
+        return map;
     }
 
     public void clear(Chain chain) {
-        chain.getPackableHashQueue().clear();
+        chain.getMempool().clearQueue();
+    }
+
+    private CoinData getCoinData(Chain chain, Transaction tx) {
+        if (tx.getCoinData() == null) {
+            return null;
+        }
+        try {
+            return tx.getCoinDataInstance();
+        } catch (NulsException e) {
+            chain.getLogger().error(e);
+            return null;
+        }
+    }
+
+    /**
+     * 计算交易每千字节的手续费, 系统交易及无法解析的交易为0
+     * Fee per kilobyte of the transaction, 0 for system transactions and transactions that can not be parsed
+     */
+    private long getFeeRate(Chain chain, Transaction tx, CoinData coinData) {
+        TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
+        if (txRegister == null || txRegister.getSystemTx() || coinData == null || coinData.getFrom().isEmpty()) {
+            return 0L;
+        }
+        int feeAssetChainId;
+        int feeAssetId;
+        if (TxManager.isCrossTx(tx.getType()) && AddressTool.getChainIdByAddress(coinData.getFrom().get(0).getAddress()) != chain.getChainId()) {
+            feeAssetChainId = txConfig.getMainChainId();
+            feeAssetId = txConfig.getMainAssetId();
+        } else {
+            feeAssetChainId = chain.getConfig().getChainId();
+            feeAssetId = chain.getConfig().getAssetId();
+        }
+        BigInteger fee = coinData.getFeeByAsset(feeAssetChainId, feeAssetId);
+        if (fee.signum() <= 0) {
+            return 0L;
+        }
+        BigInteger feeRate = fee.shiftLeft(10).divide(BigInteger.valueOf(Math.max(1, tx.size())));
+        return feeRate.bitLength() < 64 ? feeRate.longValue() : Long.MAX_VALUE;
     }
 
 }
@@ -0,0 +1,378 @@
+package io.nuls.transaction.cache;
+
+import io.nuls.base.data.CoinData;
+import io.nuls.base.data.CoinFrom;
+import io.nuls.base.data.Transaction;
+import io.nuls.core.model.ByteArrayWrapper;
+import io.nuls.transaction.utils.TxUtil;
+
+import java.util.*;
+
+/**
+ * 待打包交易池
+ * 按hash索引所有待打包交易，可打包的交易按每字节手续费从高到低排序；
+ * 同一账户的交易按nonce链接，前一笔交易被取出前后一笔交易不会被取出；
+ * 交易确认或失效时直接按hash移除，同时维护交易总字节数
+ * <p>
+ * Pool of transactions waiting to be packed.
+ * All transactions are indexed by hash, the packable ones are ordered by fee per byte, highest first.
+ * Transactions of the same account are linked by nonce, a transaction is not handed out before its predecessor.
+ * Confirmed or invalid transactions are removed by hash directly and the total byte size is kept up to date
+ * <p>
+ * 数量与字节数统计在加入和移除时增量维护，读取时不需要加锁
+ * Count and byte statistics are maintained incrementally on add and remove and are read without locking
+ */
+public class TxMempool {
+
+    private static final Comparator<Entry> PRIORITY = (o1, o2) -> {
+        int rs = Long.compare(o2.feeRate, o1.feeRate);
+        return rs != 0 ? rs : Long.compare(o1.seq, o2.seq);
+    };
+
+    /**
+     * 池中所有交易，包含已被取出正在打包的交易
+     * All transactions of the pool, including the ones taken out for packing
+     */
+    private final Map<ByteArrayWrapper, Entry> txMap = new HashMap<>();
+
+    /**
+     * 排队中且前序交易都已取出的交易，按优先级排序
+     * Queued transactions whose predecessors have all been taken out, by priority
+     */
+    private final TreeSet<Entry> readySet = new TreeSet<>(PRIORITY);
+
+    /**
+     * 账户资产 + 该交易产生的新nonce -> 交易
+     * account asset + the nonce this transaction creates -> transaction
+     */
+    private final Map<ByteArrayWrapper, Entry> producerIndex = new HashMap<>();
+
+    /**
+     * 账户资产 + 该交易花费的nonce -> 交易
+     * account asset + the nonce this transaction spends -> transaction
+     */
+    private final Map<ByteArrayWrapper, Entry> consumerIndex = new HashMap<>();
+
+    private long tailSeq = 0;
+
+    private long headSeq = 0;
+
+    /*
+    统计值只在持有锁时修改, volatile保证读取时不加锁也能看到最新值
+    Statistics are only modified under the lock, volatile lets readers see the latest value without locking
+     */
+    private volatile int txCount = 0;
+
+    private volatile int queuedCount = 0;
+
+    private volatile long txDataSize = 0;
+
+    private volatile long queuedDataSize = 0;
+
+    private volatile long maxTxDataSize = 0;
+
+    private volatile long addedCount = 0;
+
+    private volatile long removedCount = 0;
+
+    /**
+     * 加入交易并排队，交易已存在时只重新排队
+     * Add the transaction and queue it, a transaction already in the pool is only queued again
+     *
+     * @param first    同手续费下排在最前面 / ahead of the transactions with the same fee rate
+     * @param feeRate  每千字节手续费 / fee per kilobyte
+     * @param coinData 交易的coinData, 为null时不链接nonce / coinData of the transaction, no nonce links when null
+     * @return 交易是否为新加入 / whether the transaction is new to the pool
+     */
+    public synchronized boolean add(Transaction tx, long feeRate, CoinData coinData, boolean first) {
+        ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash().getBytes());
+        Entry entry = txMap.get(hash);
+        if (entry != null) {
+            queue(entry);
+            return false;
+        }
+        entry = new Entry(hash, tx, feeRate, tx.size(), first ? --headSeq : ++tailSeq);
+        txMap.put(hash, entry);
+        txCount++;
+        addedCount++;
+        txDataSize += entry.size;
+        if (txDataSize > maxTxDataSize) {
+            maxTxDataSize = txDataSize;
+        }
+        if (coinData != null) {
+            link(entry, coinData);
+        }
+        queue(entry);
+        return true;
+    }
+
+    /**
+     * 把池中的交易重新排队
+     * Queue a transaction of the pool again
+     *
+     * @return 交易不在池中时返回false / false when the transaction is not in the pool
+     */
+    public synchronized boolean requeue(byte[] hash) {
+        Entry entry = txMap.get(new ByteArrayWrapper(hash));
+        if (entry == null) {
+            return false;
+        }
+        queue(entry);
+        return true;
+    }
+
+    /**
+     * 取出优先级最高的可打包交易，交易仍保留在池中直到被确认或移除
+     * Take the packable transaction with the highest priority, it stays in the pool until it is confirmed or removed
+     */
+    public synchronized Transaction poll() {
+        Entry entry = readySet.pollFirst();
+        if (entry == null) {
+            return null;
+        }
+        unqueue(entry);
+        return entry.tx;
+    }
+
+    /**
+     * 取出优先级最高的可打包交易，没有时最多等待指定时间，有交易可取时立即返回
+     * Take the packable transaction with the highest priority, waiting at most the given time when there is none,
+     * it returns as soon as a transaction becomes available
+     */
+    public synchronized Transaction poll(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (readySet.isEmpty() && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return poll();
+    }
+
+    /**
+     * 按打包顺序取出所有排队中的交易
+     * Take all queued transactions in packing order
+     */
+    public synchronized List<Transaction> pollAll() {
+        List<Transaction> list = new ArrayList<>(queuedCount);
+        Entry entry;
+        while ((entry = readySet.pollFirst()) != null) {
+            unqueue(entry);
+            list.add(entry.tx);
+        }
+        /*
+        nonce链成环等异常情况下剩余的交易
+        Transactions left over in abnormal cases such as a nonce cycle
+         */
+        for (Entry left : txMap.values()) {
+            if (left.queued) {
+                unqueue(left);
+                list.add(left.tx);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 从池中移除交易
+     * Remove the transaction from the pool
+     */
+    public synchronized boolean remove(byte[] hash) {
+        Entry entry = txMap.remove(new ByteArrayWrapper(hash));
+        if (entry == null) {
+            return false;
+        }
+        if (entry.queued) {
+            unqueue(entry);
+        }
+        for (Entry parent : entry.parents) {
+            parent.children.remove(entry);
+        }
+        for (Entry child : entry.children) {
+            child.parents.remove(entry);
+        }
+        for (ByteArrayWrapper key : entry.keys) {
+            producerIndex.remove(key, entry);
+            consumerIndex.remove(key, entry);
+        }
+        txCount--;
+        removedCount++;
+        txDataSize -= entry.size;
+        return true;
+    }
+
+    public synchronized boolean contains(byte[] hash) {
+        return txMap.containsKey(new ByteArrayWrapper(hash));
+    }
+
+    /**
+     * 交易是否在排队等待打包
+     * Whether the transaction is queued for packing
+     */
+    public synchronized boolean isQueued(byte[] hash) {
+        Entry entry = txMap.get(new ByteArrayWrapper(hash));
+        return entry != null && entry.queued;
+    }
+
+    /**
+     * 只清空排队，交易仍在池中
+     * Clear the queue only, the transactions stay in the pool
+     */
+    public synchronized void clearQueue() {
+        for (Entry entry : txMap.values()) {
+            entry.queued = false;
+            entry.blocked = 0;
+        }
+        readySet.clear();
+        queuedCount = 0;
+        queuedDataSize = 0;
+    }
+
+    public int size() {
+        return txCount;
+    }
+
+    public int queuedSize() {
+        return queuedCount;
+    }
+
+    /**
+     * 池中交易的字节总数
+     * Total bytes of the transactions in the pool
+     */
+    public long getTxDataSize() {
+        return txDataSize;
+    }
+
+    /**
+     * 排队中交易的字节总数
+     * Total bytes of the queued transactions
+     */
+    public long getQueuedDataSize() {
+        return queuedDataSize;
+    }
+
+    /**
+     * 池中交易字节总数的历史最大值
+     * Highest total bytes the pool has held
+     */
+    public long getMaxTxDataSize() {
+        return maxTxDataSize;
+    }
+
+    /**
+     * 累计加入池中的交易数
+     * Number of transactions added to the pool so far
+     */
+    public long getAddedCount() {
+        return addedCount;
+    }
+
+    /**
+     * 累计从池中移除(确认或清理)的交易数
+     * Number of transactions removed (confirmed or cleared) from the pool so far
+     */
+    public long getRemovedCount() {
+        return removedCount;
+    }
+
+    private void link(Entry entry, CoinData coinData) {
+        byte[] newNonce = TxUtil.getNonce(entry.hash.getBytes());
+        for (CoinFrom from : coinData.getFrom()) {
+            ByteArrayWrapper spends = accountKey(from, from.getNonce());
+            ByteArrayWrapper creates = accountKey(from, newNonce);
+            entry.keys.add(spends);
+            entry.keys.add(creates);
+            consumerIndex.putIfAbsent(spends, entry);
+            producerIndex.putIfAbsent(creates, entry);
+            Entry parent = producerIndex.get(spends);
+            if (parent != null && parent != entry) {
+                addLink(parent, entry);
+            }
+            Entry child = consumerIndex.get(creates);
+            if (child != null && child != entry) {
+                addLink(entry, child);
+            }
+        }
+    }
+
+    private void addLink(Entry parent, Entry child) {
+        if (!parent.children.add(child)) {
+            return;
+        }
+        child.parents.add(parent);
+        if (parent.queued) {
+            child.blocked++;
+            readySet.remove(child);
+        }
+    }
+
+    private void queue(Entry entry) {
+        if (entry.queued) {
+            return;
+        }
+        entry.queued = true;
+        queuedCount++;
+        queuedDataSize += entry.size;
+        for (Entry child : entry.children) {
+            child.blocked++;
+            readySet.remove(child);
+        }
+        if (entry.blocked == 0) {
+            readySet.add(entry);
+            notifyAll();
+        }
+    }
+
+    private void unqueue(Entry entry) {
+        entry.queued = false;
+        queuedCount--;
+        queuedDataSize -= entry.size;
+        readySet.remove(entry);
+        for (Entry child : entry.children) {
+            child.blocked--;
+            if (child.queued && child.blocked == 0) {
+                readySet.add(child);
+                notifyAll();
+            }
+        }
+    }
+
+    static ByteArrayWrapper accountKey(CoinFrom from, byte[] nonce) {
+        byte[] address = from.getAddress();
+        byte[] key = new byte[address.length + 4 + nonce.length];
+        System.arraycopy(address, 0, key, 0, address.length);
+        int index = address.length;
+        key[index++] = (byte) (from.getAssetsChainId() >> 8);
+        key[index++] = (byte) from.getAssetsChainId();
+        key[index++] = (byte) (from.getAssetsId() >> 8);
+        key[index++] = (byte) from.getAssetsId();
+        System.arraycopy(nonce, 0, key, index, nonce.length);
+        return new ByteArrayWrapper(key);
+    }
+
+    private static class Entry {
+        private final ByteArrayWrapper hash;
+        private final Transaction tx;
+        private final long feeRate;
+        private final int size;
+        private final long seq;
+        private final Set<Entry> parents = new HashSet<>(2);
+        private final Set<Entry> children = new HashSet<>(2);
+        private final List<ByteArrayWrapper> keys = new ArrayList<>(2);
+        private boolean queued;
+        /**
+         * 排队中的前序交易数
+         * Number of queued predecessors
+         */
+        private int blocked;
+
+        private Entry(ByteArrayWrapper hash, Transaction tx, long feeRate, int size, long seq) {
+            this.hash = hash;
+            this.tx = tx;
+            this.feeRate = feeRate;
+            this.size = size;
+            this.seq = seq;
+        }
+    }
+}
@@ -50,6 +50,16 @@ public final class TxCmd {
     public static final String CLIENT_GETTX_CONFIRMED = "tx_getConfirmedTxClient";
 
     public static final String TX_BLOCK_HEIGHT = "tx_blockHeight";
+    /**
+     * 获取待打包池的统计信息
+     * Get the statistics of the packable pool
+     */
+    public static final String TX_PACKABLE_POOL_INFO = "tx_packablePoolInfo";
+    /**
+     * 获取最近一次验证区块交易各阶段耗时
+     * Get the time of each stage of the latest block verification
+     */
+    public static final String TX_BLOCK_VERIFY_TIME = "tx_blockVerifyTime";
     public static final String TX_VERIFYTX = "tx_verifyTx";
 
     public static final String TX_SETCONTRACTGENERATETXTYPES = "tx_setContractGenerateTxTypes";
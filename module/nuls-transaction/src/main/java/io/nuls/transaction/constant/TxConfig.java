@@ -36,6 +36,10 @@ public class TxConfig extends ConfigBean implements ModuleConfig {
 
     private String blackListPath;
     private String accountBlockManagerPublicKeys;
+    /**
+     * 是否将数据表迁移到共享RocksDB实例的列族中 / migrate tables into column families of one shared RocksDB instance
+     */
+    private boolean dbColumnFamily;
 
     public String getAccountBlockManagerPublicKeys() {
         return accountBlockManagerPublicKeys;
@@ -132,4 +136,12 @@ public class TxConfig extends ConfigBean implements ModuleConfig {
         Class<?> aClass = Class.forName("io.nuls.transaction.rpc.upgrade.TxVersionChangeInvoker");
         return (VersionChangeInvoker) aClass.getDeclaredConstructor().newInstance();
     }
+
+    public boolean isDbColumnFamily() {
+        return dbColumnFamily;
+    }
+
+    public void setDbColumnFamily(boolean dbColumnFamily) {
+        this.dbColumnFamily = dbColumnFamily;
+    }
 }
@@ -24,11 +24,21 @@ public interface TxConstant {
     String TX_CLEAN_THREAD = "cleanTxThread";
     /** 验证交易签名线程 */
     String VERIFY_TX_SIGN_THREAD = "verifyTxSignThread";
-
-    /** 孤儿交易处理task, 初始延迟值(秒) */
-    int TX_ORPHAN_TASK_INITIALDELAY = 1;
-    /** 孤儿交易处理task, 运行周期间隔(秒) */
-    int TX_ORPHAN_TASK_PERIOD = 3;
+    /** 按发送账户分片并行验证网络新交易的线程 */
+    String NET_TX_VERIFY_THREAD = "netTxVerifyThread";
+    /** 验证区块交易各阶段线程 */
+    String BLOCK_VERIFY_THREAD = "blockVerifyThread";
+    /** 验证区块时并行执行存储查询和各模块验证器RPC的线程数 */
+    int BLOCK_VERIFY_THREAD_COUNT = 8;
+    /** 验证区块时每个线程一次反序列化的交易数 */
+    int BLOCK_TX_DESERIALIZE_BATCH = 500;
+
+    /**(毫秒) 处理孤儿交易时，没有被唤醒的孤儿交易时等待的最长时间，前序交易被接收后立即唤醒 */
+    long ORPHAN_POLL_WAIT_TIME = 1000L;
+    /**(毫秒) 孤儿交易第一次重试的间隔，之后每次重试间隔翻倍 */
+    long ORPHAN_RETRY_MIN_INTERVAL = 3000L;
+    /**(毫秒) 孤儿交易重试的最大间隔 */
+    long ORPHAN_RETRY_MAX_INTERVAL = 60000L;
 
     /** 未确认交易清理机制task,初始延迟值 */
     int TX_CLEAN_TASK_INITIALDELAY = 10 * 60;
@@ -40,9 +50,17 @@ public interface TxConstant {
     int PACKAGE_ORPHAN_MAP_MAXCOUNT = 10000;
     /** 处理网络新交易时，一次从待处理集合中获取新交易的最大值 */
     int NET_TX_PROCESS_NUMBER_ONCE = 3000;
+    /**(毫秒) 处理网络新交易时，待处理集合为空时等待新交易的最长时间，新交易到达立即唤醒 */
+    long NET_TX_POLL_WAIT_TIME = 1000L;
+    /** 处理网络新交易时，按发送账户分片并行进行账本验证的分片数(线程数) */
+    int NET_TX_VERIFY_THREAD_COUNT = 4;
+    /** 处理网络新交易时，一次获取的交易数达到该值才分片并行进行账本验证，否则在当前线程一次验证 */
+    int NET_TX_PARALLEL_MIN_NUMBER = 200;
 
     /** 打包时，一批次给账本进行验证的交易数 */
     int PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS = 2000;
+    /** 打包时，按剩余时间调整后一批次给账本进行验证的最小交易数 */
+    int PACKAGE_TX_VERIFY_MIN_NUMBER = 100;
 
     /** Map初始值 */
     int INIT_CAPACITY_32 = 32;
@@ -61,7 +79,10 @@ public interface TxConstant {
     int PACKABLE_TX_MAP_HEAVY_DATA_SIZE = 200000 * 300;
     int PACKABLE_TX_MAP_MAX_DATA_SIZE = 250000 * 300;
 
+    /** 孤儿交易池 所有交易size 最大限制 (B)*/
     int ORPHAN_LIST_MAX_DATA_SIZE = 50000 * 300;
+    /** 孤儿交易池 最大交易数 */
+    int ORPHAN_LIST_MAX_COUNT = 50000;
 
     int PACKAGE_TX_MAX_COUNT = 10000;
     /** 一个区块中最大允许跨链模块交易的数量*/
@@ -75,7 +96,15 @@ public interface TxConstant {
      该配置为固定给第二部分预留的时间，其他时间留给第一部分。
      */
     long PACKAGE_MODULE_VALIDATOR_RESERVE_TIME = 2000L;//1500L;
+    /**(毫秒) 按实际耗时估算预留时间时, 给模块验证和合约结果处理预留的最小时间 */
+    long PACKAGE_MODULE_VALIDATOR_MIN_RESERVE_TIME = 500L;
+
+    /**(毫秒) 打包时待打包队列为空, 等待新交易的最长时间, 新交易到达立即唤醒; 超时后重新检查区块高度等打包条件 */
+    long PACKAGE_POLL_TX_WAIT_TIME = 50L;
 
 
     long TIMEOUT = 600 * 1000L;
+
+    /**(毫秒) 批量调用智能合约时整个批次的最长等待时间 */
+    long CONTRACT_BATCH_MAX_TIMEOUT = 120 * 1000L;
 }
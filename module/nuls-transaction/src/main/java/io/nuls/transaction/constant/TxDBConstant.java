@@ -43,6 +43,13 @@ public interface TxDBConstant {
      */
     String DB_TRANSACTION_CONFIRMED_PREFIX = "tx_table_confirmed_";
 
+    /**
+     * 已确认交易按区块顺序存储的表名, key为高度+交易在区块中的序号; 已确认交易表中存放交易在该表中的位置
+     * Confirmed transactions in block order, keyed by height + index in the block;
+     * the confirmed transaction table keeps the location of the transaction in this table
+     */
+    String DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX = "tx_table_confirmed_block_";
+
     /**
      * 验证通过但未打包的交易(未确认)
      */
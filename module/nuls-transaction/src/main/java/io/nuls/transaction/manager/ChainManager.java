@@ -29,6 +29,7 @@ import io.nuls.core.core.annotation.Autowired;
 import io.nuls.core.core.annotation.Component;
 import io.nuls.core.log.logback.NulsLogger;
 import io.nuls.core.rockdb.constant.DBErrorCode;
+import io.nuls.core.rockdb.constant.DBTableProfile;
 import io.nuls.core.rockdb.service.RocksDBService;
 import io.nuls.transaction.constant.TxConfig;
 import io.nuls.transaction.constant.TxDBConstant;
@@ -166,6 +167,14 @@ public class ChainManager {
             */
             RocksDBService.createTable(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId);
 
+            /*
+            按区块顺序存储的已确认交易表
+            Confirmed transactions in block order
+            */
+            if (!RocksDBService.existTable(TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + chainId)) {
+                RocksDBService.createTable(TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + chainId, DBTableProfile.APPEND_LOG);
+            }
+
 
             /*
             已验证未打包交易 未确认
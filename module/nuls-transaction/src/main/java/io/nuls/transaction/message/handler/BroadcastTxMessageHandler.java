@@ -1,6 +1,7 @@
 package io.nuls.transaction.message.handler;
 
 import io.nuls.base.RPCUtil;
+import io.nuls.base.data.NulsHash;
 import io.nuls.base.data.Transaction;
 import io.nuls.base.protocol.MessageProcessor;
 import io.nuls.core.core.annotation.Autowired;
@@ -46,7 +47,7 @@ public class BroadcastTxMessageHandler implements MessageProcessor {
                 return;
             }
             Transaction transaction = message.getTx();
-            String hash = transaction.getHash().toHex();
+            NulsHash hash = transaction.getHash();
             //交易缓存中是否已存在该交易hash
             boolean rs = TxDuplicateRemoval.insertAndCheck(hash);
             //记录向本节点发送完整交易的其他网络节点，转发hash时排除掉
@@ -51,9 +51,8 @@ public class ForwardTxMessageHandler implements MessageProcessor {
 //            chain.getLoggerMap().get(TxConstant.LOG_TX_MESSAGE).debug(
 //                    "recieve [newHash] message from node-{}, chainId:{}, hash:{}", nodeId, chainId, hash.toHex());
             //只判断是否存在
-            String hashHex = hash.toHex();
-            if (TxDuplicateRemoval.exist(hashHex)) {
-                TxDuplicateRemoval.putExcludeNode(hashHex, nodeId);
+            if (TxDuplicateRemoval.exist(hash)) {
+                TxDuplicateRemoval.putExcludeNode(hash, nodeId);
                 return;
             }
             //去该节点查询完整交易
@@ -2,9 +2,9 @@ package io.nuls.transaction.model.bo;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.nuls.base.data.NulsHash;
-import io.nuls.base.data.Transaction;
 import io.nuls.core.log.logback.NulsLogger;
-import io.nuls.core.model.ByteArrayWrapper;
+import io.nuls.transaction.cache.OrphanPool;
+import io.nuls.transaction.cache.TxMempool;
 import io.nuls.transaction.constant.TxConstant;
 import io.nuls.transaction.model.bo.config.ConfigBean;
 import io.nuls.transaction.model.po.TransactionNetPO;
@@ -12,10 +12,8 @@ import io.nuls.transaction.model.po.TransactionNetPO;
 import java.util.*;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -55,14 +53,9 @@ public class Chain {
     private Map<Integer, TxRegister> txRegisterMap;
 
     /**
-     * 可打包交易hash集合, 交易已完成交易管理模块的校验(打包的时候从这里取)
+     * 待打包交易池, 交易已完成交易管理模块的校验(打包的时候从这里取)
      */
-    private BlockingDeque<ByteArrayWrapper> packableHashQueue;
-
-    /**
-     * 可打包交易hash对应的交易map
-     */
-    private Map<ByteArrayWrapper, Transaction> packableTxMap;
+    private TxMempool mempool;
 
 
     /**
@@ -71,11 +64,10 @@ public class Chain {
     private BlockingDeque<TransactionNetPO> unverifiedQueue;
 
 
-    private LinkedList<TransactionNetPO> orphanList;
-
-    private Map<String, Orphans> orphanMap;
-
-    private AtomicInteger orphanListDataSize;
+    /**
+     * 孤儿交易池, 按缺少的前序交易索引
+     */
+    private OrphanPool orphanPool;
     /**
      * 当前最新高度
      */
@@ -109,6 +101,19 @@ public class Chain {
      */
     private AtomicBoolean packableState;
 
+    /**
+     * 最近一次验证区块交易各阶段耗时(毫秒)
+     * Time in milliseconds of each stage of the latest block verification
+     * 验证线程整体替换为只读快照, 查询线程直接读取 / replaced as a whole by a read-only snapshot, read without locking
+     */
+    private volatile Map<String, Long> blockVerifyStageTime = Collections.emptyMap();
+
+    /**
+     * 打包各阶段耗时的在线估计
+     * Online estimate of the cost of each packing stage
+     */
+    private final PackingCostModel packingCostModel = new PackingCostModel();
+
     /**
      * 执行协议升级的处理
      */
@@ -124,15 +129,12 @@ public class Chain {
         this.packableState = new AtomicBoolean(true);
         this.processTxStatus = new AtomicBoolean(false);
         this.txRegisterMap = new ConcurrentHashMap<>(TxConstant.INIT_CAPACITY_32);
-        this.packableHashQueue = new LinkedBlockingDeque<>();
-        this.packableTxMap = new ConcurrentHashMap<>();
+        this.mempool = new TxMempool();
         this.contractTxFail = false;
         this.txPackageOrphanMap = new HashMap<>();
-        this.orphanList = new LinkedList<>();
-        this.orphanMap = new ConcurrentHashMap<>();
+        this.orphanPool = new OrphanPool(TxConstant.ORPHAN_LIST_MAX_COUNT, TxConstant.ORPHAN_LIST_MAX_DATA_SIZE);
         this.protocolUpgrade = new AtomicBoolean(false);
         this.canProtocolUpgrade = new AtomicBoolean(true);
-        this.orphanListDataSize = new AtomicInteger(0);
         this.contractGenerateTxTypes = new HashSet<>();
     }
 
@@ -172,20 +174,12 @@ public class Chain {
         this.txRegisterMap = txRegisterMap;
     }
 
-    public BlockingDeque<ByteArrayWrapper> getPackableHashQueue() {
-        return packableHashQueue;
-    }
-
-    public void setPackableHashQueue(BlockingDeque<ByteArrayWrapper> packableHashQueue) {
-        this.packableHashQueue = packableHashQueue;
-    }
-
-    public Map<ByteArrayWrapper, Transaction> getPackableTxMap() {
-        return packableTxMap;
+    public TxMempool getMempool() {
+        return mempool;
     }
 
-    public void setPackableTxMap(Map<ByteArrayWrapper, Transaction> packableTxMap) {
-        this.packableTxMap = packableTxMap;
+    public void setMempool(TxMempool mempool) {
+        this.mempool = mempool;
     }
 
     public long getBestBlockHeight() {
@@ -232,20 +226,12 @@ public class Chain {
         this.unverifiedQueue = unverifiedQueue;
     }
 
-    public LinkedList<TransactionNetPO> getOrphanList() {
-        return orphanList;
+    public OrphanPool getOrphanPool() {
+        return orphanPool;
     }
 
-    public void setOrphanList(LinkedList<TransactionNetPO> orphanList) {
-        this.orphanList = orphanList;
-    }
-
-    public Map<String, Orphans> getOrphanMap() {
-        return orphanMap;
-    }
-
-    public void setOrphanMap(Map<String, Orphans> orphanMap) {
-        this.orphanMap = orphanMap;
+    public void setOrphanPool(OrphanPool orphanPool) {
+        this.orphanPool = orphanPool;
     }
 
     public AtomicBoolean getProtocolUpgrade() {
@@ -260,12 +246,51 @@ public class Chain {
         this.canProtocolUpgrade = canProtocolUpgrade;
     }
 
+    public Map<String, Long> getBlockVerifyStageTime() {
+        return blockVerifyStageTime;
+    }
+
+    public void setBlockVerifyStageTime(Map<String, Long> blockVerifyStageTime) {
+        this.blockVerifyStageTime = Collections.unmodifiableMap(new HashMap<>(blockVerifyStageTime));
+    }
+
+    public PackingCostModel getPackingCostModel() {
+        return packingCostModel;
+    }
+
     public AtomicBoolean getPackableState() {
         return packableState;
     }
 
-    public AtomicInteger getOrphanListDataSize() {
-        return orphanListDataSize;
+    /**
+     * 设置是否可打包, 变为可打包时唤醒等待的打包线程
+     * Set whether packing is allowed, the waiting packing thread is woken up when it becomes allowed
+     */
+    public void setPackableState(boolean state) {
+        synchronized (packableState) {
+            packableState.set(state);
+            if (state) {
+                packableState.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待变为可打包状态, 最多等待timeout毫秒
+     * Wait until packing is allowed, at most timeout milliseconds
+     *
+     * @return 是否可打包 / whether packing is allowed
+     */
+    public boolean awaitPackableState(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (packableState) {
+            long remaining = timeout;
+            while (!packableState.get() && remaining > 0) {
+                packableState.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return packableState.get();
+        }
     }
 
     public Set<Integer> getContractGenerateTxTypes() {
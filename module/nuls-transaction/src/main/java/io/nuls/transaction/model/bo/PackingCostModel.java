@@ -0,0 +1,195 @@
+package io.nuls.transaction.model.bo;
+
+import io.nuls.transaction.constant.TxConstant;
+
+/**
+ * 打包各阶段耗时的在线估计
+ * 每次打包后按实际耗时更新账本验证、合约结果处理、模块验证器的耗时模型: 每批次固定耗时(RPC往返等)加上每笔交易耗时,
+ * 由批次交易数与耗时的指数滑动平均做线性拟合得到;
+ * 据此计算获取交易阶段需要给后续阶段预留的时间, 以及每批次交给账本验证的交易数,
+ * 使区块在打包截止时间内尽量装满
+ * <p>
+ * Online estimate of the cost of each packing stage.
+ * After every packing the cost model of ledger verification, contract result processing and module validators is
+ * updated from the measured time: a fixed cost per batch (RPC round trip and the like) plus a cost per transaction,
+ * fitted linearly on exponential moving averages of the batch sizes and times. From it the time to reserve for the
+ * later stages and the size of every ledger batch are derived, so the block is filled as far as the deadline allows
+ */
+public class PackingCostModel {
+
+    /**
+     * 新样本权重
+     * Weight of a new sample
+     */
+    private static final double WEIGHT = 0.25;
+
+    private final Stage ledger = new Stage();
+
+    private final Stage contract = new Stage();
+
+    private final Stage module = new Stage();
+
+    /**
+     * 记录一批交易账本验证的耗时
+     * Record the time the ledger took to verify a batch
+     */
+    public void recordLedger(int count, long millis) {
+        ledger.record(count, millis);
+    }
+
+    /**
+     * 记录合约交易执行结果处理的耗时
+     * Record the time taken to process the results of the contract transactions
+     */
+    public void recordContract(int count, long millis) {
+        contract.record(count, millis);
+    }
+
+    /**
+     * 记录模块统一验证器的耗时
+     * Record the time taken by the module validators
+     */
+    public void recordModule(int count, long millis) {
+        module.record(count, millis);
+    }
+
+    /**
+     * 获取交易阶段结束时需要剩余的时间: 已取出交易的合约结果处理和模块验证耗时的1.5倍, 加上RPC传输预留时间;
+     * 还没有模块验证耗时样本时使用固定预留时间
+     * Time that must be left when collecting transactions stops: 1.5 times the estimated contract result processing
+     * and module validation of the transactions taken so far, plus the RPC transfer reserve.
+     * The fixed reserve is used until the module validators have been measured
+     *
+     * @param packedCount   已取出的交易数 / transactions taken so far
+     * @param contractCount 已取出的合约交易数 / contract transactions taken so far
+     * @param rpcReserve    RPC传输预留时间 / reserve for the RPC transfer
+     */
+    public long reserveTime(int packedCount, int contractCount, long rpcReserve) {
+        Estimate moduleEstimate = module.estimate;
+        if (!moduleEstimate.hasSample()) {
+            return TxConstant.PACKAGE_MODULE_VALIDATOR_RESERVE_TIME;
+        }
+        long estimate = moduleEstimate.micros(packedCount);
+        Estimate contractEstimate = contract.estimate;
+        if (contractCount > 0 && contractEstimate.hasSample()) {
+            estimate += contractEstimate.micros(contractCount);
+        }
+        estimate /= 1000;
+        estimate += estimate >> 1;
+        return rpcReserve + Math.max(TxConstant.PACKAGE_MODULE_VALIDATOR_MIN_RESERVE_TIME, estimate);
+    }
+
+    /**
+     * 下一批交给账本验证的交易数: 该批次的账本验证(含每批次固定耗时)及其后续模块验证能在剩余可用时间内完成
+     * Number of transactions for the next ledger batch, such that verifying it (including the fixed cost of a batch)
+     * and validating it later fit in the time still available
+     *
+     * @param available 扣除预留时间后剩余的时间(毫秒) / time left after the reserve, in milliseconds
+     */
+    public int batchSize(long available) {
+        int max = TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS;
+        //同一次读取的固定耗时与每笔耗时 / fixed and per tx cost read together
+        Estimate ledgerEstimate = ledger.estimate;
+        if (!ledgerEstimate.hasSample() || available <= 0) {
+            return max;
+        }
+        Estimate moduleEstimate = module.estimate;
+        long moduleMicros = moduleEstimate.hasSample() ? moduleEstimate.perTxMicros : 0;
+        long perTx = Math.max(1L, ledgerEstimate.perTxMicros + moduleMicros + (moduleMicros >> 1));
+        long count = (available * 1000 - ledgerEstimate.fixedMicros) / perTx;
+        return (int) Math.max(TxConstant.PACKAGE_TX_VERIFY_MIN_NUMBER, Math.min(max, count));
+    }
+
+    public long getLedgerMicros() {
+        return ledger.estimate.perTxMicros;
+    }
+
+    public long getLedgerFixedMicros() {
+        return ledger.estimate.fixedMicros;
+    }
+
+    public long getContractMicros() {
+        return contract.estimate.perTxMicros;
+    }
+
+    public long getModuleMicros() {
+        return module.estimate.perTxMicros;
+    }
+
+    public long getModuleFixedMicros() {
+        return module.estimate.fixedMicros;
+    }
+
+    /**
+     * 一次拟合得到的固定耗时与每笔耗时, 不可变, 通过一个volatile引用整体发布, 读取时不会拿到两次不同拟合的值
+     * Fixed and per tx cost of one fit. Immutable and published as a whole through one volatile reference,
+     * so a reader never mixes the values of two fits
+     */
+    private static final class Estimate {
+        private static final Estimate NONE = new Estimate(0L, -1L);
+
+        private final long fixedMicros;
+        private final long perTxMicros;
+
+        private Estimate(long fixedMicros, long perTxMicros) {
+            this.fixedMicros = fixedMicros;
+            this.perTxMicros = perTxMicros;
+        }
+
+        private boolean hasSample() {
+            return perTxMicros >= 0;
+        }
+
+        private long micros(int batchCount) {
+            return fixedMicros + perTxMicros * batchCount;
+        }
+    }
+
+    /**
+     * 一个阶段的耗时模型: 耗时 = 固定耗时 + 每笔耗时 * 交易数
+     * 批次交易数变化不足以拟合时, 保留已有的固定耗时, 只更新每笔耗时
+     * Cost model of one stage: time = fixed + perTx * count.
+     * While the batch sizes do not vary enough for a fit, the known fixed cost is kept and only perTx is updated
+     */
+    private static class Stage {
+        /*
+        交易数、耗时(微秒)及其乘积的指数滑动平均
+        Exponential moving averages of the count, the time in microseconds and their products
+         */
+        private double count;
+        private double micros;
+        private double countSquare;
+        private double countMicros;
+        private boolean sampled;
+
+        private volatile Estimate estimate = Estimate.NONE;
+
+        private synchronized void record(int batchCount, long millis) {
+            if (batchCount <= 0) {
+                return;
+            }
+            double sampleMicros = millis * 1000D;
+            if (!sampled) {
+                count = batchCount;
+                micros = sampleMicros;
+                countSquare = (double) batchCount * batchCount;
+                countMicros = batchCount * sampleMicros;
+                sampled = true;
+            } else {
+                count += (batchCount - count) * WEIGHT;
+                micros += (sampleMicros - micros) * WEIGHT;
+                countSquare += ((double) batchCount * batchCount - countSquare) * WEIGHT;
+                countMicros += (batchCount * sampleMicros - countMicros) * WEIGHT;
+            }
+            double fixed = estimate.fixedMicros;
+            double variance = countSquare - count * count;
+            //交易数的变异系数超过10%时才拟合 / fit only when the batch sizes vary by more than 10%
+            if (variance > count * count * 0.01) {
+                double slope = (countMicros - count * micros) / variance;
+                fixed = micros - slope * count;
+            }
+            fixed = Math.max(0D, Math.min(fixed, micros));
+            estimate = new Estimate(Math.round(fixed), Math.round((micros - fixed) / count));
+        }
+    }
+}
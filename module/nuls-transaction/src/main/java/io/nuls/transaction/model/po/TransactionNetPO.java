@@ -49,6 +49,16 @@ public class TransactionNetPO extends BaseNulsData {
      */
     private transient long orphanSortSerial;
 
+    /**
+     * 首次进入孤儿交易池的时间(毫秒)
+     */
+    private transient long orphanTime;
+
+    /**
+     * 作为孤儿交易重试验证的次数
+     */
+    private transient int orphanRetryCount;
+
     public TransactionNetPO() {
     }
 
@@ -104,4 +114,20 @@ public class TransactionNetPO extends BaseNulsData {
     public void setOrphanSortSerial(long orphanSortSerial) {
         this.orphanSortSerial = orphanSortSerial;
     }
+
+    public long getOrphanTime() {
+        return orphanTime;
+    }
+
+    public void setOrphanTime(long orphanTime) {
+        this.orphanTime = orphanTime;
+    }
+
+    public int getOrphanRetryCount() {
+        return orphanRetryCount;
+    }
+
+    public void setOrphanRetryCount(int orphanRetryCount) {
+        this.orphanRetryCount = orphanRetryCount;
+    }
 }
@@ -24,6 +24,7 @@
 
 package io.nuls.transaction.rpc.call;
 
+import io.nuls.core.constant.ErrorCode;
 import io.nuls.core.exception.NulsException;
 import io.nuls.core.rpc.info.Constants;
 import io.nuls.core.rpc.model.ModuleE;
@@ -101,6 +102,54 @@ public class ContractCall {
         }
     }
 
+    /**
+     * 批量调用智能合约, 所有交易在一次请求中发送, 由合约模块按顺序执行, 遇到第一个执行失败的合约即停止
+     * Invoke smart contracts in one batch call, the contract module executes them in order and stops at the first failure
+     * @param chain
+     * @param txList
+     * @param blockType 该调用的处理模式, 打包:0, 验证区块:1
+     * @param timeOut 单笔交易的超时时间, 整个批次不超过CONTRACT_BATCH_MAX_TIMEOUT
+     * @return 全部执行成功返回true
+     * @throws NulsException
+     */
+    public static boolean invokeContracts(Chain chain, List<String> txList, int blockType, long timeOut) throws NulsException {
+        List<Map> paramsList = new ArrayList<>(txList.size());
+        for (String tx : txList) {
+            Map<String, Object> params = new HashMap(TxConstant.INIT_CAPACITY_8);
+            params.put(Constants.VERSION_KEY_STR, TxConstant.RPC_VERSION);
+            params.put(Constants.CHAIN_ID, chain.getChainId());
+            params.put("tx", tx);
+            params.put("blockType", blockType);
+            paramsList.add(params);
+        }
+        List<Response> responseList;
+        try {
+            responseList = ResponseMessageProcessor.batchRequestAndResponse(ModuleE.SC.abbr, "sc_invoke_contract", paramsList,
+                    Math.min(timeOut * txList.size(), TxConstant.CONTRACT_BATCH_MAX_TIMEOUT), true);
+        } catch (Exception e) {
+            chain.getLogger().error(e);
+            throw new NulsException(TxErrorCode.RPC_REQUEST_FAILD);
+        }
+        for (Response response : responseList) {
+            if (!response.isSuccess()) {
+                chain.getLogger().error("Call interface [{}] error, ErrorCode is {}, ResponseComment:{}",
+                        "sc_invoke_contract", response.getResponseErrorCode(), response.getResponseComment());
+                throw new NulsException(ErrorCode.init(response.getResponseErrorCode()));
+            }
+            Map result = (Map) ((Map) response.getResponseData()).get("sc_invoke_contract");
+            Boolean value = null == result ? null : (Boolean) result.get("value");
+            if (null == value) {
+                chain.getLogger().error("call sc_invoke_contract response value is null, error:{}",
+                        TxErrorCode.REMOTE_RESPONSE_DATA_NOT_FOUND.getCode());
+                throw new NulsException(TxErrorCode.REMOTE_RESPONSE_DATA_NOT_FOUND);
+            }
+            if (!value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * 调用智能合约, 合约执行成功与否,不影响交易的打包
      * @param chain
@@ -33,7 +33,7 @@ public class LedgerCall {
 
     /**
      * 验证单个交易的CoinData(外部使用)
-     * 有异常直接抛出
+     * 有异常直接抛出, 并发的验证请求合并为一次批量调用
      *
      * @param chain
      * @param tx
@@ -45,7 +45,7 @@ public class LedgerCall {
             params.put(Constants.VERSION_KEY_STR, TxConstant.RPC_VERSION);
             params.put(Constants.CHAIN_ID, chain.getChainId());
             params.put("tx", tx);
-            HashMap result = (HashMap) TransactionCall.requestAndResponse(ModuleE.LG.abbr, "verifyCoinData", params);
+            HashMap result = (HashMap) TransactionCall.coalesceRequestAndResponse(ModuleE.LG.abbr, "verifyCoinData", params);
             return VerifyLedgerResult.success((boolean)result.get("orphan"));
         } catch (NulsException e) {
             return VerifyLedgerResult.fail(e.getErrorCode());
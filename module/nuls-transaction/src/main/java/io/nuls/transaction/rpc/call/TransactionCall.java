@@ -47,19 +47,45 @@ public class TransactionCall {
                 LOG.error(e);
                 throw new NulsException(TxErrorCode.RPC_REQUEST_FAILD);
             }
-            if (!response.isSuccess()) {
-                String errorCode = response.getResponseErrorCode();
-                LOG.error("Call interface [{}] error, ErrorCode is {}, ResponseComment:{}", cmd, errorCode, response.getResponseComment());
-                throw new NulsException(ErrorCode.init(errorCode));
+            return responseData(cmd, response);
+        } catch (RuntimeException e) {
+            LOG.error(e);
+            throw new NulsException(TxErrorCode.RPC_REQUEST_FAILD);
+        }
+    }
+
+    /**
+     * 合并调用其他模块接口: 并发的相同调用合并为一次批量调用发送, 只用于不依赖执行顺序的查询类接口
+     * Call other module interfaces coalesced: concurrent calls of the same cmd are sent as one batch call,
+     * only for query style interfaces that do not depend on the order of execution
+     */
+    public static Object coalesceRequestAndResponse(String moduleCode, String cmd, Map params) throws NulsException {
+        try {
+            params.put(Constants.VERSION_KEY_STR, TxConstant.RPC_VERSION);
+            Response response;
+            try {
+                response = ResponseMessageProcessor.coalesceRequestAndResponse(moduleCode, cmd, params, Constants.TIMEOUT_TIMEMILLIS);
+            } catch (Exception e) {
+                LOG.error(e);
+                throw new NulsException(TxErrorCode.RPC_REQUEST_FAILD);
             }
-            Map data = (Map)response.getResponseData();
-            return data.get(cmd);
+            return responseData(cmd, response);
         } catch (RuntimeException e) {
             LOG.error(e);
             throw new NulsException(TxErrorCode.RPC_REQUEST_FAILD);
         }
     }
 
+    private static Object responseData(String cmd, Response response) throws NulsException {
+        if (!response.isSuccess()) {
+            String errorCode = response.getResponseErrorCode();
+            LOG.error("Call interface [{}] error, ErrorCode is {}, ResponseComment:{}", cmd, errorCode, response.getResponseComment());
+            throw new NulsException(ErrorCode.init(errorCode));
+        }
+        Map data = (Map)response.getResponseData();
+        return data.get(cmd);
+    }
+
     /**
      * 调用交易的 commit 或者 rollback
      * @param chain
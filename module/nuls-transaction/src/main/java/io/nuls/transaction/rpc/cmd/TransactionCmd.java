@@ -540,7 +540,8 @@ public class TransactionCmd extends BaseCmd {
             description = "获取区块的完整交易，如果没有查询到，或者查询到的不是区块完整的交易数据，则返回空集合/Get block transactions")
     @Parameters(value = {
             @Parameter(parameterName = "chainId", requestType = @TypeDescriptor(value = int.class), parameterDes = "链id"),
-            @Parameter(parameterName = "txHashList", requestType = @TypeDescriptor(value = List.class, collectionElement = String.class), parameterDes = "待查询交易hash集合")
+            @Parameter(parameterName = "txHashList", requestType = @TypeDescriptor(value = List.class, collectionElement = String.class), parameterDes = "待查询交易hash集合"),
+            @Parameter(parameterName = "blockHeight", requestType = @TypeDescriptor(value = long.class), parameterDes = "区块高度, 传入时按区块顺序读取", canNull = true)
     })
     @ResponseData(name = "返回值", description = "返回一个Map", responseType = @TypeDescriptor(value = Map.class, mapKeys = {
             @Key(name = "txList", valueType = List.class, valueElement = String.class, description = "返回交易序列化数据字符串集合")
@@ -555,7 +556,13 @@ public class TransactionCmd extends BaseCmd {
                 throw new NulsException(TxErrorCode.CHAIN_NOT_FOUND);
             }
             List<String> txHashList = (List<String>) params.get("txHashList");
-            List<String> txList = confirmedTxService.getTxList(chain, txHashList);
+            List<String> txList;
+            if (null != params.get("blockHeight")) {
+                long blockHeight = Long.parseLong(params.get("blockHeight").toString());
+                txList = confirmedTxService.getTxList(chain, txHashList, blockHeight);
+            } else {
+                txList = confirmedTxService.getTxList(chain, txHashList);
+            }
             Map<String, List<String>> resultMap = new HashMap<>(TxConstant.INIT_CAPACITY_2);
             resultMap.put("txList", txList);
             return success(resultMap);
@@ -817,6 +824,84 @@ public class TransactionCmd extends BaseCmd {
         }
     }
 
+    /**
+     * 获取待打包池的统计信息
+     * Get the statistics of the packable pool
+     *
+     * @param params
+     * @return
+     */
+    @CmdAnnotation(cmd = TxCmd.TX_PACKABLE_POOL_INFO, version = 1.0, description = "获取待打包池的统计信息/Get the statistics of the packable pool")
+    @Parameters(value = {
+            @Parameter(parameterName = "chainId", requestType = @TypeDescriptor(value = int.class), parameterDes = "链id")
+    })
+    @ResponseData(name = "返回值", description = "返回一个Map", responseType = @TypeDescriptor(value = Map.class, mapKeys = {
+            @Key(name = "txCount", valueType = int.class, description = "池中交易数"),
+            @Key(name = "txDataSize", valueType = long.class, description = "池中交易字节总数"),
+            @Key(name = "queuedCount", valueType = int.class, description = "排队等待打包的交易数"),
+            @Key(name = "queuedDataSize", valueType = long.class, description = "排队等待打包的交易字节总数"),
+            @Key(name = "maxTxDataSize", valueType = long.class, description = "池中交易字节总数的历史最大值"),
+            @Key(name = "addedCount", valueType = long.class, description = "累计加入的交易数"),
+            @Key(name = "removedCount", valueType = long.class, description = "累计移除的交易数"),
+            @Key(name = "orphanCount", valueType = int.class, description = "孤儿交易池中交易数"),
+            @Key(name = "orphanDataSize", valueType = long.class, description = "孤儿交易池中交易字节总数"),
+            @Key(name = "orphanEvictedCount", valueType = long.class, description = "累计因孤儿交易池满被淘汰的交易数")
+    }))
+    public Response packablePoolInfo(Map params) {
+        Chain chain = null;
+        try {
+            ObjectUtils.canNotEmpty(params.get("chainId"), TxErrorCode.PARAMETER_ERROR.getMsg());
+            chain = chainManager.getChain((Integer) params.get("chainId"));
+            if (null == chain) {
+                throw new NulsException(TxErrorCode.CHAIN_NOT_FOUND);
+            }
+            return success(packablePool.getPoolInfo(chain));
+        } catch (NulsException e) {
+            errorLogProcess(chain, e);
+            return failed(e.getErrorCode());
+        } catch (Exception e) {
+            errorLogProcess(chain, e);
+            return failed(TxErrorCode.SYS_UNKOWN_EXCEPTION);
+        }
+    }
+
+    /**
+     * 获取最近一次验证区块交易各阶段耗时
+     * Get the time of each stage of the latest block verification
+     *
+     * @param params
+     * @return
+     */
+    @CmdAnnotation(cmd = TxCmd.TX_BLOCK_VERIFY_TIME, version = 1.0, description = "获取最近一次验证区块交易各阶段耗时/Get the time of each stage of the latest block verification")
+    @Parameters(value = {
+            @Parameter(parameterName = "chainId", requestType = @TypeDescriptor(value = int.class), parameterDes = "链id")
+    })
+    @ResponseData(name = "返回值", description = "返回一个Map, 阶段名称及耗时(毫秒)", responseType = @TypeDescriptor(value = Map.class, mapKeys = {
+            @Key(name = "deserialize", valueType = long.class, description = "反序列化"),
+            @Key(name = "exist", valueType = long.class, description = "是否已确认及是否在未确认库中"),
+            @Key(name = "base", valueType = long.class, description = "单个交易基础验证"),
+            @Key(name = "contract", valueType = long.class, description = "智能合约执行"),
+            @Key(name = "coinData", valueType = long.class, description = "账本验证"),
+            @Key(name = "module", valueType = long.class, description = "模块统一验证"),
+            @Key(name = "total", valueType = long.class, description = "合计")
+    }))
+    public Response blockVerifyTime(Map params) {
+        Chain chain = null;
+        try {
+            ObjectUtils.canNotEmpty(params.get("chainId"), TxErrorCode.PARAMETER_ERROR.getMsg());
+            chain = chainManager.getChain((Integer) params.get("chainId"));
+            if (null == chain) {
+                throw new NulsException(TxErrorCode.CHAIN_NOT_FOUND);
+            }
+            return success(new HashMap<>(chain.getBlockVerifyStageTime()));
+        } catch (NulsException e) {
+            errorLogProcess(chain, e);
+            return failed(e.getErrorCode());
+        } catch (Exception e) {
+            errorLogProcess(chain, e);
+            return failed(TxErrorCode.SYS_UNKOWN_EXCEPTION);
+        }
+    }
 
     @CmdAnnotation(cmd = "tx_getTxSigners", version = 1.0, description = "获取交易合法签名的签名者列表/Gets the list of signers of the transaction's legal signature")
     @Parameters(value = {
@@ -15,6 +15,8 @@ import io.nuls.transaction.model.po.TransactionNetPO;
 import io.nuls.transaction.rpc.call.LedgerCall;
 import io.nuls.transaction.service.TxService;
 
+import java.util.List;
+
 /**
  * @author: Charlie
  * @date: 2019/05/20
@@ -52,15 +54,10 @@ public class TxVersionChangeInvoker implements VersionChangeInvoker {
 
         //处理待打包队列
         PackablePool packablePool = SpringLiteContext.getBean(PackablePool.class);
-        boolean hasNext = true;
-        while (hasNext) {
-            //从队尾开始取
-            Transaction tx = packablePool.pollLast(chain);
-            if (null != tx) {
-                addBack(chain, tx);
-            } else {
-                hasNext = false;
-            }
+        List<Transaction> packableTxs = packablePool.pollAll(chain);
+        //从队尾开始放回, 保持原有的打包顺序
+        for (int i = packableTxs.size() - 1; i >= 0; i--) {
+            addBack(chain, packableTxs.get(i));
         }
 
         LedgerCall.clearUnconfirmTxs(chain);
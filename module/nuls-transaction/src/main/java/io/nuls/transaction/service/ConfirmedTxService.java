@@ -64,6 +64,17 @@ public interface ConfirmedTxService {
      */
     List<String> getTxList(Chain chain, List<String> hashList);
 
+    /**
+     * 获取区块的完整交易, 先按区块高度顺序读取, 与hash列表不一致时再按hash查询
+     * Get the complete transactions of a block, reading them in block order by height first and falling back
+     * to the lookup by hash when they do not match the hash list
+     * @param chain
+     * @param hashList
+     * @param blockHeight 区块高度 / height of the block
+     * @return List<String> tx list
+     */
+    List<String> getTxList(Chain chain, List<String> hashList, long blockHeight);
+
     /**
      * 获取区块的完整交易 先查未确认交易, 再查已确认交易
      * allHits:true 如果没有查询到,或者查询到的不是区块完整的交易数据 则返回空list
@@ -175,6 +175,8 @@ public class ConfirmedTxServiceImpl implements ConfirmedTxService {
         unconfirmedTxStorageService.removeTxList(chainId, txHashs);
         //从待打包map中删除
         packablePool.clearConfirmedTxs(chain, txHashs);
+        //唤醒依赖已确认交易的孤儿交易
+        chain.getOrphanPool().accepted(txList);
         logger.debug("[保存区块] 合计执行时间:{} - 高度:{}, - 交易数量:{}" + TxUtil.nextLine(),
                 NulsDateUtils.getCurrentTimeMillis() - start, blockHeader.getHeight(), txList.size());
         return true;
@@ -221,7 +223,7 @@ public class ConfirmedTxServiceImpl implements ConfirmedTxService {
 
     private boolean commitLedger(Chain chain, List<String> txList, long blockHeight) {
         try {
-            chain.getPackableState().set(false);
+            chain.setPackableState(false);
             boolean rs = LedgerCall.commitTxsLedger(chain, txList, blockHeight);
             if(!rs){
                 chain.getLogger().error("save block tx failed! commitLedger");
@@ -232,7 +234,7 @@ public class ConfirmedTxServiceImpl implements ConfirmedTxService {
             chain.getLogger().error(e);
             return false;
         }finally {
-            chain.getPackableState().set(true);
+            chain.setPackableState(true);
         }
     }
 
@@ -271,7 +273,7 @@ public class ConfirmedTxServiceImpl implements ConfirmedTxService {
             return true;
         }
         try {
-            chain.getPackableState().set(false);
+            chain.setPackableState(false);
             boolean rs =  LedgerCall.rollbackTxsLedger(chain, txList, blockHeight);
             if(!rs){
                 chain.getLogger().error("rollback block tx failed! rollbackLedger");
@@ -281,7 +283,7 @@ public class ConfirmedTxServiceImpl implements ConfirmedTxService {
             chain.getLogger().error(e);
             return false;
         }finally {
-            chain.getPackableState().set(true);
+            chain.setPackableState(true);
         }
     }
 
@@ -356,21 +358,13 @@ public class ConfirmedTxServiceImpl implements ConfirmedTxService {
             saveTxs(chain, txList, blockHeight, false);
             return false;
         }
-        //计算待打包队列大小倒序放入未确认库, 和待打包队列
-
-        int packableTxMapDataSize = 0;
-        if(chain.getPackaging().get()) {
-            //是打包节点才计算待打包队列的当前容量
-            for (Transaction tx : chain.getPackableTxMap().values()) {
-                packableTxMapDataSize += tx.size();
-            }
-        }
+        //倒序放入未确认库, 和待打包队列(待打包池大小增量维护, 每笔交易都按最新值判断)
         for (int i = txList.size() - 1; i >= 0; i--) {
             Transaction tx = txList.get(i);
             if(!TxManager.isSystemTx(chain, tx)) {
                 unconfirmedTxStorageService.putTx(chain.getChainId(), tx);
                 //不是系统交易,并且节点是打包节点,待打包队列没到最大值则重新放回待打包队列的最前端
-                if (chain.getPackaging().get() && packableTxMapDataSize < TxConstant.PACKABLE_TX_MAP_MAX_DATA_SIZE) {
+                if (chain.getPackaging().get() && packablePool.packableTxDataSize(chain) < TxConstant.PACKABLE_TX_MAP_MAX_DATA_SIZE) {
                     packablePool.offerFirst(chain, tx);
                 } 
             }
@@ -419,6 +413,37 @@ public class ConfirmedTxServiceImpl implements ConfirmedTxService {
         return txStrList;
     }
 
+    @Override
+    public List<String> getTxList(Chain chain, List<String> hashList, long blockHeight) {
+        if (hashList == null || hashList.size() == 0) {
+            return new ArrayList<>();
+        }
+        List<Transaction> txList = confirmedTxStorageService.getBlockTxList(chain.getChainId(), blockHeight);
+        //区块表中还有区块hash列表之外的智能合约生成交易, 按顺序跳过; 按区块顺序读取的交易与hash列表不一致时按hash查询
+        //the block table also holds contract generated transactions missing from the hash list, they are skipped in order
+        if (txList.size() < hashList.size()) {
+            return getTxList(chain, hashList);
+        }
+        List<String> txStrList = new ArrayList<>(hashList.size());
+        try {
+            int index = 0;
+            for (int i = 0; i < txList.size() && index < hashList.size(); i++) {
+                Transaction tx = txList.get(i);
+                if (tx.getHash().toHex().equals(hashList.get(index))) {
+                    txStrList.add(RPCUtil.encode(tx.serialize()));
+                    index++;
+                }
+            }
+        } catch (IOException e) {
+            chain.getLogger().error(e);
+            return new ArrayList<>();
+        }
+        if (txStrList.size() != hashList.size()) {
+            return getTxList(chain, hashList);
+        }
+        return txStrList;
+    }
+
     @Override
     public List<String> getTxListExtend(Chain chain, List<String> hashList, boolean allHits) {
         List<String> txStrList = new ArrayList<>();
@@ -475,7 +500,7 @@ public class ConfirmedTxServiceImpl implements ConfirmedTxService {
             keys.add(HexUtil.decode(hashHex));
         }
         //获取能查出来的交易
-        List<String> txUnconfirmedList = unconfirmedTxStorageService.getExistKeysStr(chainId,keys);
+        Set<String> txUnconfirmedList = new HashSet<>(unconfirmedTxStorageService.getExistKeysStr(chainId,keys));
         for(String hash : hashList){
             if(txUnconfirmedList.contains(hash)){
                 continue;
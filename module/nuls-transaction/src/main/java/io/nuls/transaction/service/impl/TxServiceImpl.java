@@ -44,7 +44,6 @@ import io.nuls.core.exception.NulsException;
 import io.nuls.core.log.Log;
 import io.nuls.core.log.logback.NulsLogger;
 import io.nuls.core.model.BigIntegerUtils;
-import io.nuls.core.model.ByteArrayWrapper;
 import io.nuls.core.parse.JSONUtils;
 import io.nuls.core.parse.SerializeUtils;
 import io.nuls.core.rpc.info.Constants;
@@ -75,7 +74,8 @@ import io.nuls.transaction.utils.TxUtil;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -106,6 +106,24 @@ public class TxServiceImpl implements TxService {
 
     private ExecutorService verifySignExecutor = ThreadUtils.createThreadPool(Runtime.getRuntime().availableProcessors(), CACHED_SIZE, new NulsThreadFactory(TxConstant.VERIFY_TX_SIGN_THREAD));
 
+    /**
+     * 验证区块时与合约执行并行的各阶段(存储查询, 账本及各模块验证器RPC)使用的线程池
+     * Thread pool of the block verification stages running alongside contract execution (storage queries, ledger and module validator RPC)
+     */
+    private ExecutorService blockVerifyExecutor = ThreadUtils.createThreadPool(TxConstant.BLOCK_VERIFY_THREAD_COUNT, CACHED_SIZE, new NulsThreadFactory(TxConstant.BLOCK_VERIFY_THREAD));
+
+    /**
+     * 验证区块各阶段名称
+     * Names of the block verification stages
+     */
+    private static final String STAGE_DESERIALIZE = "deserialize";
+    private static final String STAGE_EXIST = "exist";
+    private static final String STAGE_BASE = "base";
+    private static final String STAGE_CONTRACT = "contract";
+    private static final String STAGE_COINDATA = "coinData";
+    private static final String STAGE_MODULE = "module";
+    private static final String STAGE_TOTAL = "total";
+
     @Override
     public boolean register(Chain chain, ModuleTxRegisterDTO moduleTxRegisterDto) {
         try {
@@ -178,6 +196,8 @@ public class TxServiceImpl implements TxService {
                 packablePool.add(chain, tx);
             }
             unconfirmedTxStorageService.putTx(chain.getChainId(), tx);
+            //唤醒依赖该交易的孤儿交易
+            chain.getOrphanPool().accepted(tx);
             //广播完整交易
             boolean broadcastResult = false;
             TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
@@ -201,7 +221,7 @@ public class TxServiceImpl implements TxService {
                 throw new NulsException(TxErrorCode.TX_BROADCAST_FAIL);
             }
             //加入去重过滤集合,防止其他节点转发回来再次处理该交易
-            TxDuplicateRemoval.insertAndCheck(hash.toHex());
+            TxDuplicateRemoval.insertAndCheck(hash);
 
         } catch (IOException e) {
             throw new NulsException(TxErrorCode.DESERIALIZE_ERROR);
@@ -776,7 +796,10 @@ public class TxServiceImpl implements TxService {
             long packableTime = endtimestamp - startTime;
             nulsLogger.info("[Package start] -可打包时间：{}, -可打包容量：{}B , - height:{}, - 当前待打包队列交易hash数:{}, - 待打包队列实际交易数:{}",
                     packableTime, maxTxDataSize, blockHeight, packablePool.packableHashQueueSize(chain), packablePool.packableTxMapSize(chain));
-            long batchValidReserve = TxConstant.PACKAGE_MODULE_VALIDATOR_RESERVE_TIME;
+            PackingCostModel costModel = chain.getPackingCostModel();
+            long packageRpcReserveTime = chain.getConfig().getPackageRpcReserveTime();
+            //根据已取出的交易估算需要给合约结果处理和模块验证预留的时间
+            long batchValidReserve = costModel.reserveTime(0, 0, packageRpcReserveTime);
             if (packableTime <= batchValidReserve) {
                 //直接打空块
                 return new TxPackage(new ArrayList<>(), null, chain.getBestBlockHeight() + 1);
@@ -799,9 +822,8 @@ public class TxServiceImpl implements TxService {
             //获取交易时计算区块总size大小临时值
             long totalSizeTemp = 0L;
             int maxCount = TxConstant.PACKAGE_TX_MAX_COUNT - TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS;
-            //通过配置的百分比，计算从总的打包时间中预留给批量验证的时间
-            //            long batchValidReserve = packagingReservationTime(chain, packingTime);
-            long packageRpcReserveTime = chain.getConfig().getPackageRpcReserveTime();
+            //每批次交给账本验证的交易数, 按剩余时间调整
+            int batchLimit = TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS;
 
             //智能合约通知标识,出现的第一个智能合约交易并且调用验证器通过时,有则只第一次时通知.
             boolean contractNotify = false;
@@ -810,7 +832,7 @@ public class TxServiceImpl implements TxService {
             LedgerCall.coinDataBatchNotify(chain);
             //取出的交易集合(需要发送给账本验证)
             List<String> batchProcessList = new ArrayList<>();
-            Set<String> duplicatesVerify = new HashSet<>();
+            Set<NulsHash> duplicatesVerify = new HashSet<>();
             //取出的交易集合
             List<TxPackageWrapper> currentBatchPackableTxs = new ArrayList<>();
             //本次打包包含跨链交易个数
@@ -839,6 +861,10 @@ public class TxServiceImpl implements TxService {
             for (int index = 0; ; index++) {
                 long currentTimeMillis = NulsDateUtils.getCurrentTimeMillis();
                 long currentReserve = endtimestamp - currentTimeMillis;
+                batchValidReserve = costModel.reserveTime(packingTxList.size(), contractTxCount, packageRpcReserveTime);
+                if (batchProcessList.isEmpty()) {
+                    batchLimit = costModel.batchSize(currentReserve - batchValidReserve);
+                }
                 if (currentReserve <= batchValidReserve) {
                     if (nulsLogger.isDebugEnabled()) {
                         nulsLogger.debug("获取交易时间到,进入模块验证阶段: currentTimeMillis:{}, -endtimestamp:{}, -offset:{}, -remaining:{}",
@@ -890,14 +916,19 @@ public class TxServiceImpl implements TxService {
                 try {
                     tx = packablePool.poll(chain);
                     if (tx == null && batchProcessListSize == 0) {
-                        Thread.sleep(10L);
-                        allSleepTime += 10;
-                        continue;
-                    } else if (tx == null && batchProcessListSize > 0) {
+                        //待打包队列为空, 阻塞等待新交易, 新交易到达立即唤醒
+                        long waitStart = NulsDateUtils.getCurrentTimeMillis();
+                        tx = packablePool.poll(chain, Math.min(TxConstant.PACKAGE_POLL_TX_WAIT_TIME, currentReserve - batchValidReserve));
+                        allSleepTime += NulsDateUtils.getCurrentTimeMillis() - waitStart;
+                        if (tx == null) {
+                            continue;
+                        }
+                    }
+                    if (tx == null && batchProcessListSize > 0) {
                         //达到处理该批次的条件
                         process = true;
                     } else if (tx != null) {
-                        if (!duplicatesVerify.add(tx.getHash().toHex())) {
+                        if (!duplicatesVerify.add(tx.getHash())) {
                             //加入不进去表示已存在
                             continue;
                         }
@@ -953,7 +984,7 @@ public class TxServiceImpl implements TxService {
                             TxPackageWrapper txPackageWrapper = new TxPackageWrapper(tx, index, txHex);
                             batchProcessList.add(txHex);
                             currentBatchPackableTxs.add(txPackageWrapper);
-                            if (batchProcessList.size() == TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS) {
+                            if (batchProcessList.size() >= batchLimit) {
                                 //达到处理该批次的条件
                                 process = true;
                             }
@@ -968,11 +999,15 @@ public class TxServiceImpl implements TxService {
                             //放回可打包交易和孤儿
                             packingTxList.addAll(currentBatchPackableTxs);
                             putBackPackablePool(chain, packingTxList, orphanTxSet);
-                            Thread.sleep(30L);
+                            //等待区块保存或回滚完成后立即重新打包
+                            chain.awaitPackableState(endtimestamp - NulsDateUtils.getCurrentTimeMillis() - batchValidReserve);
                             return getPackableTxs(chain, endtimestamp, maxTxDataSize, blockTime, packingAddress, preStateRoot);
                         }
+                        int ledgerCount = batchProcessList.size();
                         verifyLedger(chain, batchProcessList, currentBatchPackableTxs, orphanTxSet, false, false);
-                        totalLedgerTime += NulsDateUtils.getCurrentTimeMillis() - verifyLedgerStart;
+                        long ledgerTime = NulsDateUtils.getCurrentTimeMillis() - verifyLedgerStart;
+                        totalLedgerTime += ledgerTime;
+                        costModel.recordLedger(ledgerCount, ledgerTime);
 
                         Iterator<TxPackageWrapper> it = currentBatchPackableTxs.iterator();
                         while (it.hasNext()) {
@@ -1058,6 +1093,7 @@ public class TxServiceImpl implements TxService {
                 nulsLogger.debug("-取出的交易 -count:{} - data size:{}", packingTxList.size(), totalSize);
             }
 
+            long contractStart = NulsDateUtils.getCurrentTimeMillis();
             boolean contractBefore = false;
             if (contractNotify) {
                 contractBefore = ContractCall.contractBatchBeforeEnd(chain, blockHeight, 0);
@@ -1065,7 +1101,6 @@ public class TxServiceImpl implements TxService {
             //处理智能合约
             String stateRoot = preStateRoot;
             boolean hasTxbackPackablePool = false;
-            long contractStart = NulsDateUtils.getCurrentTimeMillis();
             /** 智能合约 当通知标识为true, 则表明有智能合约被调用执行*/
             List<String> contractGenerateTxs = new ArrayList<>();
             if (contractNotify && !chain.getContractTxFail()) {
@@ -1081,12 +1116,15 @@ public class TxServiceImpl implements TxService {
                 verifyAgain(chain, moduleVerifyMap, packingTxList, orphanTxSet, true);
             }
             long contractTime = NulsDateUtils.getCurrentTimeMillis() - contractStart;
+            costModel.recordContract(contractTxCount, contractTime);
 
             //模块统一验证器
             long batchStart = NulsDateUtils.getCurrentTimeMillis();
+            int moduleCount = packingTxList.size();
             txModuleValidatorPackable(chain, moduleVerifyMap, packingTxList, orphanTxSet);
             //模块统一验证使用总时间
             batchModuleTime = NulsDateUtils.getCurrentTimeMillis() - batchStart;
+            costModel.recordModule(moduleCount, batchModuleTime);
 
             List<String> packableTxs = new ArrayList<>();
             Iterator<TxPackageWrapper> iterator = packingTxList.iterator();
@@ -1157,9 +1195,10 @@ public class TxServiceImpl implements TxService {
             long totalTime = NulsDateUtils.getCurrentTimeMillis() - startTime;
             nulsLogger.info("[打包时间统计]  总执行时间:{}, 剩余时间:{}, 打包可用时间:{}, 获取交易(循环)总等待时间:{}, " +
                             "获取交易(循环)执行时间:{}, 获取交易(循环)验证账本总时间:{}, 模块统一验证执行时间:{}, " +
-                            "合约执行时间:{},", totalTime, endtimestamp - NulsDateUtils.getCurrentTimeMillis(),
+                            "合约执行时间:{}, 预留时间:{}, 每笔交易估计耗时(微秒) 账本:{} 合约:{} 模块验证:{}, 每批次固定耗时(微秒) 账本:{} 模块验证:{}", totalTime, endtimestamp - NulsDateUtils.getCurrentTimeMillis(),
                     packingTime, allSleepTime, whileTime, totalLedgerTime, batchModuleTime,
-                    contractTime);
+                    contractTime, batchValidReserve, costModel.getLedgerMicros(), costModel.getContractMicros(), costModel.getModuleMicros(),
+                    costModel.getLedgerFixedMicros(), costModel.getModuleFixedMicros());
 
             nulsLogger.info("[Package end] - height:{} - 本次打包交易数:{} - 当前待打包队列交易hash数:{}, - 待打包队列实际交易数:{}" + TxUtil.nextLine(),
                     blockHeight, packableTxs.size(), packablePool.packableHashQueueSize(chain), packablePool.packableTxMapSize(chain));
@@ -1644,6 +1683,203 @@ public class TxServiceImpl implements TxService {
         }
     }
 
+    /**
+     * 多线程反序列化区块交易, 保持原有顺序, 同时计算交易hash
+     * Deserialize the block transactions on several threads keeping their order, the hashes are computed as well
+     */
+    private List<TxVerifyWrapper> deserializeTxs(Chain chain, List<String> txStrList, long blockHeight) throws NulsException {
+        int size = txStrList.size();
+        TxVerifyWrapper[] wrappers = new TxVerifyWrapper[size];
+        List<Future<Boolean>> futures = new ArrayList<>();
+        int batch = TxConstant.BLOCK_TX_DESERIALIZE_BATCH;
+        for (int start = batch; start < size; start += batch) {
+            int from = start;
+            int to = Math.min(size, start + batch);
+            futures.add(verifySignExecutor.submit(() -> deserializeTxs(txStrList, wrappers, from, to, blockHeight)));
+        }
+        //第一批在当前线程处理 / the first batch is handled on the calling thread
+        deserializeTxs(txStrList, wrappers, 0, Math.min(size, batch), blockHeight);
+        for (Future<Boolean> future : futures) {
+            getVerifyResult(chain, future);
+        }
+        return Arrays.asList(wrappers);
+    }
+
+    private boolean deserializeTxs(List<String> txStrList, TxVerifyWrapper[] wrappers, int from, int to, long blockHeight) throws NulsException {
+        for (int i = from; i < to; i++) {
+            String txStr = txStrList.get(i);
+            Transaction tx = TxUtil.getInstanceRpcStr(txStr, Transaction.class);
+            tx.setBlockHeight(blockHeight);
+            tx.getHash();
+            wrappers[i] = new TxVerifyWrapper(tx, txStr);
+        }
+        return true;
+    }
+
+    /**
+     * 验证交易是否已确认, 返回未确认库中没有的交易
+     * Check whether the transactions are confirmed, returns the ones not in the unconfirmed storage
+     */
+    private List<TxVerifyWrapper> verifyExist(Chain chain, List<TxVerifyWrapper> txList, List<byte[]> keys, Map<String, Long> stageTime) throws NulsException {
+        long start = System.currentTimeMillis();
+        NulsLogger logger = chain.getLogger();
+        int chainId = chain.getChainId();
+        //验证交易是否已确认过
+        List<byte[]> confirmedList = confirmedTxStorageService.getExistTxs(chainId, keys);
+        if (!confirmedList.isEmpty()) {
+            logger.error("There are confirmed transactions");
+            for (byte[] hash : confirmedList) {
+                logger.error("confirmed hash:{}", HexUtil.encode(hash));
+            }
+            throw new NulsException(TxErrorCode.TX_CONFIRMED);
+        }
+        //验证本地没有的交易
+        List<byte[]> unconfirmedList = unconfirmedTxStorageService.getExistKeys(chainId, keys);
+        Set<NulsHash> set = new HashSet<>();
+        if (null != unconfirmedList) {
+            for (byte[] unconfirmed : unconfirmedList) {
+                set.add(new NulsHash(unconfirmed));
+            }
+        }
+        List<TxVerifyWrapper> unknownTxList = new ArrayList<>();
+        for (TxVerifyWrapper txVerifyWrapper : txList) {
+            //能加入表明未确认中没有,则需要处理
+            if (set.add(txVerifyWrapper.getTx().getHash())) {
+                unknownTxList.add(txVerifyWrapper);
+            }
+        }
+        stageTime.put(STAGE_EXIST, System.currentTimeMillis() - start);
+        return unknownTxList;
+    }
+
+    /**
+     * 多线程对交易进行单个交易基础验证
+     * Base validate the transactions one by one in multiple threads
+     *
+     * @return 各交易基础验证结果 / base validation results of the transactions
+     */
+    private List<Future<Boolean>> verifyBaseAsync(Chain chain, List<TxVerifyWrapper> txList, Map<String, Long> stageTime) {
+        NulsLogger logger = chain.getLogger();
+        long baseStart = System.currentTimeMillis();
+        List<Future<Boolean>> futures = new ArrayList<>(txList.size());
+        for (TxVerifyWrapper txVerifyWrapper : txList) {
+            Transaction tx = txVerifyWrapper.getTx();
+            futures.add(verifySignExecutor.submit(() -> {
+                try {
+                    //只验证单个交易的基础内容(TX模块本地验证)
+                    TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
+                    if (null == txRegister) {
+                        throw new NulsException(TxErrorCode.TX_TYPE_INVALID);
+                    }
+                    baseValidateTx(chain, tx, txRegister);
+                } catch (Exception e) {
+                    logger.error("batchVerify failed, single tx verify failed. hash:{}, -type:{}", tx.getHash().toHex(), tx.getType());
+                    logger.error(e);
+                    return false;
+                } finally {
+                    stageTime.merge(STAGE_BASE, System.currentTimeMillis() - baseStart, Math::max);
+                }
+                return true;
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * 异步调用账本验证区块交易的coinData
+     * Verify the coinData of the block transactions by the ledger asynchronously
+     */
+    private Future<Boolean> verifyCoinDataAsync(Chain chain, List<String> txStrList, long blockHeight, Map<String, Long> stageTime) {
+        long start = System.currentTimeMillis();
+        return blockVerifyExecutor.submit(() -> {
+            try {
+                return LedgerCall.verifyBlockTxsCoinData(chain, txStrList, blockHeight);
+            } finally {
+                stageTime.put(STAGE_COINDATA, System.currentTimeMillis() - start);
+            }
+        });
+    }
+
+    /**
+     * 异步并行调用各模块统一验证器
+     * Call the validators of all modules in parallel and asynchronously
+     */
+    private Map<String, Future<List<String>>> verifyModuleAsync(Chain chain, Map<String, List<String>> moduleVerifyMap, String blockHeaderStr, Map<String, Long> stageTime) {
+        long start = System.currentTimeMillis();
+        Map<String, Future<List<String>>> futures = new HashMap<>(TxConstant.INIT_CAPACITY_8);
+        for (Map.Entry<String, List<String>> entry : moduleVerifyMap.entrySet()) {
+            futures.put(entry.getKey(), blockVerifyExecutor.submit(() -> {
+                try {
+                    return TransactionCall.txModuleValidator(chain, entry.getKey(), entry.getValue(), blockHeaderStr);
+                } finally {
+                    stageTime.merge(STAGE_MODULE, System.currentTimeMillis() - start, Math::max);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private void verifyModuleResult(Chain chain, Map<String, Future<List<String>>> moduleFutures) throws NulsException {
+        for (Map.Entry<String, Future<List<String>>> entry : moduleFutures.entrySet()) {
+            List<String> txHashList = getVerifyResult(chain, entry.getValue());
+            if (txHashList != null && txHashList.size() > 0) {
+                chain.getLogger().error("batch module verify fail, module-code:{},  return count:{}", entry.getKey(), txHashList.size());
+                throw new NulsException(TxErrorCode.TX_VERIFY_FAIL);
+            }
+        }
+    }
+
+    private void verifyBaseResult(Chain chain, List<Future<Boolean>> baseFutures) throws NulsException {
+        for (Future<Boolean> future : baseFutures) {
+            if (!getVerifyResult(chain, future)) {
+                chain.getLogger().error("batchVerify failed, single tx verify failed");
+                throw new NulsException(TxErrorCode.TX_VERIFY_FAIL);
+            }
+        }
+    }
+
+    /**
+     * 取消未开始的单个交易验证, 等待仍在进行的账本及模块验证结束, 结果忽略
+     * Cancel the base validations not started yet and wait for the ledger and module validations still running, ignoring their results
+     */
+    private void finishVerify(Future<Boolean> coinDataFuture, List<Future<Boolean>> baseFutures, Map<String, Future<List<String>>> moduleFutures) {
+        for (Future<Boolean> future : baseFutures) {
+            future.cancel(false);
+        }
+        List<Future<?>> rpcFutures = new ArrayList<>(moduleFutures.values());
+        rpcFutures.add(coinDataFuture);
+        for (Future<?> future : rpcFutures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | CancellationException e) {
+                //结果已不再需要 / the result is no longer needed
+            }
+        }
+    }
+
+    /**
+     * 等待异步验证结果, 验证中抛出的NulsException原样抛出
+     * Wait for an asynchronous verification result, a NulsException thrown by the verification is rethrown as is
+     */
+    private <T> T getVerifyResult(Chain chain, Future<T> future) throws NulsException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            chain.getLogger().error(e);
+            Thread.currentThread().interrupt();
+            throw new NulsException(TxErrorCode.SYS_UNKOWN_EXCEPTION);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof NulsException) {
+                throw (NulsException) e.getCause();
+            }
+            chain.getLogger().error(e);
+            throw new NulsException(TxErrorCode.SYS_UNKOWN_EXCEPTION);
+        }
+    }
+
     @Override
     public Map<String, Object> batchVerify(Chain chain, List<String> txStrList, BlockHeader blockHeader, String blockHeaderStr, String preStateRoot) throws NulsException {
         NulsLogger logger = chain.getLogger();
@@ -1652,26 +1888,24 @@ public class TxServiceImpl implements TxService {
         if (logger.isDebugEnabled()) {
             logger.debug("[验区块交易] 开始 -----高度:{} -----区块交易数:{}", blockHeight, txStrList.size());
         }
-        List<TxVerifyWrapper> txList = new ArrayList<>();
         //验证区块中只允许有一个的交易不能有多个
         Set<Integer> onlyOneTxTypes = new HashSet<>();
         //智能合约通知标识,出现的第一个智能合约交易并且调用验证器通过时,有则只第一次时通知.
         boolean contractNotify = false;
         Transaction scReturnGas = null;
         long blockTime = blockHeader.getTime();
-        List<Future<Boolean>> futures = new ArrayList<>();
         //组装统一验证参数数据,key为各模块统一验证器cmd
         Map<String, List<String>> moduleVerifyMap = new HashMap<>(TxConstant.INIT_CAPACITY_8);
-        int chainId = chain.getChainId();
-        long timeF1 = 0L;
-        long timeF2 = 0L;
-        long timeF3 = 0L;
-        long timeF4 = 0L;
-        List<byte[]> keys = new ArrayList<>();
+        //各阶段耗时
+        Map<String, Long> stageTime = new ConcurrentHashMap<>(TxConstant.INIT_CAPACITY_8);
         long f1 = System.currentTimeMillis();
-        for (String txStr : txStrList) {
-            Transaction tx = TxUtil.getInstanceRpcStr(txStr, Transaction.class);
-            txList.add(new TxVerifyWrapper(tx, txStr));
+        //多线程反序列化
+        List<TxVerifyWrapper> txList = deserializeTxs(chain, txStrList, blockHeight);
+        stageTime.put(STAGE_DESERIALIZE, System.currentTimeMillis() - f1);
+        List<byte[]> keys = new ArrayList<>(txList.size());
+        List<String> contractTxList = new ArrayList<>();
+        for (TxVerifyWrapper txVerifyWrapper : txList) {
+            Transaction tx = txVerifyWrapper.getTx();
             int type = tx.getType();
             verifySysTxCount(onlyOneTxTypes, type);
             TxRegister txRegister = TxManager.getTxRegister(chain, type);
@@ -1693,19 +1927,9 @@ public class TxServiceImpl implements TxService {
             // end code by pierre
             /** 智能合约*/
             if (isSmartContractTx) {
-                /** 出现智能合约,且通知标识为false,则先调用通知 */
-                if (!contractNotify) {
-                    String packingAddress = AddressTool.getStringAddressByBytes(blockHeader.getPackingAddress(chain.getChainId()));
-                    ContractCall.contractBatchBegin(chain, blockHeight, blockTime, packingAddress, preStateRoot, 1);
-                    contractNotify = true;
-                }
                 try {
-                    if (!ContractCall.invokeContract(chain, RPCUtil.encode(tx.serialize()), 1, Constants.TIMEOUT_TIMEMILLIS * 10)) {
-                        if (logger.isDebugEnabled()) {
-                            logger.debug("batch verify failed. invokeContract fail");
-                        }
-                        throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
-                    }
+                    //合约交易收集后在一次批量调用中按顺序执行
+                    contractTxList.add(RPCUtil.encode(tx.serialize()));
                 } catch (IOException e) {
                     throw new NulsException(TxErrorCode.SERIALIZE_ERROR);
                 }
@@ -1716,278 +1940,214 @@ public class TxServiceImpl implements TxService {
             }
             keys.add(tx.getHash().getBytes());
             //根据模块的统一验证器名，对所有交易进行分组，准备进行各模块的统一验证
-            TxUtil.moduleGroups(moduleVerifyMap, txRegister, txStr);
-        }
-        if (!contractNotify && null != scReturnGas) {
-            throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
+            TxUtil.moduleGroups(moduleVerifyMap, txRegister, txVerifyWrapper.getTxStr());
         }
-
         onlyOneTxTypes = null;
-        long f2 = System.currentTimeMillis();
-        timeF1 = f2 - f1;
-        //验证交易是否已确认过
-        List<byte[]> confirmedList = confirmedTxStorageService.getExistTxs(chainId, keys);
-        if (!confirmedList.isEmpty()) {
-            logger.error("There are confirmed transactions");
-            try {
-                for (byte[] cfmtx : confirmedList) {
-                    logger.error("confirmed hash:{}", TxUtil.getTransaction(cfmtx).getHash().toHex());
+
+        //账本验证在其他线程进行, 与确认/未确认检查重叠
+        Future<Boolean> coinDataFuture = verifyCoinDataAsync(chain, txStrList, blockHeight, stageTime);
+        List<Future<Boolean>> baseFutures = Collections.emptyList();
+        Map<String, Future<List<String>>> moduleFutures = Collections.emptyMap();
+        try {
+            //确认/未确认检查通过后, 单个交易验证及模块统一验证在其他线程进行, 与合约执行重叠
+            List<TxVerifyWrapper> unknownTxList = verifyExist(chain, txList, keys, stageTime);
+            baseFutures = verifyBaseAsync(chain, unknownTxList, stageTime);
+            moduleFutures = verifyModuleAsync(chain, moduleVerifyMap, blockHeaderStr, stageTime);
+
+            long contractStart = System.currentTimeMillis();
+            if (!contractTxList.isEmpty()) {
+                /** 出现智能合约,则先调用通知 */
+                String packingAddress = AddressTool.getStringAddressByBytes(blockHeader.getPackingAddress(chain.getChainId()));
+                ContractCall.contractBatchBegin(chain, blockHeight, blockTime, packingAddress, preStateRoot, 1);
+                contractNotify = true;
+                if (!ContractCall.invokeContracts(chain, contractTxList, 1, Constants.TIMEOUT_TIMEMILLIS * 10)) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("batch verify failed. invokeContract fail");
+                    }
+                    throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
                 }
-            } finally {
-                logger.error("Show confirmed transaction deserialize fail");
-                throw new NulsException(TxErrorCode.TX_CONFIRMED);
             }
-        }
-        long f3 = System.currentTimeMillis();
-        timeF2 = f3 - f2;
-
-        //验证本地没有的交易
-        List<String> unconfirmedList = unconfirmedTxStorageService.getExistKeysStr(chainId, keys);
-
-        long f4 = System.currentTimeMillis();
-        timeF3 = f4 - f3;
-
-        Set<String> set = new HashSet<>();
-        set.addAll(unconfirmedList);
-        unconfirmedList = null;
-        long d = 0L;
-        for (TxVerifyWrapper txVerifyWrapper : txList) {
-            Transaction tx = txVerifyWrapper.getTx();
-            tx.setBlockHeight(blockHeight);
-            //能加入表明未确认中没有,则需要处理
-            if (set.add(tx.getHash().toHex())) {
-                long d1 = System.currentTimeMillis();
-                //不在未确认中就进行基础验证
-                //多线程处理单个交易
-                Future<Boolean> res = verifySignExecutor.submit(new Callable<Boolean>() {
-                    @Override
-                    public Boolean call() {
-                        try {
-                            //只验证单个交易的基础内容(TX模块本地验证)
-                            TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
-                            if (null == txRegister) {
-                                throw new NulsException(TxErrorCode.TX_TYPE_INVALID);
-                            }
-                            baseValidateTx(chain, tx, txRegister);
-                        } catch (Exception e) {
-                            logger.error("batchVerify failed, single tx verify failed. hash:{}, -type:{}", tx.getHash().toHex(), tx.getType());
-                            logger.error(e);
-                            return false;
-                        }
-                        return true;
+            if (!contractNotify && null != scReturnGas) {
+                throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
+            }
+            if (contractNotify) {
+                if (!ContractCall.contractBatchBeforeEnd(chain, blockHeight, 1)) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("batch verify failed. contractBatchBeforeEnd fail");
                     }
-                });
-                futures.add(res);
-                d += (System.currentTimeMillis() - d1);
+                    throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                }
             }
-        }
-
-        if (logger.isDebugEnabled()) {
-            timeF4 = System.currentTimeMillis() - f4;
-            logger.debug("[验区块交易] 反序列化,合约,分组:{} -是否确认过:{} -是否在未确认中:{}, -单个验证:{} -单内部处理:{} -合计时间:{}",
-                    timeF1, timeF2, timeF3, d, timeF4, NulsDateUtils.getCurrentTimeMillis() - s1);
-        }
+            stageTime.put(STAGE_CONTRACT, System.currentTimeMillis() - contractStart);
 
-        if (contractNotify) {
-            if (!ContractCall.contractBatchBeforeEnd(chain, blockHeight, 1)) {
+            //账本验证
+            if (!getVerifyResult(chain, coinDataFuture)) {
                 if (logger.isDebugEnabled()) {
-                    logger.debug("batch verify failed. contractBatchBeforeEnd fail");
+                    logger.debug("batch verifyCoinData failed.");
                 }
-                throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                throw new NulsException(TxErrorCode.TX_LEDGER_VERIFY_FAIL);
             }
-        }
-
-        long coinDataV = NulsDateUtils.getCurrentTimeMillis();
-        //账本验证
-        if (!LedgerCall.verifyBlockTxsCoinData(chain, txStrList, blockHeight)) {
+            //模块统一验证器
+            verifyModuleResult(chain, moduleFutures);
             if (logger.isDebugEnabled()) {
-                logger.debug("batch verifyCoinData failed.");
+                logger.debug("[验区块交易] 账本及模块统一验证完成 -距方法开始的时间:{}", NulsDateUtils.getCurrentTimeMillis() - s1);
             }
-            throw new NulsException(TxErrorCode.TX_LEDGER_VERIFY_FAIL);
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[验区块交易] coinData -距方法开始的时间:{}，-验证时间:{}",
-                    NulsDateUtils.getCurrentTimeMillis() - s1, NulsDateUtils.getCurrentTimeMillis() - coinDataV);
-        }
 
-        //模块统一验证器
-        long moduleV = NulsDateUtils.getCurrentTimeMillis();
-        Iterator<Map.Entry<String, List<String>>> it = moduleVerifyMap.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, List<String>> entry = it.next();
-            List<String> txHashList = TransactionCall.txModuleValidator(chain,
-                    entry.getKey(), entry.getValue(), blockHeaderStr);
-            if (txHashList != null && txHashList.size() > 0) {
-                logger.error("batch module verify fail, module-code:{},  return count:{}", entry.getKey(), txHashList.size());
-                throw new NulsException(TxErrorCode.TX_VERIFY_FAIL);
-            }
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[验区块交易] 模块统一验证时间:{}", NulsDateUtils.getCurrentTimeMillis() - moduleV);
-            logger.debug("[验区块交易] 模块统一验证 -距方法开始的时间:{}", NulsDateUtils.getCurrentTimeMillis() - s1);
-        }
-
-        /** 智能合约 当通知标识为true, 则表明有智能合约被调用执行*/
-        List<String> scNewList = new ArrayList<>();
-        String scStateRoot = preStateRoot;
-        if (contractNotify) {
-            Map<String, Object> map;
-            try {
-                map = ContractCall.contractBatchEnd(chain, blockHeight, Constants.TIMEOUT_TIMEMILLIS * 10);
-            } catch (NulsException e) {
-                logger.error(e);
-                throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
-            }
-            scStateRoot = (String) map.get("stateRoot");
-
-            scNewList = (List<String>) map.get("txList");
-            if (null == scNewList) {
-                logger.error("contract new txs is null");
-                throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
-            }
-            /**
-             * 1.共识验证 如果有
-             * 2.如果只有智能合约的共识交易失败，isRollbackPackablePool=true
-             * 3.如果只有其他共识交易失败，单独删掉
-             * 4.混合 执行2.
-             */
-            List<String> scNewConsensusList = new ArrayList<>();
-            List<String> scNewTokenCrossTransferList = new ArrayList<>();
-            for (String scNewTx : scNewList) {
-                int scNewTxType = TxUtil.extractTxTypeFromTx(scNewTx);
-                if (scNewTxType == TxType.CONTRACT_CREATE_AGENT
-                        || scNewTxType == TxType.CONTRACT_DEPOSIT
-                        || scNewTxType == TxType.CONTRACT_CANCEL_DEPOSIT
-                        || scNewTxType == TxType.CONTRACT_STOP_AGENT) {
-                    scNewConsensusList.add(scNewTx);
-                } else if (scNewTxType == TxType.CONTRACT_TOKEN_CROSS_TRANSFER) {
-                    scNewTokenCrossTransferList.add(scNewTx);
-                }
-            }
-            if (!scNewConsensusList.isEmpty() || !scNewTokenCrossTransferList.isEmpty()) {
-                //收集共识模块/跨链模块所有交易, 加上新产生的智能合约共识交易，一起再次进行模块统一验证
-                List<String> consensusList = new ArrayList<>();
-                List<String> crossTransferList = new ArrayList<>();
-                int txType;
-                for (TxVerifyWrapper txVerifyWrapper : txList) {
-                    Transaction tx = txVerifyWrapper.getTx();
-                    txType = tx.getType();
-                    // 区块中的包含了智能合约生成的共识交易，不重复添加
-                    if (txType == TxType.CONTRACT_CREATE_AGENT
-                            || txType == TxType.CONTRACT_DEPOSIT
-                            || txType == TxType.CONTRACT_CANCEL_DEPOSIT
-                            || txType == TxType.CONTRACT_STOP_AGENT) {
-                        continue;
-                    }
-                    TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
-                    if (txRegister.getModuleCode().equals(ModuleE.CS.abbr)) {
-                        consensusList.add(txVerifyWrapper.getTxStr());
-                    }
-                    if (txRegister.getModuleCode().equals(ModuleE.CC.abbr)) {
-                        crossTransferList.add(txVerifyWrapper.getTxStr());
+            /** 智能合约 当通知标识为true, 则表明有智能合约被调用执行*/
+            List<String> scNewList = new ArrayList<>();
+            String scStateRoot = preStateRoot;
+            if (contractNotify) {
+                Map<String, Object> map;
+                try {
+                    map = ContractCall.contractBatchEnd(chain, blockHeight, Constants.TIMEOUT_TIMEMILLIS * 10);
+                } catch (NulsException e) {
+                    logger.error(e);
+                    throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                }
+                scStateRoot = (String) map.get("stateRoot");
+
+                scNewList = (List<String>) map.get("txList");
+                if (null == scNewList) {
+                    logger.error("contract new txs is null");
+                    throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                }
+                /**
+                 * 1.共识验证 如果有
+                 * 2.如果只有智能合约的共识交易失败，isRollbackPackablePool=true
+                 * 3.如果只有其他共识交易失败，单独删掉
+                 * 4.混合 执行2.
+                 */
+                List<String> scNewConsensusList = new ArrayList<>();
+                List<String> scNewTokenCrossTransferList = new ArrayList<>();
+                for (String scNewTx : scNewList) {
+                    int scNewTxType = TxUtil.extractTxTypeFromTx(scNewTx);
+                    if (scNewTxType == TxType.CONTRACT_CREATE_AGENT
+                            || scNewTxType == TxType.CONTRACT_DEPOSIT
+                            || scNewTxType == TxType.CONTRACT_CANCEL_DEPOSIT
+                            || scNewTxType == TxType.CONTRACT_STOP_AGENT) {
+                        scNewConsensusList.add(scNewTx);
+                    } else if (scNewTxType == TxType.CONTRACT_TOKEN_CROSS_TRANSFER) {
+                        scNewTokenCrossTransferList.add(scNewTx);
                     }
                 }
-                consensusList.addAll(scNewConsensusList);
-                crossTransferList.addAll(scNewTokenCrossTransferList);
-                if (!consensusList.isEmpty()) {
-                    boolean rsProcess = processContractTxs(chain, ModuleE.CS.abbr, consensusList, null, true);
-                    if (rsProcess) {
-                        logger.error("contract tx consensus module verify fail.");
-                        throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                if (!scNewConsensusList.isEmpty() || !scNewTokenCrossTransferList.isEmpty()) {
+                    //收集共识模块/跨链模块所有交易, 加上新产生的智能合约共识交易，一起再次进行模块统一验证
+                    List<String> consensusList = new ArrayList<>();
+                    List<String> crossTransferList = new ArrayList<>();
+                    int txType;
+                    for (TxVerifyWrapper txVerifyWrapper : txList) {
+                        Transaction tx = txVerifyWrapper.getTx();
+                        txType = tx.getType();
+                        // 区块中的包含了智能合约生成的共识交易，不重复添加
+                        if (txType == TxType.CONTRACT_CREATE_AGENT
+                                || txType == TxType.CONTRACT_DEPOSIT
+                                || txType == TxType.CONTRACT_CANCEL_DEPOSIT
+                                || txType == TxType.CONTRACT_STOP_AGENT) {
+                            continue;
+                        }
+                        TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
+                        if (txRegister.getModuleCode().equals(ModuleE.CS.abbr)) {
+                            consensusList.add(txVerifyWrapper.getTxStr());
+                        }
+                        if (txRegister.getModuleCode().equals(ModuleE.CC.abbr)) {
+                            crossTransferList.add(txVerifyWrapper.getTxStr());
+                        }
                     }
-                }
-                if (!crossTransferList.isEmpty()) {
-                    boolean rsProcess = processContractTxs(chain, ModuleE.CC.abbr, crossTransferList, null, true);
-                    if (rsProcess) {
-                        logger.error("contract tx cross-chain module verify fail.");
-                        throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                    consensusList.addAll(scNewConsensusList);
+                    crossTransferList.addAll(scNewTokenCrossTransferList);
+                    if (!consensusList.isEmpty()) {
+                        boolean rsProcess = processContractTxs(chain, ModuleE.CS.abbr, consensusList, null, true);
+                        if (rsProcess) {
+                            logger.error("contract tx consensus module verify fail.");
+                            throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                        }
                     }
-                }
-            }
-            //验证智能合约gas返回的交易hex 是否正确.打包时返回的交易是加入到区块交易的队尾
-            int size = scNewList.size();
-            if (size > 0) {
-                int txSize = txStrList.size();
-                String scNewTxHex = null;
-                for (int i = size - 1; i >= 0; i--) {
-                    String hex = scNewList.get(i);
-                    int txType = TxUtil.extractTxTypeFromTx(hex);
-                    if (txType == TxType.CONTRACT_RETURN_GAS) {
-                        scNewTxHex = hex;
-                        break;
+                    if (!crossTransferList.isEmpty()) {
+                        boolean rsProcess = processContractTxs(chain, ModuleE.CC.abbr, crossTransferList, null, true);
+                        if (rsProcess) {
+                            logger.error("contract tx cross-chain module verify fail.");
+                            throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                        }
                     }
                 }
-                if (scNewTxHex != null) {
-                    String receivedScNewTxHex = null;
-                    boolean rs = false;
-                    for (int i = txSize - 1; i >= 0; i--) {
-                        String txHex = txStrList.get(i);
-                        int txType = TxUtil.extractTxTypeFromTx(txHex);
+                //验证智能合约gas返回的交易hex 是否正确.打包时返回的交易是加入到区块交易的队尾
+                int size = scNewList.size();
+                if (size > 0) {
+                    int txSize = txStrList.size();
+                    String scNewTxHex = null;
+                    for (int i = size - 1; i >= 0; i--) {
+                        String hex = scNewList.get(i);
+                        int txType = TxUtil.extractTxTypeFromTx(hex);
                         if (txType == TxType.CONTRACT_RETURN_GAS) {
-                            receivedScNewTxHex = txHex;
-                            if (txHex.equals(scNewTxHex)) {
-                                rs = true;
-                            }
+                            scNewTxHex = hex;
                             break;
                         }
                     }
-                    if (!rs) {
-                        logger.error("contract error.生成的合约gas返还交易:{}, - 收到的合约gas返还交易：{}", scNewTxHex, receivedScNewTxHex);
-                        throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                    if (scNewTxHex != null) {
+                        String receivedScNewTxHex = null;
+                        boolean rs = false;
+                        for (int i = txSize - 1; i >= 0; i--) {
+                            String txHex = txStrList.get(i);
+                            int txType = TxUtil.extractTxTypeFromTx(txHex);
+                            if (txType == TxType.CONTRACT_RETURN_GAS) {
+                                receivedScNewTxHex = txHex;
+                                if (txHex.equals(scNewTxHex)) {
+                                    rs = true;
+                                }
+                                break;
+                            }
+                        }
+                        if (!rs) {
+                            logger.error("contract error.生成的合约gas返还交易:{}, - 收到的合约gas返还交易：{}", scNewTxHex, receivedScNewTxHex);
+                            throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                        }
+                        //返回智能合约交易给区块
+                        scNewList.remove(scNewTxHex);
+                    } else {
+                        if (null != scReturnGas) {
+                            throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
+                        }
                     }
-                    //返回智能合约交易给区块
-                    scNewList.remove(scNewTxHex);
                 } else {
                     if (null != scReturnGas) {
                         throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
                     }
                 }
-            } else {
-                if (null != scReturnGas) {
-                    throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
+            }
+            //stateRoot发到共识,处理完再比较
+            String coinBaseTx = null;
+            for (TxVerifyWrapper txVerifyWrapper : txList) {
+                Transaction tx = txVerifyWrapper.getTx();
+                if (tx.getType() == TxType.COIN_BASE) {
+                    coinBaseTx = txVerifyWrapper.getTxStr();
+                    break;
                 }
             }
-        }
-        //stateRoot发到共识,处理完再比较
-        String coinBaseTx = null;
-        for (TxVerifyWrapper txVerifyWrapper : txList) {
-            Transaction tx = txVerifyWrapper.getTx();
-            if (tx.getType() == TxType.COIN_BASE) {
-                coinBaseTx = txVerifyWrapper.getTxStr();
-                break;
+            String stateRootNew = ConsensusCall.triggerCoinBaseContract(chain, coinBaseTx, blockHeaderStr, scStateRoot);
+            String stateRoot = RPCUtil.encode(blockHeader.getExtendsData().getStateRoot());
+            if (!stateRoot.equals(stateRootNew)) {
+                logger.warn("contract stateRoot error.");
+                throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
             }
-        }
-        String stateRootNew = ConsensusCall.triggerCoinBaseContract(chain, coinBaseTx, blockHeaderStr, scStateRoot);
-        String stateRoot = RPCUtil.encode(blockHeader.getExtendsData().getStateRoot());
-        if (!stateRoot.equals(stateRootNew)) {
-            logger.warn("contract stateRoot error.");
-            throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
-        }
 
-        //多线程处理结果
-        try {
-            for (Future<Boolean> future : futures) {
-                if (!future.get()) {
-                    logger.error("batchVerify failed, single tx verify failed");
-                    throw new NulsException(TxErrorCode.TX_VERIFY_FAIL);
-                }
-            }
-        } catch (InterruptedException e) {
-            logger.error(e);
-            throw new NulsException(TxErrorCode.SYS_UNKOWN_EXCEPTION);
-        } catch (ExecutionException e) {
-            logger.error(e);
-            throw new NulsException(TxErrorCode.SYS_UNKOWN_EXCEPTION);
-        }
+            //多线程处理结果
+            verifyBaseResult(chain, baseFutures);
+            stageTime.put(STAGE_TOTAL, NulsDateUtils.getCurrentTimeMillis() - s1);
+            chain.setBlockVerifyStageTime(stageTime);
 
-        if (logger.isDebugEnabled()) {
-            logger.debug("[验区块交易] 合计执行时间:{}, - 高度:{} - 区块交易数:{}" + TxUtil.nextLine(),
-                    NulsDateUtils.getCurrentTimeMillis() - s1, blockHeight, txStrList.size());
+            if (logger.isDebugEnabled()) {
+                logger.debug("[验区块交易] 各阶段耗时:{}", stageTime);
+                logger.debug("[验区块交易] 合计执行时间:{}, - 高度:{} - 区块交易数:{}" + TxUtil.nextLine(),
+                        NulsDateUtils.getCurrentTimeMillis() - s1, blockHeight, txStrList.size());
+            }
+            Map<String, Object> resultMap = new HashMap<>(TxConstant.INIT_CAPACITY_4);
+            resultMap.put("value", true);
+            resultMap.put("contractList", scNewList);
+            return resultMap;
+        } finally {
+            //验证中途失败时不留下仍在运行的验证 / no verification is left running when it fails half way
+            finishVerify(coinDataFuture, baseFutures, moduleFutures);
         }
-        Map<String, Object> resultMap = new HashMap<>(TxConstant.INIT_CAPACITY_4);
-        resultMap.put("value", true);
-        resultMap.put("contractList", scNewList);
-        return resultMap;
     }
 
 
@@ -1999,10 +2159,7 @@ public class TxServiceImpl implements TxService {
     @Override
     public void clearInvalidTx(Chain chain, Transaction tx, boolean changeStatus) {
         unconfirmedTxStorageService.removeTx(chain.getChainId(), tx.getHash());
-        //从待打包队里存交易的map中移除
-        ByteArrayWrapper wrapper = new ByteArrayWrapper(tx.getHash().getBytes());
-        chain.getPackableTxMap().remove(wrapper);
-        //从待打包队列中存实际交易的的map中移除该笔交易
+        //从待打包池中移除该笔交易
         packablePool.removeInvalidTxFromMap(chain, tx);
         //判断如果交易已被确认就不用调用账本清理了!!
         TransactionConfirmedPO txConfirmed = confirmedTxService.getConfirmedTransaction(chain, tx.getHash());
@@ -2039,7 +2196,10 @@ public class TxServiceImpl implements TxService {
             long packableTime = endtimestamp - startTime;
             nulsLogger.info("[Package start] -可打包时间：{}, -可打包容量：{}B , - height:{}, - 当前待打包队列交易hash数:{}, - 待打包队列实际交易数:{}",
                     packableTime, maxTxDataSize, blockHeight, packablePool.packableHashQueueSize(chain), packablePool.packableTxMapSize(chain));
-            long batchValidReserve = TxConstant.PACKAGE_MODULE_VALIDATOR_RESERVE_TIME;
+            PackingCostModel costModel = chain.getPackingCostModel();
+            long packageRpcReserveTime = chain.getConfig().getPackageRpcReserveTime();
+            //根据已取出的交易估算需要给合约结果处理和模块验证预留的时间
+            long batchValidReserve = costModel.reserveTime(0, 0, packageRpcReserveTime);
             if (packableTime <= batchValidReserve) {
                 //直接打空块
                 return new TxPackage(new ArrayList<>(), null, chain.getBestBlockHeight() + 1);
@@ -2062,9 +2222,8 @@ public class TxServiceImpl implements TxService {
             //获取交易时计算区块总size大小临时值
             long totalSizeTemp = 0L;
             int maxCount = TxConstant.PACKAGE_TX_MAX_COUNT - TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS;
-            //通过配置的百分比，计算从总的打包时间中预留给批量验证的时间
-            //            long batchValidReserve = packagingReservationTime(chain, packingTime);
-            long packageRpcReserveTime = chain.getConfig().getPackageRpcReserveTime();
+            //每批次交给账本验证的交易数, 按剩余时间调整
+            int batchLimit = TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS;
 
             //智能合约通知标识,出现的第一个智能合约交易并且调用验证器通过时,有则只第一次时通知.
             boolean contractNotify = false;
@@ -2073,7 +2232,7 @@ public class TxServiceImpl implements TxService {
             LedgerCall.coinDataBatchNotify(chain);
             //取出的交易集合(需要发送给账本验证)
             List<String> batchProcessList = new ArrayList<>();
-            Set<String> duplicatesVerify = new HashSet<>();
+            Set<NulsHash> duplicatesVerify = new HashSet<>();
             //取出的交易集合
             List<TxPackageWrapper> currentBatchPackableTxs = new ArrayList<>();
             //本次打包包含跨链交易个数
@@ -2105,6 +2264,10 @@ public class TxServiceImpl implements TxService {
             for (int index = 0; ; index++) {
                 long currentTimeMillis = NulsDateUtils.getCurrentTimeMillis();
                 long currentReserve = endtimestamp - currentTimeMillis;
+                batchValidReserve = costModel.reserveTime(packingTxList.size(), contractTxCount, packageRpcReserveTime);
+                if (batchProcessList.isEmpty()) {
+                    batchLimit = costModel.batchSize(currentReserve - batchValidReserve);
+                }
                 if (currentReserve <= batchValidReserve) {
                     if (nulsLogger.isDebugEnabled()) {
                         nulsLogger.debug("获取交易时间到,进入模块验证阶段: currentTimeMillis:{}, -endtimestamp:{}, -offset:{}, -remaining:{}",
@@ -2157,14 +2320,19 @@ public class TxServiceImpl implements TxService {
                 try {
                     tx = packablePool.poll(chain);
                     if (tx == null && batchProcessListSize == 0) {
-                        Thread.sleep(10L);
-                        allSleepTime += 10;
-                        continue;
-                    } else if (tx == null && batchProcessListSize > 0) {
+                        //待打包队列为空, 阻塞等待新交易, 新交易到达立即唤醒
+                        long waitStart = NulsDateUtils.getCurrentTimeMillis();
+                        tx = packablePool.poll(chain, Math.min(TxConstant.PACKAGE_POLL_TX_WAIT_TIME, currentReserve - batchValidReserve));
+                        allSleepTime += NulsDateUtils.getCurrentTimeMillis() - waitStart;
+                        if (tx == null) {
+                            continue;
+                        }
+                    }
+                    if (tx == null && batchProcessListSize > 0) {
                         //达到处理该批次的条件
                         process = true;
                     } else if (tx != null) {
-                        if (!duplicatesVerify.add(tx.getHash().toHex())) {
+                        if (!duplicatesVerify.add(tx.getHash())) {
                             //加入不进去表示已存在
                             continue;
                         }
@@ -2220,7 +2388,7 @@ public class TxServiceImpl implements TxService {
                             TxPackageWrapper txPackageWrapper = new TxPackageWrapper(tx, index, txHex);
                             batchProcessList.add(txHex);
                             currentBatchPackableTxs.add(txPackageWrapper);
-                            if (batchProcessList.size() == TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS) {
+                            if (batchProcessList.size() >= batchLimit) {
                                 //达到处理该批次的条件
                                 process = true;
                             }
@@ -2235,11 +2403,15 @@ public class TxServiceImpl implements TxService {
                             //放回可打包交易和孤儿
                             packingTxList.addAll(currentBatchPackableTxs);
                             putBackPackablePool(chain, packingTxList, orphanTxSet);
-                            Thread.sleep(30L);
+                            //等待区块保存或回滚完成后立即重新打包
+                            chain.awaitPackableState(endtimestamp - NulsDateUtils.getCurrentTimeMillis() - batchValidReserve);
                             return getPackableTxsV8(chain, endtimestamp, maxTxDataSize, blockTime, packingAddress, preStateRoot);
                         }
+                        int ledgerCount = batchProcessList.size();
                         verifyLedger(chain, batchProcessList, currentBatchPackableTxs, orphanTxSet, false, false);
-                        totalLedgerTime += NulsDateUtils.getCurrentTimeMillis() - verifyLedgerStart;
+                        long ledgerTime = NulsDateUtils.getCurrentTimeMillis() - verifyLedgerStart;
+                        totalLedgerTime += ledgerTime;
+                        costModel.recordLedger(ledgerCount, ledgerTime);
 
                         Iterator<TxPackageWrapper> it = currentBatchPackableTxs.iterator();
                         while (it.hasNext()) {
@@ -2345,6 +2517,7 @@ public class TxServiceImpl implements TxService {
             whileTime = NulsDateUtils.getCurrentTimeMillis() - startTime;
             nulsLogger.info("-取出的交易 -count:{} - data size:{}", packingTxList.size(), totalSize);
 
+            long contractStart = NulsDateUtils.getCurrentTimeMillis();
             boolean contractBefore = false;
             if (contractNotify) {
                 contractBefore = ContractCall.contractBatchBeforeEnd(chain, blockHeight, 0);
@@ -2352,7 +2525,6 @@ public class TxServiceImpl implements TxService {
             //处理智能合约
             String stateRoot = preStateRoot;
             boolean hasTxbackPackablePool = false;
-            long contractStart = NulsDateUtils.getCurrentTimeMillis();
             /** 智能合约 当通知标识为true, 则表明有智能合约被调用执行*/
             if (contractNotify && !chain.getContractTxFail()) {
                 //处理智能合约执行结果
@@ -2367,12 +2539,15 @@ public class TxServiceImpl implements TxService {
                 verifyAgain(chain, moduleVerifyMap, packingTxList, orphanTxSet, true);
             }
             long contractTime = NulsDateUtils.getCurrentTimeMillis() - contractStart;
+            costModel.recordContract(contractTxCount, contractTime);
 
             //模块统一验证器
             long batchStart = NulsDateUtils.getCurrentTimeMillis();
+            int moduleCount = packingTxList.size();
             txModuleValidatorPackable(chain, moduleVerifyMap, packingTxList, orphanTxSet);
             //模块统一验证使用总时间
             batchModuleTime = NulsDateUtils.getCurrentTimeMillis() - batchStart;
+            costModel.recordModule(moduleCount, batchModuleTime);
 
             List<String> packableTxs = new ArrayList<>();
             Iterator<TxPackageWrapper> iterator = packingTxList.iterator();
@@ -2443,9 +2618,10 @@ public class TxServiceImpl implements TxService {
             long totalTime = NulsDateUtils.getCurrentTimeMillis() - startTime;
             nulsLogger.info("[打包时间统计]  总执行时间:{}, 剩余时间:{}, 打包可用时间:{}, 获取交易(循环)总等待时间:{}, " +
                             "获取交易(循环)执行时间:{}, 获取交易(循环)验证账本总时间:{}, 模块统一验证执行时间:{}, " +
-                            "合约执行时间:{},", totalTime, endtimestamp - NulsDateUtils.getCurrentTimeMillis(),
+                            "合约执行时间:{}, 预留时间:{}, 每笔交易估计耗时(微秒) 账本:{} 合约:{} 模块验证:{}, 每批次固定耗时(微秒) 账本:{} 模块验证:{}", totalTime, endtimestamp - NulsDateUtils.getCurrentTimeMillis(),
                     packingTime, allSleepTime, whileTime, totalLedgerTime, batchModuleTime,
-                    contractTime);
+                    contractTime, batchValidReserve, costModel.getLedgerMicros(), costModel.getContractMicros(), costModel.getModuleMicros(),
+                    costModel.getLedgerFixedMicros(), costModel.getModuleFixedMicros());
 
             nulsLogger.info("[Package end] - height:{} - 本次打包交易数:{} - 当前待打包队列交易hash数:{}, - 待打包队列实际交易数:{}" + TxUtil.nextLine(),
                     blockHeight, packableTxs.size(), packablePool.packableHashQueueSize(chain), packablePool.packableTxMapSize(chain));
@@ -2467,29 +2643,26 @@ public class TxServiceImpl implements TxService {
         long s1 = NulsDateUtils.getCurrentTimeMillis();
         long blockHeight = blockHeader.getHeight();
         logger.info("[验区块交易] 开始 -----高度:{} -----区块交易数:{}", blockHeight, txStrList.size());
-        List<TxVerifyWrapper> txList = new ArrayList<>();
         //验证区块中只允许有一个的交易不能有多个
         Set<Integer> onlyOneTxTypes = new HashSet<>();
         //智能合约通知标识,出现的第一个智能合约交易并且调用验证器通过时,有则只第一次时通知.
         boolean contractNotify = false;
         Transaction scReturnGas = null;
         long blockTime = blockHeader.getTime();
-        List<Future<Boolean>> futures = new ArrayList<>();
         //组装统一验证参数数据,key为各模块统一验证器cmd
         Map<String, List<String>> moduleVerifyMap = new HashMap<>(TxConstant.INIT_CAPACITY_8);
-        int chainId = chain.getChainId();
-        long timeF1;
-        long timeF2;
-        long timeF3;
-        long timeF4;
-        List<byte[]> keys = new ArrayList<>();
+        //各阶段耗时
+        Map<String, Long> stageTime = new ConcurrentHashMap<>(TxConstant.INIT_CAPACITY_8);
         long f1 = System.currentTimeMillis();
+        //多线程反序列化
+        List<TxVerifyWrapper> txList = deserializeTxs(chain, txStrList, blockHeight);
+        stageTime.put(STAGE_DESERIALIZE, System.currentTimeMillis() - f1);
+        List<byte[]> keys = new ArrayList<>(txList.size());
+        List<Transaction> contractTxs = new ArrayList<>();
         long totalGasInBlock = 0;
         List<String> contractGenerateTxs = new ArrayList<>();
-
-        for (String txStr : txStrList) {
-            Transaction tx = TxUtil.getInstanceRpcStr(txStr, Transaction.class);
-            txList.add(new TxVerifyWrapper(tx, txStr));
+        for (TxVerifyWrapper txVerifyWrapper : txList) {
+            Transaction tx = txVerifyWrapper.getTx();
             int type = tx.getType();
             verifySysTxCount(onlyOneTxTypes, type);
             TxRegister txRegister = TxManager.getTxRegister(chain, type);
@@ -2511,9 +2684,33 @@ public class TxServiceImpl implements TxService {
             // end code by pierre
             /** 智能合约*/
             if (isSmartContractTx) {
+                //合约交易收集后按顺序执行
+                contractTxs.add(tx);
+            }
+            if (chain.getContractGenerateTxTypes().contains(tx.getType())) {
+                //包含了合约模块生成的并且不应该放在区块交易列表中的交易
+                throw new NulsException(TxErrorCode.SYS_CONTRACT_TX_NON_CIRCULATING);
+            }
+            keys.add(tx.getHash().getBytes());
+            //根据模块的统一验证器名，对所有交易进行分组，准备进行各模块的统一验证
+            TxUtil.moduleGroups(moduleVerifyMap, txRegister, txVerifyWrapper.getTxStr());
+        }
+
+        //账本验证在其他线程进行, 与确认/未确认检查重叠
+        Future<Boolean> coinDataFuture = verifyCoinDataAsync(chain, txStrList, blockHeight, stageTime);
+        List<Future<Boolean>> baseFutures = Collections.emptyList();
+        Map<String, Future<List<String>>> moduleFutures = Collections.emptyMap();
+        try {
+            //确认/未确认检查通过后, 单个交易验证及模块统一验证在其他线程进行, 与合约执行重叠
+            List<TxVerifyWrapper> unknownTxList = verifyExist(chain, txList, keys, stageTime);
+            baseFutures = verifyBaseAsync(chain, unknownTxList, stageTime);
+            moduleFutures = verifyModuleAsync(chain, moduleVerifyMap, blockHeaderStr, stageTime);
+
+            long contractStart = System.currentTimeMillis();
+            for (Transaction tx : contractTxs) {
                 // 检查区块中已使用的GAS
                 if (totalGasInBlock >= MAX_GAS_COST_IN_BLOCK) {
-                    if (TxManager.isGasCostContractTransaction(type)) {
+                    if (TxManager.isGasCostContractTransaction(tx.getType())) {
                         Log.error("verify block failed: Excess block gas limit of contract transaction detected.");
                         throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
                     }
@@ -2538,276 +2735,179 @@ public class TxServiceImpl implements TxService {
                     throw new NulsException(TxErrorCode.SERIALIZE_ERROR);
                 }
             }
-            if (chain.getContractGenerateTxTypes().contains(tx.getType())) {
-                //包含了合约模块生成的并且不应该放在区块交易列表中的交易
-                throw new NulsException(TxErrorCode.SYS_CONTRACT_TX_NON_CIRCULATING);
-            }
-            keys.add(tx.getHash().getBytes());
-            //根据模块的统一验证器名，对所有交易进行分组，准备进行各模块的统一验证
-            TxUtil.moduleGroups(moduleVerifyMap, txRegister, txStr);
-        }
-        if (!contractNotify && null != scReturnGas) {
-            throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
-        }
-
-        long f2 = System.currentTimeMillis();
-        timeF1 = f2 - f1;
-        //验证交易是否已确认过
-        List<byte[]> confirmedList = confirmedTxStorageService.getExistTxs(chainId, keys);
-        if (!confirmedList.isEmpty()) {
-            logger.error("There are confirmed transactions");
-            try {
-                for (byte[] cfmtx : confirmedList) {
-                    logger.error("confirmed hash:{}", TxUtil.getTransaction(cfmtx).getHash().toHex());
-                }
-            } finally {
-                logger.error("Show confirmed transaction deserialize fail");
-                throw new NulsException(TxErrorCode.TX_CONFIRMED);
-            }
-        }
-        long f3 = System.currentTimeMillis();
-        timeF2 = f3 - f2;
-
-        //验证本地没有的交易
-        List<String> unconfirmedList = unconfirmedTxStorageService.getExistKeysStr(chainId, keys);
-
-        long f4 = System.currentTimeMillis();
-        timeF3 = f4 - f3;
-
-        Set<String> set = new HashSet<>();
-        set.addAll(unconfirmedList);
-        long d = 0L;
-        for (TxVerifyWrapper txVerifyWrapper : txList) {
-            Transaction tx = txVerifyWrapper.getTx();
-            tx.setBlockHeight(blockHeight);
-            //能加入表明未确认中没有,则需要处理
-            if (set.add(tx.getHash().toHex())) {
-                long d1 = System.currentTimeMillis();
-                //不在未确认中就进行基础验证
-                //多线程处理单个交易
-                Future<Boolean> res = verifySignExecutor.submit(new Callable<Boolean>() {
-                    @Override
-                    public Boolean call() {
-                        try {
-                            //只验证单个交易的基础内容(TX模块本地验证)
-                            TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
-                            if (null == txRegister) {
-                                throw new NulsException(TxErrorCode.TX_TYPE_INVALID);
-                            }
-                            baseValidateTx(chain, tx, txRegister);
-                        } catch (Exception e) {
-                            logger.error("batchVerify failed, single tx verify failed. hash:{}, -type:{}", tx.getHash().toHex(), tx.getType());
-                            logger.error(e);
-                            return false;
-                        }
-                        return true;
-                    }
-                });
-                futures.add(res);
-                d += (System.currentTimeMillis() - d1);
+            if (!contractNotify && null != scReturnGas) {
+                throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
             }
-        }
-
-        timeF4 = System.currentTimeMillis() - f4;
-        logger.info("[验区块交易] 反序列化,合约,分组:{} -是否确认过:{} -是否在未确认中:{}, -单个验证:{} -单内部处理:{} -合计时间:{}",
-                timeF1, timeF2, timeF3, d, timeF4, NulsDateUtils.getCurrentTimeMillis() - s1);
-
-        if (contractNotify) {
-            ContractCall.contractBatchBeforeEnd(chain, blockHeight, 1);
-        }
-
-        long coinDataV = NulsDateUtils.getCurrentTimeMillis();
-        //账本验证
-        if (!LedgerCall.verifyBlockTxsCoinData(chain, txStrList, blockHeight)) {
-            if (logger.isDebugEnabled()) {
-                logger.debug("batch verifyCoinData failed.");
+            if (contractNotify) {
+                ContractCall.contractBatchBeforeEnd(chain, blockHeight, 1);
             }
-            throw new NulsException(TxErrorCode.TX_LEDGER_VERIFY_FAIL);
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[验区块交易] coinData -距方法开始的时间:{}，-验证时间:{}",
-                    NulsDateUtils.getCurrentTimeMillis() - s1, NulsDateUtils.getCurrentTimeMillis() - coinDataV);
-        }
+            stageTime.put(STAGE_CONTRACT, System.currentTimeMillis() - contractStart);
 
-        //模块统一验证器
-        long moduleV = NulsDateUtils.getCurrentTimeMillis();
-        Iterator<Map.Entry<String, List<String>>> it = moduleVerifyMap.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, List<String>> entry = it.next();
-            List<String> txHashList = TransactionCall.txModuleValidator(chain,
-                    entry.getKey(), entry.getValue(), blockHeaderStr);
-            if (txHashList != null && txHashList.size() > 0) {
+            //账本验证
+            if (!getVerifyResult(chain, coinDataFuture)) {
                 if (logger.isDebugEnabled()) {
-                    logger.debug("batch module verify fail, module-code:{},  return count:{}", entry.getKey(), txHashList.size());
+                    logger.debug("batch verifyCoinData failed.");
                 }
-                throw new NulsException(TxErrorCode.TX_VERIFY_FAIL);
+                throw new NulsException(TxErrorCode.TX_LEDGER_VERIFY_FAIL);
             }
-        }
-        if (logger.isDebugEnabled()) {
-            logger.debug("[验区块交易] 模块统一验证时间:{}", NulsDateUtils.getCurrentTimeMillis() - moduleV);
-            logger.debug("[验区块交易] 模块统一验证 -距方法开始的时间:{}", NulsDateUtils.getCurrentTimeMillis() - s1);
-        }
+            //模块统一验证器
+            verifyModuleResult(chain, moduleFutures);
+            logger.info("[验区块交易] 账本及模块统一验证完成 -距方法开始的时间:{}", NulsDateUtils.getCurrentTimeMillis() - s1);
 
-        /** 智能合约 当通知标识为true, 则表明有智能合约被调用执行*/
-        String scStateRoot = preStateRoot;
-        if (contractNotify) {
-            Map<String, Object> map;
-            try {
-                map = ContractCall.contractBatchEnd(chain, blockHeight, Constants.TIMEOUT_TIMEMILLIS * 20);
-            } catch (NulsException e) {
-                logger.error(e);
-                throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
-            }
-            scStateRoot = (String) map.get("stateRoot");
-            List<String> returnGasTx = (List<String>) map.get("txList");
-            contractGenerateTxs.addAll(returnGasTx);
-            /**
-             * 1.共识验证 如果有
-             * 2.如果只有智能合约的共识交易失败，isRollbackPackablePool=true
-             * 3.如果只有其他共识交易失败，单独删掉
-             * 4.混合 执行2.
-             */
-            List<String> scNewConsensusList = new ArrayList<>();
-            List<String> scNewTokenCrossTransferList = new ArrayList<>();
-            for (String scNewTx : contractGenerateTxs) {
-                int scNewTxType = TxUtil.extractTxTypeFromTx(scNewTx);
-                if (scNewTxType == TxType.CONTRACT_CREATE_AGENT
-                        || scNewTxType == TxType.CONTRACT_DEPOSIT
-                        || scNewTxType == TxType.CONTRACT_CANCEL_DEPOSIT
-                        || scNewTxType == TxType.CONTRACT_STOP_AGENT) {
-                    scNewConsensusList.add(scNewTx);
-                } else if (scNewTxType == TxType.CONTRACT_TOKEN_CROSS_TRANSFER) {
-                    scNewTokenCrossTransferList.add(scNewTx);
-                }
-            }
-            if (!scNewConsensusList.isEmpty() || !scNewTokenCrossTransferList.isEmpty()) {
-                //收集共识模块/跨链模块所有交易, 加上新产生的智能合约共识交易，一起再次进行模块统一验证
-                List<String> consensusList = new ArrayList<>();
-                List<String> crossTransferList = new ArrayList<>();
-                int txType;
-                for (TxVerifyWrapper txVerifyWrapper : txList) {
-                    Transaction tx = txVerifyWrapper.getTx();
-                    txType = tx.getType();
-                    // 区块中的包含了智能合约生成的共识交易，不重复添加
-                    if (txType == TxType.CONTRACT_CREATE_AGENT
-                            || txType == TxType.CONTRACT_DEPOSIT
-                            || txType == TxType.CONTRACT_CANCEL_DEPOSIT
-                            || txType == TxType.CONTRACT_STOP_AGENT) {
-                        continue;
-                    }
-                    TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
-                    if (txRegister.getModuleCode().equals(ModuleE.CS.abbr)) {
-                        consensusList.add(txVerifyWrapper.getTxStr());
-                    }
-                    if (txRegister.getModuleCode().equals(ModuleE.CC.abbr)) {
-                        crossTransferList.add(txVerifyWrapper.getTxStr());
-                    }
+            /** 智能合约 当通知标识为true, 则表明有智能合约被调用执行*/
+            String scStateRoot = preStateRoot;
+            if (contractNotify) {
+                Map<String, Object> map;
+                try {
+                    map = ContractCall.contractBatchEnd(chain, blockHeight, Constants.TIMEOUT_TIMEMILLIS * 20);
+                } catch (NulsException e) {
+                    logger.error(e);
+                    throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
                 }
-                consensusList.addAll(scNewConsensusList);
-                crossTransferList.addAll(scNewTokenCrossTransferList);
-                if (!consensusList.isEmpty()) {
-                    boolean rsProcess = processContractTxs(chain, ModuleE.CS.abbr, consensusList, null, true);
-                    if (rsProcess) {
-                        logger.error("contract tx consensus module verify fail.");
-                        throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                scStateRoot = (String) map.get("stateRoot");
+                List<String> returnGasTx = (List<String>) map.get("txList");
+                contractGenerateTxs.addAll(returnGasTx);
+                /**
+                 * 1.共识验证 如果有
+                 * 2.如果只有智能合约的共识交易失败，isRollbackPackablePool=true
+                 * 3.如果只有其他共识交易失败，单独删掉
+                 * 4.混合 执行2.
+                 */
+                List<String> scNewConsensusList = new ArrayList<>();
+                List<String> scNewTokenCrossTransferList = new ArrayList<>();
+                for (String scNewTx : contractGenerateTxs) {
+                    int scNewTxType = TxUtil.extractTxTypeFromTx(scNewTx);
+                    if (scNewTxType == TxType.CONTRACT_CREATE_AGENT
+                            || scNewTxType == TxType.CONTRACT_DEPOSIT
+                            || scNewTxType == TxType.CONTRACT_CANCEL_DEPOSIT
+                            || scNewTxType == TxType.CONTRACT_STOP_AGENT) {
+                        scNewConsensusList.add(scNewTx);
+                    } else if (scNewTxType == TxType.CONTRACT_TOKEN_CROSS_TRANSFER) {
+                        scNewTokenCrossTransferList.add(scNewTx);
                     }
                 }
-                if (!crossTransferList.isEmpty()) {
-                    boolean rsProcess = processContractTxs(chain, ModuleE.CC.abbr, crossTransferList, null, true);
-                    if (rsProcess) {
-                        logger.error("contract tx cross-chain module verify fail.");
-                        throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                if (!scNewConsensusList.isEmpty() || !scNewTokenCrossTransferList.isEmpty()) {
+                    //收集共识模块/跨链模块所有交易, 加上新产生的智能合约共识交易，一起再次进行模块统一验证
+                    List<String> consensusList = new ArrayList<>();
+                    List<String> crossTransferList = new ArrayList<>();
+                    int txType;
+                    for (TxVerifyWrapper txVerifyWrapper : txList) {
+                        Transaction tx = txVerifyWrapper.getTx();
+                        txType = tx.getType();
+                        // 区块中的包含了智能合约生成的共识交易，不重复添加
+                        if (txType == TxType.CONTRACT_CREATE_AGENT
+                                || txType == TxType.CONTRACT_DEPOSIT
+                                || txType == TxType.CONTRACT_CANCEL_DEPOSIT
+                                || txType == TxType.CONTRACT_STOP_AGENT) {
+                            continue;
+                        }
+                        TxRegister txRegister = TxManager.getTxRegister(chain, tx.getType());
+                        if (txRegister.getModuleCode().equals(ModuleE.CS.abbr)) {
+                            consensusList.add(txVerifyWrapper.getTxStr());
+                        }
+                        if (txRegister.getModuleCode().equals(ModuleE.CC.abbr)) {
+                            crossTransferList.add(txVerifyWrapper.getTxStr());
+                        }
                     }
-                }
-            }
-            //验证智能合约gas返回的交易hex 是否正确.打包时返回的交易是加入到区块交易的队尾
-            int size = contractGenerateTxs.size();
-            if (size > 0) {
-                int txSize = txStrList.size();
-                String scNewTxHex = null;
-                int returnGasIndex = -1;
-                for (int i = size - 1; i >= 0; i--) {
-                    String hex = contractGenerateTxs.get(i);
-                    int txType = TxUtil.extractTxTypeFromTx(hex);
-                    if (txType == TxType.CONTRACT_RETURN_GAS) {
-                        scNewTxHex = hex;
-                        returnGasIndex = i;
-                        break;
+                    consensusList.addAll(scNewConsensusList);
+                    crossTransferList.addAll(scNewTokenCrossTransferList);
+                    if (!consensusList.isEmpty()) {
+                        boolean rsProcess = processContractTxs(chain, ModuleE.CS.abbr, consensusList, null, true);
+                        if (rsProcess) {
+                            logger.error("contract tx consensus module verify fail.");
+                            throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                        }
+                    }
+                    if (!crossTransferList.isEmpty()) {
+                        boolean rsProcess = processContractTxs(chain, ModuleE.CC.abbr, crossTransferList, null, true);
+                        if (rsProcess) {
+                            logger.error("contract tx cross-chain module verify fail.");
+                            throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                        }
                     }
                 }
-                if (scNewTxHex != null) {
-                    String receivedScNewTxHex = null;
-                    boolean rs = false;
-                    for (int i = txSize - 1; i >= 0; i--) {
-                        String txHex = txStrList.get(i);
-                        int txType = TxUtil.extractTxTypeFromTx(txHex);
+                //验证智能合约gas返回的交易hex 是否正确.打包时返回的交易是加入到区块交易的队尾
+                int size = contractGenerateTxs.size();
+                if (size > 0) {
+                    int txSize = txStrList.size();
+                    String scNewTxHex = null;
+                    int returnGasIndex = -1;
+                    for (int i = size - 1; i >= 0; i--) {
+                        String hex = contractGenerateTxs.get(i);
+                        int txType = TxUtil.extractTxTypeFromTx(hex);
                         if (txType == TxType.CONTRACT_RETURN_GAS) {
-                            receivedScNewTxHex = txHex;
-                            if (txHex.equals(scNewTxHex)) {
-                                rs = true;
-                            }
+                            scNewTxHex = hex;
+                            returnGasIndex = i;
                             break;
                         }
                     }
-                    if (!rs) {
-                        logger.error("contract error.生成的合约gas返还交易:{}, - 收到的合约gas返还交易：{}", scNewTxHex, receivedScNewTxHex);
-                        throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
-                    }
-                    //返回智能合约交易给区块
-                    if (returnGasIndex != -1) {
-                        contractGenerateTxs.remove(returnGasIndex);
+                    if (scNewTxHex != null) {
+                        String receivedScNewTxHex = null;
+                        boolean rs = false;
+                        for (int i = txSize - 1; i >= 0; i--) {
+                            String txHex = txStrList.get(i);
+                            int txType = TxUtil.extractTxTypeFromTx(txHex);
+                            if (txType == TxType.CONTRACT_RETURN_GAS) {
+                                receivedScNewTxHex = txHex;
+                                if (txHex.equals(scNewTxHex)) {
+                                    rs = true;
+                                }
+                                break;
+                            }
+                        }
+                        if (!rs) {
+                            logger.error("contract error.生成的合约gas返还交易:{}, - 收到的合约gas返还交易：{}", scNewTxHex, receivedScNewTxHex);
+                            throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
+                        }
+                        //返回智能合约交易给区块
+                        if (returnGasIndex != -1) {
+                            contractGenerateTxs.remove(returnGasIndex);
+                        }
+                    } else {
+                        if (null != scReturnGas) {
+                            throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
+                        }
                     }
                 } else {
                     if (null != scReturnGas) {
                         throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
                     }
                 }
-            } else {
-                if (null != scReturnGas) {
-                    throw new NulsException(TxErrorCode.EXIST_GAS_RETURN_WITHOUT_SC_RETURN);
+            }
+            //stateRoot发到共识,处理完再比较
+            String coinBaseTx = null;
+            for (TxVerifyWrapper txVerifyWrapper : txList) {
+                Transaction tx = txVerifyWrapper.getTx();
+                if (tx.getType() == TxType.COIN_BASE) {
+                    coinBaseTx = txVerifyWrapper.getTxStr();
+                    break;
                 }
             }
-        }
-        //stateRoot发到共识,处理完再比较
-        String coinBaseTx = null;
-        for (TxVerifyWrapper txVerifyWrapper : txList) {
-            Transaction tx = txVerifyWrapper.getTx();
-            if (tx.getType() == TxType.COIN_BASE) {
-                coinBaseTx = txVerifyWrapper.getTxStr();
-                break;
+            String stateRootNew = ConsensusCall.triggerCoinBaseContract(chain, coinBaseTx, blockHeaderStr, scStateRoot);
+            String stateRoot = RPCUtil.encode(blockHeader.getExtendsData().getStateRoot());
+            if (!stateRoot.equals(stateRootNew)) {
+                logger.warn("contract stateRoot error.");
+                throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
             }
-        }
-        String stateRootNew = ConsensusCall.triggerCoinBaseContract(chain, coinBaseTx, blockHeaderStr, scStateRoot);
-        String stateRoot = RPCUtil.encode(blockHeader.getExtendsData().getStateRoot());
-        if (!stateRoot.equals(stateRootNew)) {
-            logger.warn("contract stateRoot error.");
-            throw new NulsException(TxErrorCode.CONTRACT_VERIFY_FAIL);
-        }
 
-        //多线程处理结果
-        try {
-            for (Future<Boolean> future : futures) {
-                if (!future.get()) {
-                    logger.error("batchVerify failed, single tx verify failed");
-                    throw new NulsException(TxErrorCode.TX_VERIFY_FAIL);
-                }
-            }
-        } catch (InterruptedException e) {
-            logger.error(e);
-            throw new NulsException(TxErrorCode.SYS_UNKOWN_EXCEPTION);
-        } catch (ExecutionException e) {
-            logger.error(e);
-            throw new NulsException(TxErrorCode.SYS_UNKOWN_EXCEPTION);
-        }
+            //多线程处理结果
+            verifyBaseResult(chain, baseFutures);
+            stageTime.put(STAGE_TOTAL, NulsDateUtils.getCurrentTimeMillis() - s1);
+            chain.setBlockVerifyStageTime(stageTime);
+            logger.info("[验区块交易] 各阶段耗时:{}", stageTime);
 
-        if (logger.isDebugEnabled()) {
-            logger.debug("[验区块交易] 合计执行时间:{}, - 高度:{} - 区块交易数:{}" + TxUtil.nextLine(),
-                    NulsDateUtils.getCurrentTimeMillis() - s1, blockHeight, txStrList.size());
+            if (logger.isDebugEnabled()) {
+                logger.debug("[验区块交易] 合计执行时间:{}, - 高度:{} - 区块交易数:{}" + TxUtil.nextLine(),
+                        NulsDateUtils.getCurrentTimeMillis() - s1, blockHeight, txStrList.size());
+            }
+            Map<String, Object> resultMap = new HashMap<>(TxConstant.INIT_CAPACITY_4);
+            resultMap.put("value", true);
+            resultMap.put("contractList", contractGenerateTxs);
+            return resultMap;
+        } finally {
+            //验证中途失败时不留下仍在运行的验证 / no verification is left running when it fails half way
+            finishVerify(coinDataFuture, baseFutures, moduleFutures);
         }
-        Map<String, Object> resultMap = new HashMap<>(TxConstant.INIT_CAPACITY_4);
-        resultMap.put("value", true);
-        resultMap.put("contractList", contractGenerateTxs);
-        return resultMap;
     }
 
     private Map processContractResultV8(Chain chain, List<TxPackageWrapper> packingTxList, Set<TxPackageWrapper> orphanTxSet, List<String> contractGenerateTxs, List<String> originTxList,
@@ -23,9 +23,10 @@ public interface ConfirmedTxStorageService {
     boolean saveTx(int chainId, TransactionConfirmedPO tx);
 
     /**
-     * 批量保存交易
+     * 批量保存同一区块的交易, 按区块顺序写入, 并记录每笔交易hash对应的位置
+     * Save the transactions of one block in block order and index every hash to its location
      * @param chainId
-     * @param txList
+     * @param txList 同一区块的交易, 按在区块中的顺序 / transactions of one block, in block order
      * @return
      */
     boolean saveTxList(int chainId, List<TransactionConfirmedPO> txList);
@@ -104,4 +105,13 @@ public interface ConfirmedTxStorageService {
      */
     List<byte[]> getExistTxs(int chainId, List<byte[]> hashList);
 
+    /**
+     * 按区块顺序读取指定高度区块的所有交易(一次顺序范围读取)
+     * Read all transactions of the block at the given height in block order, with one sequential range scan
+     * @param chainId
+     * @param height
+     * @return 交易列表, 没有按区块顺序存储的数据时为空 / the transactions, empty when the block is not stored in block order
+     */
+    List<Transaction> getBlockTxList(int chainId, long height);
+
 }
@@ -90,12 +90,14 @@ public interface UnconfirmedTxStorageService {
     boolean removeTxList(int chainId, List<byte[]> hashList);
 
     /**
-     * 查询所有未确认交易的key
+     * 按key顺序分页查询未确认交易的key
      *
      * @param chainId
+     * @param lastKey 上一页最后一个key，为null时从头开始
+     * @param limit   本页最多返回的数量
      * @return
      */
-    List<byte[]> getAllTxkeyList(int chainId);
+    List<byte[]> getTxKeyList(int chainId, byte[] lastKey, int limit);
 
     /**
      * 查询未确认交易数据，包含保存时间
@@ -11,6 +11,8 @@ import io.nuls.core.exception.NulsException;
 import io.nuls.core.exception.NulsRuntimeException;
 import io.nuls.core.model.StringUtils;
 import io.nuls.core.parse.SerializeUtils;
+import io.nuls.core.rockdb.service.MultiTableBatchOperation;
+import io.nuls.core.rockdb.service.RocksDBCursor;
 import io.nuls.core.rockdb.service.RocksDBService;
 import io.nuls.transaction.constant.TxDBConstant;
 import io.nuls.transaction.constant.TxErrorCode;
@@ -30,6 +32,8 @@ import static io.nuls.transaction.utils.LoggerUtil.LOG;
 @Component
 public class ConfirmedTxStorageServiceImpl implements ConfirmedTxStorageService {
 
+    private static final int LOCATION_LENGTH = 12;
+
     @Override
     public boolean saveTx(int chainId, TransactionConfirmedPO tx) {
         if (tx == null) {
@@ -50,19 +54,29 @@ public class ConfirmedTxStorageServiceImpl implements ConfirmedTxStorageService
         if (null == txList || txList.size() == 0) {
             throw new NulsRuntimeException(TxErrorCode.PARAMETER_ERROR);
         }
-        Map<byte[], byte[]> txPoMap = new HashMap<>();
+        String hashTable = TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId;
+        String blockTable = TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + chainId;
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
         try {
-            for (TransactionConfirmedPO tx : txList) {
-                //序列化对象为byte数组存储
-                txPoMap.put(tx.getTx().getHash().getBytes(), tx.serialize());
+            //交易按区块顺序写入区块表, hash表只存放位置; 两张表不在同一实例时先写区块表, 中断后hash表中不会留下指向不存在交易的位置
+            //the block table is written before the hash table, so an interrupted save never leaves a location pointing nowhere
+            for (int i = 0; i < txList.size(); i++) {
+                TransactionConfirmedPO tx = txList.get(i);
+                batch.put(blockTable, location(tx.getBlockHeight(), i), tx.serialize());
+            }
+            for (int i = 0; i < txList.size(); i++) {
+                TransactionConfirmedPO tx = txList.get(i);
+                batch.put(hashTable, tx.getTx().getHash().getBytes(), location(tx.getBlockHeight(), i));
             }
-            return RocksDBService.batchPut(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId, txPoMap);
+            return batch.executeBatch();
         } catch (IOException e){
             LOG.error(e.getMessage());
             throw new NulsRuntimeException(TxErrorCode.DESERIALIZE_TX_ERROR);
         } catch (Exception e) {
             LOG.error(e.getMessage());
             throw new NulsRuntimeException(TxErrorCode.DB_SAVE_BATCH_ERROR);
+        } finally {
+            batch.close();
         }
     }
 
@@ -84,6 +98,9 @@ public class ConfirmedTxStorageServiceImpl implements ConfirmedTxStorageService
 
     private TransactionConfirmedPO getTx(int chainId, byte[] hashSerialize) {
         byte[] txBytes = RocksDBService.get(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId, hashSerialize);
+        if (isLocation(txBytes)) {
+            txBytes = RocksDBService.get(TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + chainId, txBytes);
+        }
         TransactionConfirmedPO tx = null;
         if (null != txBytes) {
             try {
@@ -98,24 +115,12 @@ public class ConfirmedTxStorageServiceImpl implements ConfirmedTxStorageService
 
     @Override
     public boolean removeTx(int chainId, String hash) {
-        boolean result = false;
-        try {
-            result = RocksDBService.delete(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId, HexUtil.decode(hash));
-        } catch (Exception e) {
-            LOG.error(e);
-        }
-        return result;
+        return removeTxListByHashBytes(chainId, Collections.singletonList(HexUtil.decode(hash)));
     }
 
     @Override
     public boolean removeTx(int chainId, NulsHash hash) {
-        boolean result = false;
-        try {
-            result = RocksDBService.delete(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId, hash.getBytes());
-        } catch (Exception e) {
-            LOG.error(e);
-        }
-        return result;
+        return removeTxListByHashBytes(chainId, Collections.singletonList(hash.getBytes()));
     }
 
     @Override
@@ -133,11 +138,27 @@ public class ConfirmedTxStorageServiceImpl implements ConfirmedTxStorageService
         if (hashList == null || hashList.size() == 0) {
             return false;
         }
+        String hashTable = TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId;
+        String blockTable = TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + chainId;
+        MultiTableBatchOperation batch = RocksDBService.createMultiTableWriteBatch();
         try {
-            //delete transaction
-            return RocksDBService.deleteKeys(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId, hashList);
+            //delete transaction, 先删除hash表再删除区块表中的交易 / the hash table first, then the transactions in the block table
+            List<byte[]> values = RocksDBService.multiGetAsList(hashTable, hashList);
+            for (byte[] hash : hashList) {
+                batch.delete(hashTable, hash);
+            }
+            if (values != null) {
+                for (byte[] value : values) {
+                    if (isLocation(value)) {
+                        batch.delete(blockTable, value);
+                    }
+                }
+            }
+            return batch.executeBatch();
         } catch (Exception e) {
             LOG.error(e);
+        } finally {
+            batch.close();
         }
         return false;
     }
@@ -198,15 +219,24 @@ public class ConfirmedTxStorageServiceImpl implements ConfirmedTxStorageService
             return null;
         }
         List<Transaction> txList = new ArrayList<>();
-        //根据交易hash批量查询交易数据
+        //根据交易hash批量查询交易数据, 新数据为交易在区块表中的位置, 再批量读取一次
         List<byte[]> list = RocksDBService.multiGetAsList(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId, hashList);
-        if (list != null) {
-            for (byte[] txBytes : list) {
-                try {
-                    TransactionConfirmedPO tx = TxUtil.getInstance(txBytes, TransactionConfirmedPO.class);
-                    txList.add(tx.getTx());
-                } catch (NulsException e) {
-                    LOG.error(e);
+        if (list == null) {
+            return txList;
+        }
+        List<byte[]> locations = new ArrayList<>();
+        for (byte[] value : list) {
+            if (isLocation(value)) {
+                locations.add(value);
+            } else {
+                addTx(txList, value);
+            }
+        }
+        if (!locations.isEmpty()) {
+            List<byte[]> blockList = RocksDBService.multiGetAsList(TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + chainId, locations);
+            if (blockList != null) {
+                for (byte[] txBytes : blockList) {
+                    addTx(txList, txBytes);
                 }
             }
         }
@@ -218,7 +248,62 @@ public class ConfirmedTxStorageServiceImpl implements ConfirmedTxStorageService
         if (hashList == null || hashList.size() == 0) {
             return null;
         }
-        //根据交易hash批量查询交易数据
-        return RocksDBService.multiGetAsList(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId, hashList);
+        //根据交易hash批量查询存在的key
+        return RocksDBService.multiGetKeyList(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + chainId, hashList);
+    }
+
+    @Override
+    public List<Transaction> getBlockTxList(int chainId, long height) {
+        List<Transaction> txList = new ArrayList<>();
+        byte[] prefix = new byte[8];
+        writeLong(prefix, height);
+        try (RocksDBCursor cursor = RocksDBService.prefixCursor(TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + chainId, prefix, false)) {
+            while (cursor.next()) {
+                addTx(txList, cursor.value());
+            }
+        } catch (Exception e) {
+            LOG.error(e);
+            return new ArrayList<>();
+        }
+        return txList;
+    }
+
+    private void addTx(List<Transaction> txList, byte[] txBytes) {
+        try {
+            TransactionConfirmedPO tx = TxUtil.getInstance(txBytes, TransactionConfirmedPO.class);
+            txList.add(tx.getTx());
+        } catch (NulsException e) {
+            LOG.error(e);
+        }
+    }
+
+    /**
+     * 交易在区块表中的位置: 8字节高度 + 4字节序号, 大端序, 按key排序即为区块顺序
+     * Location of a transaction in the block table: 8 byte height + 4 byte index, big endian,
+     * so the key order is the block order
+     */
+    private static byte[] location(long height, int index) {
+        byte[] location = new byte[LOCATION_LENGTH];
+        writeLong(location, height);
+        location[8] = (byte) (index >>> 24);
+        location[9] = (byte) (index >>> 16);
+        location[10] = (byte) (index >>> 8);
+        location[11] = (byte) index;
+        return location;
+    }
+
+    private static void writeLong(byte[] bytes, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * 旧数据直接存放交易, 长度必然大于位置的长度
+     * Legacy values hold the whole transaction and are always longer than a location
+     */
+    private static boolean isLocation(byte[] value) {
+        return null != value && value.length == LOCATION_LENGTH;
     }
 }
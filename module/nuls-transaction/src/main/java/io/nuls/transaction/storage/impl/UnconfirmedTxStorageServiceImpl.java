@@ -8,6 +8,7 @@ import io.nuls.core.crypto.HexUtil;
 import io.nuls.core.exception.NulsException;
 import io.nuls.core.exception.NulsRuntimeException;
 import io.nuls.core.model.StringUtils;
+import io.nuls.core.rockdb.service.RocksDBCursor;
 import io.nuls.core.rockdb.service.RocksDBService;
 import io.nuls.core.rpc.util.NulsDateUtils;
 import io.nuls.transaction.constant.TxDBConstant;
@@ -17,6 +18,7 @@ import io.nuls.transaction.model.po.TransactionUnconfirmedPO;
 import io.nuls.transaction.storage.UnconfirmedTxStorageService;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -173,8 +175,18 @@ public class UnconfirmedTxStorageServiceImpl implements UnconfirmedTxStorageServ
     }
 
     @Override
-    public List<byte[]> getAllTxkeyList(int chainId) {
-        return RocksDBService.keyList(TxDBConstant.DB_TRANSACTION_UNCONFIRMED_PREFIX + chainId);
+    public List<byte[]> getTxKeyList(int chainId, byte[] lastKey, int limit) {
+        List<byte[]> keyList = new ArrayList<>();
+        //末尾追加0x00即为lastKey之后的第一个key
+        byte[] startKey = lastKey == null ? null : Arrays.copyOf(lastKey, lastKey.length + 1);
+        try (RocksDBCursor cursor = RocksDBService.rangeCursor(TxDBConstant.DB_TRANSACTION_UNCONFIRMED_PREFIX + chainId, startKey, null, false)) {
+            while (keyList.size() < limit && cursor.next()) {
+                keyList.add(cursor.key());
+            }
+        } catch (Exception e) {
+            LOG.error(e);
+        }
+        return keyList;
     }
 
     @Override
@@ -63,11 +63,7 @@ public class ClearUnconfirmedTxProcessTask implements Runnable {
     }
 
     private void doTask(Chain chain) {
-        List<byte[]> txKeyList = unconfirmedTxStorageService.getAllTxkeyList(chain.getChainId());
-        if (txKeyList == null || txKeyList.size() == 0) {
-            return;
-        }
-        int count = processUnconfirmedTxs(txKeyList);
+        int count = processUnconfirmedTxs();
         chain.getLogger().info("[UnconfirmedTxProcessTask] Clean expire count: {}", count);
     }
 
@@ -81,23 +77,23 @@ public class ClearUnconfirmedTxProcessTask implements Runnable {
     }
 
     /**
-     * 过滤指定时间内过期的交易
+     * 分页遍历未确认交易，过滤指定时间内过期的交易
      *
-     * @param txKeyList
-     * @return expireTxList
+     * @return 清理的交易数
      */
-    private int processUnconfirmedTxs(List<byte[]> txKeyList) {
+    private int processUnconfirmedTxs() {
         int unconfirmedTxsCount = 0;
-        List<byte[]> queryList = new ArrayList<>();
-        for (int i = 0; i < txKeyList.size(); i++) {
-            queryList.add(txKeyList.get(i));
-            if (queryList.size() == 10000) {
-                unconfirmedTxsCount += processExpireTxs(queryList);
-                queryList.clear();
+        byte[] lastKey = null;
+        while (true) {
+            List<byte[]> queryList = unconfirmedTxStorageService.getTxKeyList(chain.getChainId(), lastKey, 10000);
+            if (queryList.isEmpty()) {
+                break;
             }
-        }
-        if(!queryList.isEmpty()){
             unconfirmedTxsCount += processExpireTxs(queryList);
+            if (queryList.size() < 10000) {
+                break;
+            }
+            lastKey = queryList.get(queryList.size() - 1);
         }
         return unconfirmedTxsCount;
     }
@@ -24,10 +24,13 @@
 
 package io.nuls.transaction.task;
 
+import io.nuls.base.data.CoinFrom;
 import io.nuls.base.data.Transaction;
 import io.nuls.core.constant.BaseConstant;
 import io.nuls.core.core.ioc.SpringLiteContext;
 import io.nuls.core.exception.NulsException;
+import io.nuls.core.thread.ThreadUtils;
+import io.nuls.core.thread.commom.NulsThreadFactory;
 import io.nuls.transaction.cache.PackablePool;
 import io.nuls.transaction.constant.TxConstant;
 import io.nuls.transaction.constant.TxErrorCode;
@@ -44,6 +47,9 @@ import io.nuls.transaction.utils.TxDuplicateRemoval;
 import io.nuls.transaction.utils.TxUtil;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Process new transactions broadcast by other nodes in the network
@@ -55,6 +61,8 @@ public class NetTxProcessTask implements Runnable {
     private PackablePool packablePool = SpringLiteContext.getBean(PackablePool.class);
     private UnconfirmedTxStorageService unconfirmedTxStorageService = SpringLiteContext.getBean(UnconfirmedTxStorageService.class);
     private TxService txService = SpringLiteContext.getBean(TxService.class);
+    private ExecutorService verifyExecutor = ThreadUtils.createThreadPool(TxConstant.NET_TX_VERIFY_THREAD_COUNT,
+            TxConstant.NET_TX_VERIFY_THREAD_COUNT, new NulsThreadFactory(TxConstant.NET_TX_VERIFY_THREAD));
     private Chain chain;
 
     public NetTxProcessTask(Chain chain) {
@@ -74,53 +82,49 @@ public class NetTxProcessTask implements Runnable {
     private void process() {
         while (true) {
             try {
-                if (chain.getUnverifiedQueue().isEmpty()) {
-                    Thread.sleep(3000L);
-                    continue;
-                }
                 if (chain.getProtocolUpgrade().get()) {
                     chain.getLogger().info("Protocol upgrade pause process new tx..");
                     Thread.sleep(10000L);
                     continue;
                 }
+                //阻塞等待新交易, 到达后立即处理 / block until a new transaction arrives and process it right away
+                TransactionNetPO first = chain.getUnverifiedQueue().poll(TxConstant.NET_TX_POLL_WAIT_TIME, TimeUnit.MILLISECONDS);
+                if (null == first) {
+                    continue;
+                }
                 List<TransactionNetPO> txNetList = new ArrayList<>(TxConstant.NET_TX_PROCESS_NUMBER_ONCE);
-                chain.getUnverifiedQueue().drainTo(txNetList, TxConstant.NET_TX_PROCESS_NUMBER_ONCE);
-                //分组 调验证器
-                Map<String, List<String>> moduleVerifyMap = new HashMap<>(TxConstant.INIT_CAPACITY_8);
+                txNetList.add(first);
+                chain.getUnverifiedQueue().drainTo(txNetList, TxConstant.NET_TX_PROCESS_NUMBER_ONCE - 1);
                 Iterator<TransactionNetPO> it = txNetList.iterator();
-                int packableTxMapDataSize = 0;
-                for(Transaction tx : chain.getPackableTxMap().values()){
-                    packableTxMapDataSize += tx.size();
-                }
                 while (it.hasNext()) {
-                    TransactionNetPO txNetPO = it.next();
-                    Transaction tx = txNetPO.getTx();
+                    Transaction tx = it.next().getTx();
                     //待打包队列map超过预定值,则不再接受处理交易,直接转发交易完整交易
-                    if (TxUtil.discardTx(chain, packableTxMapDataSize, tx)) {
+                    if (TxUtil.discardTx(chain, tx)) {
                         //待打包队列map超过预定值, 不处理转发失败的情况
-                        String hash = tx.getHash().toHex();
-                        NetworkCall.broadcastTx(chain, tx, TxDuplicateRemoval.getExcludeNode(hash));
+                        NetworkCall.broadcastTx(chain, tx, TxDuplicateRemoval.getExcludeNode(tx.getHash()));
                         it.remove();
-                        continue;
                     }
-                    TxUtil.moduleGroups(chain, moduleVerifyMap, tx);
+                }
+                //模块统一验证在整批交易上执行一次, 不同账户交易之间的冲突(如同一合约、别名、节点)由验证器检测
+                //the module validators run once on the whole batch, so they see conflicts between txs of different accounts
+                Map<String, List<String>> moduleVerifyMap = new HashMap<>(TxConstant.INIT_CAPACITY_8);
+                for (TransactionNetPO txNetPO : txNetList) {
+                    TxUtil.moduleGroups(chain, moduleVerifyMap, txNetPO.getTx());
                 }
                 verifiction(chain, moduleVerifyMap, txNetList);
-                verifyCoinData(chain, txNetList);
-                if (txNetList.isEmpty()) {
+                if (txNetList.size() < TxConstant.NET_TX_PARALLEL_MIN_NUMBER) {
+                    processShard(txNetList);
                     continue;
                 }
-                //保存到rocksdb
-                unconfirmedTxStorageService.putTxList(chain.getChainId(), txNetList);
-                for (TransactionNetPO txNet : txNetList) {
-                    Transaction tx = txNet.getTx();
-                    if (chain.getPackaging().get()) {
-                        //当节点是出块节点时, 才将交易放入待打包队列
-                        packablePool.add(chain, tx);
+                //按发送账户分片, 不同账户的交易并行进行账本验证, 同一账户的交易在同一分片中保持原有顺序
+                List<Future<?>> futures = new ArrayList<>(TxConstant.NET_TX_VERIFY_THREAD_COUNT);
+                for (List<TransactionNetPO> shard : partition(txNetList, TxConstant.NET_TX_VERIFY_THREAD_COUNT)) {
+                    if (!shard.isEmpty()) {
+                        futures.add(verifyExecutor.submit(() -> processShard(shard)));
                     }
-                    //网络交易不处理转发失败的情况
-                    String hash = tx.getHash().toHex();
-                    NetworkCall.forwardTxHash(chain, tx.getHash(), TxDuplicateRemoval.getExcludeNode(hash));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
                 }
             } catch (Exception e) {
                 chain.getLogger().error(e);
@@ -129,6 +133,100 @@ public class NetTxProcessTask implements Runnable {
     }
 
 
+    /**
+     * 账本验证一个分片的交易并保存到未确认库, 模块统一验证已在整批交易上完成
+     * Verify the coinData of the transactions of one shard and save them as unconfirmed,
+     * the module validation has already been done on the whole batch
+     */
+    private void processShard(List<TransactionNetPO> txNetList) {
+        try {
+            verifyCoinData(chain, txNetList);
+            if (txNetList.isEmpty()) {
+                return;
+            }
+            //保存到rocksdb
+            unconfirmedTxStorageService.putTxList(chain.getChainId(), txNetList);
+            for (TransactionNetPO txNet : txNetList) {
+                Transaction tx = txNet.getTx();
+                //唤醒依赖该交易的孤儿交易
+                chain.getOrphanPool().accepted(tx);
+                if (chain.getPackaging().get()) {
+                    //当节点是出块节点时, 才将交易放入待打包队列
+                    packablePool.add(chain, tx);
+                }
+                //网络交易不处理转发失败的情况
+                NetworkCall.forwardTxHash(chain, tx.getHash(), TxDuplicateRemoval.getExcludeNode(tx.getHash()));
+            }
+        } catch (Exception e) {
+            chain.getLogger().error(e);
+        }
+    }
+
+    /**
+     * 按发送账户把交易分到指定数量的分片中, 每个分片内保持原有顺序; 没有发送账户的交易按hash分片
+     * 多账户交易涉及的所有账户所在的分片合并为一个分片, 保证同一账户的交易总在同一分片中
+     * Split the transactions into the given number of shards by their sending accounts, keeping the original
+     * order inside every shard; transactions without a sender are split by hash.
+     * The shards of all the accounts of a multi-account transaction are merged (union-find), so the transactions
+     * of one account always end up in the same shard
+     */
+    static List<List<TransactionNetPO>> partition(List<TransactionNetPO> txNetList, int count) {
+        int[] parent = new int[count];
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+        int[] txIndexes = new int[txNetList.size()];
+        for (int i = 0; i < txNetList.size(); i++) {
+            List<byte[]> keys = shardKeys(txNetList.get(i).getTx());
+            int root = find(parent, shardIndex(keys.get(0), count));
+            for (int j = 1; j < keys.size(); j++) {
+                int other = find(parent, shardIndex(keys.get(j), count));
+                if (other != root) {
+                    parent[other] = root;
+                }
+            }
+            txIndexes[i] = root;
+        }
+        List<List<TransactionNetPO>> shards = new ArrayList<>(count);
+        int capacity = txNetList.size() / count + 1;
+        for (int i = 0; i < count; i++) {
+            shards.add(new ArrayList<>(capacity));
+        }
+        for (int i = 0; i < txNetList.size(); i++) {
+            shards.get(find(parent, txIndexes[i])).add(txNetList.get(i));
+        }
+        return shards;
+    }
+
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    private static List<byte[]> shardKeys(Transaction tx) {
+        List<byte[]> keys = new ArrayList<>();
+        try {
+            if (null != tx.getCoinData()) {
+                for (CoinFrom from : tx.getCoinDataInstance().getFrom()) {
+                    keys.add(from.getAddress());
+                }
+            }
+        } catch (NulsException e) {
+            //coinData无法解析的交易按hash分片, 由后续验证处理
+        }
+        if (keys.isEmpty()) {
+            keys.add(tx.getHash().getBytes());
+        }
+        return keys;
+    }
+
+    private static int shardIndex(byte[] key, int count) {
+        return (Arrays.hashCode(key) & Integer.MAX_VALUE) % count;
+    }
+
     private void verifiction(Chain chain, Map<String, List<String>> moduleVerifyMap, List<TransactionNetPO> txNetList) {
         Iterator<Map.Entry<String, List<String>>> it = moduleVerifyMap.entrySet().iterator();
         while (it.hasNext()) {
@@ -139,8 +237,9 @@ public class NetTxProcessTask implements Runnable {
             try {
                 txHashList = TransactionCall.txModuleValidator(chain, moduleCode, moduleList);
             } catch (NulsException e) {
-                chain.getLogger().error("Net new tx verify failed -txModuleValidator Exception:{}, module-code:{}, count:{} , return count:{}",
-                        BaseConstant.TX_VALIDATOR, moduleCode, moduleList.size(), txHashList.size());
+                chain.getLogger().error("Net new tx verify failed -txModuleValidator Exception:{}, module-code:{}, count:{}",
+                        BaseConstant.TX_VALIDATOR, moduleCode, moduleList.size());
+                chain.getLogger().error(e);
                 //出错则删掉整个模块的交易
                 Iterator<TransactionNetPO> its = txNetList.iterator();
                 while (its.hasNext()) {
@@ -201,20 +300,10 @@ public class NetTxProcessTask implements Runnable {
                 for (String hash : orphanHashs) {
                     String hashStr = tx.getHash().toHex();
                     if (hash.equals(hashStr)) {
-                        //孤儿交易
-                        List<TransactionNetPO> chainOrphan = chain.getOrphanList();
-                        //孤儿交易集合数据总大小
-                        if (chain.getOrphanListDataSize().get() >= TxConstant.ORPHAN_LIST_MAX_DATA_SIZE) {
-                            it.remove();
-                            break;
-                        } else {
-                            synchronized (chainOrphan) {
-                                chainOrphan.add(transactionNetPO);
-                                chain.getOrphanListDataSize().addAndGet(transactionNetPO.getTx().size());
-                            }
-                            it.remove();
-                            continue removeAndGo;
-                        }
+                        //孤儿交易放入孤儿交易池, 池满时淘汰最早的孤儿交易
+                        chain.getOrphanPool().add(transactionNetPO, System.currentTimeMillis());
+                        it.remove();
+                        continue removeAndGo;
                     }
                 }
             }
@@ -27,28 +27,26 @@ package io.nuls.transaction.task;
 import io.nuls.base.RPCUtil;
 import io.nuls.base.data.Transaction;
 import io.nuls.core.core.ioc.SpringLiteContext;
-import io.nuls.core.exception.NulsException;
-import io.nuls.core.rpc.util.NulsDateUtils;
+import io.nuls.transaction.cache.OrphanPool;
 import io.nuls.transaction.cache.PackablePool;
-import io.nuls.transaction.constant.TxErrorCode;
+import io.nuls.transaction.constant.TxConstant;
 import io.nuls.transaction.model.bo.Chain;
-import io.nuls.transaction.model.bo.Orphans;
 import io.nuls.transaction.model.bo.VerifyLedgerResult;
 import io.nuls.transaction.model.po.TransactionNetPO;
 import io.nuls.transaction.rpc.call.LedgerCall;
 import io.nuls.transaction.rpc.call.NetworkCall;
 import io.nuls.transaction.service.TxService;
 import io.nuls.transaction.storage.UnconfirmedTxStorageService;
-import io.nuls.transaction.utils.OrphanSort;
 import io.nuls.transaction.utils.TxDuplicateRemoval;
 import io.nuls.transaction.utils.TxUtil;
 
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 /**
+ * 孤儿交易处理: 前序交易被接收后立即处理依赖它的孤儿交易, 其余孤儿交易按各自的重试时间处理
+ * Orphan processing: the orphans depending on an accepted transaction are processed right away,
+ * the others when their retry time comes
+ *
  * @author: Charlie
  * @date: 2019/4/26
  */
@@ -62,8 +60,6 @@ public class OrphanTxProcessTask implements Runnable {
     private TxService txService = SpringLiteContext.getBean(TxService.class);
     private UnconfirmedTxStorageService unconfirmedTxStorageService = SpringLiteContext.getBean(UnconfirmedTxStorageService.class);
 
-    private OrphanSort orphanSort = SpringLiteContext.getBean(OrphanSort.class);
-
     public OrphanTxProcessTask(Chain chain) {
         this.chain = chain;
     }
@@ -71,69 +67,56 @@ public class OrphanTxProcessTask implements Runnable {
     @Override
     public void run() {
         try {
-            doOrphanTxTask(chain);
+            process();
         } catch (Exception e) {
             chain.getLogger().error("OrphanTxProcessTask Exception");
             chain.getLogger().error(e);
         }
     }
 
-
-    private void doOrphanTxTask(Chain chain) throws NulsException {
-        if(chain.getProtocolUpgrade().get()){
-            chain.getLogger().info("Protocol upgrade pause process orphan tx..");
-            return;
-        }
-        List<TransactionNetPO> chainOrphan = chain.getOrphanList();
-        if (chainOrphan.size() == 0) {
-            return;
-        }
-        //把孤儿交易list的交易全部取出来，然后清空；如果有验不过的 再加回去,避免阻塞新的孤儿交易的加入
-        List<TransactionNetPO> orphanTxList = new LinkedList<>();
-        synchronized (chainOrphan) {
-            orphanTxList.addAll(chainOrphan);
-            chainOrphan.clear();
-        }
-        try {
-            //孤儿排序
-            orphanSort.rank(orphanTxList);
-            boolean flag = true;
-            while (flag) {
-                flag = process(orphanTxList);
-            }
-        } catch (RuntimeException e) {
-            chain.getLogger().error("[OrphanTxProcessTask] RuntimeException:{}", e.getMessage());
-            throw new NulsException(TxErrorCode.SYS_UNKOWN_EXCEPTION);
-        } finally {
-            if (orphanTxList.size() > 0) {
-                synchronized (chainOrphan) {
-                    chainOrphan.addAll(orphanTxList);
-                    int size = chainOrphan.size();
-                    chain.getLogger().debug("[OrphanTxProcessTask] OrphanTxList size:{}", size);
+    private void process() {
+        OrphanPool orphanPool = chain.getOrphanPool();
+        while (true) {
+            try {
+                if (chain.getProtocolUpgrade().get()) {
+                    chain.getLogger().info("Protocol upgrade pause process orphan tx..");
+                    Thread.sleep(10000L);
+                    continue;
                 }
+                //前序交易被接收后立即唤醒 / woken up as soon as a predecessor is accepted
+                TransactionNetPO ready = orphanPool.pollReady(TxConstant.ORPHAN_POLL_WAIT_TIME);
+                if (null != ready) {
+                    processOrphan(orphanPool, ready);
+                }
+                List<TransactionNetPO> dueList = orphanPool.pollDue(System.currentTimeMillis());
+                for (TransactionNetPO txNet : dueList) {
+                    processOrphan(orphanPool, txNet);
+                }
+                if (!dueList.isEmpty()) {
+                    chain.getLogger().debug("[OrphanTxProcessTask] retry:{}, orphan pool size:{}", dueList.size(), orphanPool.size());
+                }
+            } catch (InterruptedException e) {
+                chain.getLogger().error(e);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                chain.getLogger().error(e);
             }
-            chain.getLogger().debug("处理完成，当前孤儿交易总数chainOrphan:{}", chainOrphan.size());
         }
     }
 
-    private boolean process(List<TransactionNetPO> orphanTxList) {
-        boolean flag = false;
-        Iterator<TransactionNetPO> it = orphanTxList.iterator();
-        while (it.hasNext()) {
-            //协议升级,终止此次处理
-            if(chain.getProtocolUpgrade().get()){
-                return false;
-            }
-            TransactionNetPO txNet = it.next();
-            boolean rs = processOrphanTx(chain, txNet);
-            if (rs) {
-                chain.getOrphanListDataSize().addAndGet(Math.negateExact(txNet.getTx().size()));
-                it.remove();
-                //有孤儿交易被处理
-                flag = true;
-            }
+    /**
+     * 仍是孤儿交易的放回孤儿交易池, 等待下次重试
+     * A transaction that is still an orphan goes back to the pool to wait for its next retry
+     */
+    private void processOrphan(OrphanPool orphanPool, TransactionNetPO txNet) {
+        //协议升级时不处理, 放回孤儿交易池 / put it back while the protocol is upgrading
+        if (chain.getProtocolUpgrade().get() || !processOrphanTx(chain, txNet)) {
+            txNet.setOrphanRetryCount(txNet.getOrphanRetryCount() + 1);
+            orphanPool.add(txNet, System.currentTimeMillis());
+        } else {
+            orphanPool.processed(txNet);
         }
-        return flag;
     }
 
     /**
@@ -152,14 +135,9 @@ public class OrphanTxProcessTask implements Runnable {
                 return true;
             }
             //待打包队列map超过预定值,则不再接受处理交易,直接转发交易完整交易
-            int packableTxMapDataSize = 0;
-            for(Transaction transaction : chain.getPackableTxMap().values()){
-                packableTxMapDataSize += transaction.size();
-            }
-            if(TxUtil.discardTx(chain, packableTxMapDataSize, tx)){
+            if(TxUtil.discardTx(chain, tx)){
                 //待打包队列map超过预定值, 不处理转发失败的情况
-                String hash = tx.getHash().toHex();
-                NetworkCall.broadcastTx(chain, tx, TxDuplicateRemoval.getExcludeNode(hash));
+                NetworkCall.broadcastTx(chain, tx, TxDuplicateRemoval.getExcludeNode(tx.getHash()));
                 return true;
             }
             VerifyLedgerResult verifyLedgerResult = LedgerCall.commitUnconfirmedTx(chain, RPCUtil.encode(tx.serialize()));
@@ -169,9 +147,10 @@ public class OrphanTxProcessTask implements Runnable {
                     packablePool.add(chain, tx);
                 }
                 unconfirmedTxStorageService.putTx(chainId, tx);
+                //唤醒依赖该交易的孤儿交易
+                chain.getOrphanPool().accepted(tx);
                 //转发交易hash,网络交易不处理转发失败的情况
-                String hash = tx.getHash().toHex();
-                NetworkCall.forwardTxHash(chain, tx.getHash(), TxDuplicateRemoval.getExcludeNode(hash));
+                NetworkCall.forwardTxHash(chain, tx.getHash(), TxDuplicateRemoval.getExcludeNode(tx.getHash()));
                 return true;
             }
             if (!verifyLedgerResult.getSuccess()) {
@@ -180,56 +159,12 @@ public class OrphanTxProcessTask implements Runnable {
                         verifyLedgerResult.getErrorCode() == null ? "" : verifyLedgerResult.getErrorCode().getCode(), tx.getType(), tx.getHash().toHex());
                 return true;
             }
-            long currentTimeSeconds = NulsDateUtils.getCurrentTimeSeconds();
-            //超过指定时间仍旧是孤儿交易，则删除
-            boolean rs = tx.getTime() < (currentTimeSeconds - (chain.getConfig().getOrphanTtl()));
-            return rs;
+            //交易时间或进入孤儿交易池的时间超过指定时间仍旧是孤儿交易，则删除
+            return OrphanPool.isExpired(txNet, System.currentTimeMillis(), chain.getConfig().getOrphanTtl());
         } catch (Exception e) {
             chain.getLogger().error(e);
             return false;
         }
     }
 
-
-    private boolean orphanTxTask(Chain chain) throws NulsException {
-        Map<String, Orphans> map = chain.getOrphanMap();
-
-        Iterator<Map.Entry<String, Orphans>> it = map.entrySet().iterator();
-        boolean rs = false;
-        while (it.hasNext()) {
-            Map.Entry<String, Orphans> entry = it.next();
-            Orphans orphans = entry.getValue();
-
-            boolean isRemove = false;
-            //处理一个孤儿交易串
-            Orphans currentOrphan = orphans;
-            while (null != currentOrphan) {
-                if (processOrphanTx(chain, currentOrphan.getTx())) {
-                    /**
-                     * 只要map中的孤儿交易通过了,则从map中删除该元素,
-                     * 同一个串中后续没有验证通过的则放弃，能在一个串中说明不会再试孤儿，其他原因验不过的则丢弃,
-                     * 孤儿map中只存有一个孤儿串的第一个Orphans
-                     */
-                    if (!isRemove) {
-                        isRemove = true;
-                    }
-                    if (null != currentOrphan.getNext()) {
-                        currentOrphan = currentOrphan.getNext();
-                        continue;
-                    }
-                }
-                currentOrphan = null;
-            }
-            if (isRemove) {
-                it.remove();
-                rs = true;
-            }
-        }
-        int size = map.size();
-        if (size > 0) {
-            chain.getLogger().debug("** 孤儿交易串数量：{} ", map.size());
-        }
-        return rs;
-    }
-
 }
@@ -0,0 +1,137 @@
+package io.nuls.transaction.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 交易hash去重过滤器
+ * 以hash的前8个字节作为指纹, 存放在开放寻址的long数组中, 插入通过CAS完成不需要加锁;
+ * 分新旧两代, 新一代存满后旧一代被丢弃, 新一代变为旧一代, 始终保留最近的maxSize/2 ~ maxSize个hash
+ * <p>
+ * Duplicate filter for transaction hashes.
+ * The first 8 bytes of the hash are kept as a fingerprint in open-addressed long arrays and inserted by CAS without locking.
+ * There are two generations, when the current one is full the old one is dropped and the current one becomes the old one,
+ * so the latest maxSize/2 to maxSize hashes are always remembered
+ */
+public class HashDuplicateFilter {
+
+    private static final long EMPTY = 0L;
+
+    private final int generationSize;
+
+    private final int tableSize;
+
+    private volatile Generation current;
+
+    private volatile Generation previous;
+
+    /**
+     * @param maxSize 最多记住的hash数 / the maximum number of hashes remembered
+     */
+    public HashDuplicateFilter(int maxSize) {
+        this.generationSize = Math.max(1, maxSize / 2);
+        //装载率不超过1/2 / load factor at most 1/2
+        int size = Integer.highestOneBit(generationSize * 2 - 1) << 1;
+        this.tableSize = Math.max(size, 16);
+        this.current = new Generation(tableSize);
+        this.previous = new Generation(tableSize);
+    }
+
+    /**
+     * 加入，返回false则表示已存在
+     * Insert the hash, false means it already exists
+     */
+    public boolean insertAndCheck(byte[] hash) {
+        long fingerprint = fingerprint(hash);
+        Generation previous = this.previous;
+        Generation current = this.current;
+        if (previous.contains(fingerprint)) {
+            return false;
+        }
+        if (!current.insert(fingerprint)) {
+            return false;
+        }
+        if (current.count.incrementAndGet() >= generationSize) {
+            rotate(current);
+        }
+        return true;
+    }
+
+    public boolean contains(byte[] hash) {
+        long fingerprint = fingerprint(hash);
+        return current.contains(fingerprint) || previous.contains(fingerprint);
+    }
+
+    /**
+     * 只在一代存满时调用, 同一代只会轮换一次
+     * Only called when a generation is full, every generation is rotated once
+     */
+    private synchronized void rotate(Generation full) {
+        if (current != full) {
+            return;
+        }
+        previous = full;
+        current = new Generation(tableSize);
+    }
+
+    private static long fingerprint(byte[] hash) {
+        long value = 0L;
+        int length = Math.min(8, hash.length);
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (hash[i] & 0xFF);
+        }
+        return value == EMPTY ? 1L : value;
+    }
+
+    private static class Generation {
+        private final AtomicLongArray table;
+        private final int mask;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Generation(int size) {
+            this.table = new AtomicLongArray(size);
+            this.mask = size - 1;
+        }
+
+        /**
+         * @return 是否为新加入 / whether the fingerprint is new
+         */
+        private boolean insert(long fingerprint) {
+            int index = index(fingerprint);
+            for (int i = 0; i <= mask; i++) {
+                long value = table.get(index);
+                if (value == EMPTY) {
+                    if (table.compareAndSet(index, EMPTY, fingerprint)) {
+                        return true;
+                    }
+                    value = table.get(index);
+                }
+                if (value == fingerprint) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            //表已满, 不会出现, 当作新hash处理 / the table is full, which does not happen, treat it as new
+            return true;
+        }
+
+        private boolean contains(long fingerprint) {
+            int index = index(fingerprint);
+            for (int i = 0; i <= mask; i++) {
+                long value = table.get(index);
+                if (value == EMPTY) {
+                    return false;
+                }
+                if (value == fingerprint) {
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        private int index(long fingerprint) {
+            return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        }
+    }
+}
@@ -24,11 +24,12 @@
 
 package io.nuls.transaction.utils;
 
-import io.nuls.core.crypto.HexUtil;
+import io.nuls.base.data.NulsHash;
+import io.nuls.core.model.ByteArrayWrapper;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author: Charlie
@@ -36,10 +37,10 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class TxDuplicateRemoval {
 
-    private static HashSetDuplicateProcessor processorOfTx = new HashSetDuplicateProcessor(1000000);
+    private static HashDuplicateFilter processorOfTx = new HashDuplicateFilter(1000000);
 
-    public static boolean exist(String hash) {
-        return processorOfTx.contains(hash);
+    public static boolean exist(NulsHash hash) {
+        return processorOfTx.contains(hash.getBytes());
     }
 
     /**
@@ -47,50 +48,117 @@ public class TxDuplicateRemoval {
      * @param hash
      * @return
      */
-    public static boolean insertAndCheck(String hash) {
-        return processorOfTx.insertAndCheck(hash);
+    public static boolean insertAndCheck(NulsHash hash) {
+        return processorOfTx.insertAndCheck(hash.getBytes());
     }
 
     /**
-     * 记录向本节点发送完整交易的其他网络节点，转发hash时排除掉
+     * 每个交易最多记录的排除节点数, 超过后不再记录
+     * Maximum number of exclude nodes recorded per transaction, more are ignored
+     */
+    private static final int MAX_EXCLUDE_NODES = 16;
+
+    /**
+     * 分段数, 按hash分到不同分段, 各分段独立加锁
+     * Number of segments, hashes are spread over segments which are locked independently
      */
-    private static Map<String, StringBuffer> forwardHashExcludeNodesMap = new ConcurrentHashMap<>();
+    private static final int SEGMENTS = 16;
 
     /**
-     * 超过指定数量则清理
+     * 最多记录的交易数, 超过后淘汰最久未使用的
+     * Maximum number of transactions recorded, the least recently used are evicted beyond it
      */
     private static int maxSize = 20000;
 
-    public static void putExcludeNode(String hash, String newExcludeNode){
-        if(forwardHashExcludeNodesMap.size() >= maxSize){
-            forwardHashExcludeNodesMap.clear();
+    /**
+     * 记录向本节点发送完整交易的其他网络节点，转发hash时排除掉
+     */
+    private static final ExcludeNodeSegment[] forwardHashExcludeNodes = new ExcludeNodeSegment[SEGMENTS];
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++) {
+            forwardHashExcludeNodes[i] = new ExcludeNodeSegment(maxSize / SEGMENTS);
         }
-        StringBuffer excludeNodes = forwardHashExcludeNodesMap.putIfAbsent(hash, new StringBuffer(newExcludeNode));
-        if(null != excludeNodes){
-            excludeNodes.append(",").append(newExcludeNode);
-            forwardHashExcludeNodesMap.put(hash, excludeNodes);
+    }
+
+    public static void putExcludeNode(NulsHash hash, String newExcludeNode){
+        ExcludeNodeSegment segment = segment(hash.getBytes());
+        synchronized (segment) {
+            ByteArrayWrapper key = new ByteArrayWrapper(hash.getBytes());
+            String[] excludeNodes = segment.get(key);
+            if (null == excludeNodes) {
+                segment.put(key, new String[]{newExcludeNode});
+                return;
+            }
+            if (excludeNodes.length >= MAX_EXCLUDE_NODES) {
+                return;
+            }
+            for (String node : excludeNodes) {
+                if (node.equals(newExcludeNode)) {
+                    return;
+                }
+            }
+            String[] nodes = new String[excludeNodes.length + 1];
+            System.arraycopy(excludeNodes, 0, nodes, 0, excludeNodes.length);
+            nodes[excludeNodes.length] = newExcludeNode;
+            segment.put(key, nodes);
         }
     }
 
-    public static String getExcludeNode(String hash){
-        StringBuffer excludeNodes = forwardHashExcludeNodesMap.get(hash);
+    public static String getExcludeNode(NulsHash hash){
+        ExcludeNodeSegment segment = segment(hash.getBytes());
+        String[] excludeNodes;
+        synchronized (segment) {
+            excludeNodes = segment.get(new ByteArrayWrapper(hash.getBytes()));
+        }
         if(null != excludeNodes){
-            return excludeNodes.toString();
+            return String.join(",", excludeNodes);
         }
         return null;
     }
 
-    public static void removeExcludeNode(String hash){
-        forwardHashExcludeNodesMap.remove(hash);
+    public static void removeExcludeNode(byte[] hash){
+        ExcludeNodeSegment segment = segment(hash);
+        synchronized (segment) {
+            segment.remove(new ByteArrayWrapper(hash));
+        }
     }
 
     public static void removeExcludeNode(List<byte[]> hashs){
         for(byte[] hash : hashs){
-            forwardHashExcludeNodesMap.remove(HexUtil.encode(hash));
+            removeExcludeNode(hash);
         }
     }
 
     public static int sizeExcludeNode(){
-        return forwardHashExcludeNodesMap.size();
+        int size = 0;
+        for (ExcludeNodeSegment segment : forwardHashExcludeNodes) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private static ExcludeNodeSegment segment(byte[] hash) {
+        return forwardHashExcludeNodes[(hash[hash.length - 1] & 0xFF) % SEGMENTS];
+    }
+
+    /**
+     * 按访问顺序淘汰的分段, 调用方持有分段锁
+     * Segment evicting in access order, callers hold the segment lock
+     */
+    private static class ExcludeNodeSegment extends LinkedHashMap<ByteArrayWrapper, String[]> {
+        private final int capacity;
+
+        private ExcludeNodeSegment(int capacity) {
+            super(capacity * 4 / 3 + 1, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteArrayWrapper, String[]> eldest) {
+            return size() > capacity;
+        }
     }
 }
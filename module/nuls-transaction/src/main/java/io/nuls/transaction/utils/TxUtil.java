@@ -44,6 +44,7 @@ import io.nuls.transaction.rpc.call.AccountCall;
 
 import java.io.UnsupportedEncodingException;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static io.nuls.transaction.utils.LoggerUtil.LOG;
 
@@ -341,14 +342,15 @@ public class TxUtil {
 
 
     /**
-     * 根据待打包队列存交易的map交易的数据总和, 来计算是放弃当前交易
+     * 根据待打包池中交易的数据总和(增量维护, 不需要遍历), 来计算是放弃当前交易
+     * Decide whether to discard the transaction by the total data size of the packable pool (maintained incrementally)
      *
      * @return
      */
-    public static boolean discardTx(Chain chain, int packableTxMapDataSize, Transaction tx) {
-        Random random = new Random();
+    public static boolean discardTx(Chain chain, Transaction tx) {
+        long packableTxMapDataSize = chain.getMempool().getTxDataSize();
         //随机0~9
-        int number = random.nextInt(10);
+        int number = ThreadLocalRandom.current().nextInt(10);
         if (packableTxMapDataSize >= TxConstant.PACKABLE_TX_MAP_MAX_DATA_SIZE) {
             //扔100%
             chain.getLogger().debug("Packable pool tx data size reach the 100% discard transaction threshold, hash:{}", tx.getHash().toHex());
@@ -0,0 +1,152 @@
+package io.nuls.transaction.cache;
+
+import io.nuls.base.data.CoinData;
+import io.nuls.base.data.CoinFrom;
+import io.nuls.base.data.Transaction;
+import io.nuls.core.constant.TxType;
+import io.nuls.transaction.constant.TxConstant;
+import io.nuls.transaction.model.po.TransactionNetPO;
+import io.nuls.transaction.utils.TxUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+public class OrphanPoolTest {
+
+    private static final byte[] ADDRESS_A = new byte[23];
+
+    private static final byte[] ADDRESS_B = new byte[23];
+
+    static {
+        ADDRESS_A[22] = 1;
+        ADDRESS_B[22] = 2;
+    }
+
+    @Test
+    public void wakeDependents() throws Exception {
+        OrphanPool pool = new OrphanPool(100, 1000000);
+        Transaction parent = newTx(ADDRESS_A, new byte[8], "parent");
+        Transaction child = newTx(ADDRESS_A, TxUtil.getNonce(parent.getHash().getBytes()), "child");
+        Transaction other = newTx(ADDRESS_B, new byte[8], "other");
+        Assert.assertTrue(pool.add(new TransactionNetPO(child), 0L));
+        Assert.assertTrue(pool.add(new TransactionNetPO(other), 0L));
+        Assert.assertFalse(pool.add(new TransactionNetPO(child), 0L));
+        Assert.assertNull(pool.pollReady(0L));
+
+        //只唤醒依赖该交易的孤儿交易 / only the orphan depending on the accepted transaction is woken up
+        Assert.assertEquals(0, pool.accepted(other));
+        Assert.assertEquals(1, pool.accepted(parent));
+        Assert.assertEquals(child, pool.pollReady(0L).getTx());
+        Assert.assertNull(pool.pollReady(0L));
+        Assert.assertEquals(1, pool.size());
+        Assert.assertEquals(other.size(), pool.getDataSize());
+    }
+
+    @Test
+    public void retryBackoff() throws Exception {
+        OrphanPool pool = new OrphanPool(100, 1000000);
+        TransactionNetPO txNet = new TransactionNetPO(newTx(ADDRESS_A, new byte[8], "retry"));
+        long added = 1000L;
+        pool.add(txNet, added);
+        Assert.assertTrue(pool.pollDue(added + TxConstant.ORPHAN_RETRY_MIN_INTERVAL - 1).isEmpty());
+        List<TransactionNetPO> due = pool.pollDue(added + TxConstant.ORPHAN_RETRY_MIN_INTERVAL);
+        Assert.assertEquals(1, due.size());
+        Assert.assertEquals(0, pool.size());
+
+        //再次重试的间隔翻倍, 首次加入的时间不变 / the next retry waits twice as long, the first added time is kept
+        long now = added + TxConstant.ORPHAN_RETRY_MIN_INTERVAL;
+        txNet.setOrphanRetryCount(1);
+        pool.add(txNet, now);
+        Assert.assertEquals(added, txNet.getOrphanTime());
+        Assert.assertTrue(pool.pollDue(now + TxConstant.ORPHAN_RETRY_MIN_INTERVAL).isEmpty());
+        Assert.assertEquals(1, pool.pollDue(now + 2 * TxConstant.ORPHAN_RETRY_MIN_INTERVAL).size());
+    }
+
+    @Test
+    public void wakeWhileProcessing() throws Exception {
+        OrphanPool pool = new OrphanPool(100, 1000000);
+        Transaction parent = newTx(ADDRESS_A, new byte[8], "parent");
+        TransactionNetPO child = new TransactionNetPO(newTx(ADDRESS_A, TxUtil.getNonce(parent.getHash().getBytes()), "child"));
+        long now = 1000L;
+        pool.add(child, now);
+        now += TxConstant.ORPHAN_RETRY_MIN_INTERVAL;
+        Assert.assertEquals(1, pool.pollDue(now).size());
+
+        //处理期间前序交易被接收, 放回时直接进入待验证并重置重试次数
+        //the parent is accepted while the orphan is processed, it is ready when put back and its retry count starts over
+        Assert.assertEquals(0, pool.accepted(parent));
+        child.setOrphanRetryCount(3);
+        pool.add(child, now);
+        Assert.assertEquals(0, child.getOrphanRetryCount());
+        Assert.assertEquals(child, pool.pollReady(0L));
+
+        //唤醒记录在处理结束后清除 / the wakeup is cleared once the processing is over
+        pool.add(child, now);
+        Assert.assertNull(pool.pollReady(0L));
+        Assert.assertEquals(1, pool.pollDue(now + TxConstant.ORPHAN_RETRY_MIN_INTERVAL).size());
+        pool.processed(child);
+        Assert.assertEquals(0, pool.accepted(parent));
+        pool.add(child, now);
+        Assert.assertNull(pool.pollReady(0L));
+    }
+
+    @Test
+    public void expireFromOrphanTime() throws Exception {
+        OrphanPool pool = new OrphanPool(100, 1000000);
+        long added = 1000000L;
+        long ttlSeconds = 10;
+        TransactionNetPO txNet = new TransactionNetPO(newTx(ADDRESS_A, new byte[8], "expire", added / 1000L));
+        Assert.assertFalse(OrphanPool.isExpired(txNet, added, ttlSeconds));
+        pool.add(txNet, added);
+        Assert.assertFalse(OrphanPool.isExpired(txNet, added + ttlSeconds * 1000L, ttlSeconds));
+        Assert.assertTrue(OrphanPool.isExpired(txNet, added + ttlSeconds * 1000L + 1, ttlSeconds));
+
+        //重新放回不会重置存活时间 / putting it back does not restart the ttl
+        pool.pollDue(added + TxConstant.ORPHAN_RETRY_MIN_INTERVAL);
+        pool.add(txNet, added + ttlSeconds * 1000L + 1);
+        Assert.assertTrue(OrphanPool.isExpired(txNet, added + ttlSeconds * 1000L + 1, ttlSeconds));
+    }
+
+    @Test
+    public void expireFromTxTime() throws Exception {
+        OrphanPool pool = new OrphanPool(100, 1000000);
+        long added = 1000000L;
+        long ttlSeconds = 10;
+        //交易时间早于存活时间, 刚进入孤儿交易池也过期 / a tx time older than the ttl expires even right after entering the pool
+        TransactionNetPO txNet = new TransactionNetPO(newTx(ADDRESS_A, new byte[8], "old", added / 1000L - ttlSeconds - 1));
+        pool.add(txNet, added);
+        Assert.assertTrue(OrphanPool.isExpired(txNet, added, ttlSeconds));
+    }
+
+    @Test
+    public void evictEldest() throws Exception {
+        OrphanPool pool = new OrphanPool(2, 1000000);
+        Transaction first = newTx(ADDRESS_A, new byte[8], "first");
+        Transaction second = newTx(ADDRESS_A, new byte[8], "second");
+        Transaction third = newTx(ADDRESS_B, new byte[8], "third");
+        pool.add(new TransactionNetPO(first), 0L);
+        pool.add(new TransactionNetPO(second), 0L);
+        pool.add(new TransactionNetPO(third), 0L);
+        Assert.assertEquals(2, pool.size());
+        Assert.assertEquals(1, pool.getEvictedCount());
+        Assert.assertFalse(pool.contains(first.getHash().getBytes()));
+        Assert.assertTrue(pool.contains(second.getHash().getBytes()));
+        Assert.assertEquals(second.size() + third.size(), pool.getDataSize());
+    }
+
+    private static Transaction newTx(byte[] address, byte[] nonce, String remark) throws Exception {
+        return newTx(address, nonce, remark, 1L);
+    }
+
+    private static Transaction newTx(byte[] address, byte[] nonce, String remark, long time) throws Exception {
+        Transaction tx = new Transaction(TxType.TRANSFER);
+        tx.setTime(time);
+        tx.setRemark(remark.getBytes());
+        CoinData coinData = new CoinData();
+        coinData.addFrom(new CoinFrom(address, 1, 1, BigInteger.ONE, nonce, (byte) 0));
+        tx.setCoinData(coinData.serialize());
+        return tx;
+    }
+}
@@ -0,0 +1,122 @@
+package io.nuls.transaction.cache;
+
+import io.nuls.base.data.CoinData;
+import io.nuls.base.data.CoinFrom;
+import io.nuls.base.data.Transaction;
+import io.nuls.core.constant.TxType;
+import io.nuls.transaction.utils.TxUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+public class TxMempoolTest {
+
+    private static final byte[] ADDRESS_A = new byte[23];
+
+    private static final byte[] ADDRESS_B = new byte[23];
+
+    static {
+        ADDRESS_A[22] = 1;
+        ADDRESS_B[22] = 2;
+    }
+
+    @Test
+    public void feeRateOrder() throws Exception {
+        TxMempool mempool = new TxMempool();
+        Transaction low = newTx(ADDRESS_A, new byte[8], "low");
+        Transaction high = newTx(ADDRESS_B, new byte[8], "high");
+        mempool.add(low, 1, low.getCoinDataInstance(), false);
+        mempool.add(high, 10, high.getCoinDataInstance(), false);
+        Assert.assertEquals(high, mempool.poll());
+        Assert.assertEquals(low, mempool.poll());
+        Assert.assertNull(mempool.poll());
+        //取出的交易仍在池中 / taken transactions stay in the pool
+        Assert.assertEquals(2, mempool.size());
+        Assert.assertEquals(0, mempool.queuedSize());
+    }
+
+    @Test
+    public void nonceChain() throws Exception {
+        TxMempool mempool = new TxMempool();
+        Transaction first = newTx(ADDRESS_A, new byte[8], "first");
+        Transaction second = newTx(ADDRESS_A, TxUtil.getNonce(first.getHash().getBytes()), "second");
+        Transaction other = newTx(ADDRESS_B, new byte[8], "other");
+        //后一笔交易手续费更高且先加入, 仍然在前一笔之后取出 / the successor pays more and arrives first but still follows its predecessor
+        mempool.add(second, 100, second.getCoinDataInstance(), false);
+        mempool.add(other, 50, other.getCoinDataInstance(), false);
+        mempool.add(first, 1, first.getCoinDataInstance(), false);
+        Assert.assertEquals(other, mempool.poll());
+        Assert.assertEquals(first, mempool.poll());
+        Assert.assertEquals(second, mempool.poll());
+
+        //前一笔还回队列后, 后一笔重新等待 / requeueing the predecessor blocks the successor again
+        mempool.requeue(first.getHash().getBytes());
+        mempool.requeue(second.getHash().getBytes());
+        Assert.assertEquals(first, mempool.poll());
+        Assert.assertEquals(second, mempool.poll());
+    }
+
+    @Test
+    public void removeAndSize() throws Exception {
+        TxMempool mempool = new TxMempool();
+        Transaction first = newTx(ADDRESS_A, new byte[8], "first");
+        Transaction second = newTx(ADDRESS_A, TxUtil.getNonce(first.getHash().getBytes()), "second");
+        mempool.add(first, 1, first.getCoinDataInstance(), false);
+        Assert.assertFalse(mempool.add(first, 1, first.getCoinDataInstance(), false));
+        mempool.add(second, 1, second.getCoinDataInstance(), true);
+        Assert.assertEquals(first.size() + second.size(), mempool.getTxDataSize());
+        Assert.assertTrue(mempool.isQueued(second.getHash().getBytes()));
+        Assert.assertEquals(mempool.getTxDataSize(), mempool.getQueuedDataSize());
+
+        //前一笔确认移除后, 后一笔可以取出 / once the predecessor is removed the successor can be taken
+        Assert.assertTrue(mempool.remove(first.getHash().getBytes()));
+        Assert.assertFalse(mempool.contains(first.getHash().getBytes()));
+        Assert.assertEquals(second.size(), mempool.getTxDataSize());
+        Assert.assertEquals(second, mempool.poll());
+
+        mempool.requeue(second.getHash().getBytes());
+        List<Transaction> list = mempool.pollAll();
+        Assert.assertEquals(1, list.size());
+        Assert.assertEquals(0, mempool.queuedSize());
+        Assert.assertEquals(0, mempool.getQueuedDataSize());
+        mempool.remove(second.getHash().getBytes());
+        Assert.assertEquals(0, mempool.size());
+        Assert.assertEquals(0, mempool.getTxDataSize());
+        Assert.assertEquals(first.size() + second.size(), mempool.getMaxTxDataSize());
+        Assert.assertEquals(2, mempool.getAddedCount());
+        Assert.assertEquals(2, mempool.getRemovedCount());
+    }
+
+    @Test
+    public void pollWakeUp() throws Exception {
+        TxMempool mempool = new TxMempool();
+        Assert.assertNull(mempool.poll(10L));
+        Transaction tx = newTx(ADDRESS_A, new byte[8], "wake");
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50L);
+                mempool.add(tx, 1, tx.getCoinDataInstance(), false);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        long start = System.currentTimeMillis();
+        //新交易加入后立即返回, 不等到超时 / returns as soon as the transaction is added, long before the timeout
+        Assert.assertEquals(tx, mempool.poll(10000L));
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000L);
+        producer.join();
+    }
+
+    private static Transaction newTx(byte[] address, byte[] nonce, String remark) throws Exception {
+        Transaction tx = new Transaction(TxType.TRANSFER);
+        tx.setTime(1L);
+        tx.setRemark(remark.getBytes());
+        CoinData coinData = new CoinData();
+        coinData.addFrom(new CoinFrom(address, 1, 1, BigInteger.ONE, nonce, (byte) 0));
+        tx.setCoinData(coinData.serialize());
+        return tx;
+    }
+}
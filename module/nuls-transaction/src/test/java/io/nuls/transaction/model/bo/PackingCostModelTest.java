@@ -0,0 +1,60 @@
+package io.nuls.transaction.model.bo;
+
+import io.nuls.transaction.constant.TxConstant;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PackingCostModelTest {
+
+    @Test
+    public void defaultsWithoutSamples() {
+        PackingCostModel model = new PackingCostModel();
+        Assert.assertEquals(TxConstant.PACKAGE_MODULE_VALIDATOR_RESERVE_TIME, model.reserveTime(1000, 10, 100));
+        Assert.assertEquals(TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS, model.batchSize(5000));
+    }
+
+    @Test
+    public void reserveFollowsMeasuredCost() {
+        PackingCostModel model = new PackingCostModel();
+        //每笔模块验证1毫秒 / 1ms per transaction in the module validators
+        model.recordModule(1000, 1000);
+        Assert.assertEquals(100 + TxConstant.PACKAGE_MODULE_VALIDATOR_MIN_RESERVE_TIME, model.reserveTime(10, 0, 100));
+        Assert.assertEquals(100 + 3000, model.reserveTime(2000, 0, 100));
+
+        //新样本按1/4权重计入 / new samples weigh 1/4
+        model.recordModule(1000, 5000);
+        Assert.assertEquals(2000, model.getModuleMicros());
+    }
+
+    @Test
+    public void fixedCostPerBatch() {
+        PackingCostModel model = new PackingCostModel();
+        //每批次固定50毫秒, 每笔0.5毫秒 / 50ms fixed per batch and 0.5ms per transaction
+        model.recordLedger(100, 100);
+        model.recordLedger(1000, 550);
+        Assert.assertEquals(50000, model.getLedgerFixedMicros());
+        Assert.assertEquals(500, model.getLedgerMicros());
+        model.recordLedger(400, 250);
+        Assert.assertEquals(50000, model.getLedgerFixedMicros());
+        Assert.assertEquals(500, model.getLedgerMicros());
+        //固定耗时不按交易数摊薄 / the fixed cost is not spread over the transactions
+        Assert.assertEquals(1900, model.batchSize(1000));
+
+        model.recordModule(200, 120);
+        model.recordModule(2000, 1020);
+        Assert.assertEquals(20000, model.getModuleFixedMicros());
+        //(20 + 0.5 * 2000) * 1.5
+        Assert.assertEquals(100 + 1530, model.reserveTime(2000, 0, 100));
+    }
+
+    @Test
+    public void batchFitsAvailableTime() {
+        PackingCostModel model = new PackingCostModel();
+        model.recordLedger(1000, 500);
+        model.recordModule(1000, 1000);
+        //每笔估计 0.5 + 1.5 = 2毫秒 / 2ms estimated per transaction
+        Assert.assertEquals(500, model.batchSize(1000));
+        Assert.assertEquals(TxConstant.PACKAGE_TX_VERIFY_MIN_NUMBER, model.batchSize(10));
+        Assert.assertEquals(TxConstant.PACKAGE_TX_VERIFY_COINDATA_NUMBER_OF_TIMES_TO_PROCESS, model.batchSize(100000));
+    }
+}
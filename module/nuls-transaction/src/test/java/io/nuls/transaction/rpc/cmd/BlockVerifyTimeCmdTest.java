@@ -0,0 +1,84 @@
+package io.nuls.transaction.rpc.cmd;
+
+import io.nuls.core.rpc.model.message.Response;
+import io.nuls.transaction.constant.TxErrorCode;
+import io.nuls.transaction.manager.ChainManager;
+import io.nuls.transaction.model.bo.Chain;
+import io.nuls.transaction.model.bo.config.ConfigBean;
+import io.nuls.transaction.utils.LoggerUtil;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 获取最近一次验证区块交易各阶段耗时 / time of each stage of the latest block verification
+ */
+public class BlockVerifyTimeCmdTest {
+
+    private static final int CHAIN_ID = 2;
+
+    private TransactionCmd cmd;
+    private Chain chain;
+
+    @Before
+    public void before() throws Exception {
+        ConfigBean config = new ConfigBean();
+        config.setChainId(CHAIN_ID);
+        chain = new Chain();
+        chain.setConfig(config);
+        LoggerUtil.init(chain);
+        ChainManager chainManager = new ChainManager();
+        chainManager.getChainMap().put(CHAIN_ID, chain);
+        cmd = new TransactionCmd();
+        Field field = TransactionCmd.class.getDeclaredField("chainManager");
+        field.setAccessible(true);
+        field.set(cmd, chainManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void blockVerifyTime() {
+        //还没有验证过区块 / no block verified yet
+        Response response = cmd.blockVerifyTime(params(CHAIN_ID));
+        Assert.assertTrue(response.isSuccess());
+        Assert.assertTrue(((Map<String, Long>) response.getResponseData()).isEmpty());
+
+        Map<String, Long> stageTime = new HashMap<>();
+        stageTime.put("exist", 3L);
+        stageTime.put("total", 10L);
+        chain.setBlockVerifyStageTime(stageTime);
+        //保存的是快照, 之后修改原集合不影响结果 / a snapshot is kept, later changes to the source map are not visible
+        stageTime.put("total", 99L);
+        Assert.assertEquals(Long.valueOf(10L), chain.getBlockVerifyStageTime().get("total"));
+
+        response = cmd.blockVerifyTime(params(CHAIN_ID));
+        Assert.assertTrue(response.isSuccess());
+        Map<String, Long> result = (Map<String, Long>) response.getResponseData();
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(Long.valueOf(3L), result.get("exist"));
+        Assert.assertEquals(Long.valueOf(10L), result.get("total"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void stageTimeReadOnly() {
+        chain.setBlockVerifyStageTime(new HashMap<>());
+        chain.getBlockVerifyStageTime().put("total", 1L);
+    }
+
+    @Test
+    public void chainNotFound() {
+        Response response = cmd.blockVerifyTime(params(CHAIN_ID + 1));
+        Assert.assertFalse(response.isSuccess());
+        Assert.assertEquals(TxErrorCode.CHAIN_NOT_FOUND.getCode(), response.getResponseErrorCode());
+    }
+
+    private static Map<String, Object> params(int chainId) {
+        Map<String, Object> params = new HashMap<>(2);
+        params.put("chainId", chainId);
+        return params;
+    }
+}
@@ -0,0 +1,244 @@
+package io.nuls.transaction.service;
+
+import io.nuls.base.RPCUtil;
+import io.nuls.base.data.Transaction;
+import io.nuls.core.constant.TxType;
+import io.nuls.core.exception.NulsException;
+import io.nuls.core.model.StringUtils;
+import io.nuls.core.rockdb.manager.RocksDBManager;
+import io.nuls.core.rockdb.service.RocksDBService;
+import io.nuls.transaction.constant.TxConstant;
+import io.nuls.transaction.constant.TxDBConstant;
+import io.nuls.transaction.constant.TxErrorCode;
+import io.nuls.transaction.model.bo.Chain;
+import io.nuls.transaction.model.bo.TxVerifyWrapper;
+import io.nuls.transaction.model.bo.config.ConfigBean;
+import io.nuls.transaction.model.po.TransactionConfirmedPO;
+import io.nuls.transaction.service.impl.TxServiceImpl;
+import io.nuls.transaction.storage.impl.ConfirmedTxStorageServiceImpl;
+import io.nuls.transaction.storage.impl.UnconfirmedTxStorageServiceImpl;
+import io.nuls.transaction.utils.LoggerUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 验证区块交易流水线: 反序列化、是否已确认/未确认、单个交易基础验证
+ * Block verification pipeline: deserialize, confirmed/unconfirmed lookup, single tx base validation and cleanup on failure
+ */
+public class BlockVerifyPipelineTest {
+
+    private static final int CHAIN_ID = 2;
+    private static final long HEIGHT = 100;
+
+    private String dataPath;
+    private TxServiceImpl txService;
+    private ConfirmedTxStorageServiceImpl confirmedTxStorageService;
+    private UnconfirmedTxStorageServiceImpl unconfirmedTxStorageService;
+    private Chain chain;
+
+    @Before
+    public void before() throws Exception {
+        RocksDBManager.close();
+        dataPath = System.getProperty("java.io.tmpdir") + File.separator + "tx-verify-test-" + System.nanoTime();
+        RocksDBService.init(dataPath);
+        RocksDBService.createTable(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + CHAIN_ID);
+        RocksDBService.createTable(TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + CHAIN_ID);
+        RocksDBService.createTable(TxDBConstant.DB_TRANSACTION_UNCONFIRMED_PREFIX + CHAIN_ID);
+        confirmedTxStorageService = new ConfirmedTxStorageServiceImpl();
+        unconfirmedTxStorageService = new UnconfirmedTxStorageServiceImpl();
+        txService = new TxServiceImpl();
+        inject("confirmedTxStorageService", confirmedTxStorageService);
+        inject("unconfirmedTxStorageService", unconfirmedTxStorageService);
+        ConfigBean config = new ConfigBean();
+        config.setChainId(CHAIN_ID);
+        chain = new Chain();
+        chain.setConfig(config);
+        LoggerUtil.init(chain);
+    }
+
+    @After
+    public void after() throws Exception {
+        shutdown("verifySignExecutor");
+        shutdown("blockVerifyExecutor");
+        RocksDBManager.close();
+        deleteDir(new File(dataPath));
+    }
+
+    @Test
+    public void deserializeKeepsOrder() throws Exception {
+        //跨越多个反序列化批次 / spans several deserialize batches
+        int count = TxConstant.BLOCK_TX_DESERIALIZE_BATCH * 3 + 7;
+        List<String> txStrList = new ArrayList<>();
+        List<Transaction> txList = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Transaction tx = tx(TxType.TRANSFER, "tx" + i);
+            txList.add(tx);
+            txStrList.add(RPCUtil.encode(tx.serialize()));
+        }
+        List<TxVerifyWrapper> wrappers = deserialize(txStrList);
+        Assert.assertEquals(count, wrappers.size());
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(txList.get(i).getHash(), wrappers.get(i).getTx().getHash());
+            Assert.assertEquals(txStrList.get(i), wrappers.get(i).getTxStr());
+            Assert.assertEquals(HEIGHT, wrappers.get(i).getTx().getBlockHeight());
+        }
+    }
+
+    @Test
+    public void baseVerifyOnlyUnknownTxs() throws Exception {
+        Transaction local = tx(TxType.TRANSFER, "local");
+        Transaction unknown = tx(TxType.TRANSFER, "unknown");
+        Assert.assertTrue(unconfirmedTxStorageService.putTx(CHAIN_ID, local));
+        Map<String, Long> stageTime = new ConcurrentHashMap<>();
+
+        //未确认库中已有的交易以及重复交易不再做基础验证 / txs already in the unconfirmed storage and duplicates are not validated again
+        List<TxVerifyWrapper> unknownTxList = verifyExist(Arrays.asList(local, unknown, unknown), stageTime);
+        Assert.assertEquals(1, unknownTxList.size());
+        Assert.assertEquals(unknown.getHash(), unknownTxList.get(0).getTx().getHash());
+        Assert.assertTrue(stageTime.containsKey("exist"));
+        List<Future<Boolean>> futures = verifyBase(unknownTxList, stageTime);
+        Assert.assertEquals(1, futures.size());
+        //交易类型未注册, 基础验证失败 / the tx type is not registered, so the base validation fails
+        Assert.assertFalse(futures.get(0).get());
+        Assert.assertTrue(stageTime.containsKey("base"));
+        Assert.assertEquals(TxErrorCode.TX_VERIFY_FAIL, verifyBaseResult(verifyBase(unknownTxList, stageTime)));
+
+        //全部在未确认库中 / every tx is in the unconfirmed storage
+        Assert.assertTrue(verifyExist(Arrays.asList(local), stageTime).isEmpty());
+        Assert.assertNull(verifyBaseResult(verifyBase(new ArrayList<>(), stageTime)));
+    }
+
+    @Test
+    public void confirmedTxFails() throws Exception {
+        Transaction confirmed = tx(TxType.TRANSFER, "confirmed");
+        Transaction unknown = tx(TxType.TRANSFER, "unknown");
+        List<TransactionConfirmedPO> list = new ArrayList<>();
+        list.add(new TransactionConfirmedPO(confirmed, HEIGHT - 1, (byte) 1));
+        Assert.assertTrue(confirmedTxStorageService.saveTxList(CHAIN_ID, list));
+        Map<String, Long> stageTime = new ConcurrentHashMap<>();
+        try {
+            verifyExist(Arrays.asList(unknown, confirmed), stageTime);
+            Assert.fail();
+        } catch (InvocationTargetException e) {
+            Assert.assertEquals(TxErrorCode.TX_CONFIRMED, ((NulsException) e.getCause()).getErrorCode());
+        }
+        Assert.assertFalse(stageTime.containsKey("exist"));
+    }
+
+    @Test
+    public void finishVerifyWaitsAndCancels() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicBoolean moduleDone = new AtomicBoolean();
+            Future<List<String>> module = executor.submit(() -> {
+                release.await();
+                moduleDone.set(true);
+                return new ArrayList<>();
+            });
+            //排在模块验证之后, 尚未开始 / queued behind the module validation, not started yet
+            Future<Boolean> base = executor.submit(() -> true);
+            Map<String, Future<List<String>>> moduleFutures = new HashMap<>();
+            moduleFutures.put("module", module);
+            Thread thread = new Thread(() -> {
+                try {
+                    Thread.sleep(100L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                release.countDown();
+            });
+            thread.start();
+            Method method = TxServiceImpl.class.getDeclaredMethod("finishVerify", Future.class, List.class, Map.class);
+            method.setAccessible(true);
+            method.invoke(txService, CompletableFuture.completedFuture(false), Arrays.asList(base), moduleFutures);
+            //仍在运行的模块验证结束后才返回, 未开始的基础验证被取消
+            //returns only after the running module validation is over, the base validation not started is cancelled
+            Assert.assertTrue(moduleDone.get());
+            Assert.assertTrue(base.isCancelled());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TxVerifyWrapper> deserialize(List<String> txStrList) throws Exception {
+        Method method = TxServiceImpl.class.getDeclaredMethod("deserializeTxs", Chain.class, List.class, long.class);
+        method.setAccessible(true);
+        return (List<TxVerifyWrapper>) method.invoke(txService, chain, txStrList, HEIGHT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<TxVerifyWrapper> verifyExist(List<Transaction> txList, Map<String, Long> stageTime) throws Exception {
+        List<TxVerifyWrapper> wrappers = new ArrayList<>();
+        List<byte[]> keys = new ArrayList<>();
+        for (Transaction tx : txList) {
+            wrappers.add(new TxVerifyWrapper(tx, RPCUtil.encode(tx.serialize())));
+            keys.add(tx.getHash().getBytes());
+        }
+        Method method = TxServiceImpl.class.getDeclaredMethod("verifyExist", Chain.class, List.class, List.class, Map.class);
+        method.setAccessible(true);
+        return (List<TxVerifyWrapper>) method.invoke(txService, chain, wrappers, keys, stageTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Future<Boolean>> verifyBase(List<TxVerifyWrapper> txList, Map<String, Long> stageTime) throws Exception {
+        Method method = TxServiceImpl.class.getDeclaredMethod("verifyBaseAsync", Chain.class, List.class, Map.class);
+        method.setAccessible(true);
+        return (List<Future<Boolean>>) method.invoke(txService, chain, txList, stageTime);
+    }
+
+    /**
+     * @return 验证失败的错误码, 通过时为null / the error code of the failure, null when it passes
+     */
+    private Object verifyBaseResult(List<Future<Boolean>> baseFutures) throws Exception {
+        Method method = TxServiceImpl.class.getDeclaredMethod("verifyBaseResult", Chain.class, List.class);
+        method.setAccessible(true);
+        try {
+            method.invoke(txService, chain, baseFutures);
+            return null;
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof NulsException);
+            return ((NulsException) e.getCause()).getErrorCode();
+        }
+    }
+
+    private void inject(String name, Object value) throws Exception {
+        Field field = TxServiceImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(txService, value);
+    }
+
+    private void shutdown(String name) throws Exception {
+        Field field = TxServiceImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        ((ExecutorService) field.get(txService)).shutdownNow();
+    }
+
+    private static Transaction tx(int type, String remark) {
+        Transaction tx = new Transaction(type);
+        tx.setTime(1L);
+        tx.setRemark(StringUtils.bytes(remark));
+        return tx;
+    }
+
+    private static void deleteDir(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                deleteDir(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,143 @@
+package io.nuls.transaction.storage;
+
+import io.nuls.base.RPCUtil;
+import io.nuls.base.data.Transaction;
+import io.nuls.core.constant.TxType;
+import io.nuls.core.model.StringUtils;
+import io.nuls.core.rockdb.manager.RocksDBManager;
+import io.nuls.core.rockdb.service.RocksDBService;
+import io.nuls.transaction.constant.TxDBConstant;
+import io.nuls.transaction.model.bo.Chain;
+import io.nuls.transaction.model.bo.config.ConfigBean;
+import io.nuls.transaction.model.po.TransactionConfirmedPO;
+import io.nuls.transaction.service.impl.ConfirmedTxServiceImpl;
+import io.nuls.transaction.storage.impl.ConfirmedTxStorageServiceImpl;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 已确认交易按区块顺序存储: 保存、按区块位置查询、删除
+ * Confirmed transactions stored in block order: save, lookup by block position and remove
+ */
+public class ConfirmedTxBlockTableTest {
+
+    private static final int CHAIN_ID = 2;
+    private static final long HEIGHT = 100;
+
+    private String dataPath;
+    private ConfirmedTxStorageServiceImpl storageService;
+    private ConfirmedTxServiceImpl confirmedTxService;
+    private Chain chain;
+
+    @Before
+    public void before() throws Exception {
+        RocksDBManager.close();
+        dataPath = System.getProperty("java.io.tmpdir") + File.separator + "tx-confirmed-test-" + System.nanoTime();
+        RocksDBService.init(dataPath);
+        RocksDBService.createTable(TxDBConstant.DB_TRANSACTION_CONFIRMED_PREFIX + CHAIN_ID);
+        RocksDBService.createTable(TxDBConstant.DB_TRANSACTION_CONFIRMED_BLOCK_PREFIX + CHAIN_ID);
+        storageService = new ConfirmedTxStorageServiceImpl();
+        confirmedTxService = new ConfirmedTxServiceImpl();
+        Field field = ConfirmedTxServiceImpl.class.getDeclaredField("confirmedTxStorageService");
+        field.setAccessible(true);
+        field.set(confirmedTxService, storageService);
+        ConfigBean config = new ConfigBean();
+        config.setChainId(CHAIN_ID);
+        chain = new Chain();
+        chain.setConfig(config);
+    }
+
+    @After
+    public void after() {
+        RocksDBManager.close();
+        deleteDir(new File(dataPath));
+    }
+
+    @Test
+    public void saveAndLookupWithContractTxs() throws Exception {
+        //区块交易: 两笔普通交易和返还GAS交易, 合约生成的交易保存在返还GAS交易之前
+        //block txs: two transfers and the gas return, the contract generated txs are saved before the gas return
+        Transaction tx0 = tx(TxType.TRANSFER, "tx0");
+        Transaction tx1 = tx(TxType.TRANSFER, "tx1");
+        Transaction contract0 = tx(TxType.CONTRACT_TRANSFER, "contract0");
+        Transaction contract1 = tx(TxType.CONTRACT_TRANSFER, "contract1");
+        Transaction gas = tx(TxType.CONTRACT_RETURN_GAS, "gas");
+        List<Transaction> saved = Arrays.asList(tx0, tx1, contract0, contract1, gas);
+        Assert.assertTrue(storageService.saveTxList(CHAIN_ID, confirmed(saved)));
+
+        List<Transaction> blockTxs = storageService.getBlockTxList(CHAIN_ID, HEIGHT);
+        Assert.assertEquals(saved.size(), blockTxs.size());
+        for (int i = 0; i < saved.size(); i++) {
+            Assert.assertEquals(saved.get(i).getHash(), blockTxs.get(i).getHash());
+        }
+        Assert.assertEquals(contract1.getHash(), storageService.getTx(CHAIN_ID, contract1.getHash()).getTx().getHash());
+
+        //区块hash列表不包含合约生成的交易 / the block hash list does not contain the contract generated txs
+        List<String> hashList = Arrays.asList(tx0.getHash().toHex(), tx1.getHash().toHex(), gas.getHash().toHex());
+        List<String> txStrList = confirmedTxService.getTxList(chain, hashList, HEIGHT);
+        Assert.assertEquals(3, txStrList.size());
+        Assert.assertEquals(RPCUtil.encode(tx0.serialize()), txStrList.get(0));
+        Assert.assertEquals(RPCUtil.encode(tx1.serialize()), txStrList.get(1));
+        Assert.assertEquals(RPCUtil.encode(gas.serialize()), txStrList.get(2));
+
+        //顺序不一致时按hash查询, 结果仍按hash列表顺序 / a different order falls back to the hash lookup in hash list order
+        List<String> reversed = Arrays.asList(gas.getHash().toHex(), tx0.getHash().toHex());
+        txStrList = confirmedTxService.getTxList(chain, reversed, HEIGHT);
+        Assert.assertEquals(RPCUtil.encode(gas.serialize()), txStrList.get(0));
+        Assert.assertEquals(RPCUtil.encode(tx0.serialize()), txStrList.get(1));
+    }
+
+    @Test
+    public void removeTxList() throws Exception {
+        Transaction tx0 = tx(TxType.TRANSFER, "tx0");
+        Transaction contract0 = tx(TxType.CONTRACT_TRANSFER, "contract0");
+        Transaction gas = tx(TxType.CONTRACT_RETURN_GAS, "gas");
+        List<Transaction> saved = Arrays.asList(tx0, contract0, gas);
+        Assert.assertTrue(storageService.saveTxList(CHAIN_ID, confirmed(saved)));
+
+        //区块表中的交易与hash一起删除 / the transactions in the block table are removed with their hashes
+        Assert.assertTrue(storageService.removeTxList(CHAIN_ID, Arrays.asList(tx0, contract0)));
+        Assert.assertNull(storageService.getTx(CHAIN_ID, tx0.getHash()));
+        Assert.assertFalse(storageService.isExists(CHAIN_ID, contract0.getHash()));
+        List<Transaction> blockTxs = storageService.getBlockTxList(CHAIN_ID, HEIGHT);
+        Assert.assertEquals(1, blockTxs.size());
+        Assert.assertEquals(gas.getHash(), blockTxs.get(0).getHash());
+
+        //不存在的hash不影响删除 / unknown hashes do not break the removal
+        Assert.assertTrue(storageService.removeTxList(CHAIN_ID, saved));
+        Assert.assertTrue(storageService.getBlockTxList(CHAIN_ID, HEIGHT).isEmpty());
+    }
+
+    private static Transaction tx(int type, String remark) {
+        Transaction tx = new Transaction(type);
+        tx.setTime(1L);
+        tx.setRemark(StringUtils.bytes(remark));
+        return tx;
+    }
+
+    private static List<TransactionConfirmedPO> confirmed(List<Transaction> txList) {
+        List<TransactionConfirmedPO> list = new ArrayList<>();
+        for (Transaction tx : txList) {
+            list.add(new TransactionConfirmedPO(tx, HEIGHT, (byte) 1));
+        }
+        return list;
+    }
+
+    private static void deleteDir(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                deleteDir(f);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,98 @@
+package io.nuls.transaction.task;
+
+import io.nuls.base.data.CoinData;
+import io.nuls.base.data.CoinFrom;
+import io.nuls.base.data.Transaction;
+import io.nuls.core.constant.TxType;
+import io.nuls.transaction.model.po.TransactionNetPO;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NetTxProcessTaskTest {
+
+    @Test
+    public void partitionBySender() throws Exception {
+        List<TransactionNetPO> txNetList = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            byte[] address = new byte[23];
+            address[22] = (byte) (i % 8);
+            txNetList.add(new TransactionNetPO(newTx(address, "tx" + i)));
+        }
+        List<List<TransactionNetPO>> shards = NetTxProcessTask.partition(txNetList, 4);
+        Assert.assertEquals(4, shards.size());
+        int total = 0;
+        for (List<TransactionNetPO> shard : shards) {
+            total += shard.size();
+            //同一账户只在一个分片中, 且保持原有顺序 / one account lives in one shard, in the original order
+            int last = -1;
+            for (TransactionNetPO txNet : shard) {
+                int index = txNetList.indexOf(txNet);
+                Assert.assertTrue(index > last);
+                last = index;
+                for (List<TransactionNetPO> other : shards) {
+                    if (other != shard) {
+                        for (TransactionNetPO o : other) {
+                            Assert.assertNotEquals(index % 8, txNetList.indexOf(o) % 8);
+                        }
+                    }
+                }
+            }
+        }
+        Assert.assertEquals(txNetList.size(), total);
+    }
+
+    @Test
+    public void partitionMultiAccountTx() throws Exception {
+        List<TransactionNetPO> txNetList = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            txNetList.add(new TransactionNetPO(newTx("tx" + i, address(i % 8))));
+        }
+        //账户0与账户1的多账户交易, 之后又有账户1的交易 / a tx of accounts 0 and 1, followed by another tx of account 1
+        TransactionNetPO joint = new TransactionNetPO(newTx("joint", address(0), address(1)));
+        TransactionNetPO after = new TransactionNetPO(newTx("after", address(1)));
+        txNetList.add(joint);
+        txNetList.add(after);
+        List<List<TransactionNetPO>> shards = NetTxProcessTask.partition(txNetList, 4);
+        int total = 0;
+        for (List<TransactionNetPO> shard : shards) {
+            total += shard.size();
+            if (shard.contains(joint)) {
+                //两个账户的所有交易都在同一分片中, 并保持原有顺序 / every tx of both accounts is in that shard, in order
+                for (int i = 0; i < 40; i++) {
+                    if (i % 8 <= 1) {
+                        Assert.assertTrue(shard.contains(txNetList.get(i)));
+                    }
+                }
+                Assert.assertTrue(shard.indexOf(joint) < shard.indexOf(after));
+                Assert.assertTrue(shard.indexOf(txNetList.get(33)) < shard.indexOf(joint));
+            }
+        }
+        Assert.assertEquals(txNetList.size(), total);
+    }
+
+    private static byte[] address(int account) {
+        byte[] address = new byte[23];
+        address[22] = (byte) account;
+        return address;
+    }
+
+    private static Transaction newTx(byte[] address, String remark) throws Exception {
+        return newTx(remark, address);
+    }
+
+    private static Transaction newTx(String remark, byte[]... addresses) throws Exception {
+        Transaction tx = new Transaction(TxType.TRANSFER);
+        tx.setTime(1L);
+        tx.setRemark(remark.getBytes());
+        CoinData coinData = new CoinData();
+        for (byte[] address : addresses) {
+            coinData.addFrom(new CoinFrom(address, 1, 1, BigInteger.ONE, new byte[8], (byte) 0));
+        }
+        tx.setCoinData(coinData.serialize());
+        return tx;
+    }
+}
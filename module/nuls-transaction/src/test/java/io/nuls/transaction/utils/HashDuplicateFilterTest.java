@@ -0,0 +1,76 @@
+package io.nuls.transaction.utils;
+
+import io.nuls.base.data.NulsHash;
+import io.nuls.core.crypto.Sha256Hash;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HashDuplicateFilterTest {
+
+    @Test
+    public void insertAndCheck() {
+        HashDuplicateFilter filter = new HashDuplicateFilter(1000);
+        byte[] hash = hash(1);
+        Assert.assertFalse(filter.contains(hash));
+        Assert.assertTrue(filter.insertAndCheck(hash));
+        Assert.assertFalse(filter.insertAndCheck(hash));
+        Assert.assertTrue(filter.contains(hash));
+    }
+
+    @Test
+    public void rotate() {
+        HashDuplicateFilter filter = new HashDuplicateFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(filter.insertAndCheck(hash(i)));
+        }
+        //最近的500个一定还在 / the latest 500 are always remembered
+        for (int i = 500; i < 1000; i++) {
+            Assert.assertFalse(filter.insertAndCheck(hash(i)));
+        }
+        for (int i = 1000; i < 1500; i++) {
+            Assert.assertTrue(filter.insertAndCheck(hash(i)));
+        }
+        //两代之前的已被淘汰 / hashes two generations old are evicted
+        Assert.assertFalse(filter.contains(hash(0)));
+        Assert.assertTrue(filter.contains(hash(1499)));
+    }
+
+    @Test
+    public void concurrentInsert() throws Exception {
+        HashDuplicateFilter filter = new HashDuplicateFilter(100000);
+        AtomicInteger inserted = new AtomicInteger();
+        int threads = 4;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    if (filter.insertAndCheck(hash(i))) {
+                        inserted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        //每个hash只有一个线程插入成功 / exactly one thread succeeds for every hash
+        Assert.assertEquals(10000, inserted.get());
+    }
+
+    @Test
+    public void excludeNodes() {
+        NulsHash hash = new NulsHash(hash(7));
+        TxDuplicateRemoval.putExcludeNode(hash, "node1");
+        TxDuplicateRemoval.putExcludeNode(hash, "node2");
+        TxDuplicateRemoval.putExcludeNode(hash, "node1");
+        Assert.assertEquals("node1,node2", TxDuplicateRemoval.getExcludeNode(hash));
+        TxDuplicateRemoval.removeExcludeNode(hash.getBytes());
+        Assert.assertNull(TxDuplicateRemoval.getExcludeNode(hash));
+    }
+
+    private static byte[] hash(int i) {
+        return Sha256Hash.hash(String.valueOf(i).getBytes());
+    }
+}